@@ -109,4 +109,12 @@ source step_a112_users_and_groups_soft_deletion.sql;
 source step_a113_alter_table_medicalinventory.sql;
 source step_a114_medical_type_soft_deletion.sql;
 source step_a115_add_missing_foreign_key_for_auditable_entities.sql;
-source step_a116_fix_alcohol_and_bowel_column.sql;
\ No newline at end of file
+source step_a116_fix_alcohol_and_bowel_column.sql;
+source step_a117_medicaldsrlot_balance.sql;
+source step_a118_sequence.sql;
+source step_a119_medicalinventory_confirmed_rows.sql;
+source step_a120_patient_last_modified_date_index.sql;
+source step_a121_admission_search_indexes.sql;
+source step_a122_progressive_numbers.sql;
+source step_a123_admission_ward_occupation_index.sql;
+source step_a124_bill_daily_total.sql;
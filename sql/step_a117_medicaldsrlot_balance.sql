@@ -0,0 +1,23 @@
+-- Create new table for lot balances (main store and wards total quantities per lot)
+CREATE TABLE OH_MEDICALDSRLOTBALANCE (
+  LTB_LT_ID_A varchar(50) NOT NULL,
+  LTB_MAIN_STORE_QTY int(11) NOT NULL DEFAULT 0,
+  LTB_WARDS_TOTAL_QTY double NOT NULL DEFAULT 0,
+  PRIMARY KEY (LTB_LT_ID_A),
+  CONSTRAINT FK_MEDICALDSRLOTBALANCE_MEDICALDSRLOT
+	FOREIGN KEY (LTB_LT_ID_A)
+	REFERENCES OH_MEDICALDSRLOT (LT_ID_A)
+    ON DELETE CASCADE
+    ON UPDATE CASCADE);
+
+-- Populate the balances from the movements history and the wards stock
+INSERT INTO OH_MEDICALDSRLOTBALANCE (LTB_LT_ID_A, LTB_MAIN_STORE_QTY, LTB_WARDS_TOTAL_QTY)
+SELECT LT_ID_A,
+	(SELECT COALESCE(SUM(CASE WHEN MMVT_TYPE LIKE '+%' THEN MMV_QTY ELSE -MMV_QTY END), 0)
+		FROM OH_MEDICALDSRSTOCKMOV
+		JOIN OH_MEDICALDSRSTOCKMOVTYPE ON MMV_MMVT_ID_A = MMVT_ID_A
+		WHERE MMV_LT_ID_A = LT_ID_A),
+	(SELECT COALESCE(SUM(MDSRWRD_IN_QTI - MDSRWRD_OUT_QTI), 0)
+		FROM OH_MEDICALDSRWARD
+		WHERE MDSRWRD_LT_ID_A = LT_ID_A)
+FROM OH_MEDICALDSRLOT;
@@ -0,0 +1,8 @@
+-- Create new table for the database sequences (named counters reserved in blocks)
+CREATE TABLE OH_SEQUENCE (
+  SEQ_NAME varchar(50) NOT NULL,
+  SEQ_NEXT_VALUE bigint(20) NOT NULL,
+  PRIMARY KEY (SEQ_NAME));
+
+-- Sequence of the lot codes generated in AUTOMATICLOT_IN mode
+INSERT INTO OH_SEQUENCE (SEQ_NAME, SEQ_NEXT_VALUE) VALUES ('LOT_CODE', 1);
@@ -0,0 +1,2 @@
+-- Progress of the inventory confirmation in batches, to resume it after an interruption
+ALTER TABLE OH_MEDICALDSRINVENTORY ADD COLUMN MINVT_CONFIRMED_ROWS INT(11) NOT NULL DEFAULT 0 AFTER MINVT_DESTINATION;
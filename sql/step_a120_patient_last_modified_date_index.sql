@@ -0,0 +1,2 @@
+-- Index used by the patient search index to read the recently modified patients
+ALTER TABLE OH_PATIENT ADD INDEX PAT_LAST_MODIFIED_DATE_idx (LAST_MODIFIED_DATE ASC);
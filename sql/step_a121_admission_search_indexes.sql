@@ -0,0 +1,5 @@
+-- Indexes for the admitted patients search: the join of the current admission of each patient
+-- and the admission / discharge date ranges (covering the deleted flag and the patient)
+ALTER TABLE OH_ADMISSION ADD INDEX ADM_PAT_ID_IN_DELETED_idx (ADM_PAT_ID ASC, ADM_IN ASC, ADM_DELETED ASC);
+ALTER TABLE OH_ADMISSION ADD INDEX ADM_DATE_ADM_DELETED_PAT_ID_idx (ADM_DATE_ADM ASC, ADM_DELETED ASC, ADM_PAT_ID ASC);
+ALTER TABLE OH_ADMISSION ADD INDEX ADM_DATE_DIS_DELETED_PAT_ID_idx (ADM_DATE_DIS ASC, ADM_DELETED ASC, ADM_PAT_ID ASC);
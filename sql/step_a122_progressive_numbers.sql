@@ -0,0 +1,29 @@
+-- Seed the sequences of the progressive numbers with the ones already used.
+-- Scopes missing here (e.g. next years) are seeded by the application when first used.
+
+-- Admissions, by ward and solar year
+INSERT INTO OH_SEQUENCE (SEQ_NAME, SEQ_NEXT_VALUE)
+SELECT CONCAT('ADMISSION_YPROG_', ADM_WRD_ID_A, '_', YEAR(ADM_DATE_ADM), '-01-01'), MAX(ADM_YPROG) + 1
+FROM OH_ADMISSION
+WHERE (ADM_DELETED = 'N' OR ADM_DELETED IS NULL)
+GROUP BY ADM_WRD_ID_A, YEAR(ADM_DATE_ADM);
+
+-- Admissions in the maternity ward, by year starting in July (MATERNITYRESTARTINJUNE)
+INSERT INTO OH_SEQUENCE (SEQ_NAME, SEQ_NEXT_VALUE)
+SELECT CONCAT('ADMISSION_YPROG_M_', PERIOD_YEAR, '-07-01'), MAX(ADM_YPROG) + 1
+FROM (SELECT ADM_YPROG, CASE WHEN MONTH(ADM_DATE_ADM) < 6 THEN YEAR(ADM_DATE_ADM) - 1 ELSE YEAR(ADM_DATE_ADM) END AS PERIOD_YEAR
+	FROM OH_ADMISSION
+	WHERE ADM_WRD_ID_A = 'M' AND (ADM_DELETED = 'N' OR ADM_DELETED IS NULL)) AS MATERNITY
+GROUP BY PERIOD_YEAR;
+
+-- OPD, by year
+INSERT INTO OH_SEQUENCE (SEQ_NAME, SEQ_NEXT_VALUE)
+SELECT CONCAT('OPD_PROG_YEAR_', YEAR(OPD_DATE)), MAX(OPD_PROG_YEAR) + 1
+FROM OH_OPD
+GROUP BY YEAR(OPD_DATE);
+
+-- Patient vaccines, by year
+INSERT INTO OH_SEQUENCE (SEQ_NAME, SEQ_NEXT_VALUE)
+SELECT CONCAT('PATIENT_VACCINE_PROG_YEAR_', YEAR(PAV_DATE)), MAX(PAV_YPROG) + 1
+FROM OH_PATIENTVACCINE
+GROUP BY YEAR(PAV_DATE);
@@ -0,0 +1,2 @@
+-- Index for counting the patients currently admitted in each ward (bed occupancy)
+ALTER TABLE OH_ADMISSION ADD INDEX ADM_IN_DELETED_WRD_ID_idx (ADM_IN ASC, ADM_DELETED ASC, ADM_WRD_ID_A ASC);
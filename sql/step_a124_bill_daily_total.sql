@@ -0,0 +1,32 @@
+-- Create new table for the daily totals of the bill payments and of the bill items (per day, user, price list and item group)
+-- The key columns are not nullable ('' for no user, 0 for no price list, '' as item group of the payments) so that the unique key holds
+CREATE TABLE OH_BILLDAILYTOTAL (
+  BDT_ID int(11) NOT NULL AUTO_INCREMENT,
+  BDT_DATE date NOT NULL,
+  BDT_USR_ID_A varchar(50) NOT NULL DEFAULT '',
+  BDT_LST_ID int(11) NOT NULL DEFAULT 0,
+  BDT_ITEM_GROUP varchar(3) NOT NULL DEFAULT '',
+  BDT_PAYMENTS double NOT NULL DEFAULT 0,
+  BDT_PAYMENTS_COUNT int(11) NOT NULL DEFAULT 0,
+  BDT_CHARGES double NOT NULL DEFAULT 0,
+  BDT_ITEMS_QTY int(11) NOT NULL DEFAULT 0,
+  PRIMARY KEY (BDT_ID),
+  UNIQUE KEY BDT_DATE_USR_LST_GROUP_UNIQUE (BDT_DATE, BDT_USR_ID_A, BDT_LST_ID, BDT_ITEM_GROUP));
+
+-- Populate the payment totals of the bills not deleted
+INSERT INTO OH_BILLDAILYTOTAL (BDT_DATE, BDT_USR_ID_A, BDT_LST_ID, BDT_ITEM_GROUP, BDT_PAYMENTS, BDT_PAYMENTS_COUNT)
+SELECT DATE(BLP_DATE), COALESCE(BLP_USR_ID_A, '') AS USR, COALESCE(BLL_ID_LST, 0) AS LST, '', SUM(BLP_AMOUNT), COUNT(*)
+FROM OH_BILLPAYMENTS
+JOIN OH_BILLS ON BLP_ID_BILL = BLL_ID
+WHERE BLL_STATUS IS NULL OR BLL_STATUS <> 'D'
+GROUP BY DATE(BLP_DATE), USR, LST;
+
+-- Populate the charge totals, by the group prefix of the price id ('CUS' for the custom items)
+INSERT INTO OH_BILLDAILYTOTAL (BDT_DATE, BDT_USR_ID_A, BDT_LST_ID, BDT_ITEM_GROUP, BDT_CHARGES, BDT_ITEMS_QTY)
+SELECT DATE(BLL_DATE), COALESCE(BLL_USR_ID_A, '') AS USR, COALESCE(BLL_ID_LST, 0) AS LST,
+	CASE WHEN BLI_IS_PRICE AND CHAR_LENGTH(BLI_ID_PRICE) >= 3 THEN LEFT(BLI_ID_PRICE, 3) ELSE 'CUS' END AS ITEM_GROUP,
+	SUM(BLI_ITEM_AMOUNT * BLI_QTY), SUM(BLI_QTY)
+FROM OH_BILLITEMS
+JOIN OH_BILLS ON BLI_ID_BILL = BLL_ID
+WHERE BLL_STATUS IS NULL OR BLL_STATUS <> 'D'
+GROUP BY DATE(BLL_DATE), USR, LST, ITEM_GROUP;
@@ -21,11 +21,14 @@
  */
 package org.isf.accounting.manager;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import org.isf.accounting.model.Bill;
+import org.isf.accounting.model.BillDailyTotal;
 import org.isf.accounting.model.BillItems;
 import org.isf.accounting.model.BillPayments;
 import org.isf.accounting.service.AccountingIoOperations;
@@ -162,12 +165,11 @@ public class BillBrowserManager {
 		List<BillPayments> billPayments) throws OHServiceException {
 		validateBill(bill, billItems, billPayments);
 		Bill newBill = newBill(bill);
-		int billId = newBill.getId();
 		if (!billItems.isEmpty()) {
-			newBillItems(billId, billItems);
+			newBillItems(newBill, billItems);
 		}
 		if (!billPayments.isEmpty()) {
-			newBillPayments(billId, billPayments);
+			newBillPayments(newBill, billPayments);
 		}
 		return newBill;
 	}
@@ -186,23 +188,23 @@ public class BillBrowserManager {
 	/**
 	 * Stores a list of {@link BillItems} associated to a {@link Bill}.
 	 * 
-	 * @param billID the bill id.
+	 * @param bill the stored bill.
 	 * @param billItems the bill items to store.
 	 * @throws OHServiceException
 	 */
-	private void newBillItems(int billID, List<BillItems> billItems) throws OHServiceException {
-		ioOperations.newBillItems(ioOperations.getBill(billID), billItems);
+	private void newBillItems(Bill bill, List<BillItems> billItems) throws OHServiceException {
+		ioOperations.newBillItems(bill, billItems);
 	}
 
 	/**
 	 * Stores a list of {@link BillPayments} associated to a {@link Bill}.
 	 * 
-	 * @param billID the bill id.
+	 * @param bill the stored bill.
 	 * @param payItems the bill payments.
 	 * @throws OHServiceException
 	 */
-	private void newBillPayments(int billID, List<BillPayments> payItems) throws OHServiceException {
-		ioOperations.newBillPayments(ioOperations.getBill(billID), payItems);
+	private void newBillPayments(Bill bill, List<BillPayments> payItems) throws OHServiceException {
+		ioOperations.newBillPayments(bill, payItems);
 	}
 
 	/**
@@ -221,8 +223,8 @@ public class BillBrowserManager {
 		List<BillPayments> billPayments) throws OHServiceException {
 		validateBill(updateBill, billItems, billPayments);
 		Bill updatedBill = updateBill(updateBill);
-		newBillItems(updateBill.getId(), billItems);
-		newBillPayments(updateBill.getId(), billPayments);
+		newBillItems(updatedBill, billItems);
+		newBillPayments(updatedBill, billPayments);
 		return updatedBill;
 	}
 
@@ -317,6 +319,68 @@ public class BillBrowserManager {
 		return ioOperations.getPayments(dateFrom, dateTo);
 	}
 
+	/**
+	 * Retrieves the daily totals of the {@link BillPayments} and of the {@link BillItems} for the specified date range.
+	 * 
+	 * @param dateFrom the low date range endpoint, inclusive.
+	 * @param dateTo the high date range endpoint, inclusive.
+	 * @return the list of {@link BillDailyTotal}s ordered by date.
+	 * @throws OHServiceException
+	 */
+	public List<BillDailyTotal> getDailyTotals(LocalDateTime dateFrom, LocalDateTime dateTo) throws OHServiceException {
+		return ioOperations.getDailyTotals(dateFrom, dateTo);
+	}
+
+	/**
+	 * Returns the amount paid in the specified date range.
+	 * 
+	 * @param dateFrom the low date range endpoint, inclusive.
+	 * @param dateTo the high date range endpoint, inclusive.
+	 * @param user the user who received the payments or {@code null} for all the users.
+	 * @return the total of the payments.
+	 * @throws OHServiceException
+	 */
+	public double getPaymentsTotal(LocalDateTime dateFrom, LocalDateTime dateTo, String user) throws OHServiceException {
+		return ioOperations.getPaymentsTotal(dateFrom, dateTo, user);
+	}
+
+	/**
+	 * Returns the amount charged by the bills of the specified date range.
+	 * 
+	 * @param dateFrom the low date range endpoint, inclusive.
+	 * @param dateTo the high date range endpoint, inclusive.
+	 * @param user the user who issued the bills or {@code null} for all the users.
+	 * @return the total of the bill items.
+	 * @throws OHServiceException
+	 */
+	public double getChargesTotal(LocalDateTime dateFrom, LocalDateTime dateTo, String user) throws OHServiceException {
+		return ioOperations.getChargesTotal(dateFrom, dateTo, user);
+	}
+
+	/**
+	 * Recomputes all the daily totals from the stored bills, one day per transaction.
+	 * The bill writes keep the totals up to date: the rebuild is only needed to repair them, while no bill is being written.
+	 * 
+	 * @throws OHServiceException
+	 */
+	public void rebuildDailyTotals() throws OHServiceException {
+		for (LocalDate day : ioOperations.getDailyTotalsDays()) {
+			ioOperations.rebuildDailyTotals(day);
+		}
+	}
+
+	/**
+	 * Retrieves the {@link Bill}s dated or paid in the specified date range, each one with all its {@link BillPayments}.
+	 * 
+	 * @param dateFrom the low date range endpoint, inclusive.
+	 * @param dateTo the high date range endpoint, inclusive.
+	 * @return the bills, most recent first, mapped to their payments.
+	 * @throws OHServiceException
+	 */
+	public Map<Bill, List<BillPayments>> getBillsWithPayments(LocalDateTime dateFrom, LocalDateTime dateTo) throws OHServiceException {
+		return ioOperations.getBillsWithPaymentsBetweenDates(dateFrom, dateTo);
+	}
+
 	/**
 	 * Retrieves all the {@link BillPayments} associated to the passed {@link Bill} list.
 	 * 
@@ -0,0 +1,185 @@
+/*
+ * Open Hospital (www.open-hospital.org)
+ * Copyright © 2006-2024 Informatici Senza Frontiere (info@informaticisenzafrontiere.org)
+ *
+ * Open Hospital is a free and open source software for healthcare data management.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * https://www.gnu.org/licenses/gpl-3.0-standalone.html
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.isf.accounting.model;
+
+import java.time.LocalDate;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+import jakarta.validation.constraints.NotNull;
+
+/**
+ * The totals of the {@link BillPayments} and of the {@link BillItems} of one day, for one user and one price list.
+ * Payment totals have the {@link #PAYMENT_ITEM_GROUP}; charge totals are split by item group, the prefix of the price id of the item.
+ * The rows are derived data, maintained by the bill writes and rebuilt on demand.
+ * <p>
+ * The key columns are never {@code null}, so that the unique key on them holds: a bill without user or price list is totalled under
+ * {@link #NO_USER} and {@link #NO_PRICE_LIST}.
+ */
+@Entity
+@Table(name = "OH_BILLDAILYTOTAL", uniqueConstraints = @UniqueConstraint(name = "BDT_DATE_USR_LST_GROUP_UNIQUE",
+				columnNames = { "BDT_DATE", "BDT_USR_ID_A", "BDT_LST_ID", "BDT_ITEM_GROUP" }))
+public class BillDailyTotal {
+
+	/** The item group of the items not taken from a price list. */
+	public static final String CUSTOM_ITEM_GROUP = "CUS";
+
+	/** The item group of the payment totals. */
+	public static final String PAYMENT_ITEM_GROUP = "";
+
+	/** The user of the totals of the bills and payments without user. */
+	public static final String NO_USER = "";
+
+	/** The price list id of the totals of the bills without price list. */
+	public static final int NO_PRICE_LIST = 0;
+
+	private static final int ITEM_GROUP_LENGTH = 3;
+
+	@Id
+	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	@Column(name = "BDT_ID")
+	private int id;
+
+	@NotNull
+	@Column(name = "BDT_DATE")
+	private LocalDate date;
+
+	@NotNull
+	@Column(name = "BDT_USR_ID_A")
+	private String user;
+
+	@NotNull
+	@Column(name = "BDT_LST_ID")
+	private int priceListId;
+
+	@NotNull
+	@Column(name = "BDT_ITEM_GROUP")
+	private String itemGroup;
+
+	@NotNull
+	@Column(name = "BDT_PAYMENTS")
+	private double payments;
+
+	@NotNull
+	@Column(name = "BDT_PAYMENTS_COUNT")
+	private int paymentsCount;
+
+	@NotNull
+	@Column(name = "BDT_CHARGES")
+	private double charges;
+
+	@NotNull
+	@Column(name = "BDT_ITEMS_QTY")
+	private int itemsQuantity;
+
+	public BillDailyTotal() {
+	}
+
+	public BillDailyTotal(LocalDate date, String user, int priceListId, String itemGroup) {
+		this.date = date;
+		this.user = user;
+		this.priceListId = priceListId;
+		this.itemGroup = itemGroup;
+	}
+
+	/**
+	 * Returns the item group of a bill item: the group prefix of its price id, or {@link #CUSTOM_ITEM_GROUP}.
+	 *
+	 * @param isPrice whether the item is taken from a price list.
+	 * @param priceId the price id of the item.
+	 * @return the item group.
+	 */
+	public static String getItemGroup(boolean isPrice, String priceId) {
+		if (isPrice && priceId != null && priceId.length() >= ITEM_GROUP_LENGTH) {
+			return priceId.substring(0, ITEM_GROUP_LENGTH);
+		}
+		return CUSTOM_ITEM_GROUP;
+	}
+
+	public void addPayment(double amount) {
+		payments += amount;
+		paymentsCount++;
+	}
+
+	public void removePayment(double amount) {
+		payments -= amount;
+		paymentsCount--;
+	}
+
+	public void addCharge(double amount, int quantity) {
+		charges += amount * quantity;
+		itemsQuantity += quantity;
+	}
+
+	public void removeCharge(double amount, int quantity) {
+		charges -= amount * quantity;
+		itemsQuantity -= quantity;
+	}
+
+	/**
+	 * @return {@code true} if all the totals are zero.
+	 */
+	public boolean isEmpty() {
+		return payments == 0 && paymentsCount == 0 && charges == 0 && itemsQuantity == 0;
+	}
+
+	public int getId() {
+		return id;
+	}
+
+	public LocalDate getDate() {
+		return date;
+	}
+
+	public String getUser() {
+		return user;
+	}
+
+	public int getPriceListId() {
+		return priceListId;
+	}
+
+	public String getItemGroup() {
+		return itemGroup;
+	}
+
+	public double getPayments() {
+		return payments;
+	}
+
+	public int getPaymentsCount() {
+		return paymentsCount;
+	}
+
+	public double getCharges() {
+		return charges;
+	}
+
+	public int getItemsQuantity() {
+		return itemsQuantity;
+	}
+}
@@ -32,6 +32,9 @@ import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
+import jakarta.persistence.NamedAttributeNode;
+import jakarta.persistence.NamedEntityGraph;
+import jakarta.persistence.NamedSubgraph;
 import jakarta.persistence.Table;
 import jakarta.persistence.Transient;
 import jakarta.validation.constraints.NotNull;
@@ -42,6 +45,26 @@ import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 
 @Entity
 @Table(name="OH_BILLPAYMENTS")
+@NamedEntityGraph(name = "BillPayments.bill",
+attributeNodes = @NamedAttributeNode(value = "bill", subgraph = "bill"),
+subgraphs = {
+		@NamedSubgraph(name = "bill", attributeNodes = {
+				@NamedAttributeNode("list"),
+				@NamedAttributeNode("billPatient"),
+				@NamedAttributeNode(value = "admission", subgraph = "admission")}),
+		@NamedSubgraph(name = "admission", attributeNodes = {
+				@NamedAttributeNode("ward"),
+				@NamedAttributeNode("patient"),
+				@NamedAttributeNode("admissionType"),
+				@NamedAttributeNode("diseaseIn"),
+				@NamedAttributeNode("diseaseOut1"),
+				@NamedAttributeNode("diseaseOut2"),
+				@NamedAttributeNode("diseaseOut3"),
+				@NamedAttributeNode("disType"),
+				@NamedAttributeNode("pregTreatmentType"),
+				@NamedAttributeNode("deliveryType"),
+				@NamedAttributeNode("deliveryResult")})}
+)
 @EntityListeners(AuditingEntityListener.class)
 @AttributeOverride(name = "createdBy", column = @Column(name = "BLP_CREATED_BY", updatable = false))
 @AttributeOverride(name = "createdDate", column = @Column(name = "BLP_CREATED_DATE", updatable = false))
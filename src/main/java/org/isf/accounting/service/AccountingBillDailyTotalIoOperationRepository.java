@@ -0,0 +1,66 @@
+/*
+ * Open Hospital (www.open-hospital.org)
+ * Copyright © 2006-2024 Informatici Senza Frontiere (info@informaticisenzafrontiere.org)
+ *
+ * Open Hospital is a free and open source software for healthcare data management.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * https://www.gnu.org/licenses/gpl-3.0-standalone.html
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.isf.accounting.service;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import org.isf.accounting.model.BillDailyTotal;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface AccountingBillDailyTotalIoOperationRepository extends JpaRepository<BillDailyTotal, Integer> {
+
+	@Query(value = "select t from BillDailyTotal t where t.date >= :dateFrom and t.date <= :dateTo order by t.date, t.user, t.itemGroup")
+	List<BillDailyTotal> findWhereDateBetween(@Param("dateFrom") LocalDate dateFrom, @Param("dateTo") LocalDate dateTo);
+
+	@Query(value = "select coalesce(sum(t.payments), 0) from BillDailyTotal t " +
+					"where t.date >= :dateFrom and t.date <= :dateTo and (:user is null or t.user = :user)")
+	double sumPaymentsWhereDateBetweenAndUser(@Param("dateFrom") LocalDate dateFrom, @Param("dateTo") LocalDate dateTo, @Param("user") String user);
+
+	@Query(value = "select coalesce(sum(t.charges), 0) from BillDailyTotal t " +
+					"where t.date >= :dateFrom and t.date <= :dateTo and (:user is null or t.user = :user)")
+	double sumChargesWhereDateBetweenAndUser(@Param("dateFrom") LocalDate dateFrom, @Param("dateTo") LocalDate dateTo, @Param("user") String user);
+
+	@Modifying
+	@Query(value = "delete from BillDailyTotal t where t.date = :date")
+	void deleteWhereDate(@Param("date") LocalDate date);
+
+	@Query(value = "select distinct t.date from BillDailyTotal t")
+	List<LocalDate> findDates();
+
+	/**
+	 * Adds the specified amounts to the totals of a day, user, price list and item group, creating the row if missing.
+	 */
+	@Modifying
+	@Query(value = "INSERT INTO OH_BILLDAILYTOTAL (BDT_DATE, BDT_USR_ID_A, BDT_LST_ID, BDT_ITEM_GROUP, BDT_PAYMENTS, BDT_PAYMENTS_COUNT, BDT_CHARGES, BDT_ITEMS_QTY) " +
+					"VALUES (:date, :user, :priceListId, :itemGroup, :payments, :paymentsCount, :charges, :itemsQuantity) " +
+					"ON DUPLICATE KEY UPDATE BDT_PAYMENTS = BDT_PAYMENTS + :payments, BDT_PAYMENTS_COUNT = BDT_PAYMENTS_COUNT + :paymentsCount, " +
+					"BDT_CHARGES = BDT_CHARGES + :charges, BDT_ITEMS_QTY = BDT_ITEMS_QTY + :itemsQuantity", nativeQuery = true)
+	void addTotals(@Param("date") LocalDate date, @Param("user") String user, @Param("priceListId") int priceListId, @Param("itemGroup") String itemGroup,
+					@Param("payments") double payments, @Param("paymentsCount") int paymentsCount, @Param("charges") double charges,
+					@Param("itemsQuantity") int itemsQuantity);
+}
@@ -21,33 +21,59 @@
  */
 package org.isf.accounting.service;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
+import jakarta.persistence.QueryHint;
+
+import org.hibernate.jpa.HibernateHints;
 import org.isf.accounting.model.Bill;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.EntityGraph.EntityGraphType;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 @Repository
 public interface AccountingBillIoOperationRepository extends JpaRepository<Bill, Integer> {
 
+	@Override
+	@EntityGraph(value = "Bill.detail", type = EntityGraphType.LOAD)
+	Optional<Bill> findById(Integer id);
+
+	@EntityGraph(value = "Bill.detail", type = EntityGraphType.LOAD)
 	List<Bill> findByStatusOrderByDateDesc(String status);
 
+	@EntityGraph(value = "Bill.detail", type = EntityGraphType.LOAD)
 	List<Bill> findByStatusAndBillPatientCodeOrderByDateDesc(String status, int patientId);
 
+	@EntityGraph(value = "Bill.detail", type = EntityGraphType.LOAD)
 	List<Bill> findAllByOrderByDateDesc();
 
+	@EntityGraph(value = "Bill.detail", type = EntityGraphType.LOAD)
 	List<Bill> findByBillPatientCode(int patientCode);
 
+	@EntityGraph(value = "Bill.detail", type = EntityGraphType.LOAD)
 	@Query(value = "select b from Bill b where b.date >= :dateFrom and b.date < :dateTo")
 	List<Bill> findByDateBetween(@Param("dateFrom") LocalDateTime dateFrom, @Param("dateTo") LocalDateTime dateTo);
 
+	@EntityGraph(value = "Bill.detail", type = EntityGraphType.LOAD)
+	@Query(value = "select b, bp from Bill b left join BillPayments bp on bp.bill = b " +
+					"where (b.date >= :dateFrom and b.date < :dateTo) " +
+					"or b.id in (select p.bill.id from BillPayments p where p.date >= :dateFrom and p.date < :dateTo) " +
+					"order by b.date desc, b.id, bp.date")
+	List<Object[]> findWithPaymentsWhereBillOrPaymentDateBetween(@Param("dateFrom") LocalDateTime dateFrom, @Param("dateTo") LocalDateTime dateTo);
+
+	@EntityGraph(value = "Bill.detail", type = EntityGraphType.LOAD)
 	@Query(value = "select b from Bill b where b.billPatient.id = :patientCode and b.date >= :dateFrom and b.date < :dateTo")
 	List<Bill> findByDateAndPatient(@Param("dateFrom") LocalDateTime dateFrom, @Param("dateTo") LocalDateTime dateTo,
 					@Param("patientCode") Integer patientCode);
 
+	@EntityGraph(value = "Bill.detail", type = EntityGraphType.LOAD)
 	@Query(value = "select b from Bill b where b.status='O' and b.billPatient.id = :patID")
 	List<Bill> findAllPendindBillsByBillPatient(@Param("patID") int patID);
 
@@ -59,9 +85,20 @@ public interface AccountingBillIoOperationRepository extends JpaRepository<Bill,
 	 * @param desc
 	 * @return the bill list
 	 */
+	@EntityGraph(value = "Bill.detail", type = EntityGraphType.LOAD)
 	@Query(value = "select bi.bill from BillItems bi where bi.itemDescription = :desc and bi.bill.date >= :dateFrom and bi.bill.date < :dateTo")
 	List<Bill> findAllWhereDatesAndBillItem(@Param("dateFrom") LocalDateTime dateFrom, @Param("dateTo") LocalDateTime dateTo, @Param("desc") String desc);
 
+	@Query(value = "select distinct cast(b.date as LocalDate) FROM Bill b where b.date is not null")
+	List<LocalDate> findDays();
+
+	/**
+	 * Returns the stored date, user, price list id and status of a bill, without flushing the pending changes.
+	 */
+	@QueryHints(@QueryHint(name = HibernateHints.HINT_FLUSH_MODE, value = "COMMIT"))
+	@Query(value = "select b.date, b.user, l.id, b.status from Bill b left join b.list l where b.id = :billId")
+	List<Object[]> findDailyTotalKeyWhereId(@Param("billId") Integer billId);
+
 	@Query(value = "select distinct b.user FROM Bill b ORDER BY b.user asc")
 	List<String> findUserDistinctByOrderByUserAsc();
 
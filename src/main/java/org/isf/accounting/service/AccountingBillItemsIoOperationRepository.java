@@ -21,27 +21,43 @@
  */
 package org.isf.accounting.service;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
+import jakarta.persistence.QueryHint;
+
+import org.hibernate.jpa.HibernateHints;
 import org.isf.accounting.model.BillItems;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.EntityGraph.EntityGraphType;
 import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 @Repository
 public interface AccountingBillItemsIoOperationRepository extends JpaRepository<BillItems, Integer> {
 
+	@EntityGraph(value = "BillItems.bill", type = EntityGraphType.LOAD)
 	List<BillItems> findByBill_idOrderByIdAsc(int billId);
 
+	@EntityGraph(value = "BillItems.bill", type = EntityGraphType.LOAD)
 	List<BillItems> findAllByOrderByIdAsc();
 
+	@EntityGraph(value = "BillItems.bill", type = EntityGraphType.LOAD)
 	@Query("select b from BillItems b group by b.itemDescription")
 	List<BillItems> findAllGroupByDescription();
 
-	@Modifying
-	@Query(value = "delete from BillItems b where b.id = :billId")
-	void deleteWhereId(@Param("billId") Integer billId);
+	@Query(value = "select b.date, b.user, l.id, bi.isPrice, bi.priceID, bi.itemAmount, bi.itemQuantity from BillItems bi join bi.bill b left join b.list l " +
+					"where b.date >= :dateFrom and b.date < :dateTo and (b.status is null or b.status <> 'D')")
+	List<Object[]> findDailyTotalSourceWhereBillDateBetween(@Param("dateFrom") LocalDateTime dateFrom, @Param("dateTo") LocalDateTime dateTo);
+
+	/**
+	 * Returns the stored id, price flag, price id, amount and quantity of the items of a bill, without flushing the pending changes.
+	 */
+	@QueryHints(@QueryHint(name = HibernateHints.HINT_FLUSH_MODE, value = "COMMIT"))
+	@Query(value = "select bi.id, bi.isPrice, bi.priceID, bi.itemAmount, bi.itemQuantity from BillItems bi where bi.bill.id = :billId")
+	List<Object[]> findDailyTotalSourceWhereBillId(@Param("billId") Integer billId);
 
 }
\ No newline at end of file
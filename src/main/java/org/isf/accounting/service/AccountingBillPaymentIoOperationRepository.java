@@ -21,15 +21,20 @@
  */
 package org.isf.accounting.service;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.Collection;
 import java.util.List;
 
-import org.isf.accounting.model.Bill;
+import jakarta.persistence.QueryHint;
+
+import org.hibernate.jpa.HibernateHints;
 import org.isf.accounting.model.BillPayments;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.EntityGraph.EntityGraphType;
 import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
@@ -39,21 +44,37 @@ public interface AccountingBillPaymentIoOperationRepository extends JpaRepositor
 	@Query(value = "select distinct bp.user FROM BillPayments bp ORDER BY bp.user asc")
 	List<String> findUserDistinctByOrderByUserAsc();
 
+	@EntityGraph(value = "BillPayments.bill", type = EntityGraphType.LOAD)
 	@Query(value = "SELECT BP FROM BillPayments BP where BP.date >= :start and BP.date < :end ORDER BY BP.id")
 	List<BillPayments> findByDateBetweenOrderByIdAscDateAsc(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
 
-	List<BillPayments> findAllByBillIn(Collection<Bill> bills);
+	@EntityGraph(value = "BillPayments.bill", type = EntityGraphType.LOAD)
+	@Query(value = "SELECT BP FROM BillPayments BP WHERE BP.bill.id in :billIds ORDER BY BP.bill, BP.date ASC")
+	List<BillPayments> findAllWhereBillIdIn(@Param("billIds") Collection<Integer> billIds);
 
+	@EntityGraph(value = "BillPayments.bill", type = EntityGraphType.LOAD)
 	@Query(value = "SELECT BP FROM BillPayments BP ORDER BY BP.bill, BP.date ASC")
 	List<BillPayments> findAllByOrderByBillAndDate();
 
+	@EntityGraph(value = "BillPayments.bill", type = EntityGraphType.LOAD)
 	@Query(value = "SELECT BP FROM BillPayments BP WHERE BP.bill.id = :billId ORDER BY BP.bill, BP.date ASC")
 	List<BillPayments> findAllWherBillIdByOrderByBillAndDate(@Param("billId") Integer billId);
 
-	@Modifying
-	@Query(value = "DELETE FROM BillPayments BP where BP.bill.id = :billId")
-	void deleteWhereId(@Param("billId") Integer billId);
+	/**
+	 * Returns the stored id, date, user and amount of the payments of a bill, without flushing the pending changes.
+	 */
+	@QueryHints(@QueryHint(name = HibernateHints.HINT_FLUSH_MODE, value = "COMMIT"))
+	@Query(value = "SELECT BP.id, BP.date, BP.user, BP.amount FROM BillPayments BP WHERE BP.bill.id = :billId")
+	List<Object[]> findDailyTotalSourceWhereBillId(@Param("billId") Integer billId);
+
+	@Query(value = "SELECT BP.date, BP.user, L.id, BP.amount FROM BillPayments BP JOIN BP.bill B LEFT JOIN B.list L " +
+			"WHERE BP.date >= :dateFrom and BP.date < :dateTo and (B.status is null or B.status <> 'D')")
+	List<Object[]> findDailyTotalSourceWhereDateBetween(@Param("dateFrom") LocalDateTime dateFrom, @Param("dateTo") LocalDateTime dateTo);
+
+	@Query(value = "SELECT distinct cast(BP.date as LocalDate) FROM BillPayments BP")
+	List<LocalDate> findDays();
 
+	@EntityGraph(value = "BillPayments.bill", type = EntityGraphType.LOAD)
 	@Query(value = "SELECT BP FROM BillPayments BP WHERE " +
 			"BP.bill.billPatient.code = :patientCode and " +
 			"DATE(BP.date) between DATE(:dateFrom) and DATE(:dateTo) " +
@@ -21,19 +21,29 @@
  */
 package org.isf.accounting.service;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.function.BiPredicate;
+import java.util.function.ToIntFunction;
 
 import org.isf.accounting.model.Bill;
+import org.isf.accounting.model.BillDailyTotal;
 import org.isf.accounting.model.BillItems;
 import org.isf.accounting.model.BillPayments;
 import org.isf.patient.model.Patient;
 import org.isf.utils.db.TranslateOHServiceException;
 import org.isf.utils.exception.OHServiceException;
 import org.isf.utils.time.TimeTools;
+import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -45,16 +55,22 @@ import org.springframework.transaction.annotation.Transactional;
 @TranslateOHServiceException
 public class AccountingIoOperations {
 
+	/** Maximum number of bill ids bound in a single {@code IN} list. */
+	private static final int BILL_IDS_CHUNK_SIZE = 1000;
+
 	private AccountingBillIoOperationRepository billRepository;
 	private AccountingBillPaymentIoOperationRepository billPaymentRepository;
 	private AccountingBillItemsIoOperationRepository billItemsRepository;
+	private AccountingBillDailyTotalIoOperationRepository billDailyTotalRepository;
 
 	public AccountingIoOperations(AccountingBillIoOperationRepository accountingBillIoOperationRepository,
 	                              AccountingBillPaymentIoOperationRepository accountingBillPaymentIoOperationRepository,
-	                              AccountingBillItemsIoOperationRepository accountingBillItemsIoOperationRepository) {
+	                              AccountingBillItemsIoOperationRepository accountingBillItemsIoOperationRepository,
+	                              AccountingBillDailyTotalIoOperationRepository accountingBillDailyTotalIoOperationRepository) {
 		this.billRepository = accountingBillIoOperationRepository;
 		this.billPaymentRepository = accountingBillPaymentIoOperationRepository;
 		this.billItemsRepository = accountingBillItemsIoOperationRepository;
+		this.billDailyTotalRepository = accountingBillDailyTotalIoOperationRepository;
 	}
 
 	/**
@@ -151,31 +167,88 @@ public class AccountingIoOperations {
 	}
 
 	/**
-	 * Stores a list of {@link BillItems} associated to a {@link Bill}.
+	 * Stores a list of {@link BillItems} associated to a {@link Bill}, replacing the stored ones.
+	 * Only the items that changed are written: the stored items missing from the list are deleted,
+	 * the new and the modified ones are saved.
 	 * @param bill the bill.
 	 * @param billItems the bill items to store.
 	 * @throws OHServiceException if an error occurs during the store operation.
 	 */
 	public void newBillItems(Bill bill, List<BillItems> billItems) throws OHServiceException {
-		billItemsRepository.deleteWhereId(bill.getId());
+		Map<Integer, Object[]> storedTotals = getLinesById(billItemsRepository.findDailyTotalSourceWhereBillId(bill.getId()));
 		for (BillItems item : billItems) {
 			item.setBill(bill);
-			billItemsRepository.save(item);
 		}
+		storeChangedLines(billItemsRepository, billItemsRepository.findByBill_idOrderByIdAsc(bill.getId()), billItems, BillItems::getId,
+						(stored, item) -> stored.isPrice() == item.isPrice()
+										&& Objects.equals(stored.getPriceID(), item.getPriceID())
+										&& Objects.equals(stored.getItemDescription(), item.getItemDescription())
+										&& Double.compare(stored.getItemAmount(), item.getItemAmount()) == 0
+										&& stored.getItemQuantity() == item.getItemQuantity());
+		BillTotalsKey key = BillTotalsKey.of(bill);
+		Map<List<Object>, BillDailyTotal> totals = new HashMap<>();
+		for (BillItems item : billItems) {
+			Object[] stored = storedTotals.remove(item.getId());
+			Object[] itemTotals = { item.getId(), item.isPrice(), item.getPriceID(), item.getItemAmount(), item.getItemQuantity() };
+			if (stored == null || !Arrays.equals(stored, itemTotals)) {
+				addChargeTotals(totals, key, stored, false);
+				addChargeTotals(totals, key, itemTotals, true);
+			}
+		}
+		for (Object[] stored : storedTotals.values()) {
+			addChargeTotals(totals, key, stored, false);
+		}
+		addDailyTotals(totals);
 	}
 
 	/**
-	 * Stores a list of {@link BillPayments} associated to a {@link Bill}.
+	 * Stores a list of {@link BillPayments} associated to a {@link Bill}, replacing the stored ones.
+	 * Only the payments that changed are written: the stored payments missing from the list are deleted,
+	 * the new and the modified ones are saved.
 	 * @param bill the bill.
 	 * @param payItems the bill payments.
 	 * @throws OHServiceException if an error occurs during the store procedure.
 	 */
 	public void newBillPayments(Bill bill, List<BillPayments> payItems) throws OHServiceException {
-		billPaymentRepository.deleteWhereId(bill.getId());
+		Map<Integer, Object[]> storedTotals = getLinesById(billPaymentRepository.findDailyTotalSourceWhereBillId(bill.getId()));
 		for (BillPayments payment : payItems) {
 			payment.setBill(bill);
-			billPaymentRepository.save(payment);
 		}
+		storeChangedLines(billPaymentRepository, billPaymentRepository.findAllWherBillIdByOrderByBillAndDate(bill.getId()), payItems, BillPayments::getId,
+						(stored, payment) -> Objects.equals(stored.getDate(), payment.getDate())
+										&& Double.compare(stored.getAmount(), payment.getAmount()) == 0
+										&& Objects.equals(stored.getUser(), payment.getUser()));
+		BillTotalsKey key = BillTotalsKey.of(bill);
+		Map<List<Object>, BillDailyTotal> totals = new HashMap<>();
+		for (BillPayments payment : payItems) {
+			Object[] stored = storedTotals.remove(payment.getId());
+			Object[] paymentTotals = { payment.getId(), payment.getDate(), payment.getUser(), payment.getAmount() };
+			if (stored == null || !Arrays.equals(stored, paymentTotals)) {
+				addPaymentTotals(totals, key, stored, false);
+				addPaymentTotals(totals, key, paymentTotals, true);
+			}
+		}
+		for (Object[] stored : storedTotals.values()) {
+			addPaymentTotals(totals, key, stored, false);
+		}
+		addDailyTotals(totals);
+	}
+
+	private <T> void storeChangedLines(JpaRepository<T, Integer> repository, List<T> storedLines, List<T> lines, ToIntFunction<T> id,
+					BiPredicate<T, T> unchanged) {
+		Map<Integer, T> removedLines = new HashMap<>();
+		for (T storedLine : storedLines) {
+			removedLines.put(id.applyAsInt(storedLine), storedLine);
+		}
+		List<T> changedLines = new ArrayList<>();
+		for (T line : lines) {
+			T storedLine = removedLines.remove(id.applyAsInt(line));
+			if (storedLine == null || !unchanged.test(storedLine, line)) {
+				changedLines.add(line);
+			}
+		}
+		repository.deleteAllInBatch(removedLines.values());
+		repository.saveAll(changedLines);
 	}
 
 	/**
@@ -185,7 +258,20 @@ public class AccountingIoOperations {
 	 * @throws OHServiceException if an error occurs during the update.
 	 */
 	public Bill updateBill(Bill updateBill) throws OHServiceException {
-		return billRepository.save(updateBill);
+		List<Object[]> storedKey = billRepository.findDailyTotalKeyWhereId(updateBill.getId());
+		Bill updatedBill = billRepository.save(updateBill);
+		if (!storedKey.isEmpty()) {
+			BillTotalsKey oldKey = BillTotalsKey.of(storedKey.get(0));
+			BillTotalsKey newKey = BillTotalsKey.of(updatedBill);
+			if (!oldKey.equals(newKey)) {
+				// the stored lines move from the totals of the old date, user, price list or status to the new ones
+				Map<List<Object>, BillDailyTotal> totals = new HashMap<>();
+				addBillTotals(totals, updatedBill.getId(), oldKey, false);
+				addBillTotals(totals, updatedBill.getId(), newKey, true);
+				addDailyTotals(totals);
+			}
+		}
+		return updatedBill;
 	}
 
 	/**
@@ -195,9 +281,166 @@ public class AccountingIoOperations {
 	 * @throws OHServiceException if an error occurs deleting the bill.
 	 */
 	public void deleteBill(Bill deleteBill) throws OHServiceException {
+		List<Object[]> storedKey = billRepository.findDailyTotalKeyWhereId(deleteBill.getId());
+		if (!storedKey.isEmpty()) {
+			Map<List<Object>, BillDailyTotal> totals = new HashMap<>();
+			addBillTotals(totals, deleteBill.getId(), BillTotalsKey.of(storedKey.get(0)), false);
+			addDailyTotals(totals);
+		}
 		billRepository.deleteById(deleteBill.getId());
 	}
 
+	/**
+	 * Retrieves the daily totals of the {@link BillPayments} and of the {@link BillItems} for the specified date range.
+	 * @param dateFrom the low date range endpoint, inclusive.
+	 * @param dateTo the high date range endpoint, inclusive.
+	 * @return the list of {@link BillDailyTotal}s ordered by date.
+	 * @throws OHServiceException if an error occurs retrieving the totals.
+	 */
+	public List<BillDailyTotal> getDailyTotals(LocalDateTime dateFrom, LocalDateTime dateTo) throws OHServiceException {
+		return billDailyTotalRepository.findWhereDateBetween(dateFrom.toLocalDate(), dateTo.toLocalDate());
+	}
+
+	/**
+	 * Returns the amount paid in the specified date range, read from the daily totals.
+	 * @param dateFrom the low date range endpoint, inclusive.
+	 * @param dateTo the high date range endpoint, inclusive.
+	 * @param user the user who received the payments or {@code null} for all the users.
+	 * @return the total of the payments.
+	 * @throws OHServiceException if an error occurs retrieving the total.
+	 */
+	public double getPaymentsTotal(LocalDateTime dateFrom, LocalDateTime dateTo, String user) throws OHServiceException {
+		return billDailyTotalRepository.sumPaymentsWhereDateBetweenAndUser(dateFrom.toLocalDate(), dateTo.toLocalDate(), user);
+	}
+
+	/**
+	 * Returns the amount charged by the bills of the specified date range, read from the daily totals.
+	 * @param dateFrom the low date range endpoint, inclusive.
+	 * @param dateTo the high date range endpoint, inclusive.
+	 * @param user the user who issued the bills or {@code null} for all the users.
+	 * @return the total of the bill items.
+	 * @throws OHServiceException if an error occurs retrieving the total.
+	 */
+	public double getChargesTotal(LocalDateTime dateFrom, LocalDateTime dateTo, String user) throws OHServiceException {
+		return billDailyTotalRepository.sumChargesWhereDateBetweenAndUser(dateFrom.toLocalDate(), dateTo.toLocalDate(), user);
+	}
+
+	/**
+	 * Returns the days to recompute with {@link #rebuildDailyTotals(LocalDate)}: the days of the bills, of the payments
+	 * and of the stored daily totals.
+	 * @return the days, in ascending order.
+	 * @throws OHServiceException if an error occurs retrieving the days.
+	 */
+	public List<LocalDate> getDailyTotalsDays() throws OHServiceException {
+		Set<LocalDate> days = new TreeSet<>(billRepository.findDays());
+		days.addAll(billPaymentRepository.findDays());
+		days.addAll(billDailyTotalRepository.findDates());
+		return new ArrayList<>(days);
+	}
+
+	/**
+	 * Recomputes the daily totals of the specified day from the stored bills.
+	 * @param day the day.
+	 * @throws OHServiceException if an error occurs rebuilding the totals.
+	 */
+	public void rebuildDailyTotals(LocalDate day) throws OHServiceException {
+		LocalDateTime from = day.atStartOfDay();
+		LocalDateTime to = day.plusDays(1).atStartOfDay();
+		billDailyTotalRepository.deleteWhereDate(day);
+		Map<List<Object>, BillDailyTotal> totals = new HashMap<>();
+		for (Object[] payment : billPaymentRepository.findDailyTotalSourceWhereDateBetween(from, to)) {
+			getDailyTotal(totals, ((LocalDateTime) payment[0]).toLocalDate(), (String) payment[1], (Integer) payment[2], BillDailyTotal.PAYMENT_ITEM_GROUP)
+							.addPayment((Double) payment[3]);
+		}
+		for (Object[] item : billItemsRepository.findDailyTotalSourceWhereBillDateBetween(from, to)) {
+			getDailyTotal(totals, ((LocalDateTime) item[0]).toLocalDate(), (String) item[1], (Integer) item[2], BillDailyTotal.getItemGroup((Boolean) item[3], (String) item[4]))
+							.addCharge((Double) item[5], (Integer) item[6]);
+		}
+		billDailyTotalRepository.saveAll(totals.values());
+	}
+
+	/**
+	 * The date, user, price list and status of a {@link Bill}: the daily totals its lines are counted in.
+	 */
+	private record BillTotalsKey(LocalDate day, String user, Integer priceListId, boolean deleted) {
+
+		static BillTotalsKey of(Bill bill) {
+			return of(bill.getDate(), bill.getUser(), bill.getPriceList() == null ? null : bill.getPriceList().getId(), bill.getStatus());
+		}
+
+		static BillTotalsKey of(Object[] storedKey) {
+			return of((LocalDateTime) storedKey[0], (String) storedKey[1], (Integer) storedKey[2], (String) storedKey[3]);
+		}
+
+		private static BillTotalsKey of(LocalDateTime date, String user, Integer priceListId, String status) {
+			return new BillTotalsKey(date == null ? null : date.toLocalDate(), user, priceListId, "D".equals(status));
+		}
+	}
+
+	private static Map<Integer, Object[]> getLinesById(List<Object[]> lines) {
+		Map<Integer, Object[]> linesById = new HashMap<>();
+		for (Object[] line : lines) {
+			linesById.put((Integer) line[0], line);
+		}
+		return linesById;
+	}
+
+	/**
+	 * Counts all the stored items and payments of a bill in the totals of the specified key, positively or negatively.
+	 */
+	private void addBillTotals(Map<List<Object>, BillDailyTotal> totals, int billId, BillTotalsKey key, boolean add) {
+		for (Object[] item : billItemsRepository.findDailyTotalSourceWhereBillId(billId)) {
+			addChargeTotals(totals, key, item, add);
+		}
+		for (Object[] payment : billPaymentRepository.findDailyTotalSourceWhereBillId(billId)) {
+			addPaymentTotals(totals, key, payment, add);
+		}
+	}
+
+	private static void addChargeTotals(Map<List<Object>, BillDailyTotal> totals, BillTotalsKey key, Object[] item, boolean add) {
+		if (item == null || key.deleted() || key.day() == null) {
+			return;
+		}
+		BillDailyTotal total = getDailyTotal(totals, key.day(), key.user(), key.priceListId(), BillDailyTotal.getItemGroup((Boolean) item[1], (String) item[2]));
+		if (add) {
+			total.addCharge((Double) item[3], (Integer) item[4]);
+		} else {
+			total.removeCharge((Double) item[3], (Integer) item[4]);
+		}
+	}
+
+	private static void addPaymentTotals(Map<List<Object>, BillDailyTotal> totals, BillTotalsKey key, Object[] payment, boolean add) {
+		if (payment == null || key.deleted()) {
+			return;
+		}
+		BillDailyTotal total = getDailyTotal(totals, ((LocalDateTime) payment[1]).toLocalDate(), (String) payment[2], key.priceListId(), BillDailyTotal.PAYMENT_ITEM_GROUP);
+		if (add) {
+			total.addPayment((Double) payment[3]);
+		} else {
+			total.removePayment((Double) payment[3]);
+		}
+	}
+
+	/**
+	 * Adds the specified totals to the stored ones, each with a single upsert, so that concurrent bill writes do not lose updates.
+	 */
+	private void addDailyTotals(Map<List<Object>, BillDailyTotal> totals) {
+		for (BillDailyTotal total : totals.values()) {
+			if (!total.isEmpty()) {
+				billDailyTotalRepository.addTotals(total.getDate(), total.getUser(), total.getPriceListId(), total.getItemGroup(), total.getPayments(),
+								total.getPaymentsCount(), total.getCharges(), total.getItemsQuantity());
+			}
+		}
+	}
+
+	private static BillDailyTotal getDailyTotal(Map<List<Object>, BillDailyTotal> totals, LocalDate day, String user, Integer priceListId,
+					String itemGroup) {
+		String totalUser = user == null ? BillDailyTotal.NO_USER : user;
+		int totalPriceListId = priceListId == null ? BillDailyTotal.NO_PRICE_LIST : priceListId;
+		return totals.computeIfAbsent(Arrays.asList(day, totalUser, totalPriceListId, itemGroup),
+						key -> new BillDailyTotal(day, totalUser, totalPriceListId, itemGroup));
+	}
+
 	/**
 	 * Retrieves all the {@link Bill}s for the specified date range.
 	 * @param dateFrom the low date range endpoint, inclusive.
@@ -216,21 +459,47 @@ public class AccountingIoOperations {
 	 * @throws OHServiceException if an error occurs retrieving the bill list.
 	 */
 	public List<Bill> getBills(List<BillPayments> payments) throws OHServiceException {
-		Set<Bill> bills = new TreeSet<>((o1, o2) -> o1.getId() == o2.getId() ? 0 : -1);
+		Map<Integer, Bill> bills = new LinkedHashMap<>();
 		for (BillPayments bp : payments) {
-			bills.add(bp.getBill());
+			bills.putIfAbsent(bp.getBill().getId(), bp.getBill());
 		}
-		return new ArrayList<>(bills);
+		return new ArrayList<>(bills.values());
 	}
 
 	/**
 	 * Retrieves all the {@link BillPayments} associated to the passed {@link Bill} list.
+	 * The bills are looked up in chunks, so that large reports do not exceed the size of an {@code IN} list.
 	 * @param bills the bill list.
 	 * @return a list of {@link BillPayments} associated to the passed bill list.
 	 * @throws OHServiceException if an error occurs retrieving the payments.
 	 */
 	public List<BillPayments> getPayments(List<Bill> bills) throws OHServiceException {
-		return billPaymentRepository.findAllByBillIn(bills);
+		List<Integer> billIds = bills.stream().map(Bill::getId).distinct().toList();
+		List<BillPayments> payments = new ArrayList<>();
+		for (int from = 0; from < billIds.size(); from += BILL_IDS_CHUNK_SIZE) {
+			payments.addAll(billPaymentRepository.findAllWhereBillIdIn(billIds.subList(from, Math.min(from + BILL_IDS_CHUNK_SIZE, billIds.size()))));
+		}
+		return payments;
+	}
+
+	/**
+	 * Retrieves the {@link Bill}s dated or paid in the specified date range, each one with all its {@link BillPayments},
+	 * reading bills and payments together with a single query.
+	 * @param dateFrom the low date range endpoint, inclusive.
+	 * @param dateTo the high date range endpoint, inclusive.
+	 * @return the bills, most recent first, mapped to their payments ordered by date.
+	 * @throws OHServiceException if an error occurs retrieving the bills.
+	 */
+	public Map<Bill, List<BillPayments>> getBillsWithPaymentsBetweenDates(LocalDateTime dateFrom, LocalDateTime dateTo) throws OHServiceException {
+		Map<Bill, List<BillPayments>> billsWithPayments = new LinkedHashMap<>();
+		for (Object[] billAndPayment : billRepository.findWithPaymentsWhereBillOrPaymentDateBetween(TimeTools.getBeginningOfDay(dateFrom),
+						TimeTools.getBeginningOfNextDay(dateTo))) {
+			List<BillPayments> payments = billsWithPayments.computeIfAbsent((Bill) billAndPayment[0], bill -> new ArrayList<>());
+			if (billAndPayment[1] != null) {
+				payments.add((BillPayments) billAndPayment[1]);
+			}
+		}
+		return billsWithPayments;
 	}
 
 	/**
@@ -28,11 +28,15 @@ import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.EntityListeners;
 import jakarta.persistence.EntityResult;
+import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
+import jakarta.persistence.NamedAttributeNode;
+import jakarta.persistence.NamedEntityGraph;
+import jakarta.persistence.NamedSubgraph;
 import jakarta.persistence.SqlResultSetMapping;
 import jakarta.persistence.Table;
 import jakarta.persistence.Transient;
@@ -58,6 +62,23 @@ entities={
 		@EntityResult(entityClass=Patient.class),
 		@EntityResult(entityClass=Admission.class)}
 )
+@NamedEntityGraph(name = "Admission.detail",
+attributeNodes = {
+		@NamedAttributeNode("ward"),
+		@NamedAttributeNode(value = "patient", subgraph = "patient"),
+		@NamedAttributeNode("admissionType"),
+		@NamedAttributeNode(value = "diseaseIn", subgraph = "disease"),
+		@NamedAttributeNode(value = "diseaseOut1", subgraph = "disease"),
+		@NamedAttributeNode(value = "diseaseOut2", subgraph = "disease"),
+		@NamedAttributeNode(value = "diseaseOut3", subgraph = "disease"),
+		@NamedAttributeNode("disType"),
+		@NamedAttributeNode("pregTreatmentType"),
+		@NamedAttributeNode("deliveryType"),
+		@NamedAttributeNode("deliveryResult")},
+subgraphs = {
+		@NamedSubgraph(name = "patient", attributeNodes = @NamedAttributeNode("patientConsensus")),
+		@NamedSubgraph(name = "disease", attributeNodes = @NamedAttributeNode("diseaseType"))}
+)
 @EntityListeners(AuditingEntityListener.class)
 @AttributeOverride(name="createdBy", column=@Column(name="ADM_CREATED_BY", updatable = false))
 @AttributeOverride(name="createdDate", column=@Column(name="ADM_CREATED_DATE", updatable = false))
@@ -80,7 +101,7 @@ public class Admission extends Auditable<String> implements Comparable<Admission
 	private String type;                    // values are 'N'(normal)  or 'M' (malnutrition)  default 'N'
 
 	@NotNull
-	@ManyToOne
+	@ManyToOne(fetch = FetchType.LAZY)
 	@JoinColumn(name = "ADM_WRD_ID_A")
 	private Ward ward;                        // ward key
 
@@ -89,7 +110,7 @@ public class Admission extends Auditable<String> implements Comparable<Admission
 	private int yProg;                        // a progr. in year for each ward
 
 	@NotNull
-	@ManyToOne
+	@ManyToOne(fetch = FetchType.LAZY)
 	@JoinColumn(name = "ADM_PAT_ID")
 	private Patient patient;                // patient key
 
@@ -98,33 +119,33 @@ public class Admission extends Auditable<String> implements Comparable<Admission
 	private LocalDateTime admDate;        // admission date
 
 	@NotNull
-	@ManyToOne
+	@ManyToOne(fetch = FetchType.LAZY)
 	@JoinColumn(name = "ADM_ADMT_ID_A_ADM")
 	private AdmissionType admissionType;    // admissionType key
 
 	@Column(name = "ADM_FHU")
 	private String fHU;                        // FromHealthUnit (null)
 
-	@ManyToOne
+	@ManyToOne(fetch = FetchType.LAZY)
 	@JoinColumn(name = "ADM_IN_DIS_ID_A")
 	private Disease diseaseIn;                // disease in key  (null)
 
-	@ManyToOne
+	@ManyToOne(fetch = FetchType.LAZY)
 	@JoinColumn(name = "ADM_OUT_DIS_ID_A")
 	private Disease diseaseOut1;            // disease out key  (null)
 
-	@ManyToOne
+	@ManyToOne(fetch = FetchType.LAZY)
 	@JoinColumn(name = "ADM_OUT_DIS_ID_A_2")
 	private Disease diseaseOut2;            // disease out key (null)
 
-	@ManyToOne
+	@ManyToOne(fetch = FetchType.LAZY)
 	@JoinColumn(name = "ADM_OUT_DIS_ID_A_3")
 	private Disease diseaseOut3;            // disease out key (null)
 
 	@Column(name = "ADM_DATE_DIS")        // SQL type: datetime
 	private LocalDateTime disDate;        // discharge date (null)
 
-	@ManyToOne
+	@ManyToOne(fetch = FetchType.LAZY)
 	@JoinColumn(name = "ADM_DIST_ID_A")
 	private DischargeType disType;            // disChargeType key (null)
 
@@ -137,18 +158,18 @@ public class Admission extends Auditable<String> implements Comparable<Admission
 	@Column(name = "ADM_PRG_DATE_VIS")        // SQL type: datetime
 	private LocalDateTime visitDate;    // ADM_PRG_DATE_VIS
 
-	@ManyToOne
+	@ManyToOne(fetch = FetchType.LAZY)
 	@JoinColumn(name = "ADM_PRG_PTT_ID_A")
 	private PregnantTreatmentType pregTreatmentType;        // ADM_PRG_PTT_ID_A treatmentType key
 
 	@Column(name = "ADM_PRG_DATE_DEL")        // SQL type: datetime
 	private LocalDateTime deliveryDate;    // ADM_PRG_DATE_DEL delivery date
 
-	@ManyToOne
+	@ManyToOne(fetch = FetchType.LAZY)
 	@JoinColumn(name = "ADM_PRG_DLT_ID_A")
 	private DeliveryType deliveryType;        // ADM_PRG_DLT_ID_A delivery type key
 
-	@ManyToOne
+	@ManyToOne(fetch = FetchType.LAZY)
 	@JoinColumn(name = "ADM_PRG_DRT_ID_A")
 	private DeliveryResultType deliveryResult;        // ADM_PRG_DRT_ID_A	delivery res. key
 
@@ -23,10 +23,13 @@ package org.isf.admission.service;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 import org.isf.admission.model.Admission;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.EntityGraph.EntityGraphType;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -35,33 +38,65 @@ import org.springframework.stereotype.Repository;
 @Repository
 public interface AdmissionIoOperationRepository extends JpaRepository<Admission, Integer>, AdmissionIoOperationRepositoryCustom {
 
+	@Override
+	@EntityGraph(value = "Admission.detail", type = EntityGraphType.LOAD)
+	Optional<Admission> findById(Integer id);
+
+	@EntityGraph(value = "Admission.detail", type = EntityGraphType.LOAD)
 	@Query(value = "select a FROM Admission a WHERE a.admitted = 1 AND a.ward.code = :ward")
 	List<Admission> findAllWhereWard(@Param("ward") String ward);
 
+	@EntityGraph(value = "Admission.detail", type = EntityGraphType.LOAD)
 	@Query(value = "select a FROM Admission a WHERE a.patient.code = :patient and a.deleted='N' and a.admitted = 1")
 	Admission findOneWherePatientIn(@Param("patient") int patient);
 
+	@EntityGraph(value = "Admission.detail", type = EntityGraphType.LOAD)
 	@Query(value = "select a FROM Admission a WHERE a.patient.code =:patient and a.deleted='N' order by a.admDate asc")
 	List<Admission> findAllWherePatientByOrderByDate(@Param("patient") int patient);
 
+	@EntityGraph(value = "Admission.detail", type = EntityGraphType.LOAD)
 	@Query(value = "select a FROM Admission a " +
 					"WHERE a.ward.code =:ward AND a.admDate >= :dateFrom AND a.admDate <= :dateTo AND a.deleted ='N' " +
 					"ORDER BY a.yProg desc ")
 	List<Admission> findAllWhereWardAndDates(
 					@Param("ward") String ward, @Param("dateFrom") LocalDateTime dateFrom, @Param("dateTo") LocalDateTime dateTo);
 
+	@Query(value = "select max(a.yProg) FROM Admission a " +
+					"WHERE a.ward.code =:ward AND a.admDate >= :dateFrom AND a.admDate <= :dateTo AND a.deleted ='N'")
+	Integer findMaxYProgWhereWardAndDates(
+					@Param("ward") String ward, @Param("dateFrom") LocalDateTime dateFrom, @Param("dateTo") LocalDateTime dateTo);
+
+	@Query(value = "select count(a) > 0 FROM Admission a " +
+					"WHERE a.ward.code =:ward AND a.yProg = :yProg AND a.admDate >= :dateFrom AND a.admDate <= :dateTo AND a.deleted ='N'")
+	boolean existsWhereWardAndYProgAndDates(@Param("ward") String ward, @Param("yProg") int yProg,
+					@Param("dateFrom") LocalDateTime dateFrom, @Param("dateTo") LocalDateTime dateTo);
+
+	@EntityGraph(value = "Admission.detail", type = EntityGraphType.LOAD)
 	@Query(value = "select a FROM Admission a WHERE a.admitted =1 and a.ward.code = :ward and a.deleted = 'N'")
 	List<Admission> findAllWhereWardIn(@Param("ward") String ward);
 
+	@Query(value = "select count(a) FROM Admission a WHERE a.admitted =1 and a.ward.code = :ward and a.deleted = 'N'")
+	long countWhereWardIn(@Param("ward") String ward);
+
+	@Query(value = "select count(a) FROM Admission a WHERE a.admitted = 1 AND a.ward.code = :ward")
+	long countWhereWard(@Param("ward") String ward);
+
+	@Query(value = "select a.ward.code, count(a) FROM Admission a WHERE a.admitted =1 and a.deleted = 'N' group by a.ward.code")
+	List<Object[]> countAllWhereInGroupByWard();
+
+	@EntityGraph(value = "Admission.detail", type = EntityGraphType.LOAD)
 	@Query(value = "select a FROM Admission a WHERE a.admDate >= :dateFrom AND a.admDate <= :dateTo and a.deleted = 'N'")
 	List<Admission> findAllWhereAdmissionDate(@Param("dateFrom") LocalDateTime dateFrom, @Param("dateTo") LocalDateTime dateTo);
 
+	@EntityGraph(value = "Admission.detail", type = EntityGraphType.LOAD)
 	@Query(value = "select a FROM Admission a WHERE a.disDate >= :dateFrom AND a.disDate <= :dateTo and a.deleted = 'N'")
 	List<Admission> findAllWhereDischargeDate(@Param("dateFrom") LocalDateTime dateFrom, @Param("dateTo") LocalDateTime dateTo);
 
+	@EntityGraph(value = "Admission.detail", type = EntityGraphType.LOAD)
 	@Query(value = "select a FROM Admission a WHERE a.admDate >= :dateFrom AND a.admDate <= :dateTo and a.deleted = 'N'")
 	Page<Admission> findAllWhere_AdmissionDate_Paginated(@Param("dateFrom") LocalDateTime dateFrom, @Param("dateTo") LocalDateTime dateTo, Pageable pageable);
 
+	@EntityGraph(value = "Admission.detail", type = EntityGraphType.LOAD)
 	@Query(value = "select a FROM Admission a WHERE a.disDate >= :dateFrom AND a.disDate <= :dateTo and a.deleted = 'N'")
 	Page<Admission> findAllWhere_DischargeDate_Paginated(@Param("dateFrom") LocalDateTime dateFrom, @Param("dateTo") LocalDateTime dateTo, Pageable pageable);
 
@@ -23,44 +23,74 @@ package org.isf.admission.service;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
 import jakarta.persistence.Query;
 
+import org.hibernate.Hibernate;
 import org.isf.admission.model.Admission;
 import org.isf.admission.model.AdmittedPatient;
 import org.isf.patient.model.Patient;
+import org.isf.patient.service.PatientSearchIndex;
 import org.isf.utils.exception.OHServiceException;
-import org.isf.utils.time.TimeTools;
 import org.springframework.transaction.annotation.Transactional;
 
 @Transactional
 public class AdmissionIoOperationRepositoryImpl implements AdmissionIoOperationRepositoryCustom {
 
-	private static String nativeQueryTerms = "SELECT * from OH_PATIENT as p  "
-					+ " left join (select * from OH_ADMISSION where ADM_IN = 1 and ( (ADM_DELETED='N') or (ADM_DELETED is null ) ) ) as a on p.PAT_ID = a.ADM_PAT_ID "
+	private static final String NATIVE_QUERY_SELECT = "SELECT * from OH_PATIENT as p "
+					+ " left join OH_ADMISSION as a on a.ADM_PAT_ID = p.PAT_ID and a.ADM_IN = 1 and ( (a.ADM_DELETED='N') or (a.ADM_DELETED is null ) ) ";
+
+	private static final String NATIVE_QUERY_CODES = NATIVE_QUERY_SELECT
+					+ " where p.PAT_ID in (:codes)"
+					+ " and ( ( p.PAT_DELETED='N' ) or ( p.PAT_DELETED is null ) )";
+
+	private static final String NATIVE_QUERY_ALL = NATIVE_QUERY_SELECT
 					+ " where ( ( p.PAT_DELETED='N' ) or ( p.PAT_DELETED is null ) )"
-					+ " and ( lower(concat_ws(' ', p.PAT_ID, p.PAT_SNAME, p.PAT_FNAME, p.PAT_NAME, p.PAT_NOTE, p.PAT_TAXCODE, p.PAT_CITY, p.PAT_ADDR, p.PAT_TELE)) like :param0 ) "
 					+ " order by p.PAT_ID desc";
 
-	private static String nativeQueryRanges = "SELECT * from OH_PATIENT as p  "
-					+ " left join (select * from OH_ADMISSION where ADM_IN = 1 and ( (ADM_DELETED='N') or (ADM_DELETED is null ) ) ) as a on p.PAT_ID = a.ADM_PAT_ID "
-					+ " where (p.PAT_ID IN (SELECT ADM_PAT_ID from OH_ADMISSION where param1))"
-					+ " and ( lower(concat_ws(' ', p.PAT_ID, p.PAT_SNAME, p.PAT_FNAME, p.PAT_NAME, p.PAT_NOTE, p.PAT_TAXCODE, p.PAT_CITY, p.PAT_ADDR, p.PAT_TELE)) like :param0 ) "
+	private static final String NATIVE_QUERY_RANGES_WHERE = NATIVE_QUERY_SELECT
+					+ " where (p.PAT_ID IN (SELECT ADM_PAT_ID from OH_ADMISSION where ( (ADM_DELETED='N') or (ADM_DELETED is null ) ) rangePredicate))";
+
+	private static final String NATIVE_QUERY_RANGES = NATIVE_QUERY_RANGES_WHERE
+					+ " order by p.PAT_ID desc";
+
+	private static final String NATIVE_QUERY_RANGES_CODES = NATIVE_QUERY_RANGES_WHERE
+					+ " and p.PAT_ID in (:codes)";
+
+	private static final String NATIVE_QUERY_TERMS_CONDITION = " and ( lower(concat_ws(' ', p.PAT_ID, p.PAT_SNAME, p.PAT_FNAME, p.PAT_NAME, p.PAT_NOTE, "
+					+ "p.PAT_TAXCODE, p.PAT_CITY, p.PAT_ADDR, p.PAT_TELE)) like :terms )"
 					+ " order by p.PAT_ID desc";
 
+	private static final String NATIVE_QUERY_TERMS = NATIVE_QUERY_SELECT
+					+ " where ( ( p.PAT_DELETED='N' ) or ( p.PAT_DELETED is null ) )"
+					+ NATIVE_QUERY_TERMS_CONDITION;
+
+	private static final String NATIVE_QUERY_RANGES_TERMS = NATIVE_QUERY_RANGES_WHERE
+					+ NATIVE_QUERY_TERMS_CONDITION;
+
 	private static String nativeQueryCode = "SELECT * from OH_PATIENT as p  "
 					+ " left join (select * from OH_ADMISSION where ADM_IN = 1 and ( (ADM_DELETED='N') or (ADM_DELETED is null ) ) order by ADM_ID desc) as a on p.PAT_ID = a.ADM_PAT_ID "
 					+ " where p.PAT_ID = :param0 "
 					+ " and ( ( p.PAT_DELETED='N' ) or ( p.PAT_DELETED is null ) )";
 
-	private static final String YYYY_MM_DD = "yyyy-MM-dd";
+	/** Maximum number of patient codes bound in a single {@code IN} list. */
+	private static final int CODES_CHUNK_SIZE = 1000;
 
 	@PersistenceContext
 	private EntityManager entityManager;
 
+	private final PatientSearchIndex patientSearchIndex;
+
+	public AdmissionIoOperationRepositoryImpl(PatientSearchIndex patientSearchIndex) {
+		this.patientSearchIndex = patientSearchIndex;
+	}
+
 	@Override
 	public List<AdmittedPatient> findPatientAdmissionsBySearchAndDateRanges(String searchTerms, LocalDateTime[] admissionRange,
 					LocalDateTime[] dischargeRange) throws OHServiceException {
@@ -79,44 +109,58 @@ public class AdmissionIoOperationRepositoryImpl implements AdmissionIoOperationR
 			}
 		}
 
+		String[] words = PatientSearchIndex.getWords(searchTerms);
+		String queryCodes = NATIVE_QUERY_CODES;
+		String queryTerms = NATIVE_QUERY_TERMS;
+		Map<String, LocalDateTime> parameters = new HashMap<>();
 		if ((admissionRange != null && (admissionRange[0] != null || admissionRange[1] != null)) ||
 						(dischargeRange != null && (dischargeRange[0] != null || dischargeRange[1] != null))) {
-			StringBuilder rangePredicate = new StringBuilder("( (ADM_DELETED='N') or (ADM_DELETED is null ) )");
-			if (admissionRange != null) {
-
-				if (admissionRange[0] != null) {
-					rangePredicate.append(" and ").append("DATE(ADM_DATE_ADM) >= '").append(TimeTools.formatDateTime(admissionRange[0], YYYY_MM_DD))
-									.append('\'');
-				}
-				if (admissionRange[1] != null) {
-					rangePredicate.append(" and ").append("DATE(ADM_DATE_ADM) <= '").append(TimeTools.formatDateTime(admissionRange[1], YYYY_MM_DD))
-									.append('\'');
-				}
-			}
-			if (dischargeRange != null) {
-
-				if (dischargeRange[0] != null) {
-					rangePredicate.append(" and ").append("DATE(ADM_DATE_DIS) >= '").append(TimeTools.formatDateTime(dischargeRange[0], YYYY_MM_DD))
-									.append('\'');
-				}
-				if (dischargeRange[1] != null) {
-					rangePredicate.append(" and ").append("DATE(ADM_DATE_DIS) <= '").append(TimeTools.formatDateTime(dischargeRange[1], YYYY_MM_DD))
-									.append('\'');
-				}
+			// half-open ranges on the raw columns, so that the indexes on the admission and discharge dates are used
+			StringBuilder rangePredicate = new StringBuilder();
+			appendRange(rangePredicate, parameters, "ADM_DATE_ADM", "admission", admissionRange);
+			appendRange(rangePredicate, parameters, "ADM_DATE_DIS", "discharge", dischargeRange);
+			if (words.length == 0) {
+				Query nativeQuery = this.entityManager.createNativeQuery(NATIVE_QUERY_RANGES.replace("rangePredicate", rangePredicate), "AdmittedPatient");
+				parameters.forEach(nativeQuery::setParameter);
+				return parseResultSet(admittedPatients, nativeQuery);
 			}
-			Query nativeQuery = this.entityManager.createNativeQuery(nativeQueryRanges.replace("param1", rangePredicate.toString()), "AdmittedPatient");
-			String paramTerms = like(terms);
-			nativeQuery.setParameter("param0", paramTerms);
-
+			queryCodes = NATIVE_QUERY_RANGES_CODES.replace("rangePredicate", rangePredicate);
+			queryTerms = NATIVE_QUERY_RANGES_TERMS.replace("rangePredicate", rangePredicate);
+		} else if (words.length == 0) {
+			return parseResultSet(admittedPatients, this.entityManager.createNativeQuery(NATIVE_QUERY_ALL, "AdmittedPatient"));
+		}
+		if (!patientSearchIndex.isReady()) {
+			// until the index is built, the search terms are matched in the database
+			Query nativeQuery = this.entityManager.createNativeQuery(queryTerms, "AdmittedPatient");
+			parameters.forEach(nativeQuery::setParameter);
+			nativeQuery.setParameter("terms", like(terms));
 			return parseResultSet(admittedPatients, nativeQuery);
+		}
+		// only the patients matching the search terms are read, the date ranges are applied in the same query
+		List<Integer> candidates = patientSearchIndex.search(words);
+		for (int from = 0; from < candidates.size(); from += CODES_CHUNK_SIZE) {
+			Query nativeQuery = this.entityManager.createNativeQuery(queryCodes, "AdmittedPatient");
+			parameters.forEach(nativeQuery::setParameter);
+			nativeQuery.setParameter("codes", candidates.subList(from, Math.min(from + CODES_CHUNK_SIZE, candidates.size())));
+			parseResultSet(admittedPatients, nativeQuery);
+		}
+		// the index may be stale, the candidates are checked against the current data
+		admittedPatients.removeIf(admittedPatient -> !PatientSearchIndex.matches(admittedPatient.getPatient(), words));
+		admittedPatients.sort(Comparator.comparing((AdmittedPatient admittedPatient) -> admittedPatient.getPatient().getCode()).reversed());
+		return admittedPatients;
+	}
 
-		} else {
-
-			Query nativeQuery = this.entityManager.createNativeQuery(nativeQueryTerms, "AdmittedPatient");
-			String paramTerms = like(terms);
-			nativeQuery.setParameter("param0", paramTerms);
-
-			return parseResultSet(admittedPatients, nativeQuery);
+	private void appendRange(StringBuilder rangePredicate, Map<String, LocalDateTime> parameters, String column, String name, LocalDateTime[] range) {
+		if (range == null) {
+			return;
+		}
+		if (range[0] != null) {
+			rangePredicate.append(" and ").append(column).append(" >= :").append(name).append("From");
+			parameters.put(name + "From", range[0].toLocalDate().atStartOfDay());
+		}
+		if (range[1] != null) {
+			rangePredicate.append(" and ").append(column).append(" < :").append(name).append("To");
+			parameters.put(name + "To", range[1].toLocalDate().plusDays(1).atStartOfDay());
 		}
 	}
 
@@ -125,11 +169,31 @@ public class AdmissionIoOperationRepositoryImpl implements AdmissionIoOperationR
 		results.stream().forEach(resultRecord -> {
 			Patient patientRecord = (Patient) resultRecord[0];
 			Admission admissionRecord = (Admission) resultRecord[1];
+			if (admissionRecord != null) {
+				initializeAssociations(admissionRecord);
+			}
 			admittedPatients.add(new AdmittedPatient(patientRecord, admissionRecord));
 		});
 		return admittedPatients;
 	}
 
+	/**
+	 * The native result mapping does not apply the entity graphs, so the lazy associations of the admission are initialized here: the admitted patients are
+	 * used outside of the transaction. The proxies of the same type are loaded in batches, not one by one.
+	 */
+	private void initializeAssociations(Admission admission) {
+		Hibernate.initialize(admission.getWard());
+		Hibernate.initialize(admission.getAdmType());
+		Hibernate.initialize(admission.getDiseaseIn());
+		Hibernate.initialize(admission.getDiseaseOut1());
+		Hibernate.initialize(admission.getDiseaseOut2());
+		Hibernate.initialize(admission.getDiseaseOut3());
+		Hibernate.initialize(admission.getDisType());
+		Hibernate.initialize(admission.getPregTreatmentType());
+		Hibernate.initialize(admission.getDeliveryType());
+		Hibernate.initialize(admission.getDeliveryResult());
+	}
+
 	private String like(String[] terms) {
 		StringBuilder sb = new StringBuilder("%");
 
@@ -41,6 +41,7 @@ import org.isf.generaldata.GeneralData;
 import org.isf.patient.model.Patient;
 import org.isf.patient.service.PatientIoOperationRepository;
 import org.isf.patient.service.PatientIoOperations;
+import org.isf.sequence.service.ProgressiveNumberIoOperations;
 import org.isf.utils.db.TranslateOHServiceException;
 import org.isf.utils.exception.OHServiceException;
 import org.isf.utils.pagination.PageInfo;
@@ -56,6 +57,8 @@ import org.springframework.transaction.annotation.Transactional;
 @TranslateOHServiceException
 public class AdmissionIoOperations {
 
+	private static final String YPROG_SCOPE = "ADMISSION_YPROG_";
+
 	private AdmissionIoOperationRepository repository;
 
 	private AdmissionTypeIoOperationRepository typeRepository;
@@ -64,14 +67,18 @@ public class AdmissionIoOperations {
 
 	private PatientIoOperationRepository patientRepository;
 
+	private ProgressiveNumberIoOperations progressiveNumberIoOperations;
+
 	public AdmissionIoOperations(AdmissionIoOperationRepository admissionIoOperationRepository,
 	                             AdmissionTypeIoOperationRepository admissionTypeIoOperationRepository,
 	                             DischargeTypeIoOperationRepository dischargeTypeIoOperationRepository,
-	                             PatientIoOperationRepository patientIoOperationRepository) {
+	                             PatientIoOperationRepository patientIoOperationRepository,
+	                             ProgressiveNumberIoOperations progressiveNumberIoOperations) {
 		this.repository = admissionIoOperationRepository;
 		this.typeRepository = admissionTypeIoOperationRepository;
 		this.dischargeRepository = dischargeTypeIoOperationRepository;
 		this.patientRepository = patientIoOperationRepository;
+		this.progressiveNumberIoOperations = progressiveNumberIoOperations;
 	}
 
 	/**
@@ -160,13 +167,20 @@ public class AdmissionIoOperations {
 	}
 
 	/**
-	 * Inserts a new admission.
+	 * Inserts a new admission. If its progressive number in the year is already used in the ward (e.g. by a parallel registration), the
+	 * admission gets the next free one.
 	 *
 	 * @param admission the admission to insert.
 	 * @return the new/saved Admission object.
 	 * @throws OHServiceException if an error occurs during the insertion.
 	 */
 	public Admission newAdmission(Admission admission) throws OHServiceException {
+		if (admission.getYProg() > 0 && admission.getWard() != null && admission.getAdmDate() != null) {
+			String wardId = admission.getWard().getCode();
+			LocalDateTime[] period = getYProgPeriod(wardId, admission.getAdmDate());
+			admission.setYProg(progressiveNumberIoOperations.allocate(getYProgScope(wardId, period), admission.getYProg(),
+				() -> getLastYProg(wardId, period), yProg -> repository.existsWhereWardAndYProgAndDates(wardId, yProg, period[0], period[1])));
+		}
 		return repository.save(admission);
 	}
 
@@ -221,30 +235,40 @@ public class AdmissionIoOperations {
 	 * @throws OHServiceException if an error occurs retrieving the value.
 	 */
 	public int getNextYProg(String wardId) throws OHServiceException {
-		int next = 1;
-		LocalDateTime now = getNow();
+		LocalDateTime[] period = getYProgPeriod(wardId, getNow());
+		return progressiveNumberIoOperations.getNext(getYProgScope(wardId, period), () -> getLastYProg(wardId, period));
+	}
+
+	/**
+	 * Returns the first and the last instants of the year of the progressive numbers including the specified date: the solar year or, for
+	 * the maternity ward when {@link GeneralData#MATERNITYRESTARTINJUNE} is set, the year starting in July.
+	 */
+	private LocalDateTime[] getYProgPeriod(String wardId, LocalDateTime date) {
 		LocalDateTime first;
 		LocalDateTime last;
 
 		if ("M".equalsIgnoreCase(wardId) && GeneralData.MATERNITYRESTARTINJUNE) {
-			if (now.getMonthValue() < Month.JUNE.getValue()) {
-				first = now.minusYears(1).withMonth(Month.JULY.getValue()).withDayOfMonth(1).with(LocalTime.MIN).truncatedTo(ChronoUnit.SECONDS);
-				last = now.withMonth(Month.JUNE.getValue()).withDayOfMonth(30).with(LocalTime.MAX).truncatedTo(ChronoUnit.SECONDS);
+			if (date.getMonthValue() < Month.JUNE.getValue()) {
+				first = date.minusYears(1).withMonth(Month.JULY.getValue()).withDayOfMonth(1).with(LocalTime.MIN).truncatedTo(ChronoUnit.SECONDS);
+				last = date.withMonth(Month.JUNE.getValue()).withDayOfMonth(30).with(LocalTime.MAX).truncatedTo(ChronoUnit.SECONDS);
 			} else {
-				first = now.withMonth(Month.JULY.getValue()).withDayOfMonth(1).with(LocalTime.MIN).truncatedTo(ChronoUnit.SECONDS);
-				last = now.plusYears(1).withMonth(Month.JUNE.getValue()).withDayOfMonth(30).with(LocalTime.MAX).truncatedTo(ChronoUnit.SECONDS);
+				first = date.withMonth(Month.JULY.getValue()).withDayOfMonth(1).with(LocalTime.MIN).truncatedTo(ChronoUnit.SECONDS);
+				last = date.plusYears(1).withMonth(Month.JUNE.getValue()).withDayOfMonth(30).with(LocalTime.MAX).truncatedTo(ChronoUnit.SECONDS);
 			}
 		} else {
-			first = now.with(firstDayOfYear()).with(LocalTime.MIN).truncatedTo(ChronoUnit.SECONDS);
-			last = now.with(lastDayOfYear()).with(LocalTime.MAX).truncatedTo(ChronoUnit.SECONDS);
+			first = date.with(firstDayOfYear()).with(LocalTime.MIN).truncatedTo(ChronoUnit.SECONDS);
+			last = date.with(lastDayOfYear()).with(LocalTime.MAX).truncatedTo(ChronoUnit.SECONDS);
 		}
+		return new LocalDateTime[] { first, last };
+	}
 
-		List<Admission> admissions = repository.findAllWhereWardAndDates(wardId, first, last);
-		if (!admissions.isEmpty()) {
-			next = admissions.get(0).getYProg() + 1;
-		}
+	private String getYProgScope(String wardId, LocalDateTime[] period) {
+		return YPROG_SCOPE + wardId + '_' + period[0].toLocalDate();
+	}
 
-		return next;
+	private int getLastYProg(String wardId, LocalDateTime[] period) {
+		Integer lastYProg = repository.findMaxYProgWhereWardAndDates(wardId, period[0], period[1]);
+		return lastYProg == null ? 0 : lastYProg;
 	}
 
 	/**
@@ -296,8 +320,7 @@ public class AdmissionIoOperations {
 	 * @throws OHServiceException if an error occurs retrieving the bed count.
 	 */
 	public int getUsedWardBed(String wardId) throws OHServiceException {
-		List<Admission> admissionList = repository.findAllWhereWardIn(wardId);
-		return admissionList.size();
+		return (int) repository.countWhereWardIn(wardId);
 	}
 
 	/**
@@ -38,6 +38,8 @@ public final class GeneralData extends ConfigurationProperties {
 
 	public static String LANGUAGE;
 	public static boolean AUTOMATICLOT_IN;
+	public static String AUTOMATICLOT_IN_PREFIX;
+	public static String AUTOMATICLOT_IN_FORMAT;
 	public static boolean AUTOMATICLOT_OUT;
 	public static boolean AUTOMATICLOTWARD_TOWARD;
 	public static boolean LOTWITHCOST;
@@ -89,6 +91,9 @@ public final class GeneralData extends ConfigurationProperties {
 	public static int PASSWORDTRIES;
 	public static int PASSWORDLOCKTIME;
 	public static int PASSWORDIDLE;
+	public static int INVENTORYBATCHSIZE;
+	public static int QUERYFETCHSIZE;
+	public static int PATIENTSEARCHINDEXREFRESH;
 
 	private static final String DEFAULT_LANGUAGE = "en";
 	private static final boolean DEFAULT_SINGLEUSER = false;
@@ -97,6 +102,8 @@ public final class GeneralData extends ConfigurationProperties {
 	private static final boolean DEFAULT_DEMODATA = false;
 	private static final boolean DEFAULT_APISERVER = false;
 	private static final boolean DEFAULT_AUTOMATICLOT_IN = true;
+	private static final String DEFAULT_AUTOMATICLOT_IN_PREFIX = "";
+	private static final String DEFAULT_AUTOMATICLOT_IN_FORMAT = "%d";
 	private static final boolean DEFAULT_AUTOMATICLOT_OUT = true;
 	private static final boolean DEFAULT_AUTOMATICLOTWARD_TOWARD = true;
 	private static final boolean DEFAULT_LOTWITHCOST = false;
@@ -144,6 +151,9 @@ public final class GeneralData extends ConfigurationProperties {
 	private static final int DEFAULT_PASSWORDTRIES = 5;
 	private static final int DEFAULT_PASSWORDLOCKTIME = 60; // minutes
 	private static final int DEFAULT_PASSWORDIDLE = 365; // days
+	private static final int DEFAULT_INVENTORYBATCHSIZE = 200; // rows
+	private static final int DEFAULT_QUERYFETCHSIZE = 1000; // rows
+	private static final int DEFAULT_PATIENTSEARCHINDEXREFRESH = 5; // seconds
 	private static final String DEFAULT_PATIENTPHOTOSTORAGE = "DB";
 	public static final int IMAGE_THUMBNAIL_MAX_WIDTH = 140;
 	public static final int MAX_PROFILE_IMAGE_FILE_SIZE_BYTES = 32768;
@@ -164,6 +174,8 @@ public final class GeneralData extends ConfigurationProperties {
 		APISERVER = myGetProperty("APISERVER", DEFAULT_APISERVER);
 		LANGUAGE = myGetProperty("LANGUAGE", DEFAULT_LANGUAGE);
 		AUTOMATICLOT_IN = myGetProperty("AUTOMATICLOT_IN", DEFAULT_AUTOMATICLOT_IN);
+		AUTOMATICLOT_IN_PREFIX = myGetProperty("AUTOMATICLOT_IN_PREFIX", DEFAULT_AUTOMATICLOT_IN_PREFIX);
+		AUTOMATICLOT_IN_FORMAT = myGetProperty("AUTOMATICLOT_IN_FORMAT", DEFAULT_AUTOMATICLOT_IN_FORMAT);
 		AUTOMATICLOT_OUT = myGetProperty("AUTOMATICLOT_OUT", DEFAULT_AUTOMATICLOT_OUT);
 		AUTOMATICLOTWARD_TOWARD = myGetProperty("AUTOMATICLOTWARD_TOWARD", DEFAULT_AUTOMATICLOTWARD_TOWARD);
 		LOTWITHCOST = myGetProperty("LOTWITHCOST", DEFAULT_LOTWITHCOST);
@@ -230,6 +242,21 @@ public final class GeneralData extends ConfigurationProperties {
 		if (PASSWORDIDLE < 0) {
 			PASSWORDIDLE = 0;
 		}
+		INVENTORYBATCHSIZE = myGetProperty("INVENTORYBATCHSIZE", DEFAULT_INVENTORYBATCHSIZE);
+		// ensure a positive value
+		if (INVENTORYBATCHSIZE <= 0) {
+			INVENTORYBATCHSIZE = DEFAULT_INVENTORYBATCHSIZE;
+		}
+		QUERYFETCHSIZE = myGetProperty("QUERYFETCHSIZE", DEFAULT_QUERYFETCHSIZE);
+		// ensure a positive value
+		if (QUERYFETCHSIZE <= 0) {
+			QUERYFETCHSIZE = DEFAULT_QUERYFETCHSIZE;
+		}
+		PATIENTSEARCHINDEXREFRESH = myGetProperty("PATIENTSEARCHINDEXREFRESH", DEFAULT_PATIENTSEARCHINDEXREFRESH);
+		// Zero disables the background refresh of the patient search index
+		if (PATIENTSEARCHINDEXREFRESH < 0) {
+			PATIENTSEARCHINDEXREFRESH = 0;
+		}
 		PATIENTPHOTOSTORAGE = myGetProperty("PATIENTPHOTOSTORAGE", DEFAULT_PATIENTPHOTOSTORAGE);
 		SESSIONTIMEOUT = myGetProperty("SESSIONTIMEOUT", DEFAULT_SESSIONTIMEOUT);
 		PARAMSURL = myGetProperty("PARAMSURL", DEFAULT_PARAMSURL);
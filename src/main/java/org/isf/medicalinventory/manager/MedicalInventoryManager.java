@@ -23,13 +23,12 @@ package org.isf.medicalinventory.manager;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 import org.isf.generaldata.GeneralData;
 import org.isf.generaldata.MessageBundle;
@@ -60,7 +59,11 @@ import org.isf.ward.manager.WardBrowserManager;
 import org.isf.ward.model.Ward;
 import org.springframework.data.domain.Page;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
 
 @Component
 public class MedicalInventoryManager {
@@ -83,10 +86,15 @@ public class MedicalInventoryManager {
 
 	private MovWardBrowserManager movWardBrowserManager;
 
+	private final PlatformTransactionManager transactionManager;
+
+	/** Each batch commits on its own, even when the confirmation is called within a transaction. */
+	private static final TransactionDefinition BATCH_TRANSACTION = new DefaultTransactionDefinition(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
 	public MedicalInventoryManager(MedicalInventoryIoOperation medicalInventoryIoOperation, MedicalInventoryRowManager medicalInventoryRowManager,
 		MedicalDsrStockMovementTypeBrowserManager medicalDsrStockMovementTypeBrowserManager,
 		SupplierBrowserManager supplierManager, MovStockInsertingManager movStockInsertingManager, WardBrowserManager wardManager,
-		MovBrowserManager movBrowserManager, MovWardBrowserManager movWardBrowserManager) {
+		MovBrowserManager movBrowserManager, MovWardBrowserManager movWardBrowserManager, PlatformTransactionManager transactionManager) {
 		this.ioOperations = medicalInventoryIoOperation;
 		this.medicalInventoryRowManager = medicalInventoryRowManager;
 		this.medicalDsrStockMovementTypeBrowserManager = medicalDsrStockMovementTypeBrowserManager;
@@ -95,6 +103,7 @@ public class MedicalInventoryManager {
 		this.wardManager = wardManager;
 		this.movBrowserManager = movBrowserManager;
 		this.movWardBrowserManager = movWardBrowserManager;
+		this.transactionManager = transactionManager;
 	}
 
 	/**
@@ -272,49 +281,24 @@ public class MedicalInventoryManager {
 
 		// TODO: To decide if to make allMedicals parameter
 		boolean allMedicals = true;
-		List<Movement> movs = new ArrayList<>();
-		List<Medical> inventoryMedicalsList = inventoryRowSearchList.stream()
-			.map(MedicalInventoryRow::getMedical)
-			.distinct()
-			.collect(Collectors.toList());
-		if (allMedicals) {
-			// Fetch all movements without filtering by medical code
-			movs.addAll(movBrowserManager.getMovements(null, null, null, null, movFrom, movTo, null, null, null, null));
-		} else {
-			// Fetch only movements concerning inventoryRowSearchList list
-			for (Medical medical : inventoryMedicalsList) {
-				movs.addAll(movBrowserManager.getMovements(medical.getCode(), null, null, null, movFrom, movTo, null, null, null, null));
-			}
-		}
-		// Get all the lot of the movements
-		List<Lot> lotOfMovements = movs.stream().map(Movement::getLot).collect(Collectors.toList());
-		// Remove duplicates by converting the list to a set
-		Set<Lot> uniqueLots = new HashSet<>(lotOfMovements);
-		// Convert the set back to a list
-		List<Lot> uniqueLotList = new ArrayList<>(uniqueLots);
-		// Cycle fetched movements to see if they impact inventoryRowSearchList
-		for (Lot lot : uniqueLotList) {
+		Set<Integer> inventoryMedicalCodes = getMedicalCodes(inventoryRowSearchList);
+		// Fetch the lots of the movements with their current quantities, also the empty ones because some movements may have discharged them completely
+		List<Lot> lotsOfMovements = getLotsMovedBetween(movFrom, movTo, allMedicals ? null : inventoryMedicalCodes);
+		Map<String, MedicalInventoryRow> inventoryRowsByLot = getInventoryRowsByLotCode(inventoryRowSearchList);
+		// Cycle fetched lots to see if they impact inventoryRowSearchList
+		for (Lot lot : lotsOfMovements) {
 			String lotCodeOfMovement = lot.getCode();
 			String lotExpiringDate = TimeTools.formatDateTime(lot.getDueDate(), TimeTools.DD_MM_YYYY);
 			String lotInfo = GeneralData.AUTOMATICLOT_IN ? lotExpiringDate : lotCodeOfMovement;
 			Medical medical = lot.getMedical();
 			String medicalDesc = medical.getDescription();
 			Integer medicalCode = medical.getCode();
-			double mainStoreQty = 0.0;
-			// Fetch also empty lots because some movements may have discharged them completely
-			Optional<Lot> optLot = movStockInsertingManager.getLotByMedical(medical, false).stream().filter(l -> l.getCode().equals(lotCodeOfMovement))
-				.findFirst();
-			if (optLot.isPresent()) {
-				mainStoreQty = optLot.get().getMainStoreQuantity();
-			}
+			double mainStoreQty = lot.getMainStoreQuantity();
 
 			// Search for the specific Lot and Medical in inventoryRowSearchList (Lot should be enough)
-			Optional<MedicalInventoryRow> matchingRow = inventoryRowSearchList.stream()
-				.filter(row -> row.getLot().getCode().equals(lotCodeOfMovement) && row.getMedical().getCode().equals(medicalCode))
-				.findFirst();
+			MedicalInventoryRow medicalInventoryRow = inventoryRowsByLot.get(lotCodeOfMovement);
 
-			if (matchingRow.isPresent()) {
-				MedicalInventoryRow medicalInventoryRow = matchingRow.get();
+			if (medicalInventoryRow != null && medicalInventoryRow.getMedical().getCode().equals(medicalCode)) {
 				double theoQty = medicalInventoryRow.getTheoreticQty();
 				if (mainStoreQty != theoQty) {
 					lotUpdated = true;
@@ -327,7 +311,7 @@ public class MedicalInventoryManager {
 				}
 			} else {
 				// TODO: to decide if to give control to the user about this
-				if (!inventoryMedicalsList.contains(medical)) {
+				if (!inventoryMedicalCodes.contains(medicalCode)) {
 					// New medical
 					medicalAdded = true;
 					medDescriptionForNewMedical
@@ -384,37 +368,25 @@ public class MedicalInventoryManager {
 		boolean lotAdded = false;
 		boolean medicalAdded = false;
 
-		List<MovementWard> movementWards = new ArrayList<>(movWardBrowserManager.getMovementWard(inventory.getWard(), movFrom, movTo));
-		List<Movement> movementToWards = new ArrayList<>(movBrowserManager.getMovements(inventory.getWard(), movFrom, movTo));
-		List<Medical> inventoryMedicalsList = inventoryRowSearchList.stream().map(MedicalInventoryRow::getMedical).distinct().toList();
-
-		// Get all the lots from ward movements
-		List<Lot> lotOfMovements = new ArrayList<>(movementWards.stream().map(MovementWard::getLot).toList());
-		// Get all the lots from main store movements
-		lotOfMovements.addAll(movementToWards.stream().map(Movement::getLot).toList());
-		// Remove duplicates by converting the list to a set
-		Set<Lot> uniqueLots = new HashSet<>(lotOfMovements);
-		// Convert the set back to a list
-		List<Lot> uniqueLotList = new ArrayList<>(uniqueLots);
-		// Cycle fetched movements to see if they impact inventoryRowSearchList
-		for (Lot lot : uniqueLotList) {
+		Set<Integer> inventoryMedicalCodes = getMedicalCodes(inventoryRowSearchList);
+		List<Lot> lotsOfMovements = getLotsMovedInWard(inventory.getWard(), movFrom, movTo);
+		// Fetch also empty lots because some movements may have discharged them completely
+		Map<String, Double> wardQuantities = getWardQuantitiesByLotCode(inventory.getWard());
+		Map<String, MedicalInventoryRow> inventoryRowsByLot = getInventoryRowsByLotCode(inventoryRowSearchList);
+		// Cycle fetched lots to see if they impact inventoryRowSearchList
+		for (Lot lot : lotsOfMovements) {
 			String lotCode = lot.getCode();
 			String lotExpiringDate = TimeTools.formatDateTime(lot.getDueDate(), TimeTools.DD_MM_YYYY);
 			String lotInfo = GeneralData.AUTOMATICLOT_IN ? lotExpiringDate : lotCode;
 			Medical medical = lot.getMedical();
 			String medicalDesc = medical.getDescription();
 
-			Optional<MedicalWard> optMedicalWard = movWardBrowserManager.getMedicalsWard(inventory.getWard(), medical.getCode(), false).stream()
-				.filter(m -> m.getLot().getCode().equals(lotCode)).findFirst();
-
-			double wardStoreQty = optMedicalWard.isPresent() ? optMedicalWard.get().getQty() : 0.0;
+			double wardStoreQty = wardQuantities.getOrDefault(lotCode, 0.0);
 
 			// Search for the specific Lot and Medical in inventoryRowSearchList
-			Optional<MedicalInventoryRow> matchingRow = inventoryRowSearchList.stream()
-				.filter(row -> row.getLot().getCode().equals(lotCode)).findFirst();
+			MedicalInventoryRow medicalInventoryRow = inventoryRowsByLot.get(lotCode);
 
-			if (matchingRow.isPresent()) {
-				MedicalInventoryRow medicalInventoryRow = matchingRow.get();
+			if (medicalInventoryRow != null) {
 				double theoQty = medicalInventoryRow.getTheoreticQty();
 				if (wardStoreQty != theoQty) {
 					lotUpdated = true;
@@ -425,7 +397,7 @@ public class MedicalInventoryManager {
 				}
 			} else {
 				// TODO: to decide if to give control to the user about this
-				if (!inventoryMedicalsList.contains(medical)) {
+				if (!inventoryMedicalCodes.contains(medical.getCode())) {
 					// New medical
 					medicalAdded = true;
 					medDescriptionForNewMedical
@@ -496,6 +468,200 @@ public class MedicalInventoryManager {
 		// validate the inventory
 		this.validateMedicalInventoryRow(inventory, inventoryRowSearchList);
 
+		List<Movement> insertedMovements = storeInventoryMovements(inventory, inventoryRowSearchList, false);
+		String status = InventoryStatus.done.toString();
+		inventory.setStatus(status);
+		this.updateMedicalInventory(inventory, false);
+		return insertedMovements;
+	}
+
+	/**
+	 * Confirm the Inventory rows of inventory, committing the movements in batches of {@link GeneralData#INVENTORYBATCHSIZE} rows.
+	 *
+	 * @param inventory the {@link MedicalInventory}
+	 * @return List {@link Movement} inserted by this call. It could be {@code empty}.
+	 * @throws OHServiceException
+	 * @see #confirmMedicalInventoryRowInBatches(MedicalInventory, int)
+	 */
+	public List<Movement> confirmMedicalInventoryRowInBatches(MedicalInventory inventory) throws OHServiceException {
+		return confirmMedicalInventoryRowInBatches(inventory, GeneralData.INVENTORYBATCHSIZE);
+	}
+
+	/**
+	 * Confirm the Inventory rows of inventory, committing the movements in batches of rows so that the stock is not locked for the whole confirmation.
+	 * <p>
+	 * The number of confirmed rows is stored on the inventory together with each batch: if the confirmation is interrupted, calling this method
+	 * again resumes it from the first row not confirmed yet. The movements are the same that {@link #confirmMedicalInventoryRow(MedicalInventory, List)}
+	 * would insert, dated at the time of their batch. The specified inventory is not modified: read it again to get its new status.
+	 *
+	 * @param inventory the {@link MedicalInventory}
+	 * @param batchSize the number of rows confirmed in each transaction, {@link GeneralData#INVENTORYBATCHSIZE} if not positive
+	 * @return List {@link Movement} inserted by this call. It could be {@code empty}.
+	 * @throws OHServiceException
+	 */
+	public List<Movement> confirmMedicalInventoryRowInBatches(MedicalInventory inventory, int batchSize) throws OHServiceException {
+		int rowsPerBatch = getRowsPerBatch(batchSize);
+		List<MedicalInventoryRow> inventoryRows = medicalInventoryRowManager.getMedicalInventoryRowByInventoryIdOrderById(inventory.getId());
+		// the confirmation resumes from the stored number of confirmed rows, the specified inventory may be stale
+		MedicalInventory confirmingInventory = getStoredInventory(inventory);
+		int confirmedRows = confirmingInventory.getConfirmedRows();
+		if (confirmedRows == 0) {
+			// validate the inventory only before the first batch, then the stock already includes the confirmed rows
+			this.validateMedicalInventoryRow(confirmingInventory, inventoryRows);
+			checkMovementReferences(confirmingInventory);
+		}
+		List<Movement> insertedMovements = new ArrayList<>();
+		for (int from = confirmedRows; from < inventoryRows.size(); from += rowsPerBatch) {
+			int to = Math.min(from + rowsPerBatch, inventoryRows.size());
+			MedicalInventory batchInventory = confirmingInventory;
+			List<MedicalInventoryRow> batchRows = inventoryRows.subList(from, to);
+			confirmingInventory = inBatchTransaction(() -> {
+				insertedMovements.addAll(storeInventoryMovements(batchInventory, batchRows, true));
+				return updateConfirmedRows(batchInventory, to, to == inventoryRows.size());
+			});
+		}
+		if (inventoryRows.isEmpty() || confirmedRows >= inventoryRows.size()) {
+			// no batch to confirm, only mark the inventory as done
+			MedicalInventory doneInventory = confirmingInventory;
+			inBatchTransaction(() -> updateConfirmedRows(doneInventory, inventoryRows.size(), true));
+		}
+		return insertedMovements;
+	}
+
+	/**
+	 * Returns the progress of the confirmation in batches of the specified inventory.
+	 *
+	 * @param inventory the {@link MedicalInventory}
+	 * @return the percentage of the inventory rows already confirmed, {@code 100} when the inventory is done.
+	 * @throws OHServiceException
+	 */
+	public int getConfirmationProgress(MedicalInventory inventory) throws OHServiceException {
+		if (InventoryStatus.done.toString().equals(inventory.getStatus())) {
+			return 100;
+		}
+		long rows = medicalInventoryRowManager.countMedicalInventoryRowByInventoryId(inventory.getId());
+		return rows == 0 ? 0 : (int) (inventory.getConfirmedRows() * 100L / rows);
+	}
+
+	/**
+	 * Stores the number of confirmed rows of the specified inventory and, when the confirmation is complete, marks it as done.
+	 *
+	 * @param inventory the {@link MedicalInventory}
+	 * @param confirmedRows the number of confirmed rows
+	 * @param complete {@code true} if all the rows are confirmed
+	 * @return the updated {@link MedicalInventory}.
+	 * @throws OHServiceException
+	 */
+	private MedicalInventory updateConfirmedRows(MedicalInventory inventory, int confirmedRows, boolean complete) throws OHServiceException {
+		inventory.setConfirmedRows(confirmedRows);
+		if (complete) {
+			inventory.setStatus(InventoryStatus.done.toString());
+		}
+		return this.updateMedicalInventory(inventory, false);
+	}
+
+	/**
+	 * Returns the number of rows confirmed in each batch: the specified one, or {@link GeneralData#INVENTORYBATCHSIZE} if it is not positive.
+	 *
+	 * @param batchSize the requested number of rows
+	 * @return the number of rows of each batch
+	 */
+	private static int getRowsPerBatch(int batchSize) {
+		if (batchSize > 0) {
+			return batchSize;
+		}
+		// the general data may not be loaded yet
+		return Math.max(GeneralData.INVENTORYBATCHSIZE, 1);
+	}
+
+	/**
+	 * Reads the stored state of the specified inventory in a new transaction, so that the number of confirmed rows is the committed one even when
+	 * the caller has a transaction of its own. The result is a copy: the specified inventory is left untouched, so that it is not half updated when a
+	 * batch fails.
+	 *
+	 * @param inventory the {@link MedicalInventory}
+	 * @return a copy of the stored {@link MedicalInventory}.
+	 * @throws OHServiceException if the inventory is not stored anymore
+	 */
+	private MedicalInventory getStoredInventory(MedicalInventory inventory) throws OHServiceException {
+		MedicalInventory storedInventory = inBatchTransaction(() -> ioOperations.getInventoryById(inventory.getId()));
+		if (storedInventory == null) {
+			throw new OHDataValidationException(new OHExceptionMessage(MessageBundle.getMessage("angal.sql.thedatahasbeenupdatedbysomeoneelse.msg")));
+		}
+		return copyOf(storedInventory);
+	}
+
+	/**
+	 * Runs the specified work in a new transaction, committed when the work returns and rolled back when it fails.
+	 *
+	 * @param work the work to run
+	 * @return the result of the work.
+	 * @throws OHServiceException if the work fails
+	 */
+	private <T> T inBatchTransaction(BatchWork<T> work) throws OHServiceException {
+		TransactionStatus transaction = transactionManager.getTransaction(BATCH_TRANSACTION);
+		T result;
+		try {
+			result = work.run();
+		} catch (OHServiceException | RuntimeException e) {
+			transactionManager.rollback(transaction);
+			throw e;
+		}
+		transactionManager.commit(transaction);
+		return result;
+	}
+
+	@FunctionalInterface
+	private interface BatchWork<T> {
+
+		T run() throws OHServiceException;
+	}
+
+	/**
+	 * Returns a copy of the specified inventory, with the same id and version.
+	 *
+	 * @param inventory the {@link MedicalInventory}
+	 * @return the copy of the {@link MedicalInventory}.
+	 */
+	private MedicalInventory copyOf(MedicalInventory inventory) {
+		MedicalInventory copy = new MedicalInventory(inventory.getId(), inventory.getStatus(), inventory.getInventoryDate(), inventory.getUser(),
+			inventory.getInventoryReference(), inventory.getInventoryType(), inventory.getWard());
+		copy.setChargeType(inventory.getChargeType());
+		copy.setDischargeType(inventory.getDischargeType());
+		copy.setSupplier(inventory.getSupplier());
+		copy.setDestination(inventory.getDestination());
+		copy.setConfirmedRows(inventory.getConfirmedRows());
+		copy.setLock(inventory.getLock());
+		copy.setCreatedBy(inventory.getCreatedBy());
+		copy.setCreatedDate(inventory.getCreatedDate());
+		copy.setActive(inventory.getActive());
+		return copy;
+	}
+
+	/**
+	 * Checks that the reference numbers of the inventory movements are not used yet.
+	 *
+	 * @param inventory the {@link MedicalInventory}
+	 * @throws OHServiceException
+	 */
+	private void checkMovementReferences(MedicalInventory inventory) throws OHServiceException {
+		String referenceNumber = inventory.getInventoryReference();
+		if (movStockInsertingManager.refNoExists(referenceNumber + "-charge") || movStockInsertingManager.refNoExists(referenceNumber + "-discharge")) {
+			throw new OHDataValidationException(new OHExceptionMessage(MessageBundle.getMessage("angal.inventory.referencealreadyused.msg")));
+		}
+	}
+
+	/**
+	 * Inserts the charging and discharging movements that align the main store to the specified inventory rows.
+	 *
+	 * @param inventory the {@link MedicalInventory}
+	 * @param inventoryRowSearchList the {@link MedicalInventoryRow}s to confirm
+	 * @param continuation if {@code true} the movements continue a previous batch of the same inventory
+	 * @return the inserted {@link Movement}s.
+	 * @throws OHServiceException
+	 */
+	private List<Movement> storeInventoryMovements(MedicalInventory inventory, List<MedicalInventoryRow> inventoryRowSearchList, boolean continuation)
+		throws OHServiceException {
 		// get general info
 		String referenceNumber = inventory.getInventoryReference();
 		// TODO: to explore the possibility to allow charges and discharges with same referenceNumber
@@ -526,14 +692,11 @@ public class MedicalInventoryManager {
 		// create movements
 		List<Movement> insertedMovements = new ArrayList<>();
 		if (!chargeMovements.isEmpty()) {
-			insertedMovements.addAll(movStockInsertingManager.newMultipleChargingMovements(chargeMovements, chargeReferenceNumber));
+			insertedMovements.addAll(movStockInsertingManager.newMultipleChargingMovements(chargeMovements, chargeReferenceNumber, continuation));
 		}
 		if (!dischargeMovements.isEmpty()) {
-			insertedMovements.addAll(movStockInsertingManager.newMultipleDischargingMovements(dischargeMovements, dischargeReferenceNumber));
+			insertedMovements.addAll(movStockInsertingManager.newMultipleDischargingMovements(dischargeMovements, dischargeReferenceNumber, continuation));
 		}
-		String status = InventoryStatus.done.toString();
-		inventory.setStatus(status);
-		this.updateMedicalInventory(inventory, false);
 		return insertedMovements;
 	}
 
@@ -550,6 +713,69 @@ public class MedicalInventoryManager {
 		// validate the inventory
 		this.validateMedicalWardInventoryRow(inventory, inventoryRowSearchList);
 
+		storeWardInventoryMovements(inventory, inventoryRowSearchList);
+		String status = InventoryStatus.done.toString();
+		inventory.setStatus(status);
+		this.updateMedicalInventory(inventory, false);
+		return true;
+	}
+
+	/**
+	 * Confirm the Inventory rows of ward inventory, committing the movements in batches of {@link GeneralData#INVENTORYBATCHSIZE} rows.
+	 *
+	 * @param inventory the {@link MedicalInventory}
+	 * @return {@code true} when the inventory is done.
+	 * @throws OHServiceException
+	 * @see #confirmMedicalWardInventoryRowInBatches(MedicalInventory, int)
+	 */
+	public boolean confirmMedicalWardInventoryRowInBatches(MedicalInventory inventory) throws OHServiceException {
+		return confirmMedicalWardInventoryRowInBatches(inventory, GeneralData.INVENTORYBATCHSIZE);
+	}
+
+	/**
+	 * Confirm the Inventory rows of ward inventory, committing the movements in batches of rows. As for the main store, the number of confirmed rows
+	 * is stored with each batch and an interrupted confirmation is resumed by calling this method again. The specified inventory is not modified.
+	 *
+	 * @param inventory the {@link MedicalInventory}
+	 * @param batchSize the number of rows confirmed in each transaction, {@link GeneralData#INVENTORYBATCHSIZE} if not positive
+	 * @return {@code true} when the inventory is done.
+	 * @throws OHServiceException
+	 * @see #confirmMedicalInventoryRowInBatches(MedicalInventory, int)
+	 */
+	public boolean confirmMedicalWardInventoryRowInBatches(MedicalInventory inventory, int batchSize) throws OHServiceException {
+		int rowsPerBatch = getRowsPerBatch(batchSize);
+		List<MedicalInventoryRow> inventoryRows = medicalInventoryRowManager.getMedicalInventoryRowByInventoryIdOrderById(inventory.getId());
+		MedicalInventory confirmingInventory = getStoredInventory(inventory);
+		int confirmedRows = confirmingInventory.getConfirmedRows();
+		if (confirmedRows == 0) {
+			// validate the inventory only before the first batch, then the stock already includes the confirmed rows
+			this.validateMedicalWardInventoryRow(confirmingInventory, inventoryRows);
+		}
+		for (int from = confirmedRows; from < inventoryRows.size(); from += rowsPerBatch) {
+			int to = Math.min(from + rowsPerBatch, inventoryRows.size());
+			MedicalInventory batchInventory = confirmingInventory;
+			List<MedicalInventoryRow> batchRows = inventoryRows.subList(from, to);
+			confirmingInventory = inBatchTransaction(() -> {
+				storeWardInventoryMovements(batchInventory, batchRows);
+				return updateConfirmedRows(batchInventory, to, to == inventoryRows.size());
+			});
+		}
+		if (inventoryRows.isEmpty() || confirmedRows >= inventoryRows.size()) {
+			// no batch to confirm, only mark the inventory as done
+			MedicalInventory doneInventory = confirmingInventory;
+			inBatchTransaction(() -> updateConfirmedRows(doneInventory, inventoryRows.size(), true));
+		}
+		return true;
+	}
+
+	/**
+	 * Inserts the ward movements that align the ward stock to the specified inventory rows.
+	 *
+	 * @param inventory the {@link MedicalInventory}
+	 * @param inventoryRowSearchList the {@link MedicalInventoryRow}s to confirm
+	 * @throws OHServiceException
+	 */
+	private void storeWardInventoryMovements(MedicalInventory inventory, List<MedicalInventoryRow> inventoryRowSearchList) throws OHServiceException {
 		// get general info
 		Ward selectedWard = wardManager.findWard(inventory.getWard());
 		LocalDateTime now = TimeTools.getNow();
@@ -565,10 +791,6 @@ public class MedicalInventoryManager {
 					MessageBundle.getMessage("angal.medicalstockward.rectify.pieces"), currentLot));
 			}
 		}
-		String status = InventoryStatus.done.toString();
-		inventory.setStatus(status);
-		this.updateMedicalInventory(inventory, false);
-		return true;
 	}
 
 	private void checkReference(MedicalInventory medicalInventory) throws OHServiceException {
@@ -602,60 +824,126 @@ public class MedicalInventoryManager {
 		List<MedicalInventoryRow> inventoryRowList = medicalInventoryRowManager.getMedicalInventoryRowByInventoryId(id);
 		// TODO: To decide if to make allMedicals parameter
 		boolean allMedicals = true;
-		List<Movement> movs = new ArrayList<>();
-		List<Medical> inventoryMedicalsList = inventoryRowList.stream()
-			.map(MedicalInventoryRow::getMedical)
-			.distinct()
-			.collect(Collectors.toList());
-		if (allMedicals) {
-			// Fetch all movements without filtering by medical code
-			movs.addAll(movBrowserManager.getMovements(null, null, null, null, movFrom, movTo, null, null, null, null));
-		} else {
-			// Fetch only movements concerning inventoryRowSearchList list
-			for (Medical medical : inventoryMedicalsList) {
-				movs.addAll(movBrowserManager.getMovements(medical.getCode(), null, null, null, movFrom, movTo, null, null, null, null));
-			}
-		}
-		// Get all the lot of the movements
-		List<Lot> lotOfMovements = movs.stream().map(Movement::getLot).collect(Collectors.toList());
-		// Remove duplicates by converting the list to a set
-		Set<Lot> uniqueLots = new HashSet<>(lotOfMovements);
-		// Convert the set back to a list
-		List<Lot> uniqueLotList = new ArrayList<>(uniqueLots);
-		// Cycle fetched movements to see if they impact inventoryRowSearchList
-		for (Lot lot : uniqueLotList) {
+		// Fetch the lots of the movements with their current quantities, also the empty ones because some movements may have discharged them completely
+		List<Lot> lotsOfMovements = getLotsMovedBetween(movFrom, movTo, allMedicals ? null : getMedicalCodes(inventoryRowList));
+		Map<String, MedicalInventoryRow> inventoryRowsByLot = getInventoryRowsByLotCode(inventoryRowList);
+		List<MedicalInventoryRow> inventoryRowsToSave = new ArrayList<>();
+		// Cycle fetched lots to see if they impact inventoryRowSearchList
+		for (Lot lot : lotsOfMovements) {
 			String lotCodeOfMovement = lot.getCode();
 			Medical medical = lot.getMedical();
 			Integer medicalCode = medical.getCode();
-			// Fetch also empty lots because some movements may have discharged them completely
-			Optional<Lot> optLot = movStockInsertingManager.getLotByMedical(medical, false).stream().filter(l -> l.getCode().equals(lotCodeOfMovement))
-				.findFirst();
-			double mainStoreQty = optLot.get().getMainStoreQuantity();
+			double mainStoreQty = lot.getMainStoreQuantity();
 
 			// Search for the specific Lot and Medical in inventoryRowSearchList (Lot should be enough)
-			Optional<MedicalInventoryRow> matchingRow = inventoryRowList.stream()
-				.filter(row -> row.getLot().getCode().equals(lotCodeOfMovement) && row.getMedical().getCode().equals(medicalCode))
-				.findFirst();
+			MedicalInventoryRow medicalInventoryRow = inventoryRowsByLot.get(lotCodeOfMovement);
 
-			if (matchingRow.isPresent()) {
-				MedicalInventoryRow medicalInventoryRow = matchingRow.get();
+			if (medicalInventoryRow != null && medicalInventoryRow.getMedical().getCode().equals(medicalCode)) {
 				double theoQty = medicalInventoryRow.getTheoreticQty();
 				if (mainStoreQty != theoQty) {
 					// Update Lot
 					medicalInventoryRow.setTheoreticQty(mainStoreQty);
-					medicalInventoryRowManager.updateMedicalInventoryRow(medicalInventoryRow);
+					inventoryRowsToSave.add(medicalInventoryRow);
 				}
 			} else {
 				// TODO: to decide if to give control to the user about this
 				double realQty = mainStoreQty;
-				MedicalInventoryRow newMedicalInventoryRow = new MedicalInventoryRow(null, mainStoreQty, realQty, inventory, medical,
-					lot);
-				medicalInventoryRowManager.newMedicalInventoryRow(newMedicalInventoryRow);
+				inventoryRowsToSave.add(new MedicalInventoryRow(null, mainStoreQty, realQty, inventory, medical, lot));
 			}
 		}
+		// Write back only the changed and the new rows
+		if (!inventoryRowsToSave.isEmpty()) {
+			medicalInventoryRowManager.saveMedicalInventoryRows(inventoryRowsToSave);
+		}
 		return this.updateMedicalInventory(inventory, true);
 	}
 
+	/**
+	 * Returns the lots moved in the main store within the specified dates, with their current quantities.
+	 *
+	 * @param movFrom the lower bound for the movement date range.
+	 * @param movTo the upper bound for the movement date range.
+	 * @param medicalCodes the medicals to restrict the lots to, or {@code null} for all medicals.
+	 * @return the list of {@link Lot}s.
+	 * @throws OHServiceException
+	 */
+	private List<Lot> getLotsMovedBetween(LocalDateTime movFrom, LocalDateTime movTo, Set<Integer> medicalCodes) throws OHServiceException {
+		List<Lot> lots = movStockInsertingManager.getLotsMovedBetween(movFrom, movTo);
+		if (medicalCodes != null) {
+			lots.removeIf(lot -> !medicalCodes.contains(lot.getMedical().getCode()));
+		}
+		return lots;
+	}
+
+	/**
+	 * Returns the distinct lots of the ward movements and of the main store movements to the ward within the specified dates, expiring first on top.
+	 *
+	 * @param wardCode the ward code.
+	 * @param movFrom the lower bound for the movement date range.
+	 * @param movTo the upper bound for the movement date range.
+	 * @return the {@link Lot}s.
+	 * @throws OHServiceException
+	 */
+	private List<Lot> getLotsMovedInWard(String wardCode, LocalDateTime movFrom, LocalDateTime movTo) throws OHServiceException {
+		Map<String, Lot> lotsByCode = new HashMap<>();
+		for (MovementWard movementWard : movWardBrowserManager.getMovementWard(wardCode, movFrom, movTo)) {
+			lotsByCode.putIfAbsent(movementWard.getLot().getCode(), movementWard.getLot());
+		}
+		for (Movement movement : movBrowserManager.getMovements(wardCode, movFrom, movTo)) {
+			lotsByCode.putIfAbsent(movement.getLot().getCode(), movement.getLot());
+		}
+		List<Lot> lots = new ArrayList<>(lotsByCode.values());
+		lots.sort(Comparator.comparing(Lot::getDueDate, Comparator.nullsLast(Comparator.naturalOrder())).thenComparing(Lot::getCode));
+		return lots;
+	}
+
+	/**
+	 * Returns the current quantities of all the lots in the specified ward, empty lots included.
+	 *
+	 * @param wardCode the ward code.
+	 * @return a map of the quantities by lot code.
+	 * @throws OHServiceException
+	 */
+	private Map<String, Double> getWardQuantitiesByLotCode(String wardCode) throws OHServiceException {
+		Map<String, Double> quantities = new HashMap<>();
+		for (MedicalWard medicalWard : movWardBrowserManager.getMedicalsWard(wardCode, false)) {
+			if (medicalWard.getLot() != null) {
+				quantities.putIfAbsent(medicalWard.getLot().getCode(), medicalWard.getQty());
+			}
+		}
+		return quantities;
+	}
+
+	/**
+	 * Indexes the specified inventory rows by lot code, keeping the first row of each lot.
+	 *
+	 * @param inventoryRows the {@link MedicalInventoryRow}s.
+	 * @return a map of the {@link MedicalInventoryRow}s by lot code.
+	 */
+	private Map<String, MedicalInventoryRow> getInventoryRowsByLotCode(List<MedicalInventoryRow> inventoryRows) {
+		Map<String, MedicalInventoryRow> inventoryRowsByLot = new HashMap<>();
+		for (MedicalInventoryRow inventoryRow : inventoryRows) {
+			if (inventoryRow.getLot() != null) {
+				inventoryRowsByLot.putIfAbsent(inventoryRow.getLot().getCode(), inventoryRow);
+			}
+		}
+		return inventoryRowsByLot;
+	}
+
+	/**
+	 * Returns the codes of the medicals of the specified inventory rows.
+	 *
+	 * @param inventoryRows the {@link MedicalInventoryRow}s.
+	 * @return the set of medical codes.
+	 */
+	private Set<Integer> getMedicalCodes(List<MedicalInventoryRow> inventoryRows) {
+		Set<Integer> medicalCodes = new HashSet<>();
+		for (MedicalInventoryRow inventoryRow : inventoryRows) {
+			medicalCodes.add(inventoryRow.getMedical().getCode());
+		}
+		return medicalCodes;
+	}
+
 	/**
 	 * Return the number of inventories by {@link InventoryType}.
 	 * 
@@ -733,49 +1021,40 @@ public class MedicalInventoryManager {
 		LocalDateTime movFrom = inventory.getInventoryDate();
 		LocalDateTime movTo = TimeTools.getNow();
 
-		List<MovementWard> movementWards = new ArrayList<>(movWardBrowserManager.getMovementWard(inventory.getWard(), movFrom, movTo));
-		List<Movement> movementToWards = new ArrayList<>(movBrowserManager.getMovements(inventory.getWard(), movFrom, movTo));
 		List<MedicalInventoryRow> inventoryRowList = medicalInventoryRowManager.getMedicalInventoryRowByInventoryId(inventory.getId());
-
-		// Get all the lots from the ward movements
-		List<Lot> lotOfMovements = new ArrayList<>(movementWards.stream().map(MovementWard::getLot).toList());
-		// Get all the lots from the main store movements
-		lotOfMovements.addAll(movementToWards.stream().map(Movement::getLot).toList());
-		// Remove duplicates by converting the list to a set
-		Set<Lot> uniqueLots = new HashSet<>(lotOfMovements);
-		// Convert the set back to a list
-		List<Lot> uniqueLotList = new ArrayList<>(uniqueLots);
-		// Cycle fetched movements to see if they impact inventoryRowSearchList
-		for (Lot lot : uniqueLotList) {
+		List<Lot> lotsOfMovements = getLotsMovedInWard(inventory.getWard(), movFrom, movTo);
+		// Fetch also empty lots because some movements may have discharged them completely
+		Map<String, Double> wardQuantities = getWardQuantitiesByLotCode(inventory.getWard());
+		Map<String, MedicalInventoryRow> inventoryRowsByLot = getInventoryRowsByLotCode(inventoryRowList);
+		List<MedicalInventoryRow> inventoryRowsToSave = new ArrayList<>();
+		// Cycle fetched lots to see if they impact inventoryRowSearchList
+		for (Lot lot : lotsOfMovements) {
 			String lotCode = lot.getCode();
 			Medical medical = lot.getMedical();
 			Integer medicalCode = medical.getCode();
-			// Fetch also empty lots because some movements may have discharged them completely
-			Optional<MedicalWard> optMedicalWard = movWardBrowserManager.getMedicalsWard(inventory.getWard(), medical.getCode(), false).stream()
-				.filter(m -> m.getLot().getCode().equals(lotCode)).findFirst();
-			double wardStoreQty = optMedicalWard.isPresent() ? optMedicalWard.get().getQty() : 0.0;
+			double wardStoreQty = wardQuantities.getOrDefault(lotCode, 0.0);
 
 			// Search for the specific Lot and Medical in inventoryRowSearchList (Lot should be enough)
-			Optional<MedicalInventoryRow> matchingRow = inventoryRowList.stream()
-				.filter(row -> row.getLot().getCode().equals(lotCode) && row.getMedical().getCode().equals(medicalCode))
-				.findFirst();
+			MedicalInventoryRow medicalInventoryRow = inventoryRowsByLot.get(lotCode);
 
-			if (matchingRow.isPresent()) {
-				MedicalInventoryRow medicalInventoryRow = matchingRow.get();
+			if (medicalInventoryRow != null && medicalInventoryRow.getMedical().getCode().equals(medicalCode)) {
 				double theoQty = medicalInventoryRow.getTheoreticQty();
 				if (wardStoreQty != theoQty) {
 					// Update Lot
 					medicalInventoryRow.setTheoreticQty(wardStoreQty);
 					medicalInventoryRow.setRealqty(wardStoreQty);
-					medicalInventoryRowManager.updateMedicalInventoryRow(medicalInventoryRow);
+					inventoryRowsToSave.add(medicalInventoryRow);
 				}
 			} else {
 				// TODO: to decide if to give control to the user about this
 				double realQty = wardStoreQty;
-				MedicalInventoryRow newMedicalInventoryRow = new MedicalInventoryRow(null, wardStoreQty, realQty, inventory, medical, lot);
-				medicalInventoryRowManager.newMedicalInventoryRow(newMedicalInventoryRow);
+				inventoryRowsToSave.add(new MedicalInventoryRow(null, wardStoreQty, realQty, inventory, medical, lot));
 			}
 		}
+		// Write back only the changed and the new rows
+		if (!inventoryRowsToSave.isEmpty()) {
+			medicalInventoryRowManager.saveMedicalInventoryRows(inventoryRowsToSave);
+		}
 		return this.updateMedicalInventory(inventory, true);
 	}
 }
@@ -72,6 +72,20 @@ public class MedicalInventoryRowManager {
 		return ioOperation.updateMedicalInventoryRow(medicalInventoryRow);
 	}
 
+	/**
+	 * Insert new or update existing {@link MedicalInventoryRow}s, all at once.
+	 *
+	 * @param medicalInventoryRows the {@link MedicalInventoryRow}s to save.
+	 * @return the saved {@link MedicalInventoryRow}s.
+	 * @throws OHServiceException
+	 */
+	public List<MedicalInventoryRow> saveMedicalInventoryRows(List<MedicalInventoryRow> medicalInventoryRows) throws OHServiceException {
+		for (MedicalInventoryRow medicalInventoryRow : medicalInventoryRows) {
+			validateMedicalInventoryRow(medicalInventoryRow);
+		}
+		return ioOperation.saveMedicalInventoryRows(medicalInventoryRows);
+	}
+
 	/**
 	 * Delete the specified {@link MedicalInventoryRow}.
 	 * 
@@ -93,6 +107,28 @@ public class MedicalInventoryRowManager {
 		return ioOperation.getMedicalInventoryRowByInventoryId(inventoryId);
 	}
 
+	/**
+	 * Return the {@link MedicalInventoryRow}s of the specified inventory in the order they were inserted.
+	 *
+	 * @param inventoryId the Inventory Id.
+	 * @return the list of {@link MedicalInventoryRow}s. It could be {@code empty}.
+	 * @throws OHServiceException
+	 */
+	public List<MedicalInventoryRow> getMedicalInventoryRowByInventoryIdOrderById(int inventoryId) throws OHServiceException {
+		return ioOperation.getMedicalInventoryRowByInventoryIdOrderById(inventoryId);
+	}
+
+	/**
+	 * Return the number of {@link MedicalInventoryRow}s of the specified inventory.
+	 *
+	 * @param inventoryId the Inventory Id.
+	 * @return the number of rows.
+	 * @throws OHServiceException
+	 */
+	public long countMedicalInventoryRowByInventoryId(int inventoryId) throws OHServiceException {
+		return ioOperation.countMedicalInventoryRowByInventoryId(inventoryId);
+	}
+
 	/**
 	 * Delete a list of inventory rows {@link MedicalInventoryRow}s
 	 *
@@ -86,6 +86,12 @@ public class MedicalInventory extends Auditable<String> {
 
 	@Column(name = "MINVT_DESTINATION")
 	private String destination;
+
+	/**
+	 * Number of inventory rows already confirmed when the confirmation runs in batches
+	 */
+	@Column(name = "MINVT_CONFIRMED_ROWS", columnDefinition = "INT(11) NOT NULL DEFAULT 0")
+	private int confirmedRows;
 	
 	@Version
 	@Column(name="MINVT_LOCK")
@@ -223,4 +229,12 @@ public class MedicalInventory extends Auditable<String> {
 	public void setDestination(String destination) {
 		this.destination = destination;
 	}
+
+	public int getConfirmedRows() {
+		return confirmedRows;
+	}
+
+	public void setConfirmedRows(int confirmedRows) {
+		this.confirmedRows = confirmedRows;
+	}
 }
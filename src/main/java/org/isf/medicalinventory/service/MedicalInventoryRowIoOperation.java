@@ -63,6 +63,17 @@ public class MedicalInventoryRowIoOperation {
 		return repository.save(medicalInventoryRow);
 	}
 	
+	/**
+	 * Insert or update the specified {@link MedicalInventoryRow}s at once.
+	 *
+	 * @param medicalInventoryRows - the {@link MedicalInventoryRow}s to save.
+	 * @return the saved {@link MedicalInventoryRow}s.
+	 * @throws OHServiceException
+	 */
+	public List<MedicalInventoryRow> saveMedicalInventoryRows(List<MedicalInventoryRow> medicalInventoryRows) throws OHServiceException {
+		return repository.saveAll(medicalInventoryRows);
+	}
+
 	/**
 	 * Delete the specified {@link MedicalInventoryRow}.
 	 * @param medicalInventoryRow - the {@link MedicalInventoryRow} to delete.
@@ -83,6 +94,28 @@ public class MedicalInventoryRowIoOperation {
 		return repository.findByInventoryId(inventoryId);
 	}
 
+	/**
+	 * Return the {@link MedicalInventoryRow}s of the specified inventory in the order they were inserted.
+	 *
+	 * @param inventoryId - the Inventory Id.
+	 * @return the list of {@link MedicalInventoryRow}s. It could be {@code empty}.
+	 * @throws OHServiceException
+	 */
+	public List<MedicalInventoryRow> getMedicalInventoryRowByInventoryIdOrderById(int inventoryId) throws OHServiceException {
+		return repository.findByInventoryIdOrderById(inventoryId);
+	}
+
+	/**
+	 * Return the number of {@link MedicalInventoryRow}s of the specified inventory.
+	 *
+	 * @param inventoryId - the Inventory Id.
+	 * @return the number of rows.
+	 * @throws OHServiceException
+	 */
+	public long countMedicalInventoryRowByInventoryId(int inventoryId) throws OHServiceException {
+		return repository.countByInventoryId(inventoryId);
+	}
+
 	/**
 	 * Return {@link MedicalInventoryRow} for passed param.
 	 
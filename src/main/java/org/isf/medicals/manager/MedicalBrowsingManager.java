@@ -22,6 +22,7 @@
 package org.isf.medicals.manager;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 import org.isf.generaldata.MessageBundle;
@@ -81,6 +82,17 @@ public class MedicalBrowsingManager {
 		return ioOperations.getMedicals(null, false);
 	}
 
+	/**
+	 * Returns the medicals with the specified codes.
+	 *
+	 * @param codes the medical codes.
+	 * @return the retrieved medicals.
+	 * @throws OHServiceException
+	 */
+	public List<Medical> getMedicalsByCodes(Collection<Integer> codes) throws OHServiceException {
+		return ioOperations.getMedicalsByCodes(codes);
+	}
+
 	/**
 	 * Returns the medicals pageable.
 	 *
@@ -0,0 +1,61 @@
+/*
+ * Open Hospital (www.open-hospital.org)
+ * Copyright © 2006-2024 Informatici Senza Frontiere (info@informaticisenzafrontiere.org)
+ *
+ * Open Hospital is a free and open source software for healthcare data management.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * https://www.gnu.org/licenses/gpl-3.0-standalone.html
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.isf.medicals.service;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+import org.isf.medicals.model.Medical;
+import org.springframework.transaction.annotation.Transactional;
+
+@Transactional
+public class MedicalsIoOperationRepositoryImpl implements MedicalsIoOperationRepositoryCustom {
+
+	@PersistenceContext
+	private EntityManager entityManager;
+
+	/**
+	 * Adds the specified quantities to the incoming and outgoing quantities of the {@link Medical} with a single atomic update, so that concurrent
+	 * movements of the same medical never overwrite each other. The lock version is increased as well, so that an edit based on a stale copy of the
+	 * medical fails instead of restoring old quantities.
+	 * 
+	 * @param medicalCode the medical code.
+	 * @param incomingQuantity the quantity to add to the incoming quantity.
+	 * @param outgoingQuantity the quantity to add to the outgoing quantity.
+	 * @return the updated {@link Medical} or {@code null} if not found.
+	 */
+	@Override
+	public Medical updateQuantities(int medicalCode, double incomingQuantity, double outgoingQuantity) {
+		int updated = entityManager.createQuery("UPDATE Medical m SET m.inqty = m.inqty + :incomingQuantity, m.outqty = m.outqty + :outgoingQuantity, "
+						+ "m.lock = m.lock + 1 WHERE m.code = :code")
+			.setParameter("incomingQuantity", incomingQuantity)
+			.setParameter("outgoingQuantity", outgoingQuantity)
+			.setParameter("code", medicalCode)
+			.executeUpdate();
+		if (updated == 0) {
+			return null;
+		}
+		Medical medical = entityManager.find(Medical.class, medicalCode);
+		entityManager.refresh(medical);
+		return medical;
+	}
+}
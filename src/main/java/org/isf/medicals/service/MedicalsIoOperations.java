@@ -21,12 +21,14 @@
  */
 package org.isf.medicals.service;
 
+import java.util.Collection;
 import java.util.List;
 
 import org.isf.medicals.model.Medical;
 import org.isf.medicalstock.service.MovementIoOperationRepository;
 import org.isf.utils.db.TranslateOHServiceException;
 import org.isf.utils.exception.OHServiceException;
+import org.isf.utils.exception.model.OHExceptionMessage;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -87,6 +89,16 @@ public class MedicalsIoOperations {
 		return getMedicals(null, false);
 	}
 
+	/**
+	 * Retrieves the stored {@link Medical}s with the specified codes.
+	 * @param codes the medical codes.
+	 * @return the stored medicals.
+	 * @throws OHServiceException if an error occurs retrieving the stored medicals.
+	 */
+	public List<Medical> getMedicalsByCodes(Collection<Integer> codes) throws OHServiceException {
+		return repository.findAllById(codes);
+	}
+
 	/**
 	 * Retrieves all stored {@link Medical}s.
 	 * If a description value is provided, the medicals are filtered by the description.
@@ -241,6 +253,22 @@ public class MedicalsIoOperations {
 		return repository.save(medical);
 	}
 
+	/**
+	 * Adds the specified quantities to the incoming and outgoing quantities of the specified {@link Medical} with an atomic update.
+	 * @param medicalCode the medical code.
+	 * @param incomingQuantity the quantity to add to the incoming quantity (remove if negative).
+	 * @param outgoingQuantity the quantity to add to the outgoing quantity (remove if negative).
+	 * @return the updated {@link Medical} object.
+	 * @throws OHServiceException if the medical does not exist.
+	 */
+	public Medical updateMedicalQuantities(int medicalCode, double incomingQuantity, double outgoingQuantity) throws OHServiceException {
+		Medical medical = repository.updateQuantities(medicalCode, incomingQuantity, outgoingQuantity);
+		if (medical == null) {
+			throw new OHServiceException(new OHExceptionMessage("Medical '" + medicalCode + "' not found."));
+		}
+		return medical;
+	}
+
 	/**
 	 * Checks if the specified {@link Medical} is referenced in stock movement.
 	 * @param code the medical code.
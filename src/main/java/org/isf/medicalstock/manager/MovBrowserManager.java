@@ -21,8 +21,10 @@
  */
 package org.isf.medicalstock.manager;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 
 import org.isf.generaldata.MessageBundle;
 import org.isf.medicalinventory.model.MedicalInventoryRow;
@@ -31,7 +33,6 @@ import org.isf.medicals.model.Medical;
 import org.isf.medicals.service.MedicalsIoOperations;
 import org.isf.medicalstock.model.Lot;
 import org.isf.medicalstock.model.Movement;
-import org.isf.medicalstock.service.LotIoOperationRepository;
 import org.isf.medicalstock.service.MedicalStockIoOperations;
 import org.isf.medicalstockward.manager.MovWardBrowserManager;
 import org.isf.medicalstockward.model.MedicalWard;
@@ -41,7 +42,10 @@ import org.isf.medstockmovtype.model.MovementType;
 import org.isf.utils.exception.OHDataValidationException;
 import org.isf.utils.exception.OHServiceException;
 import org.isf.utils.exception.model.OHExceptionMessage;
+import org.isf.utils.pagination.PageInfo;
+import org.isf.utils.pagination.PagedResponse;
 import org.isf.ward.model.Ward;
+import org.springframework.data.domain.Page;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -50,8 +54,6 @@ public class MovBrowserManager {
 
 	private final MedicalStockIoOperations ioOperations;
 
-	private final LotIoOperationRepository lotRepository;
-
 	private final MedicalsIoOperations medicalsIoOperation;
 
 	private final MedicalDsrStockMovementTypeBrowserManager medicalDsrStockMovTypeManager;
@@ -60,11 +62,10 @@ public class MovBrowserManager {
 
 	private final MedicalInventoryRowIoOperation medicalInventoryRowIoOperation;
 
-	public MovBrowserManager(MedicalStockIoOperations ioOperations, LotIoOperationRepository lotRepository, MedicalsIoOperations medicalsIoOperation,
+	public MovBrowserManager(MedicalStockIoOperations ioOperations, MedicalsIoOperations medicalsIoOperation,
 		MedicalDsrStockMovementTypeBrowserManager medicalDsrStockMovTypeManager, MovWardBrowserManager movWardBrowserManager,
 		MedicalInventoryRowIoOperation medicalInventoryRowIoOperation) {
 		this.ioOperations = ioOperations;
-		this.lotRepository = lotRepository;
 		this.medicalsIoOperation = medicalsIoOperation;
 		this.medicalDsrStockMovTypeManager = medicalDsrStockMovTypeManager;
 		this.movWardBrowserManager = movWardBrowserManager;
@@ -149,6 +150,45 @@ public class MovBrowserManager {
 		return ioOperations.getMovements(medicalCode, medicalType, wardId, movType, movFrom, movTo, lotPrepFrom, lotPrepTo, lotDueFrom, lotDueTo);
 	}
 
+	/**
+	 * Retrieves a page of the {@link Movement}s with the specified criteria.
+	 *
+	 * @param medicalCode the medical code.
+	 * @param medicalType the medical type.
+	 * @param wardId the ward type.
+	 * @param movType the movement type.
+	 * @param movFrom the lower bound for the movement date range.
+	 * @param movTo the upper bound for the movement date range.
+	 * @param lotPrepFrom the lower bound for the lot preparation date range.
+	 * @param lotPrepTo the upper bound for the lot preparation date range.
+	 * @param lotDueFrom the lower bound for the lot due date range.
+	 * @param lotDueTo the lower bound for the lot due date range.
+	 * @param page the page number.
+	 * @param size the page size.
+	 * @return a {@link PagedResponse} object that contains the {@link Movement}s.
+	 * @throws OHServiceException
+	 */
+	public PagedResponse<Movement> getMovementsPageable(Integer medicalCode, String medicalType,
+		String wardId, String movType, LocalDateTime movFrom, LocalDateTime movTo,
+		LocalDateTime lotPrepFrom, LocalDateTime lotPrepTo,
+		LocalDateTime lotDueFrom, LocalDateTime lotDueTo, int page, int size) throws OHServiceException {
+
+		check(movFrom, movTo, "angal.medicalstock.chooseavalidmovementdate.msg");
+		check(lotPrepFrom, lotPrepTo, "angal.medicalstock.chooseavalidmovementdate.msg");
+		check(lotDueFrom, lotDueTo, "angal.medicalstock.chooseavalidduedate.msg");
+
+		Page<Movement> movements = ioOperations.getMovementsPageable(medicalCode, medicalType, wardId, movType, movFrom, movTo, lotPrepFrom, lotPrepTo,
+			lotDueFrom, lotDueTo, page, size);
+		return setPaginationData(movements);
+	}
+
+	PagedResponse<Movement> setPaginationData(Page<Movement> pages) {
+		PagedResponse<Movement> data = new PagedResponse<>();
+		data.setData(pages.getContent());
+		data.setPageInfo(PageInfo.from(pages));
+		return data;
+	}
+
 	private void check(LocalDateTime from, LocalDateTime to, String errMsgKey) throws OHDataValidationException {
 		if (from == null || to == null) {
 			if (!(from == null && to == null)) {
@@ -158,6 +198,29 @@ public class MovBrowserManager {
 		}
 	}
 
+	/**
+	 * Retrieves the main store stock of the specified {@link Medical} at the end of the specified day.
+	 *
+	 * @param medical the medical.
+	 * @param date the day.
+	 * @return the stock quantity.
+	 * @throws OHServiceException
+	 */
+	public int getStockAt(Medical medical, LocalDate date) throws OHServiceException {
+		return ioOperations.getStockAt(medical, date);
+	}
+
+	/**
+	 * Retrieves the main store stock of all the {@link Medical}s at the end of the specified day.
+	 *
+	 * @param date the day.
+	 * @return the stock quantities by medical code, medicals without movements until that day are not included.
+	 * @throws OHServiceException
+	 */
+	public Map<Integer, Integer> getStockAt(LocalDate date) throws OHServiceException {
+		return ioOperations.getStockAt(date);
+	}
+
 	/**
 	 * Get the last Movement.
 	 *
@@ -185,15 +248,14 @@ public class MovBrowserManager {
 		LocalDateTime date = lastMovement.getDate();
 
 		if (movType.getType().contains("+")) {
-			medical.setInqty(medical.getInqty() - quantity);
-			medicalsIoOperation.updateMedical(medical);
+			medicalsIoOperation.updateMedicalQuantities(medicalCode, -quantity, 0);
 			List<Movement> movementWithSameLot = ioOperations.getMovementByLot(lot);
 			ioOperations.deleteMovement(lastMovement);
 			if (movementWithSameLot.size() == 1) {
 				String lotCode = lot.getCode();
 				MedicalInventoryRow medicalInventoryRow = medicalInventoryRowIoOperation.getMedicalInventoryRowByMedicalCodeAndLotCode(medicalCode, lotCode);
 				if (medicalInventoryRow == null) {
-					lotRepository.deleteById(lotCode);
+					ioOperations.deleteLot(lot);
 				} else {
 					throw new OHServiceException(new OHExceptionMessage(MessageBundle.getMessage(
 						"angal.medicalstock.notpossibletodeletethismovementbecauseitisrelatedtoaninventory.msg")));
@@ -217,8 +279,7 @@ public class MovBrowserManager {
 			} else {
 				movWardBrowserManager.updateMedicalWard(medWard);
 			}
-			medical.setOutqty(medical.getOutqty() - quantity);
-			medicalsIoOperation.updateMedical(medical);
+			medicalsIoOperation.updateMedicalQuantities(medicalCode, 0, -quantity);
 
 			ioOperations.deleteMovement(lastMovement);
 		}
@@ -24,12 +24,16 @@ package org.isf.medicalstock.manager;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.isf.generaldata.GeneralData;
 import org.isf.generaldata.MessageBundle;
 import org.isf.medicals.model.Medical;
 import org.isf.medicals.service.MedicalsIoOperations;
+import org.isf.medicalstock.model.DischargePlan;
 import org.isf.medicalstock.model.Lot;
 import org.isf.medicalstock.model.Movement;
 import org.isf.medicalstock.service.LotIoOperationRepository;
@@ -285,6 +289,22 @@ public class MovStockInsertingManager {
 		return ioOperations.getLotsByMedical(medical, removeEmpty);
 	}
 
+	/**
+	 * Retrieves all the {@link Lot}s associated to the specified {@link Medical}s, expiring first on top, zero quantities will be stripped out if
+	 * {@code removeEmpty} is set to true.
+	 *
+	 * @param medicals the medicals.
+	 * @param removeEmpty
+	 * @return a map of the retrieved {@link Lot}s by medical code.
+	 * @throws OHServiceException
+	 */
+	public Map<Integer, List<Lot>> getLotsByMedicals(Collection<Medical> medicals, boolean removeEmpty) throws OHServiceException {
+		if (medicals == null || medicals.isEmpty()) {
+			return new HashMap<>();
+		}
+		return ioOperations.getLotsByMedicals(medicals, removeEmpty);
+	}
+
 	/**
 	 * Checks if the provided quantity is under the medical limits.
 	 *
@@ -331,10 +351,25 @@ public class MovStockInsertingManager {
 	@Transactional(rollbackFor = OHServiceException.class)
 	@TranslateOHServiceException
 	public List<Movement> newMultipleChargingMovements(List<Movement> movements, String referenceNumber) throws OHServiceException {
+		return newMultipleChargingMovements(movements, referenceNumber, false);
+	}
+
+	/**
+	 * Insert a list of charging {@link Movement}s and related {@link Lot}s
+	 *
+	 * @param movements the list of {@link Movement}s
+	 * @param referenceNumber the reference number to be set for all movements if {@link null}, each movements must have a different referenceNumber
+	 * @param continuation if {@code true} the movements continue a previous insertion with the same referenceNumber, which is not checked again
+	 * @return a list of inserted {@link Movement}s.
+	 * @throws OHServiceException
+	 */
+	@Transactional(rollbackFor = OHServiceException.class)
+	@TranslateOHServiceException
+	public List<Movement> newMultipleChargingMovements(List<Movement> movements, String referenceNumber, boolean continuation) throws OHServiceException {
 
 		// TODO: verify the need of this checkReference in the whole class
 		boolean checkReference = referenceNumber == null; // referenceNumber == null, each movement should have referenceNumber set
-		if (!checkReference) {
+		if (!checkReference && !continuation) {
 			// referenceNumber != null, all movement will have same referenceNumber, we check only once for all
 			List<OHExceptionMessage> errors = checkReferenceNumber(referenceNumber);
 			if (!errors.isEmpty()) {
@@ -344,7 +379,8 @@ public class MovStockInsertingManager {
 		List<Movement> insertedMovements = new ArrayList<>();
 		for (Movement mov : movements) {
 			try {
-				insertedMovements.add(prepareChargingMovement(mov, checkReference));
+				validateMovement(mov, checkReference);
+				insertedMovements.add(ioOperations.storeChargingMovement(mov));
 			} catch (OHServiceException e) {
 				List<OHExceptionMessage> errors = e.getMessages();
 				errors.add(new OHExceptionMessage(
@@ -353,23 +389,11 @@ public class MovStockInsertingManager {
 				throw new OHDataValidationException(errors);
 			}
 		}
+		// one quantity update per medical and one balance update per medical and day
+		ioOperations.updateStockQuantities(insertedMovements);
 		return insertedMovements;
 	}
 
-	/**
-	 * Prepare the insert of the specified charging {@link Movement}.
-	 *
-	 * @param movement the movement to store.
-	 * @param checkReference if {@code true} every movement must have unique reference number
-	 * @return the prepared {@link Movement}.
-	 * @throws OHServiceException
-	 */
-	@Transactional(rollbackFor = OHServiceException.class)
-	protected Movement prepareChargingMovement(Movement movement, boolean checkReference) throws OHServiceException {
-		validateMovement(movement, checkReference);
-		return ioOperations.prepareChargingMovement(movement);
-	}
-
 	/**
 	 * Retrieves the {@link Lot}.
 	 * 
@@ -419,9 +443,24 @@ public class MovStockInsertingManager {
 	 */
 	@Transactional(rollbackFor = OHServiceException.class)
 	public List<Movement> newMultipleDischargingMovements(List<Movement> movements, String referenceNumber) throws OHServiceException {
+		return newMultipleDischargingMovements(movements, referenceNumber, false);
+	}
+
+	/**
+	 * Insert a list of discharging {@link Movement}s
+	 *
+	 * @param movements the list of {@link Movement}s
+	 * @param referenceNumber the reference number to be set for all movements if {@link null}, each movements must have a different referenceNumber
+	 * @param continuation if {@code true} the movements continue a previous insertion with the same referenceNumber, which is not checked again
+	 * @return a list of {@Link Movement}s.
+	 * @throws OHServiceException
+	 */
+	@Transactional(rollbackFor = OHServiceException.class)
+	public List<Movement> newMultipleDischargingMovements(List<Movement> movements, String referenceNumber, boolean continuation)
+		throws OHServiceException {
 
 		boolean checkReference = referenceNumber == null; // referenceNumber == null, each movement should have referenceNumber set
-		if (!checkReference) {
+		if (!checkReference && !continuation) {
 			// referenceNumber != null, all movement will have same referenceNumber, we check only once for all
 			List<OHExceptionMessage> errors = checkReferenceNumber(referenceNumber);
 			if (!errors.isEmpty()) {
@@ -429,18 +468,53 @@ public class MovStockInsertingManager {
 			}
 		}
 		List<Movement> dischargingMovements = new ArrayList<>();
+		Map<Integer, Integer> pendingQuantities = new HashMap<>();
 		for (Movement mov : movements) {
 			try {
-				dischargingMovements.addAll(prepareDischargingMovement(mov, checkReference));
+				validateMovement(mov, checkReference);
+				if (isAutomaticLotOut()) {
+					int medicalCode = mov.getMedical().getCode();
+					dischargingMovements.addAll(ioOperations.storeAutomaticDischargingMovement(mov, pendingQuantities.getOrDefault(medicalCode, 0)));
+					pendingQuantities.merge(medicalCode, mov.getQuantity(), Integer::sum);
+				} else {
+					dischargingMovements.add(ioOperations.storeDischargingMovement(mov));
+				}
 			} catch (OHServiceException e) {
 				List<OHExceptionMessage> errors = e.getMessages();
 				errors.add(new OHExceptionMessage(mov.getMedical().getDescription()));
 				throw new OHDataValidationException(errors);
 			}
 		}
+		// one quantity update per medical and one balance update per medical and day
+		ioOperations.updateStockQuantities(dischargingMovements);
 		return dischargingMovements;
 	}
 
+	/**
+	 * Returns the {@link Lot}s moved in the main store within the specified dates, with their current quantities (empty lots included).
+	 *
+	 * @param dateFrom the lower bound for the movement date range.
+	 * @param dateTo the upper bound for the movement date range.
+	 * @return the retrieved {@link Lot}s.
+	 * @throws OHServiceException
+	 */
+	public List<Lot> getLotsMovedBetween(LocalDateTime dateFrom, LocalDateTime dateTo) throws OHServiceException {
+		return ioOperations.getLotsMovedBetween(dateFrom, dateTo);
+	}
+
+	/**
+	 * Computes, without storing anything, how the specified discharging {@link Movement} would be split on the lots of its {@link Medical} when the
+	 * automatic lot selection is enabled (expiring first out).
+	 *
+	 * @param movement the discharging {@link Movement} to plan
+	 * @return the {@link DischargePlan}.
+	 * @throws OHServiceException if the movement is not valid or cannot be allocated.
+	 */
+	public DischargePlan getDischargePlan(Movement movement) throws OHServiceException {
+		validateMovement(movement, false);
+		return ioOperations.planAutomaticDischargingMovement(movement, 0);
+	}
+
 	/**
 	 * Stores the specified {@link Lot}.
 	 * 
@@ -455,31 +529,34 @@ public class MovStockInsertingManager {
 	}
 
 	/**
-	 * Prepare the insert of the specified {@link Movement}
+	 * Deletes the specified {@link Lot}.
 	 *
-	 * @param movement the movement to store.
-	 * @param checkReference if {@code true} every movement must have unique reference number
+	 * @param lot the lot to delete.
 	 * @throws OHServiceException
 	 */
-	private List<Movement> prepareDischargingMovement(Movement movement, boolean checkReference) throws OHServiceException {
-		validateMovement(movement, checkReference);
-		if (isAutomaticLotOut()) {
-			return ioOperations.newAutomaticDischargingMovement(movement);
-		} else {
-			List<Movement> dischargeMovement = new ArrayList<>();
-			dischargeMovement.add(ioOperations.prepareDischargingMovement(movement));
-			return dischargeMovement;
-		}
+	public void deleteLot(Lot lot) throws OHServiceException {
+		ioOperations.deleteLot(lot);
 	}
 
 	/**
-	 * Deletes the specified {@link Lot}.
+	 * Rebuilds all the {@link Lot} balances from the movement history and the current wards stock.
 	 *
-	 * @param lot the lot to delete.
+	 * @return the number of rebuilt balances.
 	 * @throws OHServiceException
 	 */
-	public void deleteLot(Lot lot) throws OHServiceException {
-		ioOperations.deleteLot(lot);
+	@Transactional(rollbackFor = OHServiceException.class)
+	public int rebuildLotBalances() throws OHServiceException {
+		return ioOperations.rebuildLotBalances();
+	}
+
+	/**
+	 * Checks all the {@link Lot} balances against the movement history and the current wards stock.
+	 *
+	 * @return the codes of the {@link Lot}s whose balance is not consistent, empty if all the balances are consistent.
+	 * @throws OHServiceException
+	 */
+	public List<String> verifyLotBalances() throws OHServiceException {
+		return ioOperations.verifyLotBalances();
 	}
 
 	/**
@@ -0,0 +1,69 @@
+/*
+ * Open Hospital (www.open-hospital.org)
+ * Copyright © 2006-2024 Informatici Senza Frontiere (info@informaticisenzafrontiere.org)
+ *
+ * Open Hospital is a free and open source software for healthcare data management.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * https://www.gnu.org/licenses/gpl-3.0-standalone.html
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.isf.medicalstock.model;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.isf.medicals.model.Medical;
+
+/**
+ * Allocation of a discharging {@link Movement} to the {@link Lot}s of its {@link Medical}, expiring first out (FEFO).
+ * <p>
+ * The plan is computed from a snapshot of the lot quantities and nothing is stored until it is committed, so it can be used as a preview of the
+ * movements that a discharge will produce.
+ */
+public class DischargePlan {
+
+	private final Movement movement;
+
+	private final List<Movement> movements;
+
+	private final int unallocatedQuantity;
+
+	public DischargePlan(Movement movement, List<Movement> movements, int unallocatedQuantity) {
+		this.movement = movement;
+		this.movements = Collections.unmodifiableList(movements);
+		this.unallocatedQuantity = unallocatedQuantity;
+	}
+
+	/**
+	 * @return the requested discharging {@link Movement}.
+	 */
+	public Movement getMovement() {
+		return movement;
+	}
+
+	/**
+	 * @return the discharging {@link Movement}s to be stored, one per {@link Lot}, expiring first on top.
+	 */
+	public List<Movement> getMovements() {
+		return movements;
+	}
+
+	/**
+	 * @return the quantity that does not fit in the available {@link Lot}s.
+	 */
+	public int getUnallocatedQuantity() {
+		return unallocatedQuantity;
+	}
+}
@@ -0,0 +1,83 @@
+/*
+ * Open Hospital (www.open-hospital.org)
+ * Copyright © 2006-2024 Informatici Senza Frontiere (info@informaticisenzafrontiere.org)
+ *
+ * Open Hospital is a free and open source software for healthcare data management.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * https://www.gnu.org/licenses/gpl-3.0-standalone.html
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.isf.medicalstock.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import jakarta.validation.constraints.NotNull;
+
+/**
+ * Persisted quantities of a {@link Lot}, kept up to date by the stock movements (main store) and by the ward stock changes (wards total), so that the
+ * quantities of a lot can be read without summing the whole movement history.
+ */
+@Entity
+@Table(name = "OH_MEDICALDSRLOTBALANCE")
+public class LotBalance {
+
+	@Id
+	@Column(name = "LTB_LT_ID_A")
+	private String lotCode;
+
+	@NotNull
+	@Column(name = "LTB_MAIN_STORE_QTY")
+	private int mainStoreQuantity;
+
+	@NotNull
+	@Column(name = "LTB_WARDS_TOTAL_QTY")
+	private double wardsTotalQuantity;
+
+	public LotBalance() {
+	}
+
+	public LotBalance(String lotCode, int mainStoreQuantity, double wardsTotalQuantity) {
+		this.lotCode = lotCode;
+		this.mainStoreQuantity = mainStoreQuantity;
+		this.wardsTotalQuantity = wardsTotalQuantity;
+	}
+
+	public String getLotCode() {
+		return lotCode;
+	}
+
+	public void setLotCode(String lotCode) {
+		this.lotCode = lotCode;
+	}
+
+	public int getMainStoreQuantity() {
+		return mainStoreQuantity;
+	}
+
+	public void setMainStoreQuantity(int mainStoreQuantity) {
+		this.mainStoreQuantity = mainStoreQuantity;
+	}
+
+	public double getWardsTotalQuantity() {
+		return wardsTotalQuantity;
+	}
+
+	public void setWardsTotalQuantity(double wardsTotalQuantity) {
+		this.wardsTotalQuantity = wardsTotalQuantity;
+	}
+
+}
@@ -27,11 +27,15 @@ import jakarta.persistence.AttributeOverride;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.EntityListeners;
+import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
+import jakarta.persistence.NamedAttributeNode;
+import jakarta.persistence.NamedEntityGraph;
+import jakarta.persistence.NamedSubgraph;
 import jakarta.persistence.Table;
 import jakarta.persistence.Transient;
 import jakarta.validation.constraints.NotNull;
@@ -47,6 +51,15 @@ import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 
 @Entity
 @Table(name = "OH_MEDICALDSRSTOCKMOV")
+@NamedEntityGraph(name = "Movement.detail",
+attributeNodes = {
+		@NamedAttributeNode(value = "medical", subgraph = "medical"),
+		@NamedAttributeNode("type"),
+		@NamedAttributeNode("ward"),
+		@NamedAttributeNode("lot"),
+		@NamedAttributeNode("supplier")},
+subgraphs = @NamedSubgraph(name = "medical", attributeNodes = @NamedAttributeNode("type"))
+)
 @EntityListeners(AuditingEntityListener.class)
 @AttributeOverride(name = "createdBy", column = @Column(name = "MMV_CREATED_BY", updatable = false))
 @AttributeOverride(name = "createdDate", column = @Column(name = "MMV_CREATED_DATE", updatable = false))
@@ -61,20 +74,20 @@ public class Movement extends Auditable<String> {
 	private int code;
 
 	@NotNull
-	@ManyToOne
+	@ManyToOne(fetch = FetchType.LAZY)
 	@JoinColumn(name = "MMV_MDSR_ID")
 	private Medical medical;
 
 	@NotNull
-	@ManyToOne
+	@ManyToOne(fetch = FetchType.LAZY)
 	@JoinColumn(name = "MMV_MMVT_ID_A")
 	private MovementType type;
 
-	@ManyToOne
+	@ManyToOne(fetch = FetchType.LAZY)
 	@JoinColumn(name = "MMV_WRD_ID_A")
 	private Ward ward;
 
-	@ManyToOne
+	@ManyToOne(fetch = FetchType.LAZY)
 	@JoinColumn(name = "MMV_LT_ID_A")
 	private Lot lot;
 
@@ -86,7 +99,7 @@ public class Movement extends Auditable<String> {
 	@Column(name = "MMV_QTY")
 	private int quantity;
 
-	@ManyToOne(optional = true, targetEntity = Supplier.class)
+	@ManyToOne(fetch = FetchType.LAZY, optional = true, targetEntity = Supplier.class)
 	@JoinColumn(name = "MMV_FROM")
 	private Supplier supplier;
 
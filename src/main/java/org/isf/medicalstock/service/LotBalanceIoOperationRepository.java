@@ -0,0 +1,75 @@
+/*
+ * Open Hospital (www.open-hospital.org)
+ * Copyright © 2006-2024 Informatici Senza Frontiere (info@informaticisenzafrontiere.org)
+ *
+ * Open Hospital is a free and open source software for healthcare data management.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * https://www.gnu.org/licenses/gpl-3.0-standalone.html
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.isf.medicalstock.service;
+
+import java.util.List;
+
+import org.isf.medicalstock.model.LotBalance;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface LotBalanceIoOperationRepository extends JpaRepository<LotBalance, String> {
+
+	String MAIN_STORE_QUANTITY = "(SELECT COALESCE(SUM(CASE WHEN MMVT_TYPE LIKE '+%' THEN MMV_QTY ELSE -MMV_QTY END), 0) "
+					+ "FROM OH_MEDICALDSRSTOCKMOV JOIN OH_MEDICALDSRSTOCKMOVTYPE ON MMV_MMVT_ID_A = MMVT_ID_A WHERE MMV_LT_ID_A = LT_ID_A)";
+
+	String WARDS_TOTAL_QUANTITY = "(SELECT COALESCE(SUM(MDSRWRD_IN_QTI - MDSRWRD_OUT_QTI), 0) FROM OH_MEDICALDSRWARD WHERE MDSRWRD_LT_ID_A = LT_ID_A)";
+
+	@Query("select b.lotCode, b.mainStoreQuantity, b.wardsTotalQuantity from LotBalance b where b.lotCode in :lotCodes")
+	List<Object[]> findBalances(@Param("lotCodes") List<String> lotCodes);
+
+	@Modifying(flushAutomatically = true)
+	@Query(value = "INSERT INTO OH_MEDICALDSRLOTBALANCE (LTB_LT_ID_A, LTB_MAIN_STORE_QTY, LTB_WARDS_TOTAL_QTY) "
+					+ "SELECT LT_ID_A, " + MAIN_STORE_QUANTITY + ", " + WARDS_TOTAL_QUANTITY + " FROM OH_MEDICALDSRLOT WHERE LT_ID_A = :lot "
+					+ "ON DUPLICATE KEY UPDATE LTB_MAIN_STORE_QTY = LTB_MAIN_STORE_QTY + :quantity", nativeQuery = true)
+	int updateMainStoreQuantity(@Param("lot") String lot, @Param("quantity") int quantity);
+
+	@Modifying(flushAutomatically = true)
+	@Query(value = "INSERT INTO OH_MEDICALDSRLOTBALANCE (LTB_LT_ID_A, LTB_MAIN_STORE_QTY, LTB_WARDS_TOTAL_QTY) "
+					+ "SELECT LT_ID_A, " + MAIN_STORE_QUANTITY + ", " + WARDS_TOTAL_QUANTITY + " FROM OH_MEDICALDSRLOT WHERE LT_ID_A = :lot "
+					+ "ON DUPLICATE KEY UPDATE LTB_WARDS_TOTAL_QTY = "
+					+ "(SELECT COALESCE(SUM(MDSRWRD_IN_QTI - MDSRWRD_OUT_QTI), 0) FROM OH_MEDICALDSRWARD WHERE MDSRWRD_LT_ID_A = :lot)", nativeQuery = true)
+	int updateWardsTotalQuantity(@Param("lot") String lot);
+
+	@Modifying(flushAutomatically = true)
+	@Query(value = "INSERT INTO OH_MEDICALDSRLOTBALANCE (LTB_LT_ID_A, LTB_MAIN_STORE_QTY, LTB_WARDS_TOTAL_QTY) "
+					+ "SELECT LT_ID_A, " + MAIN_STORE_QUANTITY + ", " + WARDS_TOTAL_QUANTITY + " FROM OH_MEDICALDSRLOT", nativeQuery = true)
+	int insertAllFromHistory();
+
+	@Modifying(flushAutomatically = true)
+	@Query(value = "DELETE FROM OH_MEDICALDSRLOTBALANCE", nativeQuery = true)
+	int deleteAllBalances();
+
+	@Modifying(flushAutomatically = true)
+	@Query(value = "DELETE FROM OH_MEDICALDSRLOTBALANCE WHERE LTB_LT_ID_A = :lot", nativeQuery = true)
+	int deleteBalance(@Param("lot") String lot);
+
+	@Query(value = "SELECT LTB_LT_ID_A FROM OH_MEDICALDSRLOTBALANCE JOIN OH_MEDICALDSRLOT ON LTB_LT_ID_A = LT_ID_A "
+					+ "WHERE LTB_MAIN_STORE_QTY <> " + MAIN_STORE_QUANTITY + " OR LTB_WARDS_TOTAL_QTY <> " + WARDS_TOTAL_QUANTITY
+					+ " ORDER BY LTB_LT_ID_A", nativeQuery = true)
+	List<String> findInconsistentBalances();
+
+}
@@ -0,0 +1,42 @@
+/*
+ * Open Hospital (www.open-hospital.org)
+ * Copyright © 2006-2024 Informatici Senza Frontiere (info@informaticisenzafrontiere.org)
+ *
+ * Open Hospital is a free and open source software for healthcare data management.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * https://www.gnu.org/licenses/gpl-3.0-standalone.html
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.isf.medicalstock.service;
+
+import org.isf.medicalstock.model.Lot;
+import org.isf.utils.exception.OHServiceException;
+
+/**
+ * Generator of the codes of the {@link Lot}s created without a code, as in {@code AUTOMATICLOT_IN} mode.
+ * <p>
+ * The default implementation is {@link SequenceLotCodeGenerator}; it can be replaced by declaring another bean implementing this interface as
+ * {@code @Primary}.
+ */
+public interface LotCodeGenerator {
+
+	/**
+	 * Returns a new lot code, never returned before.
+	 *
+	 * @return the new lot code.
+	 * @throws OHServiceException if an error occurs generating the code.
+	 */
+	String generateLotCode() throws OHServiceException;
+}
@@ -21,6 +21,8 @@
  */
 package org.isf.medicalstock.service;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 import org.isf.medicalstock.model.Lot;
@@ -36,6 +38,13 @@ public interface LotIoOperationRepository extends JpaRepository<Lot, String> {
 	@Query("select l from Lot l where l.medical.code = :medical order by l.dueDate")
 	List<Lot> findByMedicalOrderByDueDate(@Param("medical") int medicalCode);
 
+	@Query("select l from Lot l join fetch l.medical where l.medical.code in :medicals order by l.dueDate")
+	List<Lot> findByMedicalsOrderByDueDate(@Param("medicals") Collection<Integer> medicalCodes);
+
+	@Query("select l from Lot l join fetch l.medical where l.code in " +
+					"(select m.lot.code from Movement m where m.date between :dateFrom and :dateTo) order by l.dueDate")
+	List<Lot> findByMovementDateBetween(@Param("dateFrom") LocalDateTime dateFrom, @Param("dateTo") LocalDateTime dateTo);
+
 	@Query("select coalesce(sum(case when m.type.type like '+%' then m.quantity else -m.quantity end), 0) from Movement m where m.lot = :lot")
 	Integer getMainStoreQuantity(@Param("lot") Lot lot);
 
@@ -21,10 +21,16 @@
  */
 package org.isf.medicalstock.service;
 
+import java.time.LocalDate;
 import java.util.List;
 
+import jakarta.persistence.LockModeType;
+
 import org.isf.medicalstock.model.MedicalStock;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 @Repository
@@ -32,4 +38,15 @@ public interface MedicalStockIoOperationRepository extends JpaRepository<Medical
 
 	List<MedicalStock> findByMedicalCodeOrderByBalanceDateDesc(int medicalCode);
 
+	MedicalStock findFirstByMedicalCodeOrderByBalanceDateDesc(int medicalCode);
+
+	@Lock(LockModeType.PESSIMISTIC_WRITE)
+	MedicalStock findFirstForUpdateByMedicalCodeOrderByBalanceDateDesc(int medicalCode);
+
+	MedicalStock findFirstByMedicalCodeAndBalanceDateLessThanEqualOrderByBalanceDateDesc(int medicalCode, LocalDate date);
+
+	@Query("select ms.medical.code, ms.balance from MedicalStock ms where ms.balanceDate = "
+					+ "(select max(s.balanceDate) from MedicalStock s where s.medical = ms.medical and s.balanceDate <= :date)")
+	List<Object[]> findBalancesAt(@Param("date") LocalDate date);
+
 }
@@ -24,17 +24,22 @@ package org.isf.medicalstock.service;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Optional;
-import java.util.Random;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.Set;
 
 import org.isf.generaldata.GeneralData;
 import org.isf.generaldata.MessageBundle;
 import org.isf.medicals.model.Medical;
-import org.isf.medicals.service.MedicalsIoOperationRepository;
+import org.isf.medicals.service.MedicalsIoOperations;
+import org.isf.medicalstock.model.DischargePlan;
 import org.isf.medicalstock.model.Lot;
+import org.isf.medicalstock.model.LotBalance;
 import org.isf.medicalstock.model.MedicalStock;
 import org.isf.medicalstock.model.Movement;
 import org.isf.medicalstockward.model.MedicalWard;
@@ -42,12 +47,15 @@ import org.isf.medicalstockward.service.MedicalStockWardIoOperationRepository;
 import org.isf.medstockmovtype.model.MovementType;
 import org.isf.medtype.model.MedicalType;
 import org.isf.utils.db.TranslateOHServiceException;
+import org.isf.utils.exception.OHDataValidationException;
 import org.isf.utils.exception.OHServiceException;
 import org.isf.utils.exception.model.OHExceptionMessage;
 import org.isf.utils.time.TimeTools;
 import org.isf.ward.model.Ward;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -61,25 +69,37 @@ public class MedicalStockIoOperations {
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(MedicalStockIoOperations.class);
 
+	/**
+	 * Maximum number of codes bound to a single {@code IN} clause.
+	 */
+	private static final int IN_CLAUSE_CHUNK_SIZE = 500;
+
 	private MovementIoOperationRepository movRepository;
 
 	private LotIoOperationRepository lotRepository;
 
-	private MedicalsIoOperationRepository medicalRepository;
+	private MedicalsIoOperations medicalsIoOperations;
 
 	private MedicalStockIoOperationRepository medicalStockRepository;
 
 	private MedicalStockWardIoOperationRepository medicalStockWardRepository;
 
+	private LotBalanceIoOperationRepository lotBalanceRepository;
+
+	private LotCodeGenerator lotCodeGenerator;
+
 	public MedicalStockIoOperations(MovementIoOperationRepository movementIoOperationRepository, LotIoOperationRepository lotIoOperationRepository,
-					MedicalsIoOperationRepository medicalsIoOperationRepository,
+					MedicalsIoOperations medicalsIoOperations,
 					MedicalStockIoOperationRepository medicalStockIoOperationRepository,
-					MedicalStockWardIoOperationRepository medicalStockWardIoOperationRepository) {
+					MedicalStockWardIoOperationRepository medicalStockWardIoOperationRepository,
+					LotBalanceIoOperationRepository lotBalanceIoOperationRepository, LotCodeGenerator lotCodeGenerator) {
 		this.movRepository = movementIoOperationRepository;
 		this.lotRepository = lotIoOperationRepository;
-		this.medicalRepository = medicalsIoOperationRepository;
+		this.medicalsIoOperations = medicalsIoOperations;
 		this.medicalStockRepository = medicalStockIoOperationRepository;
 		this.medicalStockWardRepository = medicalStockWardIoOperationRepository;
+		this.lotBalanceRepository = lotBalanceIoOperationRepository;
+		this.lotCodeGenerator = lotCodeGenerator;
 	}
 
 	public enum MovementOrder {
@@ -124,10 +144,38 @@ public class MedicalStockIoOperations {
 	 * @throws OHServiceException
 	 */
 	public List<Movement> newAutomaticDischargingMovement(Movement movement) throws OHServiceException {
-		List<Movement> dischargingMovements = new ArrayList<>();
+		List<Movement> dischargingMovements = storeAutomaticDischargingMovement(movement, 0);
+		updateStockQuantities(dischargingMovements);
+		return dischargingMovements;
+	}
+
+	/**
+	 * Store the specified discharging {@link Movement} by using automatically the most old lots and splitting in more movements if required, without
+	 * updating the {@link Medical} quantities and the {@link MedicalStock} balances: they must be updated afterwards with
+	 * {@link #updateStockQuantities(List) updateStockQuantities}.
+	 * 
+	 * @param movement - the {@link Movement} to store
+	 * @param pendingQuantity - the quantity of the {@link Medical} already discharged but not yet removed from its quantities
+	 * @return the stored {@link Movement}s.
+	 * @throws OHServiceException
+	 */
+	public List<Movement> storeAutomaticDischargingMovement(Movement movement, int pendingQuantity) throws OHServiceException {
+		return storeDischargePlan(planAutomaticDischargingMovement(movement, pendingQuantity));
+	}
+
+	/**
+	 * Computes the split of the specified discharging {@link Movement} on the lots of its {@link Medical}, expiring first out, from a single snapshot of
+	 * the lot quantities. Nothing is stored.
+	 * 
+	 * @param movement - the {@link Movement} to split
+	 * @param pendingQuantity - the quantity of the {@link Medical} already discharged but not yet removed from its quantities
+	 * @return the {@link DischargePlan}.
+	 * @throws OHServiceException if the quantity exceeds the available quantity or no lot is available.
+	 */
+	public DischargePlan planAutomaticDischargingMovement(Movement movement, int pendingQuantity) throws OHServiceException {
 		List<Lot> lots = getLotsByMedical(movement.getMedical(), true);
 		Medical medical = movement.getMedical();
-		double medicalQty = medical.getTotalQuantity();
+		double medicalQty = medical.getTotalQuantity() - pendingQuantity;
 		int qty = movement.getQuantity(); // movement initial quantity
 
 		if (qty > medicalQty) {
@@ -142,36 +190,46 @@ public class MedicalStockIoOperations {
 			LOGGER.error(message);
 			throw new OHServiceException(new OHExceptionMessage(message));
 		}
+		List<Movement> splitMovements = new ArrayList<>();
 		for (Lot lot : lots) {
-			String lotCode = lot.getCode();
-			Movement splitMovement = new Movement(medical, movement.getType(), movement.getWard(),
-							null, // lot to be set
-							movement.getDate(),
-							qty, // quantity can remain the same or changed if greater than lot quantity
-							null,
-							movement.getRefNo());
-			int qtLot = lot.getMainStoreQuantity();
-			if (qtLot < qty) {
-				splitMovement.setQuantity(qtLot);
-				try {
-					dischargingMovements.add(storeMovement(splitMovement, lotCode));
-					// medical stock movement inserted updates quantity of the medical
-					updateStockQuantity(splitMovement);
-				} catch (OHServiceException serviceException) {
-					throw new OHServiceException(new OHExceptionMessage(serviceException.getMessage()));
-				}
-				qty = qty - qtLot;
-			} else {
-				splitMovement.setQuantity(qty);
-				try {
-					dischargingMovements.add(storeMovement(splitMovement, lotCode));
-					// medical stock movement inserted updates quantity of the medical
-					updateStockQuantity(splitMovement);
-				} catch (OHServiceException serviceException) {
-					throw new OHServiceException(new OHExceptionMessage(serviceException.getMessage()));
-				}
+			if (qty == 0) {
 				break;
 			}
+			// quantity can remain the same or changed if greater than lot quantity
+			int lotQty = Math.min(lot.getMainStoreQuantity(), qty);
+			splitMovements.add(new Movement(medical, movement.getType(), movement.getWard(), lot, movement.getDate(), lotQty, null, movement.getRefNo()));
+			qty -= lotQty;
+		}
+		return new DischargePlan(movement, splitMovements, qty);
+	}
+
+	/**
+	 * Stores the discharging {@link Movement}s of the specified {@link DischargePlan}, without updating the {@link Medical} quantities and the
+	 * {@link MedicalStock} balances: they must be updated afterwards with {@link #updateStockQuantities(List) updateStockQuantities}.
+	 * 
+	 * @param plan - the {@link DischargePlan} to store
+	 * @return the stored {@link Movement}s.
+	 * @throws OHDataValidationException if the lots of the plan do not cover the requested quantity: nothing is stored.
+	 * @throws OHServiceException if an error occurs during the store operation.
+	 */
+	public List<Movement> storeDischargePlan(DischargePlan plan) throws OHServiceException {
+		if (plan.getUnallocatedQuantity() > 0) {
+			Movement movement = plan.getMovement();
+			throw new OHDataValidationException(new OHExceptionMessage(MessageBundle.formatMessage(
+							"angal.medicalstock.multipledischarging.movementexceedstheavailablequantityformedical.fmt.msg",
+							movement.getQuantity() - plan.getUnallocatedQuantity(), movement.getMedical().getDescription())));
+		}
+		List<Movement> dischargingMovements = new ArrayList<>();
+		// the lots of the plan are already loaded, so the movements are stored without looking them up again
+		for (Movement splitMovement : plan.getMovements()) {
+			Movement movementStored = movRepository.save(splitMovement);
+			updateLotMainStoreQuantity(splitMovement.getLot().getCode(), -splitMovement.getQuantity());
+			Ward ward = splitMovement.getWard();
+			if (ward != null) {
+				// updates stock quantity for wards
+				updateMedicalWardQuantity(ward, splitMovement.getMedical(), splitMovement.getQuantity(), splitMovement.getLot());
+			}
+			dischargingMovements.add(movementStored);
 		}
 		return dischargingMovements;
 	}
@@ -184,6 +242,23 @@ public class MedicalStockIoOperations {
 	 * @throws OHServiceException if an error occurs during the store operation.
 	 */
 	public Movement newMovement(Movement movement) throws OHServiceException {
+		// if charging we have to manage the Lot, if discharging the lot should be given
+		boolean chargeMovement = movement.getType().getType().contains("+");
+		Movement movementStored = chargeMovement ? storeChargingMovement(movement) : storeDischargingMovement(movement);
+		// medical stock movement inserted updates quantity of the medical
+		updateStockQuantities(Collections.singletonList(movementStored));
+		return movementStored;
+	}
+
+	/**
+	 * Stores the specified charging {@link Movement} and, if not existing yet, its {@link Lot}, without updating the {@link Medical} quantities and the
+	 * {@link MedicalStock} balances: they must be updated afterwards with {@link #updateStockQuantities(List) updateStockQuantities}.
+	 * 
+	 * @param movement - the movement to store.
+	 * @return the stored {@link Movement}.
+	 * @throws OHServiceException if an error occurs during the store operation.
+	 */
+	public Movement storeChargingMovement(Movement movement) throws OHServiceException {
 		String lotCode = null;
 		Lot lot = movement.getLot();
 
@@ -191,18 +266,12 @@ public class MedicalStockIoOperations {
 			lotCode = lot.getCode();
 		}
 
-		// if charging we have to manage the Lot, if discharging the lot should be given
-		boolean chargeMovement = movement.getType().getType().contains("+");
-		boolean lotExists = lotExists(lotCode);
-		if (chargeMovement && !lotExists) {
+		if (!lotExists(lotCode)) {
 			lot = storeLot(lotCode, movement.getLot(), movement.getMedical());
 			lotCode = lot.getCode();
 		}
 
-		Movement movementStored = storeMovement(movement, lotCode);
-		// medical stock movement inserted updates quantity of the medical
-		updateStockQuantity(movement);
-		return movementStored;
+		return storeMovement(movement, lotCode);
 	}
 
 	/**
@@ -224,17 +293,39 @@ public class MedicalStockIoOperations {
 	 * @throws OHServiceException if an error occurs during the store operation.
 	 */
 	public Movement prepareDischargingMovement(Movement movement) throws OHServiceException {
+		Movement movementStored = storeDischargingMovement(movement);
+
+		// medical stock movement inserted
+		updateStockQuantities(Collections.singletonList(movementStored));
+		return movementStored;
+	}
+
+	/**
+	 * Stores the specified discharging {@link Movement} and updates the stock of its {@link Ward}, if any, without updating the {@link Medical} quantities
+	 * and the {@link MedicalStock} balances: they must be updated afterwards with {@link #updateStockQuantities(List) updateStockQuantities}.
+	 * 
+	 * @param movement - the movement to store.
+	 * @return the stored {@link Movement}.
+	 * @throws OHServiceException if an error occurs during the store operation.
+	 */
+	public Movement storeDischargingMovement(Movement movement) throws OHServiceException {
 		String lotCode = null;
 
 		if (movement.getLot() != null) {
 			lotCode = movement.getLot().getCode();
 		}
 
-		Movement movementStored = storeMovement(movement, lotCode);
-
-		// medical stock movement inserted
-		updateStockQuantity(movement);
-		return movementStored;
+		try {
+			Movement movementStored = storeMovement(movement, lotCode);
+			Ward ward = movement.getWard();
+			if (ward != null) {
+				// updates stock quantity for wards
+				updateMedicalWardQuantity(ward, movement.getMedical(), movement.getQuantity(), movement.getLot());
+			}
+			return movementStored;
+		} catch (OHServiceException serviceException) {
+			throw new OHServiceException(new OHExceptionMessage(serviceException.getMessage()));
+		}
 	}
 
 	/**
@@ -251,26 +342,54 @@ public class MedicalStockIoOperations {
 			throw new OHServiceException(new OHExceptionMessage("Lot '" + lotCode + "' not found."));
 		}
 		movement.setLot(lot);
-		return movRepository.save(movement);
+		Movement movementStored = movRepository.save(movement);
+		updateLotMainStoreQuantity(lotCode, getSignedQuantity(movementStored));
+		return movementStored;
 	}
 
 	/**
-	 * Creates a new unique lot code.
+	 * Returns the quantity of the specified {@link Movement}, negative if it is a discharging movement.
+	 * 
+	 * @param movement the movement.
+	 * @return the signed quantity.
+	 */
+	private int getSignedQuantity(Movement movement) {
+		return movement.getType().getType().contains("+") ? movement.getQuantity() : -movement.getQuantity();
+	}
+
+	/**
+	 * Adds the specified quantity to the main store quantity of the {@link Lot} balance. If the balance is not present yet it is created from the movement
+	 * history of the lot. Both happen in a single statement, so that the first movements of a lot in concurrent transactions do not collide.
+	 * 
+	 * @param lotCode the lot code.
+	 * @param quantity the quantity to add (remove if negative).
+	 */
+	private void updateLotMainStoreQuantity(String lotCode, int quantity) {
+		lotBalanceRepository.updateMainStoreQuantity(lotCode, quantity);
+	}
+
+	/**
+	 * Recomputes the wards total quantity of the {@link Lot} balance from the current wards stock. If the balance is not present yet it is created from the
+	 * movement history of the lot, in the same statement.
+	 * 
+	 * @param lotCode the lot code.
+	 */
+	private void updateLotWardsTotalQuantity(String lotCode) {
+		lotBalanceRepository.updateWardsTotalQuantity(lotCode);
+	}
+
+	/**
+	 * Creates a new unique lot code with the {@link LotCodeGenerator}. Generated codes already used by a lot, for instance entered manually, are skipped.
 	 * 
 	 * @return the new unique code.
 	 * @throws OHServiceException if an error occurs during the code generation.
 	 */
 	protected String generateLotCode() throws OHServiceException {
-		Random random = new Random();
-		long candidateCode;
-		Lot lot;
-
+		String candidateCode;
 		do {
-			candidateCode = Math.abs(random.nextLong());
-			lot = lotRepository.findById(String.valueOf(candidateCode)).orElse(null);
-		} while (lot != null);
-
-		return String.valueOf(candidateCode);
+			candidateCode = lotCodeGenerator.generateLotCode();
+		} while (lotRepository.existsById(candidateCode));
+		return candidateCode;
 	}
 
 	/**
@@ -296,23 +415,7 @@ public class MedicalStockIoOperations {
 		if (lot == null) {
 			return null;
 		}
-		List<String> lotCodes = new ArrayList<>();
-		lotCodes.add(lotCode);
-		// Retrieve quantities in batch
-		List<Object[]> mainStoreQuantities = lotRepository.getMainStoreQuantities(lotCodes);
-		List<Object[]> wardsTotalQuantities = lotRepository.getWardsTotalQuantities(lotCodes);
-
-		// Process mainStoreQuantities and update lots
-		for (Object[] result : mainStoreQuantities) {
-			int mainStoreQuantity = ((Long) result[1]).intValue();
-			lot.setMainStoreQuantity(mainStoreQuantity);
-		}
-
-		// Process wardsTotalQuantities and update lots
-		for (Object[] result : wardsTotalQuantities) {
-			Double wardsTotalQuantity = (Double) result[1];
-			lot.setWardsTotalQuantity(wardsTotalQuantity);
-		}
+		setLotQuantities(Collections.singletonList(lot));
 		return lot;
 	}
 
@@ -350,70 +453,37 @@ public class MedicalStockIoOperations {
 	}
 
 	/**
-	 * Updated {@link Medical} stock quantity for the specified {@link Movement}.
+	 * Updates the {@link Medical} stock quantities and the {@link MedicalStock} balances for the specified stored {@link Movement}s. The movements are
+	 * grouped by medical, applying a single quantity change per {@link Medical}, and by medical and day, applying a single balance change per
+	 * {@link MedicalStock}.
 	 * 
-	 * @param movement the movement.
-	 * @return {@code true} if the quantity has been updated, {@code false} otherwise.
+	 * @param movements the stored movements, in chronological order.
 	 * @throws OHServiceException if an error occurs during the update.
 	 */
-	protected Medical updateStockQuantity(Movement movement) throws OHServiceException {
-		if (movement.getType().getType().contains("+")) {
-			// incoming medical stock
-			Medical medical = movement.getMedical();
-			Medical updatedMedical = updateMedicalIncomingQuantity(medical.getCode(), movement.getQuantity());
-			updateMedicalStockTable(updatedMedical, movement.getDate().toLocalDate(), movement.getQuantity());
-			return updatedMedical;
-
-		} else {
-			// outgoing medical stock
-			Medical medical = movement.getMedical();
-			try {
-				Medical updatedMedical = updateMedicalOutcomingQuantity(medical.getCode(), movement.getQuantity());
-				updateMedicalStockTable(updatedMedical, movement.getDate().toLocalDate(), -movement.getQuantity());
-				Ward ward = movement.getWard();
-				if (ward != null) {
-					// updates stock quantity for wards
-					updateMedicalWardQuantity(ward, medical, movement.getQuantity(), movement.getLot());
-				}
-				return updatedMedical;
-			} catch (OHServiceException serviceException) {
-				throw new OHServiceException(new OHExceptionMessage(serviceException.getMessage()));
+	public void updateStockQuantities(List<Movement> movements) throws OHServiceException {
+		Map<Integer, Integer> incomingQuantities = new HashMap<>();
+		Map<Integer, Integer> outgoingQuantities = new HashMap<>();
+		Map<Integer, Map<LocalDate, Integer>> balanceChanges = new LinkedHashMap<>();
+		for (Movement movement : movements) {
+			int medicalCode = movement.getMedical().getCode();
+			int quantity = movement.getQuantity();
+			if (movement.getType().getType().contains("+")) {
+				incomingQuantities.merge(medicalCode, quantity, Integer::sum);
+			} else {
+				outgoingQuantities.merge(medicalCode, quantity, Integer::sum);
 			}
+			balanceChanges.computeIfAbsent(medicalCode, code -> new LinkedHashMap<>())
+				.merge(movement.getDate().toLocalDate(), getSignedQuantity(movement), Integer::sum);
 		}
-	}
 
-	/**
-	 * Updates the incoming quantity for the specified medical.
-	 * 
-	 * @param medicalCode the medical code.
-	 * @param incrementQuantity the quantity to add.
-	 * @return the updated {@link Medical} object.
-	 * @throws OHServiceException if an error occurs during the update.
-	 */
-	protected Medical updateMedicalIncomingQuantity(int medicalCode, double incrementQuantity) throws OHServiceException {
-		Medical medical = medicalRepository.findById(medicalCode).orElse(null);
-		if (medical == null) {
-			throw new OHServiceException(new OHExceptionMessage("Medical '" + medicalCode + "' not found."));
-		}
-		medical.setInqty(medical.getInqty() + incrementQuantity);
-		return medicalRepository.save(medical);
-	}
-
-	/**
-	 * Updates the outcoming quantity for the specified medicinal.
-	 * 
-	 * @param medicalCode the medical code.
-	 * @param incrementQuantity the quantity to add to the current outcoming quantity.
-	 * @return the updated {@link Medical} object.
-	 * @throws OHServiceException if an error occurs during the update.
-	 */
-	protected Medical updateMedicalOutcomingQuantity(int medicalCode, double incrementQuantity) throws OHServiceException {
-		Medical medical = medicalRepository.findById(medicalCode).orElse(null);
-		if (medical == null) {
-			throw new OHServiceException(new OHExceptionMessage("Medical '" + medicalCode + "' not found."));
+		for (Map.Entry<Integer, Map<LocalDate, Integer>> medicalBalanceChanges : balanceChanges.entrySet()) {
+			int medicalCode = medicalBalanceChanges.getKey();
+			Medical updatedMedical = medicalsIoOperations.updateMedicalQuantities(medicalCode, incomingQuantities.getOrDefault(medicalCode, 0),
+							outgoingQuantities.getOrDefault(medicalCode, 0));
+			for (Map.Entry<LocalDate, Integer> balanceChange : medicalBalanceChanges.getValue().entrySet()) {
+				updateMedicalStockTable(updatedMedical, balanceChange.getKey(), balanceChange.getValue());
+			}
 		}
-		medical.setOutqty(medical.getOutqty() + incrementQuantity);
-		return medicalRepository.save(medical);
 	}
 
 	/**
@@ -421,6 +491,9 @@ public class MedicalStockIoOperations {
 	 * 
 	 * If the date is present in the table, the balance is updated. If the date is not present, a new balance is inserted for the date and the previous one is
 	 * updated with the current date as 'next mov date' and calculated the days of stock for the previous balance
+	 * 
+	 * The latest balance is read with a row lock, so that concurrent movements of the same medical apply their changes one after the other on the latest
+	 * committed balance instead of overwriting each other.
 	 *
 	 * @param medical the medical
 	 * @param date the date of the new balance
@@ -428,14 +501,13 @@ public class MedicalStockIoOperations {
 	 */
 	private MedicalStock updateMedicalStockTable(Medical medical, LocalDate date, int incrementQuantity) throws OHServiceException {
 
-		List<MedicalStock> medicalStockList = medicalStockRepository.findByMedicalCodeOrderByBalanceDateDesc(medical.getCode());
-		MedicalStock medicalStock;
+		MedicalStock medicalStock = medicalStockRepository.findFirstForUpdateByMedicalCodeOrderByBalanceDateDesc(medical.getCode());
 
-		if (medicalStockList.isEmpty() && incrementQuantity < 0) {
+		if (medicalStock == null && incrementQuantity < 0) {
 			throw new OHServiceException(
 							new OHExceptionMessage("Medical '" + medical.getDescription() + "' (" + medical.getCode() + ") not found (not possible)."));
 		}
-		if (medicalStockList.isEmpty()) {
+		if (medicalStock == null) {
 			// first insert
 			medicalStock = new MedicalStock();
 			medicalStock.setMedical(medical);
@@ -444,7 +516,6 @@ public class MedicalStockIoOperations {
 			return medicalStockRepository.save(medicalStock);
 		}
 
-		medicalStock = medicalStockList.get(0);
 		if (TimeTools.isSameDay(date, medicalStock.getBalanceDate())) {
 			// update if the same date
 			int balance = medicalStock.getBalance();
@@ -467,6 +538,36 @@ public class MedicalStockIoOperations {
 		return medicalStockRepository.save(newMedicalStock);
 	}
 
+	/**
+	 * Returns the main store stock of the specified {@link Medical} at the end of the specified day, read from the {@link MedicalStock} balance in force
+	 * on that day.
+	 * 
+	 * @param medical the medical.
+	 * @param date the day.
+	 * @return the stock quantity, {@code 0} if the medical had no movements until that day.
+	 * @throws OHServiceException if an error occurs retrieving the balance.
+	 */
+	public int getStockAt(Medical medical, LocalDate date) throws OHServiceException {
+		MedicalStock medicalStock = medicalStockRepository.findFirstByMedicalCodeAndBalanceDateLessThanEqualOrderByBalanceDateDesc(medical.getCode(), date);
+		return medicalStock == null ? 0 : medicalStock.getBalance();
+	}
+
+	/**
+	 * Returns the main store stock of all the {@link Medical}s at the end of the specified day, read from the {@link MedicalStock} balances in force on
+	 * that day.
+	 * 
+	 * @param date the day.
+	 * @return the stock quantities by medical code; medicals without movements until that day are not included.
+	 * @throws OHServiceException if an error occurs retrieving the balances.
+	 */
+	public Map<Integer, Integer> getStockAt(LocalDate date) throws OHServiceException {
+		Map<Integer, Integer> stock = new HashMap<>();
+		for (Object[] balance : medicalStockRepository.findBalancesAt(date)) {
+			stock.put((Integer) balance[0], (Integer) balance[1]);
+		}
+		return stock;
+	}
+
 	/**
 	 * Updates medical quantity for the specified ward.
 	 * 
@@ -487,7 +588,9 @@ public class MedicalStockIoOperations {
 			medicalWard = new MedicalWard(ward, medical, quantity, 0, lot);
 			medicalStockWardRepository.insertMedicalWard(ward.getCode(), medical.getCode(), (double) quantity, lot.getCode());
 		}
-		return medicalStockWardRepository.save(medicalWard);
+		MedicalWard medicalWardStored = medicalStockWardRepository.save(medicalWard);
+		updateLotWardsTotalQuantity(lot.getCode());
+		return medicalWardStored;
 	}
 
 	/**
@@ -510,20 +613,7 @@ public class MedicalStockIoOperations {
 	 * @throws OHServiceException if an error occurs retrieving the movements.
 	 */
 	public List<Movement> getMovements(String wardId, LocalDateTime dateFrom, LocalDateTime dateTo) throws OHServiceException {
-		List<Movement> pMovement = new ArrayList<>();
-		// TODO: investigate whether findMovementWhereDatesAndId() could return a List<Movement> directly
-		// to remove the need to fetch the movements later in the loop below
-		List<Integer> pMovementCode = movRepository.findMovementWhereDatesAndId(wardId, TimeTools.truncateToSeconds(dateFrom),
-						TimeTools.truncateToSeconds(dateTo));
-		for (int i = 0; i < pMovementCode.size(); i++) {
-			Integer code = pMovementCode.get(i);
-			Movement movement = movRepository.findById(code).orElse(null);
-			if (movement == null) {
-				throw new OHServiceException(new OHExceptionMessage("Movement '" + code + "' not found."));
-			}
-			pMovement.add(i, movement);
-		}
-		return pMovement;
+		return movRepository.findMovementWhereDatesAndId(wardId, TimeTools.truncateToSeconds(dateFrom), TimeTools.truncateToSeconds(dateTo));
 	}
 
 	/**
@@ -553,24 +643,54 @@ public class MedicalStockIoOperations {
 					LocalDateTime lotPrepTo,
 					LocalDateTime lotDueFrom,
 					LocalDateTime lotDueTo) throws OHServiceException {
-		List<Movement> pMovement = new ArrayList<>();
-
-		List<Integer> pMovementCode = movRepository.findMovementWhereData(medicalCode, medicalType, wardId, movType,
+		return movRepository.findMovementWhereData(medicalCode, medicalType, wardId, movType,
 						TimeTools.truncateToSeconds(movFrom),
 						TimeTools.truncateToSeconds(movTo),
 						TimeTools.truncateToSeconds(lotPrepFrom),
 						TimeTools.truncateToSeconds(lotPrepTo),
 						TimeTools.truncateToSeconds(lotDueFrom),
 						TimeTools.truncateToSeconds(lotDueTo));
-		for (int i = 0; i < pMovementCode.size(); i++) {
-			Integer code = pMovementCode.get(i);
-			Movement movement = movRepository.findById(code).orElse(null);
-			if (movement == null) {
-				throw new OHServiceException(new OHExceptionMessage("Movement '" + code + "' not found."));
-			}
-			pMovement.add(i, movement);
-		}
-		return pMovement;
+	}
+
+	/**
+	 * Retrieves a page of the stored {@link Movement} with the specified criteria.
+	 * 
+	 * @param medicalCode the {@link Medical} code (optional).
+	 * @param medicalType the {@link MedicalType} code (optional).
+	 * @param wardId the {@link Ward} id (optional).
+	 * @param movType the {@link MovementType} code or {@code "+"}/{@code "-"} for all charge/discharge types (optional).
+	 * @param movFrom the lower bound for the movement date range (optional).
+	 * @param movTo the upper bound for the movement date range (optional).
+	 * @param lotPrepFrom the lower bound for the lot preparation date range (optional).
+	 * @param lotPrepTo the upper bound for the lot preparation date range (optional).
+	 * @param lotDueFrom the lower bound for the lot due date range (optional).
+	 * @param lotDueTo the lower bound for the lot due date range (optional).
+	 * @param page the page number.
+	 * @param size the page size.
+	 * @return the requested page of movements.
+	 * @throws OHServiceException
+	 */
+	public Page<Movement> getMovementsPageable(
+					Integer medicalCode,
+					String medicalType,
+					String wardId,
+					String movType,
+					LocalDateTime movFrom,
+					LocalDateTime movTo,
+					LocalDateTime lotPrepFrom,
+					LocalDateTime lotPrepTo,
+					LocalDateTime lotDueFrom,
+					LocalDateTime lotDueTo,
+					int page,
+					int size) throws OHServiceException {
+		return movRepository.findMovementWhereDataPageable(medicalCode, medicalType, wardId, movType,
+						TimeTools.truncateToSeconds(movFrom),
+						TimeTools.truncateToSeconds(movTo),
+						TimeTools.truncateToSeconds(lotPrepFrom),
+						TimeTools.truncateToSeconds(lotPrepTo),
+						TimeTools.truncateToSeconds(lotDueFrom),
+						TimeTools.truncateToSeconds(lotDueTo),
+						PageRequest.of(page, size));
 	}
 
 	/**
@@ -596,18 +716,7 @@ public class MedicalStockIoOperations {
 					LocalDateTime movTo,
 					String lotCode,
 					MovementOrder order) throws OHServiceException {
-		List<Movement> pMovement = new ArrayList<>();
-
-		List<Integer> pMovementCode = movRepository.findMovementForPrint(medicalDescription, medicalTypeCode, wardId, movType, movFrom, movTo, lotCode, order);
-		for (int i = 0; i < pMovementCode.size(); i++) {
-			Integer code = pMovementCode.get(i);
-			Movement movement = movRepository.findById(code).orElse(null);
-			if (movement == null) {
-				throw new OHServiceException(new OHExceptionMessage("Movement '" + code + "' not found."));
-			}
-			pMovement.add(i, movement);
-		}
-		return pMovement;
+		return movRepository.findMovementForPrint(medicalDescription, medicalTypeCode, wardId, movType, movFrom, movTo, lotCode, order);
 	}
 
 	/**
@@ -626,43 +735,133 @@ public class MedicalStockIoOperations {
 			return Collections.emptyList();
 		}
 
-		// Get all lot IDs
-		List<String> lotCodes = lots.stream().map(Lot::getCode).collect(Collectors.toList());
+		setLotQuantities(lots);
 
-		// Retrieve quantities in batch
-		List<Object[]> mainStoreQuantities = lotRepository.getMainStoreQuantities(lotCodes);
-		List<Object[]> wardsTotalQuantities = lotRepository.getWardsTotalQuantities(lotCodes);
+		// Remove empty lots
+		if (removeEmpty) {
+			lots.removeIf(lot -> lot.getMainStoreQuantity() <= 0);
+		}
 
-		// Process mainStoreQuantities and update lots
-		for (Object[] result : mainStoreQuantities) {
-			String lotCode = (String) result[0];
-			int mainStoreQuantity = ((Long) result[1]).intValue();
+		return lots;
+	}
 
-			// Find the corresponding lot in the lots list
-			Optional<Lot> matchingLot = lots.stream().filter(lot -> lot.getCode().equals(lotCode)).findFirst();
+	/**
+	 * Retrieves the lots of all the specified {@link Medical}s with their main store and wards total quantities, expiring first on top. Lots with zero
+	 * quantities will be stripped out if removeEmpty is set to true.
+	 * <p>
+	 * The lots and their quantities are loaded with a fixed number of queries per chunk of codes, whatever the number of medicals.
+	 * 
+	 * @param medicals the medicals.
+	 * @param removeEmpty
+	 * @return a map of the {@link Lot}s by medical code; every requested medical has an entry, possibly an empty list.
+	 * @throws OHServiceException if an error occurs retrieving the lots.
+	 */
+	public Map<Integer, List<Lot>> getLotsByMedicals(Collection<Medical> medicals, boolean removeEmpty) throws OHServiceException {
+		Map<Integer, List<Lot>> lotsByMedical = new LinkedHashMap<>();
+		for (Medical medical : medicals) {
+			lotsByMedical.put(medical.getCode(), new ArrayList<>());
+		}
+		if (lotsByMedical.isEmpty()) {
+			return lotsByMedical;
+		}
 
-			// Update the lot if found
-			matchingLot.ifPresent(lot -> lot.setMainStoreQuantity(mainStoreQuantity));
+		List<Lot> lots = new ArrayList<>();
+		for (List<Integer> medicalCodes : chunk(new ArrayList<>(lotsByMedical.keySet()))) {
+			lots.addAll(lotRepository.findByMedicalsOrderByDueDate(medicalCodes));
 		}
+		setLotQuantities(lots);
 
-		// Process wardsTotalQuantities and update lots
-		for (Object[] result : wardsTotalQuantities) {
-			String lotCode = (String) result[0];
-			Double wardsTotalQuantity = (Double) result[1];
+		for (Lot lot : lots) {
+			if (!removeEmpty || lot.getMainStoreQuantity() > 0) {
+				lotsByMedical.get(lot.getMedical().getCode()).add(lot);
+			}
+		}
+		return lotsByMedical;
+	}
 
-			// Find the corresponding lot in the lots list
-			Optional<Lot> matchingLot = lots.stream().filter(lot -> lot.getCode().equals(lotCode)).findFirst();
+	/**
+	 * Retrieves the lots moved in the main store within the specified dates, with their current main store and wards total quantities, expiring first
+	 * on top. Lots discharged completely in the meanwhile are included.
+	 * 
+	 * @param dateFrom the lower bound for the movement date range.
+	 * @param dateTo the upper bound for the movement date range.
+	 * @return the retrieved {@link Lot}s.
+	 * @throws OHServiceException if an error occurs retrieving the lots.
+	 */
+	public List<Lot> getLotsMovedBetween(LocalDateTime dateFrom, LocalDateTime dateTo) throws OHServiceException {
+		List<Lot> lots = lotRepository.findByMovementDateBetween(TimeTools.truncateToSeconds(dateFrom), TimeTools.truncateToSeconds(dateTo));
+		setLotQuantities(lots);
+		return lots;
+	}
 
-			// Update the lot if found
-			matchingLot.ifPresent(lot -> lot.setWardsTotalQuantity(wardsTotalQuantity));
+	/**
+	 * Sets the main store and the wards total quantities of the specified {@link Lot}s, reading them from the lot balances. The quantities of lots without a
+	 * balance yet are computed from the movement history.
+	 * 
+	 * @param lots the lots to update.
+	 */
+	private void setLotQuantities(List<Lot> lots) {
+		Map<String, Lot> lotsByCode = new HashMap<>();
+		for (Lot lot : lots) {
+			lotsByCode.put(lot.getCode(), lot);
 		}
 
-		// Remove empty lots
-		if (removeEmpty) {
-			lots.removeIf(lot -> lot.getMainStoreQuantity() <= 0);
+		Set<String> missingLotCodes = new HashSet<>(lotsByCode.keySet());
+		for (List<String> lotCodes : chunk(new ArrayList<>(lotsByCode.keySet()))) {
+			for (Object[] balance : lotBalanceRepository.findBalances(lotCodes)) {
+				Lot lot = lotsByCode.get((String) balance[0]);
+				lot.setMainStoreQuantity((Integer) balance[1]);
+				lot.setWardsTotalQuantity((Double) balance[2]);
+				missingLotCodes.remove(lot.getCode());
+			}
+		}
+		if (missingLotCodes.isEmpty()) {
+			return;
 		}
 
-		return lots;
+		for (List<String> lotCodes : chunk(new ArrayList<>(missingLotCodes))) {
+			for (Object[] result : lotRepository.getMainStoreQuantities(lotCodes)) {
+				lotsByCode.get((String) result[0]).setMainStoreQuantity(((Long) result[1]).intValue());
+			}
+			for (Object[] result : lotRepository.getWardsTotalQuantities(lotCodes)) {
+				lotsByCode.get((String) result[0]).setWardsTotalQuantity((Double) result[1]);
+			}
+		}
+	}
+
+	/**
+	 * Splits the specified codes in sublists of at most {@link #IN_CLAUSE_CHUNK_SIZE} elements, to be bound to {@code IN} clauses.
+	 * 
+	 * @param codes the codes to split.
+	 * @return the list of chunks.
+	 */
+	private static <T> List<List<T>> chunk(List<T> codes) {
+		List<List<T>> chunks = new ArrayList<>();
+		for (int from = 0; from < codes.size(); from += IN_CLAUSE_CHUNK_SIZE) {
+			chunks.add(codes.subList(from, Math.min(from + IN_CLAUSE_CHUNK_SIZE, codes.size())));
+		}
+		return chunks;
+	}
+
+	/**
+	 * Rebuilds all the {@link LotBalance}s from the movement history and the current wards stock.
+	 * 
+	 * @return the number of rebuilt balances.
+	 * @throws OHServiceException if an error occurs during the rebuild.
+	 */
+	public int rebuildLotBalances() throws OHServiceException {
+		lotBalanceRepository.deleteAllBalances();
+		return lotBalanceRepository.insertAllFromHistory();
+	}
+
+	/**
+	 * Checks all the stored {@link LotBalance}s against the movement history and the current wards stock.
+	 * 
+	 * @return the codes of the {@link Lot}s whose balance differs from the recomputed one, empty if all the balances are consistent.
+	 * @throws OHServiceException if an error occurs during the check.
+	 */
+	public List<String> verifyLotBalances() throws OHServiceException {
+		return lotBalanceRepository.findInconsistentBalances();
 	}
 
 	/**
@@ -703,7 +902,7 @@ public class MedicalStockIoOperations {
 	 * @throws OHServiceException
 	 */
 	public Movement getLastMovement() throws OHServiceException {
-		return movRepository.findLastMovement();
+		return movRepository.findFirstByOrderByCodeDesc();
 	}
 
 	/**
@@ -764,6 +963,9 @@ public class MedicalStockIoOperations {
 			}
 		}
 		movRepository.delete(movement);
+		if (movement.getLot() != null) {
+			updateLotMainStoreQuantity(movement.getLot().getCode(), -getSignedQuantity(movement));
+		}
 	}
 
 	/**
@@ -783,6 +985,7 @@ public class MedicalStockIoOperations {
 	 * @throws OHServiceException
 	 */
 	public void deleteLot(Lot lot) throws OHServiceException {
+		lotBalanceRepository.deleteBalance(lot.getCode());
 		lotRepository.delete(lot);
 	}
 
@@ -24,19 +24,26 @@ package org.isf.medicalstock.service;
 import java.time.LocalDateTime;
 import java.util.List;
 
+import org.isf.medicalstock.model.Movement;
 import org.isf.medicalstock.service.MedicalStockIoOperations.MovementOrder;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Repository;
 
 @Repository
 public interface MovementIoOperationRepositoryCustom {
 
-	List<Integer> findMovementWhereDatesAndId(String wardId, LocalDateTime dateFrom, LocalDateTime dateTo);
+	List<Movement> findMovementWhereDatesAndId(String wardId, LocalDateTime dateFrom, LocalDateTime dateTo);
 
-	List<Integer> findMovementWhereData(Integer medicalCode, String medicalType, String wardId, String movType,
+	List<Movement> findMovementWhereData(Integer medicalCode, String medicalType, String wardId, String movType,
 			LocalDateTime movFrom, LocalDateTime movTo, LocalDateTime lotPrepFrom,
 			LocalDateTime lotPrepTo, LocalDateTime lotDueFrom, LocalDateTime lotDueTo);
 
-	List<Integer> findMovementForPrint(String medicalDescription, String medicalTypeCode, String wardId,
+	Page<Movement> findMovementWhereDataPageable(Integer medicalCode, String medicalType, String wardId, String movType,
+			LocalDateTime movFrom, LocalDateTime movTo, LocalDateTime lotPrepFrom,
+			LocalDateTime lotPrepTo, LocalDateTime lotDueFrom, LocalDateTime lotDueTo, Pageable pageable);
+
+	List<Movement> findMovementForPrint(String medicalDescription, String medicalTypeCode, String wardId,
 			String movType, LocalDateTime movFrom, LocalDateTime movTo, String lotCode, MovementOrder order);
 
 }
@@ -29,6 +29,9 @@ import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
 import jakarta.persistence.criteria.CriteriaBuilder;
 import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.From;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.JoinType;
 import jakarta.persistence.criteria.Order;
 import jakarta.persistence.criteria.Predicate;
 import jakarta.persistence.criteria.Root;
@@ -41,6 +44,9 @@ import org.isf.medstockmovtype.model.MovementType;
 import org.isf.medtype.model.MedicalType;
 import org.isf.utils.time.TimeTools;
 import org.isf.ward.model.Ward;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
 import org.springframework.transaction.annotation.Transactional;
 
 @Transactional
@@ -53,71 +59,37 @@ public class MovementIoOperationRepositoryImpl implements MovementIoOperationRep
 	private static final String MEDICAL = "medical";
 	private static final String LOT = "lot";
 	private static final String TYPE = "type";
+	private static final String SUPPLIER = "supplier";
 	private static final String DESCRIPTION = "description";
 
 	@PersistenceContext
 	private EntityManager entityManager;
 
-	@SuppressWarnings("unchecked")
 	@Override
-	public List<Integer> findMovementWhereDatesAndId(String wardId, LocalDateTime dateFrom, LocalDateTime dateTo) {
-		return getMovementWhereDatesAndId(wardId, dateFrom, dateTo);
-	}
-
-	@SuppressWarnings("unchecked")
-	@Override
-	public List<Integer> findMovementWhereData(
-					Integer medicalCode,
-					String medicalType,
-					String wardId,
-					String movType,
-					LocalDateTime movFrom,
-					LocalDateTime movTo,
-					LocalDateTime lotPrepFrom,
-					LocalDateTime lotPrepTo,
-					LocalDateTime lotDueFrom,
-					LocalDateTime lotDueTo) {
-		return getMovementWhereData(medicalCode, medicalType, wardId, movType, movFrom, movTo,
-						lotPrepFrom, lotPrepTo, lotDueFrom, lotDueTo);
-	}
-
-	@SuppressWarnings("unchecked")
-	@Override
-	public List<Integer> findMovementForPrint(
-					String medicalDescription,
-					String medicalTypeCode,
-					String wardId,
-					String movType,
-					LocalDateTime movFrom,
-					LocalDateTime movTo,
-					String lotCode,
-					MovementOrder order) {
-		return getMovementForPrint(medicalDescription, medicalTypeCode, wardId, movType, movFrom, movTo,
-						lotCode, order);
-	}
-
-	private List<Integer> getMovementWhereDatesAndId(String wardId, LocalDateTime dateFrom, LocalDateTime dateTo) {
+	public List<Movement> findMovementWhereDatesAndId(String wardId, LocalDateTime dateFrom, LocalDateTime dateTo) {
 		CriteriaBuilder builder = entityManager.getCriteriaBuilder();
-		CriteriaQuery<Integer> query = builder.createQuery(Integer.class);
+		CriteriaQuery<Movement> query = builder.createQuery(Movement.class);
 		Root<Movement> root = query.from(Movement.class);
-		query.select(root.<Integer> get(CODE));
+		MovementJoins joins = MovementJoins.fetch(root);
 		List<Predicate> predicates = new ArrayList<>();
 
 		if ((dateFrom != null) && (dateTo != null)) {
 			predicates.add(builder.between(root.<LocalDateTime> get(DATE), TimeTools.getBeginningOfDay(dateFrom), TimeTools.getBeginningOfNextDay(dateTo)));
 		}
 		if (wardId != null && !wardId.equals("")) {
-			predicates.add(builder.equal(root.<Ward> get(WARD).<String> get(CODE), wardId));
+			predicates.add(builder.equal(joins.ward.<String> get(CODE), wardId));
 		}
 
 		List<Order> orderList = new ArrayList<>();
 		orderList.add(builder.desc(root.get(DATE)));
 		orderList.add(builder.desc(root.get(REF_NO)));
-		query.where(predicates.toArray(new Predicate[] {})).orderBy(orderList);
+		orderList.add(builder.desc(root.get(CODE)));
+		query.select(root).where(predicates.toArray(new Predicate[] {})).orderBy(orderList);
 		return entityManager.createQuery(query).getResultList();
 	}
 
-	private List<Integer> getMovementWhereData(
+	@Override
+	public List<Movement> findMovementWhereData(
 					Integer medicalCode,
 					String medicalType,
 					String wardId,
@@ -129,47 +101,53 @@ public class MovementIoOperationRepositoryImpl implements MovementIoOperationRep
 					LocalDateTime lotDueFrom,
 					LocalDateTime lotDueTo) {
 		CriteriaBuilder builder = entityManager.getCriteriaBuilder();
-		CriteriaQuery<Integer> query = builder.createQuery(Integer.class);
+		CriteriaQuery<Movement> query = builder.createQuery(Movement.class);
 		Root<Movement> root = query.from(Movement.class);
-		query.select(root.<Integer> get(CODE));
-		List<Predicate> predicates = new ArrayList<>();
+		MovementJoins joins = MovementJoins.fetch(root);
+		List<Predicate> predicates = getMovementWhereDataPredicates(builder, root, joins, medicalCode, medicalType, wardId, movType, movFrom, movTo,
+						lotPrepFrom, lotPrepTo, lotDueFrom, lotDueTo);
 
-		if (medicalCode != null) {
-			predicates.add(builder.equal(root.<Medical> get(MEDICAL).<String> get(CODE), medicalCode));
-		}
-		if (medicalType != null) {
-			predicates.add(builder.equal(root.<Medical> get(MEDICAL).<MedicalType> get(TYPE).<String> get(CODE), medicalType));
-		}
-		if ((movFrom != null) && (movTo != null)) {
-			predicates.add(builder.between(root.<LocalDateTime> get(DATE), movFrom, movTo));
-		}
-		if ((lotPrepFrom != null) && (lotPrepTo != null)) {
-			predicates.add(builder.between(root.<Lot> get(LOT).<LocalDateTime> get("preparationDate"), lotPrepFrom, lotPrepTo));
-		}
-		if ((lotDueFrom != null) && (lotDueTo != null)) {
-			predicates.add(builder.between(root.<Lot> get(LOT).<LocalDateTime> get("dueDate"), lotDueFrom, lotDueTo));
-		}
-		if ("+".equals(movType)) {
-			predicates.add(builder.equal(root.<MovementType> get(TYPE).<String> get(TYPE), movType));
+		query.select(root).where(predicates.toArray(new Predicate[] {})).orderBy(getMovementWhereDataOrder(builder, root));
+		return entityManager.createQuery(query).getResultList();
+	}
 
-		} else if ("-".equals(movType)) {
-			predicates.add(builder.equal(root.<MovementType> get(TYPE).<String> get(TYPE), movType));
+	@Override
+	public Page<Movement> findMovementWhereDataPageable(
+					Integer medicalCode,
+					String medicalType,
+					String wardId,
+					String movType,
+					LocalDateTime movFrom,
+					LocalDateTime movTo,
+					LocalDateTime lotPrepFrom,
+					LocalDateTime lotPrepTo,
+					LocalDateTime lotDueFrom,
+					LocalDateTime lotDueTo,
+					Pageable pageable) {
+		CriteriaBuilder builder = entityManager.getCriteriaBuilder();
 
-		} else if (movType != null) {
-			predicates.add(builder.equal(root.<MovementType> get(TYPE).<String> get(CODE), movType));
-		}
-		if (wardId != null) {
-			predicates.add(builder.equal(root.<Ward> get(WARD).<String> get(CODE), wardId));
-		}
+		CriteriaQuery<Long> countQuery = builder.createQuery(Long.class);
+		Root<Movement> countRoot = countQuery.from(Movement.class);
+		List<Predicate> countPredicates = getMovementWhereDataPredicates(builder, countRoot, MovementJoins.join(countRoot), medicalCode, medicalType, wardId,
+						movType, movFrom, movTo, lotPrepFrom, lotPrepTo, lotDueFrom, lotDueTo);
+		countQuery.select(builder.count(countRoot)).where(countPredicates.toArray(new Predicate[] {}));
+		long total = entityManager.createQuery(countQuery).getSingleResult();
 
-		List<Order> orderList = new ArrayList<>();
-		orderList.add(builder.desc(root.get(CODE)));
-		orderList.add(builder.desc(root.get(REF_NO)));
-		query.where(predicates.toArray(new Predicate[] {})).orderBy(orderList);
-		return entityManager.createQuery(query).getResultList();
+		CriteriaQuery<Movement> query = builder.createQuery(Movement.class);
+		Root<Movement> root = query.from(Movement.class);
+		MovementJoins joins = MovementJoins.fetch(root);
+		List<Predicate> predicates = getMovementWhereDataPredicates(builder, root, joins, medicalCode, medicalType, wardId, movType, movFrom, movTo,
+						lotPrepFrom, lotPrepTo, lotDueFrom, lotDueTo);
+		query.select(root).where(predicates.toArray(new Predicate[] {})).orderBy(getMovementWhereDataOrder(builder, root));
+		List<Movement> content = entityManager.createQuery(query)
+						.setFirstResult((int) pageable.getOffset())
+						.setMaxResults(pageable.getPageSize())
+						.getResultList();
+		return new PageImpl<>(content, pageable, total);
 	}
 
-	private List<Integer> getMovementForPrint(
+	@Override
+	public List<Movement> findMovementForPrint(
 					String medicalDescription,
 					String medicalTypeCode,
 					String wardId,
@@ -179,28 +157,28 @@ public class MovementIoOperationRepositoryImpl implements MovementIoOperationRep
 					String lotCode,
 					MovementOrder order) {
 		CriteriaBuilder builder = entityManager.getCriteriaBuilder();
-		CriteriaQuery<Integer> query = builder.createQuery(Integer.class);
+		CriteriaQuery<Movement> query = builder.createQuery(Movement.class);
 		Root<Movement> root = query.from(Movement.class);
-		query.select(root.<Integer> get(CODE));
+		MovementJoins joins = MovementJoins.fetch(root);
 		List<Predicate> predicates = new ArrayList<>();
 
 		if (medicalDescription != null) {
-			predicates.add(builder.equal(root.<Medical> get(MEDICAL).<String> get(DESCRIPTION), medicalDescription));
+			predicates.add(builder.equal(joins.medical.<String> get(DESCRIPTION), medicalDescription));
 		}
 		if (medicalTypeCode != null) {
-			predicates.add(builder.equal(root.<Medical> get(MEDICAL).<MedicalType> get(TYPE).<String> get(CODE), medicalTypeCode));
+			predicates.add(builder.equal(joins.medicalType.<String> get(CODE), medicalTypeCode));
 		}
 		if (lotCode != null) {
-			predicates.add(builder.equal(root.<Ward> get(LOT).<String> get(CODE), lotCode));
+			predicates.add(builder.equal(joins.lot.<String> get(CODE), lotCode));
 		}
 		if ((movFrom != null) && (movTo != null)) {
 			predicates.add(builder.between(root.<LocalDateTime> get(DATE), TimeTools.getBeginningOfDay(movFrom), TimeTools.getBeginningOfNextDay(movTo)));
 		}
 		if (movType != null) {
-			predicates.add(builder.equal(root.<MedicalType> get(TYPE).<String> get(CODE), movType));
+			predicates.add(builder.equal(joins.type.<String> get(CODE), movType));
 		}
 		if (wardId != null) {
-			predicates.add(builder.equal(root.<Ward> get(WARD).<String> get(CODE), wardId));
+			predicates.add(builder.equal(joins.ward.<String> get(CODE), wardId));
 		}
 		List<Order> orderList = new ArrayList<>();
 		switch (order) {
@@ -210,20 +188,114 @@ public class MovementIoOperationRepositoryImpl implements MovementIoOperationRep
 			break;
 		case WARD:
 			orderList.add(builder.desc(root.get(REF_NO)));
-			orderList.add(builder.desc(root.<Ward> get(WARD).get(DESCRIPTION)));
+			orderList.add(builder.desc(joins.ward.get(DESCRIPTION)));
 			break;
 		case PHARMACEUTICAL_TYPE:
 			orderList.add(builder.desc(root.get(REF_NO)));
-			orderList.add(builder.asc(root.<Medical> get(MEDICAL).<MedicalType> get(TYPE)));
-			orderList.add(builder.asc(root.<Medical> get(MEDICAL).<MedicalType> get(TYPE).get(DESCRIPTION)));
+			orderList.add(builder.asc(joins.medicalType.get(CODE)));
+			orderList.add(builder.asc(joins.medicalType.get(DESCRIPTION)));
 			break;
 		case TYPE:
 			orderList.add(builder.desc(root.get(REF_NO)));
-			orderList.add(builder.asc(root.<MovementType> get(TYPE).<MedicalType> get(DESCRIPTION)));
+			orderList.add(builder.asc(joins.type.get(DESCRIPTION)));
 			break;
 		}
-		query.where(predicates.toArray(new Predicate[] {})).orderBy(orderList);
+		// tie-breaker on the primary key keeps the ordering stable between calls
+		orderList.add(builder.desc(root.get(CODE)));
+		query.select(root).where(predicates.toArray(new Predicate[] {})).orderBy(orderList);
 		return entityManager.createQuery(query).getResultList();
 	}
 
+	private List<Predicate> getMovementWhereDataPredicates(
+					CriteriaBuilder builder,
+					Root<Movement> root,
+					MovementJoins joins,
+					Integer medicalCode,
+					String medicalType,
+					String wardId,
+					String movType,
+					LocalDateTime movFrom,
+					LocalDateTime movTo,
+					LocalDateTime lotPrepFrom,
+					LocalDateTime lotPrepTo,
+					LocalDateTime lotDueFrom,
+					LocalDateTime lotDueTo) {
+		List<Predicate> predicates = new ArrayList<>();
+
+		if (medicalCode != null) {
+			predicates.add(builder.equal(joins.medical.<Integer> get(CODE), medicalCode));
+		}
+		if (medicalType != null) {
+			predicates.add(builder.equal(joins.medicalType.<String> get(CODE), medicalType));
+		}
+		if ((movFrom != null) && (movTo != null)) {
+			predicates.add(builder.between(root.<LocalDateTime> get(DATE), movFrom, movTo));
+		}
+		if ((lotPrepFrom != null) && (lotPrepTo != null)) {
+			predicates.add(builder.between(joins.lot.<LocalDateTime> get("preparationDate"), lotPrepFrom, lotPrepTo));
+		}
+		if ((lotDueFrom != null) && (lotDueTo != null)) {
+			predicates.add(builder.between(joins.lot.<LocalDateTime> get("dueDate"), lotDueFrom, lotDueTo));
+		}
+		if ("+".equals(movType)) {
+			predicates.add(builder.equal(joins.type.<String> get(TYPE), movType));
+
+		} else if ("-".equals(movType)) {
+			predicates.add(builder.equal(joins.type.<String> get(TYPE), movType));
+
+		} else if (movType != null) {
+			predicates.add(builder.equal(joins.type.<String> get(CODE), movType));
+		}
+		if (wardId != null) {
+			predicates.add(builder.equal(joins.ward.<String> get(CODE), wardId));
+		}
+		return predicates;
+	}
+
+	private List<Order> getMovementWhereDataOrder(CriteriaBuilder builder, Root<Movement> root) {
+		List<Order> orderList = new ArrayList<>();
+		orderList.add(builder.desc(root.get(CODE)));
+		orderList.add(builder.desc(root.get(REF_NO)));
+		return orderList;
+	}
+
+	/**
+	 * The associations of a {@link Movement} used for filtering and ordering. When built with {@link #fetch(Root)} the associations are loaded within the same
+	 * statement, so that a list of movements is retrieved with a single query instead of one query per movement.
+	 */
+	private static final class MovementJoins {
+
+		private final Join<?, Medical> medical;
+		private final Join<?, MedicalType> medicalType;
+		private final Join<?, MovementType> type;
+		private final Join<?, Lot> lot;
+		private final Join<?, Ward> ward;
+
+		private MovementJoins(Join<?, Medical> medical, Join<?, MedicalType> medicalType, Join<?, MovementType> type, Join<?, Lot> lot,
+						Join<?, Ward> ward) {
+			this.medical = medical;
+			this.medicalType = medicalType;
+			this.type = type;
+			this.lot = lot;
+			this.ward = ward;
+		}
+
+		@SuppressWarnings("unchecked")
+		static MovementJoins fetch(From<?, Movement> root) {
+			Join<Movement, Medical> medical = (Join<Movement, Medical>) root.<Movement, Medical> fetch(MEDICAL, JoinType.INNER);
+			Join<Medical, MedicalType> medicalType = (Join<Medical, MedicalType>) medical.<Medical, MedicalType> fetch(TYPE, JoinType.LEFT);
+			Join<Movement, MovementType> type = (Join<Movement, MovementType>) root.<Movement, MovementType> fetch(TYPE, JoinType.INNER);
+			Join<Movement, Lot> lot = (Join<Movement, Lot>) root.<Movement, Lot> fetch(LOT, JoinType.LEFT);
+			Join<Movement, Ward> ward = (Join<Movement, Ward>) root.<Movement, Ward> fetch(WARD, JoinType.LEFT);
+			root.fetch(SUPPLIER, JoinType.LEFT);
+			return new MovementJoins(medical, medicalType, type, lot, ward);
+		}
+
+		static MovementJoins join(From<?, Movement> root) {
+			Join<Movement, Medical> medical = root.join(MEDICAL, JoinType.INNER);
+			return new MovementJoins(medical, medical.join(TYPE, JoinType.LEFT), root.join(TYPE, JoinType.INNER), root.join(LOT, JoinType.LEFT),
+							root.join(WARD, JoinType.LEFT));
+		}
+	}
+
 }
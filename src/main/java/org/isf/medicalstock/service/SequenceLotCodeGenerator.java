@@ -0,0 +1,79 @@
+/*
+ * Open Hospital (www.open-hospital.org)
+ * Copyright © 2006-2024 Informatici Senza Frontiere (info@informaticisenzafrontiere.org)
+ *
+ * Open Hospital is a free and open source software for healthcare data management.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * https://www.gnu.org/licenses/gpl-3.0-standalone.html
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.isf.medicalstock.service;
+
+import org.isf.generaldata.GeneralData;
+import org.isf.sequence.service.SequenceIoOperations;
+import org.isf.utils.exception.OHServiceException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * {@link LotCodeGenerator} backed by the {@code LOT_CODE} database sequence.
+ * <p>
+ * Values are reserved in blocks of {@link #BLOCK_SIZE} and handed out from memory, so that only one database round trip out of {@link #BLOCK_SIZE} codes
+ * is needed. Each block is reserved in its own committed transaction, so several transactions and several application instances never get the same
+ * value. The code is made of the {@code AUTOMATICLOT_IN_PREFIX} followed by the value formatted with {@code AUTOMATICLOT_IN_FORMAT}.
+ */
+@Component
+public class SequenceLotCodeGenerator implements LotCodeGenerator {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(SequenceLotCodeGenerator.class);
+
+	public static final String SEQUENCE_NAME = "LOT_CODE";
+
+	static final int BLOCK_SIZE = 50;
+
+	private final SequenceIoOperations sequenceIoOperations;
+
+	private long nextValue;
+
+	private long blockEnd;
+
+	public SequenceLotCodeGenerator(SequenceIoOperations sequenceIoOperations) {
+		this.sequenceIoOperations = sequenceIoOperations;
+	}
+
+	@Override
+	public String generateLotCode() throws OHServiceException {
+		return GeneralData.AUTOMATICLOT_IN_PREFIX + String.format(GeneralData.AUTOMATICLOT_IN_FORMAT, nextValue());
+	}
+
+	private synchronized long nextValue() throws OHServiceException {
+		if (nextValue >= blockEnd) {
+			nextValue = reserveBlock();
+			blockEnd = nextValue + BLOCK_SIZE;
+		}
+		return nextValue++;
+	}
+
+	private long reserveBlock() throws OHServiceException {
+		try {
+			return sequenceIoOperations.reserve(SEQUENCE_NAME, BLOCK_SIZE, 1);
+		} catch (OHServiceException e) {
+			// the sequence may have been created in the meantime by another transaction
+			LOGGER.warn("Lot code block reservation failed, retrying: {}", e.getMessage());
+			return sequenceIoOperations.reserve(SEQUENCE_NAME, BLOCK_SIZE, 1);
+		}
+	}
+}
@@ -23,9 +23,13 @@ package org.isf.medicalstockward.manager;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.isf.generaldata.MessageBundle;
 import org.isf.medicals.model.Medical;
@@ -113,6 +117,16 @@ public class MovWardBrowserManager {
 		return ioOperations.getMedicalsWardTotalQuantity(wardId);
 	}
 
+	/**
+	 * Gets, for every ward, all the {@link MedicalWard}s associated to it summarized by lot (total quantity, regardless the lot)
+	 *
+	 * @return the retrieved medicals by ward code.
+	 * @throws OHServiceException
+	 */
+	public Map<String, List<MedicalWard>> getMedicalsWardTotalQuantity() throws OHServiceException {
+		return ioOperations.getMedicalsWardTotalQuantity();
+	}
+
 	/**
 	 * Gets all the movement ward with the specified criteria.
 	 *
@@ -201,6 +215,21 @@ public class MovWardBrowserManager {
 		return ioOperations.getCurrentQuantityInWard(ward, medical);
 	}
 
+	/**
+	 * Gets the current quantity in all the wards for each of the specified {@link Medical}s, with a single query.
+	 *
+	 * @param medicals the {@link Medical}s to check.
+	 * @return the total quantity by medical code; medicals not present in any ward are missing.
+	 * @throws OHServiceException if an error occurs retrieving the quantities.
+	 */
+	public Map<Integer, Integer> getCurrentQuantitiesInWards(Collection<Medical> medicals) throws OHServiceException {
+		Set<Integer> medicalCodes = new HashSet<>();
+		for (Medical medical : medicals) {
+			medicalCodes.add(medical.getCode());
+		}
+		return ioOperations.getCurrentQuantitiesInWards(medicalCodes);
+	}
+
 	/**
 	 * Gets the current quantity for the specified {@link Ward} and {@link Lot}.
 	 *
@@ -21,6 +21,7 @@
  */
 package org.isf.medicalstockward.service;
 
+import java.util.Collection;
 import java.util.List;
 
 import org.isf.medicalstockward.model.MedicalWard;
@@ -45,6 +46,10 @@ public interface MedicalStockWardIoOperationRepository extends JpaRepository<Med
 			"where medWard.id.medical.code=:medical")
 	Double findQuantityInWardWhereMedical(@Param("medical") int medical);
 
+	@Query(value = "select medWard.id.medical.code, sum(medWard.in_quantity-medWard.out_quantity) from MedicalWard medWard " +
+			"where medWard.id.medical.code in :medicals group by medWard.id.medical.code")
+	List<Object[]> findQuantitiesInWardWhereMedicals(@Param("medicals") Collection<Integer> medicals);
+
 	@Query(value = "select sum(medWard.in_quantity-medWard.out_quantity) from MedicalWard medWard " +
 			"where medWard.id.medical.code=:medical and medWard.id.ward.code=:ward")
 	Double findQuantityInWardWhereMedicalAndWard(@Param("medical") int medical, @Param("ward") String ward);
@@ -75,6 +80,16 @@ public interface MedicalStockWardIoOperationRepository extends JpaRepository<Med
 	@Query(value = "select medWard from MedicalWard medWard where medWard.id.ward.code=:ward")
 	List<MedicalWard> findAllWhereWard(@Param("ward") String wordCode);
 
+	@Query(value = "select medWard.id.ward, medWard.id.medical, sum(medWard.in_quantity-medWard.out_quantity) from MedicalWard medWard " +
+			"where medWard.id.ward.code=:ward group by medWard.id.ward, medWard.id.medical " +
+			"having count(case when medWard.in_quantity <> medWard.out_quantity then 1 end) > 0")
+	List<Object[]> findTotalQuantitiesWhereWard(@Param("ward") String wardCode);
+
+	@Query(value = "select medWard.id.ward, medWard.id.medical, sum(medWard.in_quantity-medWard.out_quantity) from MedicalWard medWard " +
+			"group by medWard.id.ward, medWard.id.medical " +
+			"having count(case when medWard.in_quantity <> medWard.out_quantity then 1 end) > 0")
+	List<Object[]> findTotalQuantities();
+
 	@Query(value = "select medWard from MedicalWard medWard where medWard.id.ward.code=:ward and medWard.id.medical.code = :medical")
 	List<MedicalWard> findAllWhereWardAndMedical(@Param("ward") String wardId, @Param("medical") int medId);
 
@@ -23,11 +23,16 @@ package org.isf.medicalstockward.service;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.isf.medicals.model.Medical;
 import org.isf.medicalstock.model.Lot;
 import org.isf.medicalstock.model.Movement;
+import org.isf.medicalstock.service.LotBalanceIoOperationRepository;
 import org.isf.medicalstock.service.LotIoOperationRepository;
 import org.isf.medicalstockward.model.MedicalWard;
 import org.isf.medicalstockward.model.MovementWard;
@@ -53,12 +58,16 @@ public class MedicalStockWardIoOperations {
 
 	private LotIoOperationRepository lotRepository;
 
+	private LotBalanceIoOperationRepository lotBalanceRepository;
+
 	public MedicalStockWardIoOperations(MedicalStockWardIoOperationRepository medicalStockWardIoOperationRepository,
 	                                    MovementWardIoOperationRepository movementWardIoOperationRepository,
-	                                    LotIoOperationRepository lotIoOperationRepository) {
+	                                    LotIoOperationRepository lotIoOperationRepository,
+	                                    LotBalanceIoOperationRepository lotBalanceIoOperationRepository) {
 		this.repository = medicalStockWardIoOperationRepository;
 		this.movementRepository = movementWardIoOperationRepository;
 		this.lotRepository = lotIoOperationRepository;
+		this.lotBalanceRepository = lotBalanceIoOperationRepository;
 	}
 
 	/**
@@ -74,9 +83,13 @@ public class MedicalStockWardIoOperations {
 
 		List<Integer> pMovementWardCode = new ArrayList<>(repository.findAllWardMovement(wardId, TimeTools.truncateToSeconds(dateFrom),
 						TimeTools.truncateToSeconds(dateTo)));
+		// load the movements at once, then restore the order of the codes
+		Map<Integer, MovementWard> movementWardsByCode = new HashMap<>();
+		for (MovementWard movementWard : movementRepository.findAllById(pMovementWardCode)) {
+			movementWardsByCode.put(movementWard.getCode(), movementWard);
+		}
 		for (Integer code : pMovementWardCode) {
-			MovementWard movementWard = movementRepository.findById(code).orElse(null);
-			pMovementWard.add(movementWard);
+			pMovementWard.add(movementWardsByCode.get(code));
 		}
 		return pMovementWard;
 	}
@@ -109,6 +122,23 @@ public class MedicalStockWardIoOperations {
 		return (int) (mainQuantity != null ? mainQuantity : 0.0);
 	}
 
+	/**
+	 * Gets the current quantity in all the wards for each of the specified {@link Medical}s.
+	 * @param medicalCodes the {@link Medical} codes
+	 * @return the total quantity by medical code; medicals not present in any ward are missing.
+	 * @throws OHServiceException if an error occurs retrieving the quantities.
+	 */
+	public Map<Integer, Integer> getCurrentQuantitiesInWards(Collection<Integer> medicalCodes) throws OHServiceException {
+		Map<Integer, Integer> quantities = new HashMap<>();
+		if (medicalCodes.isEmpty()) {
+			return quantities;
+		}
+		for (Object[] row : repository.findQuantitiesInWardWhereMedicals(medicalCodes)) {
+			quantities.put((Integer) row[0], row[1] == null ? 0 : ((Number) row[1]).intValue());
+		}
+		return quantities;
+	}
+
 	/**
 	 * Gets the current quantity for the specified {@link Ward} and {@link Lot}.
 	 * @param ward - if {@code null} the quantity is counted for the whole hospital
@@ -210,6 +240,7 @@ public class MedicalStockWardIoOperations {
 				repository.save(medicalWard);
 			}
 			repository.updateOutQuantity(Math.abs(qty), ward, medical, lot);
+			updateLotWardsTotalQuantity(lot);
 			return;
 		}
 
@@ -229,6 +260,17 @@ public class MedicalStockWardIoOperations {
 				repository.updateOutQuantity(qty, ward, medical, lot); // TODO: change to jpa
 			}
 		}
+		updateLotWardsTotalQuantity(lot);
+	}
+
+	/**
+	 * Recomputes the wards total quantity of the {@link Lot} balance from the current wards stock. If the balance is not present yet it is created from the
+	 * movement history of the lot, in the same statement.
+	 * 
+	 * @param lotCode the lot code.
+	 */
+	private void updateLotWardsTotalQuantity(String lotCode) {
+		lotBalanceRepository.updateWardsTotalQuantity(lotCode);
 	}
 
 	/**
@@ -282,26 +324,39 @@ public class MedicalStockWardIoOperations {
 
 	/**
 	 * Gets all the {@link MedicalWard}s associated to the specified ward summarized by lot
-	 * (total quantity, regardless the lot)
+	 * (total quantity, regardless the lot), with a single aggregate query
 	 * @param wardId
 	 * @return the retrieved medicals.
 	 * @throws OHServiceException
 	 */
 	public List<MedicalWard> getMedicalsWardTotalQuantity(String wardId) throws OHServiceException {
-		String wardID = String.valueOf(wardId);
-		List<MedicalWard> medicalWards = getMedicalsWard(wardId, true);
-
-		List<MedicalWard> medicalWardsQty = new ArrayList<>();
+		return toMedicalWardTotals(repository.findTotalQuantitiesWhereWard(wardId)).getOrDefault(wardId, new ArrayList<>());
+	}
 
-		for (MedicalWard medicalWard : medicalWards) {
+	/**
+	 * Gets, for every {@link Ward}, all the {@link MedicalWard}s associated to it summarized by lot
+	 * (total quantity, regardless the lot)
+	 * @return the retrieved medicals by ward code.
+	 * @throws OHServiceException
+	 */
+	public Map<String, List<MedicalWard>> getMedicalsWardTotalQuantity() throws OHServiceException {
+		return toMedicalWardTotals(repository.findTotalQuantities());
+	}
 
-			if (!medicalWardsQty.contains(medicalWard)) {
-				Double qty = repository.findQuantityInWardWhereMedicalAndWard(medicalWard.getId().getMedical().getCode(), wardID);
-				medicalWard.setQty(qty);
-				medicalWardsQty.add(medicalWard);
-			}
+	/**
+	 * Builds the {@link MedicalWard} totals, grouped by ward code, from the (ward, medical, quantity) aggregate rows.
+	 * @param rows the aggregate rows.
+	 * @return the {@link MedicalWard} totals by ward code.
+	 */
+	private Map<String, List<MedicalWard>> toMedicalWardTotals(List<Object[]> rows) {
+		Map<String, List<MedicalWard>> medicalWardsByWard = new LinkedHashMap<>();
+		for (Object[] row : rows) {
+			Ward ward = (Ward) row[0];
+			MedicalWard medicalWard = new MedicalWard(ward, (Medical) row[1], 0, 0, null);
+			medicalWard.setQty(((Number) row[2]).doubleValue());
+			medicalWardsByWard.computeIfAbsent(ward.getCode(), code -> new ArrayList<>()).add(medicalWard);
 		}
-		return medicalWardsQty;
+		return medicalWardsByWard;
 	}
 
 	/**
@@ -334,7 +389,9 @@ public class MedicalStockWardIoOperations {
 	 * @throws OHServiceException if an error occurs during the update.
 	 */
 	public MedicalWard updateMedicalWard(MedicalWard medWard) throws OHServiceException {
-		return repository.save(medWard);
+		MedicalWard medicalWard = repository.save(medWard);
+		updateLotWardsTotalQuantity(medicalWard.getLot().getCode());
+		return medicalWard;
 	}
 
 	/**
@@ -344,6 +401,7 @@ public class MedicalStockWardIoOperations {
 	 */
 	public void deleteMedicalWard(MedicalWard medWard) throws OHServiceException {
 		repository.delete(medWard);
+		updateLotWardsTotalQuantity(medWard.getLot().getCode());
 	}
 
 	/**
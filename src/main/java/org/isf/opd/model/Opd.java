@@ -27,11 +27,15 @@ import jakarta.persistence.AttributeOverride;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.EntityListeners;
+import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
+import jakarta.persistence.NamedAttributeNode;
+import jakarta.persistence.NamedEntityGraph;
+import jakarta.persistence.NamedSubgraph;
 import jakarta.persistence.Table;
 import jakarta.persistence.Transient;
 import jakarta.persistence.Version;
@@ -49,6 +53,19 @@ import com.drew.lang.annotations.Nullable;
 
 @Entity
 @Table(name="OH_OPD")
+@NamedEntityGraph(name = "Opd.detail",
+attributeNodes = {
+		@NamedAttributeNode("ward"),
+		@NamedAttributeNode(value = "patient", subgraph = "patient"),
+		@NamedAttributeNode(value = "disease", subgraph = "disease"),
+		@NamedAttributeNode(value = "disease2", subgraph = "disease"),
+		@NamedAttributeNode(value = "disease3", subgraph = "disease"),
+		@NamedAttributeNode(value = "nextVisit", subgraph = "visit")},
+subgraphs = {
+		@NamedSubgraph(name = "patient", attributeNodes = @NamedAttributeNode("patientConsensus")),
+		@NamedSubgraph(name = "disease", attributeNodes = @NamedAttributeNode("diseaseType")),
+		@NamedSubgraph(name = "visit", attributeNodes = {@NamedAttributeNode(value = "patient", subgraph = "patient"), @NamedAttributeNode("ward")})}
+)
 @EntityListeners(AuditingEntityListener.class)
 @AttributeOverride(name = "createdBy", column = @Column(name = "OPD_CREATED_BY", updatable = false))
 @AttributeOverride(name = "createdDate", column = @Column(name = "OPD_CREATED_DATE", updatable = false))
@@ -63,7 +80,7 @@ public class Opd extends Auditable<String> {
 	private int code;
 	
 	@NotNull
-	@ManyToOne
+	@ManyToOne(fetch = FetchType.LAZY)
 	@JoinColumn(name = "OPD_WRD_ID_A")
 	private Ward ward;
 
@@ -71,7 +88,7 @@ public class Opd extends Auditable<String> {
 	@Column(name="OPD_DATE") // SQL type: datetime
 	private LocalDateTime date;
 
-	@ManyToOne
+	@ManyToOne(fetch = FetchType.LAZY)
 	@JoinColumn(name="OPD_PAT_ID")
 	private Patient patient;
 
@@ -91,15 +108,15 @@ public class Opd extends Auditable<String> {
 	@Column(name="OPD_PROG_YEAR")	
 	private int prog_year;
 
-	@ManyToOne
+	@ManyToOne(fetch = FetchType.LAZY)
 	@JoinColumn(name="OPD_DIS_ID_A")
 	private Disease disease;
 	
-	@ManyToOne
+	@ManyToOne(fetch = FetchType.LAZY)
 	@JoinColumn(name="OPD_DIS_ID_A_2")
 	private Disease disease2;
 	
-	@ManyToOne
+	@ManyToOne(fetch = FetchType.LAZY)
 	@JoinColumn(name="OPD_DIS_ID_A_3")
 	private Disease disease3;
 
@@ -117,7 +134,7 @@ public class Opd extends Auditable<String> {
 	@Column(name="OPD_USR_ID_A")
 	private String userID;
 	
-	@ManyToOne
+	@ManyToOne(fetch = FetchType.LAZY)
 	@JoinColumn(name = "OPD_NEXT_VISIT_ID")
 	private Visit nextVisit;
 
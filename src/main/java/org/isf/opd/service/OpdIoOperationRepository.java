@@ -23,6 +23,7 @@ package org.isf.opd.service;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 import org.isf.distype.model.DiseaseType;
 import org.isf.opd.model.Opd;
@@ -30,17 +31,26 @@ import org.isf.patient.model.Patient;
 import org.isf.ward.model.Ward;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.EntityGraph.EntityGraphType;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
 public interface OpdIoOperationRepository extends JpaRepository<Opd, Integer>, OpdIoOperationRepositoryCustom {
 
+	@Override
+	@EntityGraph(value = "Opd.detail", type = EntityGraphType.LOAD)
+	Optional<Opd> findById(Integer id);
+
+	@EntityGraph(value = "Opd.detail", type = EntityGraphType.LOAD)
 	Opd findOneByPatientAndNextVisitDate(Patient patient, LocalDateTime visitDate);
 
+	@EntityGraph(value = "Opd.detail", type = EntityGraphType.LOAD)
 	@Query("select o from Opd o order by o.prog_year")
 	List<Opd> findAllOrderByProgYearDesc();
 
+	@EntityGraph(value = "Opd.detail", type = EntityGraphType.LOAD)
 	@Query("select o from Opd o where o.patient.code = :code order by o.prog_year")
 	List<Opd> findAllByPatient_CodeOrderByProgYearDesc(@Param("code") Integer code);
 
@@ -50,27 +60,39 @@ public interface OpdIoOperationRepository extends JpaRepository<Opd, Integer>, O
 	@Query(value = "select max(o.prog_year) from Opd o where o.date >= :dateFrom and o.date < :dateTo")
 	Integer findMaxProgYearWhereDateBetween(@Param("dateFrom") LocalDateTime dateFrom, @Param("dateTo") LocalDateTime dateTo);
 
+	@EntityGraph(value = "Opd.detail", type = EntityGraphType.LOAD)
 	List<Opd> findTop1ByPatient_CodeOrderByDateDesc(Integer code);
 
+	@EntityGraph(value = "Opd.detail", type = EntityGraphType.LOAD)
 	@Query("select o from Opd o where o.prog_year = :prog_year")
 	List<Opd> findByProgYear(@Param("prog_year") Integer prog_year);
 
+	@EntityGraph(value = "Opd.detail", type = EntityGraphType.LOAD)
 	@Query(value = "select op from Opd op where op.prog_year = :prog_year and op.date >= :dateVisitFrom and op.date < :dateVisitTo")
 	List<Opd> findByProgYearAndDateBetween(@Param("prog_year") Integer prog_year, @Param("dateVisitFrom") LocalDateTime dateVisitFrom,
 					@Param("dateVisitTo") LocalDateTime dateVisitTo);
 
+	@Query(value = "select count(op) > 0 from Opd op where op.prog_year = :prog_year and op.date >= :dateVisitFrom and op.date < :dateVisitTo")
+	boolean existsByProgYearAndDateBetween(@Param("prog_year") Integer prog_year, @Param("dateVisitFrom") LocalDateTime dateVisitFrom,
+					@Param("dateVisitTo") LocalDateTime dateVisitTo);
+
+	@EntityGraph(value = "Opd.detail", type = EntityGraphType.LOAD)
 	@Query("select o from Opd o order by o.prog_year")
 	Page<Opd> findAllOrderByProgYearDescPageable(Pageable pageable);
 
+	@EntityGraph(value = "Opd.detail", type = EntityGraphType.LOAD)
 	@Query("select o from Opd o where o.ward = :ward order by o.prog_year")
 	Page<Opd> findAllByWardOrderByProgYearDescPageable(@Param("ward") Ward ward, Pageable pageable);
 
+	@EntityGraph(value = "Opd.detail", type = EntityGraphType.LOAD)
 	@Query("select o from Opd o where o.patient.code = :code order by o.prog_year")
 	Page<Opd> findAllByPatient_CodeOrderByProgYearDescPageable(@Param("code") Integer code, Pageable pageable);
 
+	@EntityGraph(value = "Opd.detail", type = EntityGraphType.LOAD)
 	@Query("select o from Opd o where o.patient.code = :code and o.ward = :ward order by o.prog_year")
 	Page<Opd> findAllByPatient_CodeAndWardOrderByProgYearDescPageable(@Param("code") int code, @Param("ward") Ward ward, Pageable pageable);
 
+	@EntityGraph(value = "Opd.detail", type = EntityGraphType.LOAD)
 	@Query(value = "select op from Opd op where op.ward = :ward or op.disease.diseaseType = :diseaseType or op.disease.code = :diseaseCode or (op.date >= :dateFrom and op.date < :dateTo) "
 					+ " or (op.age >= :ageFrom and op.age < :ageTo) or op.sex = :sex or op.newPatient = :newPatient")
 	Page<Opd> findOpdListPageable(@Param("ward") Ward ward, @Param("diseaseType") DiseaseType diseaseType, @Param("diseaseCode") String diseaseCode,
@@ -34,6 +34,7 @@ import jakarta.persistence.criteria.CriteriaQuery;
 import jakarta.persistence.criteria.Predicate;
 import jakarta.persistence.criteria.Root;
 
+import org.hibernate.jpa.SpecHints;
 import org.isf.opd.model.Opd;
 import org.isf.ward.model.Ward;
 import org.springframework.transaction.annotation.Transactional;
@@ -117,7 +118,8 @@ public class OpdIoOperationRepositoryImpl implements OpdIoOperationRepositoryCus
 		);
 		query.where(cb.and(predicates.toArray(new Predicate[0])));
 
-		return entityManager.createQuery(query);
+		// the associations shown with each OPD are loaded within the same statement
+		return entityManager.createQuery(query).setHint(SpecHints.HINT_SPEC_LOAD_GRAPH, entityManager.getEntityGraph("Opd.detail"));
 	}
 
 }
@@ -28,6 +28,7 @@ import java.util.Optional;
 
 import org.isf.generaldata.MessageBundle;
 import org.isf.opd.model.Opd;
+import org.isf.sequence.service.ProgressiveNumberIoOperations;
 import org.isf.utils.db.TranslateOHServiceException;
 import org.isf.utils.exception.OHServiceException;
 import org.isf.utils.pagination.PageInfo;
@@ -45,10 +46,15 @@ import org.springframework.transaction.annotation.Transactional;
 @TranslateOHServiceException
 public class OpdIoOperations {
 
+	private static final String PROG_YEAR_SCOPE = "OPD_PROG_YEAR_";
+
 	private OpdIoOperationRepository repository;
 
-	public OpdIoOperations(OpdIoOperationRepository opdIoOperationRepository) {
+	private ProgressiveNumberIoOperations progressiveNumberIoOperations;
+
+	public OpdIoOperations(OpdIoOperationRepository opdIoOperationRepository, ProgressiveNumberIoOperations progressiveNumberIoOperations) {
 		this.repository = opdIoOperationRepository;
+		this.progressiveNumberIoOperations = progressiveNumberIoOperations;
 	}
 
 	/**
@@ -129,13 +135,18 @@ public class OpdIoOperations {
 	}
 
 	/**
-	 * Insert a new {@link Opd} into the db.
+	 * Insert a new {@link Opd} into the db. If its progressive number in the year is already used, the {@link Opd} gets the next free one.
 	 * 
 	 * @param opd - an {@link Opd}
 	 * @return the newly inserted {@link Opd} object.
 	 * @throws OHServiceException 
 	 */
 	public Opd newOpd(Opd opd) throws OHServiceException {
+		if (opd.getProgYear() > 0 && opd.getDate() != null) {
+			int year = opd.getDate().getYear();
+			opd.setProgYear(progressiveNumberIoOperations.allocate(PROG_YEAR_SCOPE + year, opd.getProgYear(), () -> getLastProgYear(year),
+				progYear -> repository.existsByProgYearAndDateBetween(progYear, LocalDateTime.of(year, 1, 1, 0, 0), LocalDateTime.of(year + 1, 1, 1, 0, 0))));
+		}
 		return repository.save(opd);
 	}
 
@@ -168,8 +179,15 @@ public class OpdIoOperations {
 	 * @throws OHServiceException 
 	 */
 	public int getProgYear(int year) throws OHServiceException {
-		Integer progYear = year == 0 ? repository.findMaxProgYear()
-						: repository.findMaxProgYearWhereDateBetween(LocalDateTime.of(year, 1, 1, 0, 0), LocalDateTime.of(year + 1, 1, 1, 0, 0));
+		if (year == 0) {
+			Integer progYear = repository.findMaxProgYear();
+			return progYear == null ? 0 : progYear;
+		}
+		return progressiveNumberIoOperations.getNext(PROG_YEAR_SCOPE + year, () -> getLastProgYear(year)) - 1;
+	}
+
+	private int getLastProgYear(int year) {
+		Integer progYear = repository.findMaxProgYearWhereDateBetween(LocalDateTime.of(year, 1, 1, 0, 0), LocalDateTime.of(year + 1, 1, 1, 0, 0));
 		return progYear == null ? 0 : progYear;
 	}
 
@@ -27,6 +27,8 @@ import org.isf.admission.model.Admission;
 import org.isf.opd.model.Opd;
 import org.isf.operation.model.OperationRow;
 import org.isf.patient.model.Patient;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.EntityGraph.EntityGraphType;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
@@ -37,14 +39,19 @@ import org.springframework.stereotype.Repository;
 @Repository
 public interface OperationRowIoOperationRepository extends JpaRepository<OperationRow, String> {
 
+	@EntityGraph(value = "OperationRow.detail", type = EntityGraphType.LOAD)
 	List<OperationRow> findByOrderByOpDateDesc();
 
+	@EntityGraph(value = "OperationRow.detail", type = EntityGraphType.LOAD)
 	List<OperationRow> findByAdmission(Admission adm);
 
+	@EntityGraph(value = "OperationRow.detail", type = EntityGraphType.LOAD)
 	OperationRow findById(int id);
 
+	@EntityGraph(value = "OperationRow.detail", type = EntityGraphType.LOAD)
 	List<OperationRow> findByOpd(Opd opd);
 
+	@EntityGraph(value = "OperationRow.detail", type = EntityGraphType.LOAD)
 	List<OperationRow> findByAdmissionPatientOrOpdPatient(Patient patient, Patient patient1);
 
 	@Query("select count(o) from OperationRow o where active=1")
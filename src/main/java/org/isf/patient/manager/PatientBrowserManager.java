@@ -294,6 +294,21 @@ public class PatientBrowserManager {
 		return ioOperations.getPatientsByOneOfFieldsLike(keyword);
 	}
 
+	/**
+	 * Method that returns the most relevant {@link Patient}s not logically deleted, having each word of the passed String in one of
+	 * their searchable fields, ignoring case and accents.
+	 *
+	 * @param keyword
+	 *            - String to search, {@code null} for full list
+	 * @param maxResults
+	 *            - the maximum number of {@link Patient}s to return
+	 * @return the list of {@link Patient}s (could be empty)
+	 * @throws OHServiceException
+	 */
+	public List<Patient> getPatientsByOneOfFieldsLike(String keyword, int maxResults) throws OHServiceException {
+		return ioOperations.getPatientsByOneOfFieldsLike(keyword, maxResults);
+	}
+
 	public PatientProfilePhoto retrievePatientProfilePhoto(Patient patient) throws OHServiceException {
 		return ioOperations.retrievePatientProfilePhoto(patient);
 	}
@@ -21,6 +21,7 @@
  */
 package org.isf.patient.service;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
 
@@ -52,6 +53,14 @@ public interface PatientIoOperationRepository extends JpaRepository<Patient, Int
 
 	List<Patient> findByNameAndDeleted(String name, char deletedStatus);
 
+	@Query(value = "select p.code, p.firstName, p.secondName, p.city, p.address, p.telephone, p.note, p.taxCode, p.lastModifiedDate from Patient p "
+		+ "order by p.code")
+	List<Object[]> findSearchFields();
+
+	@Query(value = "select p.code, p.firstName, p.secondName, p.city, p.address, p.telephone, p.note, p.taxCode, p.lastModifiedDate from Patient p "
+		+ "where p.code > :code or p.lastModifiedDate >= :from order by p.code")
+	List<Object[]> findSearchFieldsWhereCodeAfterOrLastModifiedDateFrom(@Param("code") int code, @Param("from") LocalDateTime from);
+
 	@Query(value = "select max(p.code) from Patient p")
 	Integer findMaxCode();
 	
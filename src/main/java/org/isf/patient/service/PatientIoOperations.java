@@ -21,9 +21,12 @@
  */
 package org.isf.patient.service;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import jakarta.persistence.EntityManager;
 
@@ -57,6 +60,10 @@ public class PatientIoOperations {
 
 	public static final char NOT_DELETED_STATUS = 'N';
 
+	private static final char DELETED_STATUS = 'Y';
+
+	private static final int SEARCH_CHUNK_SIZE = 500;
+
 	private final PatientIoOperationRepository repository;
 
 	private final ApplicationEventPublisher applicationEventPublisher;
@@ -65,11 +72,15 @@ public class PatientIoOperations {
 
 	private final EntityManager entityManager;
 
-	public PatientIoOperations(PatientIoOperationRepository repository, ApplicationEventPublisher applicationEventPublisher, FileSystemPatientPhotoRepository fileSystemPatientPhotoRepository, EntityManager entityManager) {
+	private final PatientSearchIndex patientSearchIndex;
+
+	public PatientIoOperations(PatientIoOperationRepository repository, ApplicationEventPublisher applicationEventPublisher, FileSystemPatientPhotoRepository fileSystemPatientPhotoRepository, EntityManager entityManager,
+		PatientSearchIndex patientSearchIndex) {
 		this.repository = repository;
 		this.applicationEventPublisher = applicationEventPublisher;
 		this.fileSystemPatientPhotoRepository = fileSystemPatientPhotoRepository;
 		this.entityManager = entityManager;
+		this.patientSearchIndex = patientSearchIndex;
 	}
 	/**
 	 * Method that returns the full list of {@link Patient}s not logically deleted,
@@ -119,9 +130,52 @@ public class PatientIoOperations {
 	 * @param keyword - String to search, use {@code null} for full list
 	 * @return the list of {@link Patient}s (could be empty),
 	 * @throws OHServiceException
+	 * @see #getPatientsByOneOfFieldsLike(String, int)
 	 */
 	public List<Patient> getPatientsByOneOfFieldsLike(String keyword) throws OHServiceException {
-		return repository.findByFieldsContainingWordsFromLiteral(keyword);
+		return getPatientsByOneOfFieldsLike(keyword, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Method that returns the most relevant {@link Patient}s not logically deleted, having each word of the passed String in one of:<br>
+	 * code, firstName, secondName, city, address, telephone, note, taxCode.<br>
+	 * The search ignores case and accents and uses the {@link PatientSearchIndex}: patients having a field equal to a word come first, then
+	 * the ones having a field starting with it.
+	 *
+	 * Until the index is built, the patients are searched in the database, in descending code order.
+	 *
+	 * @param keyword - String to search, use {@code null} for full list in descending code order
+	 * @param maxResults - the maximum number of {@link Patient}s to return
+	 * @return the list of {@link Patient}s (empty if the keyword has no words to search),
+	 * @throws OHServiceException
+	 */
+	public List<Patient> getPatientsByOneOfFieldsLike(String keyword, int maxResults) throws OHServiceException {
+		String[] words = PatientSearchIndex.getWords(keyword);
+		if (keyword != null && words.length == 0) {
+			return new ArrayList<>();
+		}
+		if (words.length == 0 || !patientSearchIndex.isReady()) {
+			List<Patient> patients = repository.findByFieldsContainingWordsFromLiteral(keyword);
+			return patients.size() > maxResults ? patients.subList(0, maxResults) : patients;
+		}
+		List<Integer> candidates = patientSearchIndex.search(words);
+		List<Patient> patients = new ArrayList<>();
+		for (int from = 0; from < candidates.size() && patients.size() < maxResults; from += SEARCH_CHUNK_SIZE) {
+			List<Integer> chunk = candidates.subList(from, Math.min(from + SEARCH_CHUNK_SIZE, candidates.size()));
+			Map<Integer, Patient> patientsByCode = repository.findAllById(chunk).stream()
+				.collect(Collectors.toMap(Patient::getCode, Function.identity()));
+			for (Integer code : chunk) {
+				Patient patient = patientsByCode.get(code);
+				// the index may be stale, the candidates are checked against the current data
+				if (patient != null && patient.getDeleted() != DELETED_STATUS && PatientSearchIndex.matches(patient, words)) {
+					patients.add(patient);
+					if (patients.size() == maxResults) {
+						break;
+					}
+				}
+			}
+		}
+		return patients;
 	}
 
 	/**
@@ -182,12 +236,15 @@ public class PatientIoOperations {
 	public Patient savePatient(Patient patient) {
 		boolean isLoadProfilePhotoFromDB = LOAD_FROM_DB.equals(GeneralData.PATIENTPHOTOSTORAGE);
 		if (isLoadProfilePhotoFromDB) {
-			return repository.save(patient);
+			Patient patientSaved = repository.save(patient);
+			patientSearchIndex.add(patientSaved);
+			return patientSaved;
 		}
 		try {
 			PatientProfilePhoto photo = patient.getPatientProfilePhoto();
 			patient.setPatientProfilePhoto(null);
 			Patient patientSaved = repository.save(patient);
+			patientSearchIndex.add(patientSaved);
 			((Session) this.entityManager.getDelegate()).evict(patient);
 			if (photo != null && photo.getPhoto() != null) {
 				fileSystemPatientPhotoRepository.save(GeneralData.PATIENTPHOTOSTORAGE, patient.getCode(), photo.getPhoto());
@@ -209,7 +266,9 @@ public class PatientIoOperations {
 	 * @throws OHServiceException
 	 */
 	public Patient updatePatient(Patient patient) throws OHServiceException {
-		return repository.save(patient);
+		Patient patientSaved = repository.save(patient);
+		patientSearchIndex.add(patientSaved);
+		return patientSaved;
 	}
 
 	/**
@@ -0,0 +1,504 @@
+/*
+ * Open Hospital (www.open-hospital.org)
+ * Copyright © 2006-2024 Informatici Senza Frontiere (info@informaticisenzafrontiere.org)
+ *
+ * Open Hospital is a free and open source software for healthcare data management.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * https://www.gnu.org/licenses/gpl-3.0-standalone.html
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.isf.patient.service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+import org.isf.generaldata.GeneralData;
+import org.isf.patient.model.Patient;
+import org.isf.utils.db.NormalizeString;
+import org.isf.utils.time.TimeTools;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+/**
+ * In-memory inverted index of the {@link Patient} fields searched by {@link PatientIoOperations#getPatientsByOneOfFieldsLike(String, int)}:
+ * code, first name, second name, city, address, telephone, note and tax code.
+ * <p>
+ * Every field is lower cased, stripped of the accents and split on white spaces; each token maps to the sorted codes of the patients
+ * having it. A search word matches the tokens containing it, so that the results are the same of a {@code LIKE '%word%'} on the fields:
+ * the tokens starting with the word are a range of the sorted tokens, the ones containing it further on are found through the index of
+ * their substrings of up to {@value #GRAM_LENGTH} characters. The words of a search are answered by intersecting their posting lists.
+ * <p>
+ * Once the application context is started, the index is built and then refreshed in background every
+ * {@link GeneralData#PATIENTSEARCHINDEXREFRESH} seconds (zero disables the background refresh), with the patients created or modified after the
+ * last ones seen (including the ones written by other clients of the same database); the patients saved through
+ * {@link PatientIoOperations} are added at once. Searches only wait for the refreshes applying their changes, never for the database.
+ * Tokens are only added, so the index may return patients that do not match anymore: the caller must check the candidates with
+ * {@link #matches(Patient, String[])}. The index is rebuilt once a day to drop such stale tokens and to pick up the modifications committed
+ * after later ones were already seen.
+ */
+@Component
+public class PatientSearchIndex implements SmartLifecycle {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(PatientSearchIndex.class);
+
+	private static final Duration REBUILD_INTERVAL = Duration.ofDays(1);
+
+	/** The modification date searched when no patient has one yet. */
+	private static final LocalDateTime NO_MODIFICATION = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+	private static final Pattern SPACES = Pattern.compile("\\s+");
+
+	private static final int GRAM_LENGTH = 3;
+
+	private static final int EXACT_SCORE = 3;
+
+	private static final int PREFIX_SCORE = 2;
+
+	private static final int INFIX_SCORE = 1;
+
+	private final PatientIoOperationRepository repository;
+
+	private volatile ScheduledExecutorService scheduler;
+
+	private volatile boolean running;
+
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	/* guarded by lock */
+	private NavigableMap<String, int[]> postings = new TreeMap<>();
+
+	/* guarded by lock: the ids of the tokens having each substring, the id of a token being its position in tokens */
+	private Map<String, int[]> grams = new HashMap<>();
+
+	/* guarded by lock */
+	private List<String> tokens = new ArrayList<>();
+
+	/* guarded by this */
+	private LocalDateTime builtAt;
+
+	/* guarded by this */
+	private int lastCode;
+
+	/* guarded by this */
+	private LocalDateTime lastModifiedDate = NO_MODIFICATION;
+
+	private volatile boolean ready;
+
+	public PatientSearchIndex(PatientIoOperationRepository repository) {
+		this.repository = repository;
+	}
+
+	/**
+	 * Starts the background refresh, unless {@link GeneralData#PATIENTSEARCHINDEXREFRESH} is zero: then the patients are searched in the
+	 * database until {@link #refresh()} is called.
+	 */
+	@Override
+	public void start() {
+		GeneralData.getGeneralData();
+		if (GeneralData.PATIENTSEARCHINDEXREFRESH > 0) {
+			ScheduledExecutorService refreshScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "patient-search-index");
+				thread.setDaemon(true);
+				return thread;
+			});
+			refreshScheduler.scheduleWithFixedDelay(this::refreshInBackground, 0, GeneralData.PATIENTSEARCHINDEXREFRESH, TimeUnit.SECONDS);
+			scheduler = refreshScheduler;
+		}
+		running = true;
+	}
+
+	/**
+	 * Stops the background refresh, the index is kept.
+	 */
+	@Override
+	public void stop() {
+		ScheduledExecutorService refreshScheduler = scheduler;
+		if (refreshScheduler != null) {
+			refreshScheduler.shutdownNow();
+			scheduler = null;
+		}
+		running = false;
+	}
+
+	@Override
+	public boolean isRunning() {
+		return running;
+	}
+
+	/**
+	 * Splits a search literal in the words to search for.
+	 *
+	 * @param literal - the search literal, could be {@code null}
+	 * @return the normalized words, lower cased (could be empty).
+	 */
+	public static String[] getWords(String literal) {
+		if (literal == null || literal.isBlank()) {
+			return new String[0];
+		}
+		return new LinkedHashSet<>(tokenize(literal)).toArray(new String[0]);
+	}
+
+	/**
+	 * Checks whether all the words are contained in at least one of the indexed fields of the {@link Patient}.
+	 *
+	 * @param patient - the {@link Patient}
+	 * @param words - the words returned by {@link #getWords(String)}
+	 * @return {@code true} if the {@link Patient} matches all the words.
+	 */
+	public static boolean matches(Patient patient, String[] words) {
+		List<String> fields = new ArrayList<>();
+		for (Object field : getFields(patient)) {
+			if (field != null) {
+				fields.add(normalize(field.toString()));
+			}
+		}
+		for (String word : words) {
+			if (fields.stream().noneMatch(field -> field.contains(word))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return {@code true} once the index is built, so that {@link #search(String[])} can be used.
+	 */
+	public boolean isReady() {
+		return ready;
+	}
+
+	/**
+	 * Returns the codes of the patients that may match all the words, ranked by relevance: a word equal to a token scores more than a word
+	 * starting a token, which scores more than a word inside a token. Patients with the same score are in descending code order.
+	 *
+	 * @param words - the words returned by {@link #getWords(String)}
+	 * @return the candidate codes (empty if there are no words).
+	 */
+	public List<Integer> search(String[] words) {
+		if (words.length == 0) {
+			return new ArrayList<>();
+		}
+		lock.readLock().lock();
+		try {
+			List<Map<Integer, Integer>> scoresByWord = new ArrayList<>();
+			for (String word : words) {
+				scoresByWord.add(getScores(word));
+			}
+			scoresByWord.sort(Comparator.comparingInt(Map::size));
+			Map<Integer, Integer> scores = new HashMap<>(scoresByWord.get(0));
+			for (Map<Integer, Integer> wordScores : scoresByWord.subList(1, scoresByWord.size())) {
+				scores.entrySet().removeIf(entry -> !wordScores.containsKey(entry.getKey()));
+				scores.replaceAll((code, score) -> score + wordScores.get(code));
+			}
+			List<Integer> codes = new ArrayList<>(scores.keySet());
+			codes.sort(Comparator.comparing((Integer code) -> scores.get(code)).reversed().thenComparing(Comparator.reverseOrder()));
+			return codes;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Adds the current fields of a saved {@link Patient}, so that the following searches find it without waiting for the next refresh.
+	 *
+	 * @param patient - the saved {@link Patient}
+	 */
+	public void add(Patient patient) {
+		Set<String> patientTokens = getTokens(getFields(patient));
+		lock.writeLock().lock();
+		try {
+			for (String token : patientTokens) {
+				add(token, patient.getCode());
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Adds the patients created or modified after the last ones seen, building the index first if needed. This is done in background, but
+	 * can be called to see at once the patients written in the current transaction by other means than {@link PatientIoOperations}.
+	 */
+	public synchronized void refresh() {
+		LocalDateTime now = TimeTools.getNow();
+		if (builtAt == null || builtAt.isBefore(now.minus(REBUILD_INTERVAL))) {
+			build(now);
+			return;
+		}
+		List<Object[]> modifiedFields = repository.findSearchFieldsWhereCodeAfterOrLastModifiedDateFrom(lastCode, lastModifiedDate);
+		lock.writeLock().lock();
+		try {
+			for (Object[] fields : modifiedFields) {
+				int code = (Integer) fields[0];
+				for (String token : getTokens(fields)) {
+					add(token, code);
+				}
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+		see(modifiedFields);
+	}
+
+	/**
+	 * Drops the index, so that it is built again at the next refresh.
+	 */
+	public synchronized void clear() {
+		ready = false;
+		lock.writeLock().lock();
+		try {
+			postings = new TreeMap<>();
+			grams = new HashMap<>();
+			tokens = new ArrayList<>();
+		} finally {
+			lock.writeLock().unlock();
+		}
+		builtAt = null;
+		lastCode = 0;
+		lastModifiedDate = NO_MODIFICATION;
+	}
+
+	private void refreshInBackground() {
+		try {
+			refresh();
+		} catch (RuntimeException e) {
+			LOGGER.error("Cannot refresh the patient search index.", e);
+		}
+	}
+
+	private Map<Integer, Integer> getScores(String word) {
+		Map<Integer, Integer> scores = new HashMap<>();
+		for (Map.Entry<String, int[]> entry : postings.subMap(word, true, word + Character.MAX_VALUE, true).entrySet()) {
+			int score = entry.getKey().equals(word) ? EXACT_SCORE : PREFIX_SCORE;
+			for (int code : entry.getValue()) {
+				scores.merge(code, score, Math::max);
+			}
+		}
+		for (int tokenId : getTokenIdsContaining(word)) {
+			String token = tokens.get(tokenId);
+			if (!token.startsWith(word) && token.contains(word)) {
+				for (int code : postings.get(token)) {
+					scores.merge(code, INFIX_SCORE, Math::max);
+				}
+			}
+		}
+		return scores;
+	}
+
+	/**
+	 * Returns the ids of the tokens having all the substrings of the word: a superset of the tokens containing it.
+	 */
+	private int[] getTokenIdsContaining(String word) {
+		if (word.length() <= GRAM_LENGTH) {
+			return grams.getOrDefault(word, new int[0]);
+		}
+		int[] tokenIds = null;
+		for (int start = 0; start + GRAM_LENGTH <= word.length(); start++) {
+			int[] gramTokenIds = grams.getOrDefault(word.substring(start, start + GRAM_LENGTH), new int[0]);
+			tokenIds = tokenIds == null ? gramTokenIds : intersect(tokenIds, gramTokenIds);
+			if (tokenIds.length == 0) {
+				break;
+			}
+		}
+		return tokenIds;
+	}
+
+	private void build(LocalDateTime now) {
+		long start = System.currentTimeMillis();
+		List<Object[]> allFields = repository.findSearchFields();
+		Map<String, PostingBuilder> builders = new HashMap<>();
+		// the patients are in ascending code order, so each posting list is built already sorted
+		for (Object[] fields : allFields) {
+			int code = (Integer) fields[0];
+			for (String token : getTokens(fields)) {
+				builders.computeIfAbsent(token, key -> new PostingBuilder()).add(code);
+			}
+		}
+		NavigableMap<String, int[]> builtPostings = new TreeMap<>();
+		builders.forEach((token, builder) -> builtPostings.put(token, builder.toArray()));
+		List<String> builtTokens = new ArrayList<>(builtPostings.keySet());
+		Map<String, PostingBuilder> gramBuilders = new HashMap<>();
+		for (int tokenId = 0; tokenId < builtTokens.size(); tokenId++) {
+			for (String gram : getGrams(builtTokens.get(tokenId))) {
+				gramBuilders.computeIfAbsent(gram, key -> new PostingBuilder()).add(tokenId);
+			}
+		}
+		Map<String, int[]> builtGrams = new HashMap<>();
+		gramBuilders.forEach((gram, builder) -> builtGrams.put(gram, builder.toArray()));
+		lock.writeLock().lock();
+		try {
+			postings = builtPostings;
+			grams = builtGrams;
+			tokens = builtTokens;
+		} finally {
+			lock.writeLock().unlock();
+		}
+		builtAt = now;
+		lastCode = 0;
+		lastModifiedDate = NO_MODIFICATION;
+		see(allFields);
+		ready = true;
+		LOGGER.info("Patient search index built with {} tokens in {} ms.", builtPostings.size(), System.currentTimeMillis() - start);
+	}
+
+	/**
+	 * Moves past the last code and the last modification date of the read patients. The patients modified at the last date are read again
+	 * at the next refresh, since others may have been modified at the same time.
+	 */
+	private void see(List<Object[]> allFields) {
+		for (Object[] fields : allFields) {
+			lastCode = Math.max(lastCode, (Integer) fields[0]);
+			LocalDateTime modifiedDate = (LocalDateTime) fields[fields.length - 1];
+			if (modifiedDate != null && modifiedDate.isAfter(lastModifiedDate)) {
+				lastModifiedDate = modifiedDate;
+			}
+		}
+	}
+
+	private void add(String token, int code) {
+		int[] codes = postings.get(token);
+		if (codes == null) {
+			postings.put(token, new int[] { code });
+			int tokenId = tokens.size();
+			tokens.add(token);
+			for (String gram : getGrams(token)) {
+				grams.put(gram, insert(grams.get(gram), tokenId));
+			}
+			return;
+		}
+		postings.put(token, insert(codes, code));
+	}
+
+	/**
+	 * Inserts a value in a sorted array, if missing.
+	 */
+	private static int[] insert(int[] values, int value) {
+		if (values == null) {
+			return new int[] { value };
+		}
+		int position = Arrays.binarySearch(values, value);
+		if (position >= 0) {
+			return values;
+		}
+		position = -position - 1;
+		int[] newValues = new int[values.length + 1];
+		System.arraycopy(values, 0, newValues, 0, position);
+		newValues[position] = value;
+		System.arraycopy(values, position, newValues, position + 1, values.length - position);
+		return newValues;
+	}
+
+	private static int[] intersect(int[] first, int[] second) {
+		int[] values = new int[Math.min(first.length, second.length)];
+		int size = 0;
+		for (int i = 0, j = 0; i < first.length && j < second.length;) {
+			if (first[i] < second[j]) {
+				i++;
+			} else if (first[i] > second[j]) {
+				j++;
+			} else {
+				values[size++] = first[i];
+				i++;
+				j++;
+			}
+		}
+		return Arrays.copyOf(values, size);
+	}
+
+	/**
+	 * Returns the substrings of the token up to {@link #GRAM_LENGTH} characters.
+	 */
+	private static Set<String> getGrams(String token) {
+		Set<String> tokenGrams = new LinkedHashSet<>();
+		for (int start = 0; start < token.length(); start++) {
+			for (int end = start + 1; end <= Math.min(start + GRAM_LENGTH, token.length()); end++) {
+				tokenGrams.add(token.substring(start, end));
+			}
+		}
+		return tokenGrams;
+	}
+
+	/**
+	 * Returns the tokens of the searched fields, ignoring the last modification date read with them.
+	 */
+	private static Set<String> getTokens(Object[] fields) {
+		Set<String> fieldTokens = new LinkedHashSet<>();
+		for (Object field : fields) {
+			if (field != null && !(field instanceof LocalDateTime)) {
+				fieldTokens.addAll(tokenize(field.toString()));
+			}
+		}
+		return fieldTokens;
+	}
+
+	private static List<String> tokenize(String text) {
+		List<String> textTokens = new ArrayList<>();
+		for (String token : SPACES.split(normalize(text))) {
+			if (!token.isEmpty()) {
+				textTokens.add(token);
+			}
+		}
+		return textTokens;
+	}
+
+	private static String normalize(String text) {
+		return NormalizeString.removeAccents(text.toLowerCase(Locale.ROOT));
+	}
+
+	private static Object[] getFields(Patient patient) {
+		return new Object[] { patient.getCode(), patient.getFirstName(), patient.getSecondName(), patient.getCity(), patient.getAddress(),
+			patient.getTelephone(), patient.getNote(), patient.getTaxCode() };
+	}
+
+	private static final class PostingBuilder {
+
+		private int[] codes = new int[1];
+
+		private int size;
+
+		void add(int code) {
+			if (size > 0 && codes[size - 1] == code) {
+				return;
+			}
+			if (size == codes.length) {
+				codes = Arrays.copyOf(codes, size * 2);
+			}
+			codes[size++] = code;
+		}
+
+		int[] toArray() {
+			return Arrays.copyOf(codes, size);
+		}
+	}
+}
@@ -39,6 +39,10 @@ public interface PatVacIoOperationRepository extends JpaRepository<PatientVaccin
 	@Query("select max(pv.progr) from PatientVaccine pv where pv.vaccineDate >= :yearStart and pv.vaccineDate < :yearEnd")
 	Integer findMaxCodeWhereVaccineDate(@Param("yearStart") LocalDateTime yearStart, @Param("yearEnd") LocalDateTime yearEnd);
 
+	@Query("select count(pv) > 0 from PatientVaccine pv where pv.progr = :progr and pv.vaccineDate >= :yearStart and pv.vaccineDate < :yearEnd")
+	boolean existsByProgrWhereVaccineDate(@Param("progr") int progr, @Param("yearStart") LocalDateTime yearStart,
+		@Param("yearEnd") LocalDateTime yearEnd);
+
 	List<PatientVaccine> findByPatient_code(int patientId);
 
 }
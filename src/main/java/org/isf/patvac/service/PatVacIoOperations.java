@@ -27,6 +27,7 @@ import java.util.List;
 import java.util.Optional;
 
 import org.isf.patvac.model.PatientVaccine;
+import org.isf.sequence.service.ProgressiveNumberIoOperations;
 import org.isf.utils.db.TranslateOHServiceException;
 import org.isf.utils.exception.OHServiceException;
 import org.isf.utils.time.TimeTools;
@@ -38,10 +39,15 @@ import org.springframework.transaction.annotation.Transactional;
 @TranslateOHServiceException
 public class PatVacIoOperations {
 
+	private static final String PROG_YEAR_SCOPE = "PATIENT_VACCINE_PROG_YEAR_";
+
 	private PatVacIoOperationRepository repository;
 
-	public PatVacIoOperations(PatVacIoOperationRepository patVacIoOperationRepository) {
+	private ProgressiveNumberIoOperations progressiveNumberIoOperations;
+
+	public PatVacIoOperations(PatVacIoOperationRepository patVacIoOperationRepository, ProgressiveNumberIoOperations progressiveNumberIoOperations) {
 		this.repository = patVacIoOperationRepository;
+		this.progressiveNumberIoOperations = progressiveNumberIoOperations;
 	}
 
 	/**
@@ -93,13 +99,18 @@ public class PatVacIoOperations {
 	}
 
 	/**
-	 * Inserts a {@link PatientVaccine} object.
+	 * Inserts a {@link PatientVaccine} object. If its progressive number in the year is already used, it gets the next free one.
 	 *
 	 * @param patVac - the {@link PatientVaccine} to insert
 	 * @return the newly inserted {@link PatientVaccine} object.
 	 * @throws OHServiceException
 	 */
 	public PatientVaccine newPatientVaccine(PatientVaccine patVac) throws OHServiceException {
+		if (patVac.getProgr() > 0 && patVac.getVaccineDate() != null) {
+			int year = patVac.getVaccineDate().getYear();
+			patVac.setProgr(progressiveNumberIoOperations.allocate(PROG_YEAR_SCOPE + year, patVac.getProgr(), () -> getLastProgYear(year),
+				progr -> repository.existsByProgrWhereVaccineDate(progr, getBeginningOfYear(year), getBeginningOfYear(year + 1))));
+		}
 		return repository.save(patVac);
 	}
 
@@ -132,10 +143,15 @@ public class PatVacIoOperations {
 	 * @throws OHServiceException
 	 */
 	public int getProgYear(int year) throws OHServiceException {
-		Integer progYear = year != 0 ?
-				repository.findMaxCodeWhereVaccineDate(getBeginningOfYear(year), getBeginningOfYear(year + 1)) :
-				repository.findMaxCode();
+		if (year == 0) {
+			Integer progYear = repository.findMaxCode();
+			return progYear == null ? 0 : progYear;
+		}
+		return progressiveNumberIoOperations.getNext(PROG_YEAR_SCOPE + year, () -> getLastProgYear(year)) - 1;
+	}
 
+	private int getLastProgYear(int year) {
+		Integer progYear = repository.findMaxCodeWhereVaccineDate(getBeginningOfYear(year), getBeginningOfYear(year + 1));
 		return progYear == null ? 0 : progYear;
 	}
 
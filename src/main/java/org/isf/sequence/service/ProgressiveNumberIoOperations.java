@@ -0,0 +1,105 @@
+/*
+ * Open Hospital (www.open-hospital.org)
+ * Copyright © 2006-2024 Informatici Senza Frontiere (info@informaticisenzafrontiere.org)
+ *
+ * Open Hospital is a free and open source software for healthcare data management.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * https://www.gnu.org/licenses/gpl-3.0-standalone.html
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.isf.sequence.service;
+
+import java.util.function.IntPredicate;
+import java.util.function.IntSupplier;
+
+import org.isf.sequence.model.Sequence;
+import org.isf.utils.db.TranslateOHServiceException;
+import org.isf.utils.exception.OHServiceException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Persistence class for the progressive numbers given to the records in a scope (e.g. the admissions of a ward in a year), kept as
+ * {@link Sequence}s holding the next number of each scope.
+ * <p>
+ * Unlike {@link SequenceIoOperations}, numbers are allocated in the transaction storing the record: the row of the scope stays locked until
+ * the record is committed, so that parallel registrations in the same scope never get the same number and a rolled back registration does
+ * not leave a gap. A scope without its row yet is seeded from the last number already used in its records; parallel registrations seeding
+ * the same scope keep the first row.
+ */
+@Service
+@Transactional(rollbackFor = OHServiceException.class)
+@TranslateOHServiceException
+public class ProgressiveNumberIoOperations {
+
+	private final SequenceIoOperationRepository repository;
+
+	public ProgressiveNumberIoOperations(SequenceIoOperationRepository sequenceIoOperationRepository) {
+		this.repository = sequenceIoOperationRepository;
+	}
+
+	/**
+	 * Returns the next progressive number of the scope, without allocating it.
+	 *
+	 * @param scope the name of the scope.
+	 * @param lastUsed the last number used in the records of the scope, read only if the scope has no row yet.
+	 * @return the next progressive number.
+	 * @throws OHServiceException if an error occurs retrieving the number.
+	 */
+	public int getNext(String scope, IntSupplier lastUsed) throws OHServiceException {
+		Long nextValue = repository.findNextValue(scope);
+		return nextValue == null ? lastUsed.getAsInt() + 1 : nextValue.intValue();
+	}
+
+	/**
+	 * Allocates a progressive number of the scope to a new record.
+	 * <p>
+	 * The proposed number (usually the one returned by {@link #getNext(String, IntSupplier)} when the record was prepared) is kept if it is
+	 * not used yet, so that a number chosen by the user is respected; otherwise the record gets the next free number. In both cases the next
+	 * number of the scope moves past the allocated one.
+	 *
+	 * @param scope the name of the scope.
+	 * @param proposed the number proposed for the record, {@code 0} to get the next one.
+	 * @param lastUsed the last number used in the records of the scope, read only if the scope has no row yet.
+	 * @param used checks whether a number is already used in the records of the scope.
+	 * @return the allocated progressive number.
+	 * @throws OHServiceException if an error occurs allocating the number.
+	 */
+	public int allocate(String scope, int proposed, IntSupplier lastUsed, IntPredicate used) throws OHServiceException {
+		Sequence sequence = lock(scope, lastUsed);
+		int next = (int) sequence.getNextValue();
+		int number = proposed > 0 ? proposed : next;
+		if (used.test(number)) {
+			number = next;
+			while (used.test(number)) {
+				number++;
+			}
+		}
+		sequence.setNextValue(Math.max(next, number + 1));
+		repository.save(sequence);
+		return number;
+	}
+
+	/**
+	 * Locks the row of the scope, seeding it first if missing. The row is seeded with an insert that does nothing if a parallel registration
+	 * already seeded it, and only then locked, so that the lock is never taken on a missing row.
+	 */
+	private Sequence lock(String scope, IntSupplier lastUsed) {
+		if (repository.findNextValue(scope) == null) {
+			repository.insertIfMissing(scope, lastUsed.getAsInt() + 1L);
+		}
+		return repository.findForUpdate(scope).orElseThrow();
+	}
+}
@@ -0,0 +1,58 @@
+/*
+ * Open Hospital (www.open-hospital.org)
+ * Copyright © 2006-2024 Informatici Senza Frontiere (info@informaticisenzafrontiere.org)
+ *
+ * Open Hospital is a free and open source software for healthcare data management.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * https://www.gnu.org/licenses/gpl-3.0-standalone.html
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.isf.sequence.service;
+
+import java.util.Optional;
+
+import jakarta.persistence.LockModeType;
+
+import org.isf.sequence.model.Sequence;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface SequenceIoOperationRepository extends JpaRepository<Sequence, String> {
+
+	@Modifying
+	@Query(value = "UPDATE OH_SEQUENCE SET SEQ_NEXT_VALUE = SEQ_NEXT_VALUE + :increment WHERE SEQ_NAME = :name", nativeQuery = true)
+	int increment(@Param("name") String name, @Param("increment") long increment);
+
+	@Modifying
+	@Query(value = "INSERT INTO OH_SEQUENCE (SEQ_NAME, SEQ_NEXT_VALUE) VALUES (:name, :nextValue)", nativeQuery = true)
+	int insert(@Param("name") String name, @Param("nextValue") long nextValue);
+
+	@Modifying
+	@Query(value = "INSERT INTO OH_SEQUENCE (SEQ_NAME, SEQ_NEXT_VALUE) VALUES (:name, :nextValue) ON DUPLICATE KEY UPDATE SEQ_NAME = SEQ_NAME",
+					nativeQuery = true)
+	int insertIfMissing(@Param("name") String name, @Param("nextValue") long nextValue);
+
+	@Query(value = "SELECT SEQ_NEXT_VALUE FROM OH_SEQUENCE WHERE SEQ_NAME = :name", nativeQuery = true)
+	Long findNextValue(@Param("name") String name);
+
+	@Lock(LockModeType.PESSIMISTIC_WRITE)
+	@Query(value = "select s from Sequence s where s.name = :name")
+	Optional<Sequence> findForUpdate(@Param("name") String name);
+}
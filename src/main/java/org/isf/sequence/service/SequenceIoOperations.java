@@ -0,0 +1,64 @@
+/*
+ * Open Hospital (www.open-hospital.org)
+ * Copyright © 2006-2024 Informatici Senza Frontiere (info@informaticisenzafrontiere.org)
+ *
+ * Open Hospital is a free and open source software for healthcare data management.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * https://www.gnu.org/licenses/gpl-3.0-standalone.html
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.isf.sequence.service;
+
+import org.isf.utils.db.TranslateOHServiceException;
+import org.isf.utils.exception.OHServiceException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Persistence class for the database sequences.
+ * <p>
+ * Values are reserved in a transaction of their own, committed as soon as the reservation is done: the row of the sequence stays locked only for the
+ * time of the update and a reserved value is never handed out twice, whatever the outcome of the transaction using it and the number of application
+ * instances sharing the database. Values reserved by a transaction rolled back afterwards are lost, leaving gaps.
+ */
+@Service
+@Transactional(rollbackFor = OHServiceException.class, propagation = Propagation.REQUIRES_NEW)
+@TranslateOHServiceException
+public class SequenceIoOperations {
+
+	private final SequenceIoOperationRepository repository;
+
+	public SequenceIoOperations(SequenceIoOperationRepository sequenceIoOperationRepository) {
+		this.repository = sequenceIoOperationRepository;
+	}
+
+	/**
+	 * Reserves a block of consecutive values of the specified sequence, creating the sequence if it does not exist yet.
+	 *
+	 * @param name the name of the sequence.
+	 * @param blockSize the number of values to reserve.
+	 * @param initialValue the first value of the sequence, if it has to be created.
+	 * @return the first reserved value; the block goes from this value (included) to this value plus {@code blockSize} (excluded).
+	 * @throws OHServiceException if an error occurs reserving the values.
+	 */
+	public long reserve(String name, int blockSize, long initialValue) throws OHServiceException {
+		if (repository.increment(name, blockSize) == 0) {
+			repository.insert(name, initialValue + blockSize);
+			return initialValue;
+		}
+		return repository.findNextValue(name) - blockSize;
+	}
+}
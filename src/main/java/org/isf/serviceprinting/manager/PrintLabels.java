@@ -23,10 +23,14 @@ package org.isf.serviceprinting.manager;
 
 import java.io.File;
 import java.sql.Connection;
+import java.sql.SQLException;
 import java.util.HashMap;
 import java.util.Map;
 
-import org.isf.utils.db.DbSingleJpaConn;
+import javax.sql.DataSource;
+
+import org.isf.generaldata.MessageBundle;
+import org.isf.menu.manager.Context;
 import org.isf.utils.exception.OHException;
 
 import net.sf.jasperreports.engine.JRException;
@@ -49,9 +53,14 @@ public class PrintLabels {
 		sbFilename.append(filename);
 		sbFilename.append(".jasper");
 		File jasperFile = new File(sbFilename.toString());
-		Connection conn = DbSingleJpaConn.getConnection();
 		JasperReport jasperReport = (JasperReport) JRLoader.loadObject(jasperFile);
-		JasperPrint jasperPrint = JasperFillManager.fillReport(jasperReport, parameters, conn);
+		DataSource dataSource = Context.getApplicationContext().getBean(DataSource.class);
+		JasperPrint jasperPrint;
+		try (Connection conn = dataSource.getConnection()) {
+			jasperPrint = JasperFillManager.fillReport(jasperReport, parameters, conn);
+		} catch (SQLException e) {
+			throw new OHException(MessageBundle.getMessage("angal.sql.databaseserverstoppedornetworkfailure.msg"), e);
+		}
 		JasperPrintManager.printReport(jasperPrint, true);
 	}
 }
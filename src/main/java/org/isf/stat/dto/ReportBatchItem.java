@@ -0,0 +1,65 @@
+/*
+ * Open Hospital (www.open-hospital.org)
+ * Copyright © 2006-2024 Informatici Senza Frontiere (info@informaticisenzafrontiere.org)
+ *
+ * Open Hospital is a free and open source software for healthcare data management.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * https://www.gnu.org/licenses/gpl-3.0-standalone.html
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.isf.stat.dto;
+
+import java.util.Map;
+
+/**
+ * A report of a batch rendered by {@link org.isf.stat.manager.ReportBatchManager}: the {@code .jasper} file, its parameters and the name
+ * of its entry in the zip archive.
+ */
+public class ReportBatchItem {
+
+	private static final String RPT_BASE = "rpt_base";
+
+	private final String jasperFileFolder;
+	private final String jasperFileName;
+	private final Map<String, Object> parameters;
+	private final String name;
+
+	public ReportBatchItem(String jasperFileName, Map<String, Object> parameters, String name) {
+		this(RPT_BASE, jasperFileName, parameters, name);
+	}
+
+	public ReportBatchItem(String jasperFileFolder, String jasperFileName, Map<String, Object> parameters, String name) {
+		this.jasperFileFolder = jasperFileFolder;
+		this.jasperFileName = jasperFileName;
+		this.parameters = parameters;
+		this.name = name;
+	}
+
+	public String getJasperFileFolder() {
+		return jasperFileFolder;
+	}
+
+	public String getJasperFileName() {
+		return jasperFileName;
+	}
+
+	public Map<String, Object> getParameters() {
+		return parameters;
+	}
+
+	public String getName() {
+		return name;
+	}
+}
@@ -0,0 +1,73 @@
+/*
+ * Open Hospital (www.open-hospital.org)
+ * Copyright © 2006-2024 Informatici Senza Frontiere (info@informaticisenzafrontiere.org)
+ *
+ * Open Hospital is a free and open source software for healthcare data management.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * https://www.gnu.org/licenses/gpl-3.0-standalone.html
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.isf.stat.dto;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * The outcome of a batch rendered by {@link org.isf.stat.manager.ReportBatchManager}: the output file, the outcome of each report, in the
+ * order of the batch, and the time taken.
+ */
+public class ReportBatchResultDto {
+
+	private final String outputFile;
+	private final List<ReportBatchItemResult> itemResults;
+	private final Duration elapsedTime;
+
+	public ReportBatchResultDto(String outputFile, List<ReportBatchItemResult> itemResults, Duration elapsedTime) {
+		this.outputFile = outputFile;
+		this.itemResults = itemResults;
+		this.elapsedTime = elapsedTime;
+	}
+
+	/**
+	 * @return the output file, or {@code null} if no report has been rendered.
+	 */
+	public String getOutputFile() {
+		return outputFile;
+	}
+
+	public List<ReportBatchItemResult> getItemResults() {
+		return itemResults;
+	}
+
+	public Duration getElapsedTime() {
+		return elapsedTime;
+	}
+
+	public long getRenderedCount() {
+		return itemResults.stream().filter(ReportBatchItemResult::isRendered).count();
+	}
+
+	public long getFailedCount() {
+		return itemResults.size() - getRenderedCount();
+	}
+
+	/**
+	 * @return the reports rendered per second.
+	 */
+	public double getThroughput() {
+		long millis = Math.max(elapsedTime.toMillis(), 1);
+		return getRenderedCount() * 1000.0 / millis;
+	}
+}
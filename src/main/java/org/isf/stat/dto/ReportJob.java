@@ -0,0 +1,109 @@
+/*
+ * Open Hospital (www.open-hospital.org)
+ * Copyright © 2006-2024 Informatici Senza Frontiere (info@informaticisenzafrontiere.org)
+ *
+ * Open Hospital is a free and open source software for healthcare data management.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * https://www.gnu.org/licenses/gpl-3.0-standalone.html
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.isf.stat.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * A report submitted to {@link org.isf.stat.manager.ReportJobManager}, with its status and, once done, the file holding the rendered report.
+ */
+public class ReportJob {
+
+	private final String id;
+	private final String jasperFileFolder;
+	private final String jasperFileName;
+	private final ReportJobFormat format;
+	private final LocalDateTime submitDate;
+	private volatile ReportJobStatus status = ReportJobStatus.queued;
+	private volatile LocalDateTime startDate;
+	private volatile LocalDateTime endDate;
+	private volatile String resultFile;
+	private volatile String errorMessage;
+
+	public ReportJob(String id, String jasperFileFolder, String jasperFileName, ReportJobFormat format, LocalDateTime submitDate) {
+		this.id = id;
+		this.jasperFileFolder = jasperFileFolder;
+		this.jasperFileName = jasperFileName;
+		this.format = format;
+		this.submitDate = submitDate;
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public String getJasperFileFolder() {
+		return jasperFileFolder;
+	}
+
+	public String getJasperFileName() {
+		return jasperFileName;
+	}
+
+	public ReportJobFormat getFormat() {
+		return format;
+	}
+
+	public LocalDateTime getSubmitDate() {
+		return submitDate;
+	}
+
+	public ReportJobStatus getStatus() {
+		return status;
+	}
+
+	public void setStatus(ReportJobStatus status) {
+		this.status = status;
+	}
+
+	public LocalDateTime getStartDate() {
+		return startDate;
+	}
+
+	public void setStartDate(LocalDateTime startDate) {
+		this.startDate = startDate;
+	}
+
+	public LocalDateTime getEndDate() {
+		return endDate;
+	}
+
+	public void setEndDate(LocalDateTime endDate) {
+		this.endDate = endDate;
+	}
+
+	public String getResultFile() {
+		return resultFile;
+	}
+
+	public void setResultFile(String resultFile) {
+		this.resultFile = resultFile;
+	}
+
+	public String getErrorMessage() {
+		return errorMessage;
+	}
+
+	public void setErrorMessage(String errorMessage) {
+		this.errorMessage = errorMessage;
+	}
+}
@@ -0,0 +1,221 @@
+/*
+ * Open Hospital (www.open-hospital.org)
+ * Copyright © 2006-2024 Informatici Senza Frontiere (info@informaticisenzafrontiere.org)
+ *
+ * Open Hospital is a free and open source software for healthcare data management.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * https://www.gnu.org/licenses/gpl-3.0-standalone.html
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.isf.stat.manager;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.ResourceBundle;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.isf.utils.db.UTF8Control;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import net.sf.jasperreports.engine.JRBand;
+import net.sf.jasperreports.engine.JRChild;
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JRExpressionChunk;
+import net.sf.jasperreports.engine.JasperReport;
+import net.sf.jasperreports.engine.base.JRBaseSubreport;
+import net.sf.jasperreports.engine.util.JRLoader;
+
+/**
+ * Cache of the compiled {@code .jasper} files used by {@link JasperReportsManager}, keyed by path.
+ * <p>
+ * Each entry holds the loaded {@link JasperReport}, the bundles of its subreports and the resource bundles resolved for it. An entry is
+ * loaded again when the modification time of its file changes, and the least recently used entries are dropped when the cache grows
+ * over its size limit.
+ */
+@Component
+public class JasperReportCache {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(JasperReportCache.class);
+
+	private static final int DEFAULT_MAX_ENTRIES = 100;
+
+	private static final String SUBREPORT_RESOURCE_BUNDLE = "SUBREPORT_RESOURCE_BUNDLE_";
+
+	private static final Pattern SUBREPORT_NAME = Pattern.compile("\"(.*)\"");
+
+	private static final UTF8Control UTF8_CONTROL = new UTF8Control();
+
+	private final Map<String, CachedReport> reports;
+
+	private final AtomicLong hitCount = new AtomicLong();
+
+	private final AtomicLong missCount = new AtomicLong();
+
+	public JasperReportCache() {
+		this(DEFAULT_MAX_ENTRIES);
+	}
+
+	public JasperReportCache(int maxEntries) {
+		this.reports = new LinkedHashMap<>(16, 0.75f, true) {
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, CachedReport> eldest) {
+				return size() > maxEntries;
+			}
+		};
+	}
+
+	/**
+	 * Returns the report compiled in the specified file, loading it if it is not cached or if the file has been modified since it was
+	 * loaded.
+	 *
+	 * @param jasperFilename the path of the {@code .jasper} file.
+	 * @return the cached report.
+	 * @throws JRException if the file cannot be loaded.
+	 */
+	public CachedReport get(String jasperFilename) throws JRException {
+		File jasperFile = new File(jasperFilename);
+		long lastModified = jasperFile.lastModified();
+		CachedReport cachedReport;
+		synchronized (reports) {
+			cachedReport = reports.get(jasperFilename);
+		}
+		if (cachedReport != null && cachedReport.lastModified == lastModified) {
+			hitCount.incrementAndGet();
+			return cachedReport;
+		}
+		missCount.incrementAndGet();
+		LOGGER.debug("Loading report {}...", jasperFilename);
+		cachedReport = new CachedReport((JasperReport) JRLoader.loadObject(jasperFile), lastModified);
+		synchronized (reports) {
+			reports.put(jasperFilename, cachedReport);
+		}
+		return cachedReport;
+	}
+
+	public JasperReport getReport(String jasperFilename) throws JRException {
+		return get(jasperFilename).getReport();
+	}
+
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	public long getMissCount() {
+		return missCount.get();
+	}
+
+	public int size() {
+		synchronized (reports) {
+			return reports.size();
+		}
+	}
+
+	public void clear() {
+		synchronized (reports) {
+			reports.clear();
+		}
+	}
+
+	public static final class CachedReport {
+
+		private final JasperReport report;
+
+		private final long lastModified;
+
+		private final Map<String, ResourceBundle> bundles = new ConcurrentHashMap<>();
+
+		private volatile Map<String, String> subreportBundleNames;
+
+		private CachedReport(JasperReport report, long lastModified) {
+			this.report = report;
+			this.lastModified = lastModified;
+		}
+
+		public JasperReport getReport() {
+			return report;
+		}
+
+		/**
+		 * Returns the bundle names of the subreports, keyed by the {@code SUBREPORT_RESOURCE_BUNDLE_n} parameter to be passed to the report.
+		 * The bands of the report are scanned only the first time.
+		 *
+		 * @return the parameter names mapped to the subreport bundle names.
+		 */
+		public Map<String, String> getSubreportBundleNames() {
+			Map<String, String> names = subreportBundleNames;
+			if (names == null) {
+				names = Collections.unmodifiableMap(findSubreportBundleNames(report));
+				subreportBundleNames = names;
+			}
+			return names;
+		}
+
+		/**
+		 * Returns the resource bundle with the specified name, read as UTF-8.
+		 *
+		 * @param baseName the bundle name.
+		 * @param locale the locale of the bundle.
+		 * @return the resource bundle.
+		 * @throws java.util.MissingResourceException if no bundle can be found.
+		 */
+		public ResourceBundle getBundle(String baseName, Locale locale) {
+			return bundles.computeIfAbsent(baseName + '_' + locale, key -> ResourceBundle.getBundle(baseName, locale, UTF8_CONTROL));
+		}
+	}
+
+	private static Map<String, String> findSubreportBundleNames(JasperReport jasperReport) {
+		Map<String, String> names = new LinkedHashMap<>();
+		JRBand[] bands = jasperReport.getAllBands(); // Get all bands
+		if (bands == null) {
+			return names;
+		}
+		for (JRBand band : bands) {
+			List<JRChild> elements = band.getChildren(); // Get all children
+			for (JRChild child : elements) {
+				int index = 1;
+				if (child instanceof JRBaseSubreport subreport) { // This is a subreport
+					String expression = ""; // Lets find out the expression used
+					JRExpressionChunk[] chunks = subreport.getExpression().getChunks();
+					for (JRExpressionChunk c : chunks) {
+						expression += c.getText();
+					}
+
+					/*
+					 * add indexed subreport bundle
+					 */
+					Matcher matcher = SUBREPORT_NAME.matcher(expression);
+					if (matcher.find()) {
+						String subreportName = matcher.group(1).split("\\.")[0];
+						LOGGER.debug("found a subreport: {}", subreportName);
+						names.put(SUBREPORT_RESOURCE_BUNDLE + index, subreportName);
+					} else {
+						LOGGER.error(">> unexpected subreport expression {}", expression);
+					}
+				}
+			}
+		}
+		return names;
+	}
+}
@@ -23,7 +23,6 @@ package org.isf.stat.manager;
 
 import java.io.File;
 import java.sql.Connection;
-import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.text.SimpleDateFormat;
 import java.time.LocalDate;
@@ -31,6 +30,7 @@ import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
@@ -54,9 +54,10 @@ import org.isf.medicals.model.Medical;
 import org.isf.patient.model.Patient;
 import org.isf.patient.service.PatientIoOperations;
 import org.isf.stat.dto.JasperReportResultDto;
-import org.isf.utils.db.DbQueryLogger;
+import org.isf.utils.db.DbQueryExecutor;
 import org.isf.utils.db.UTF8Control;
 import org.isf.utils.excel.ExcelExporter;
+import org.isf.utils.exception.OHException;
 import org.isf.utils.exception.OHReportException;
 import org.isf.utils.exception.OHServiceException;
 import org.isf.utils.exception.model.OHExceptionMessage;
@@ -66,18 +67,16 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
-import net.sf.jasperreports.engine.JRBand;
-import net.sf.jasperreports.engine.JRChild;
+import net.sf.jasperreports.engine.DefaultJasperReportsContext;
 import net.sf.jasperreports.engine.JRException;
-import net.sf.jasperreports.engine.JRExpressionChunk;
 import net.sf.jasperreports.engine.JRParameter;
 import net.sf.jasperreports.engine.JRQuery;
 import net.sf.jasperreports.engine.JasperExportManager;
 import net.sf.jasperreports.engine.JasperFillManager;
 import net.sf.jasperreports.engine.JasperPrint;
 import net.sf.jasperreports.engine.JasperReport;
-import net.sf.jasperreports.engine.base.JRBaseSubreport;
-import net.sf.jasperreports.engine.util.JRLoader;
+import net.sf.jasperreports.engine.SimpleJasperReportsContext;
+import net.sf.jasperreports.engine.query.JRJdbcQueryExecuterFactory;
 
 @Component
 public class JasperReportsManager {
@@ -92,13 +91,22 @@ public class JasperReportsManager {
 
 	private static final String RPT_BASE = "rpt_base";
 
+	private static final Pattern QUERY_PARAMETER = Pattern.compile("\\$P\\{(\\w+)\\}");
+
 	private HospitalBrowsingManager hospitalManager;
 
 	private DataSource dataSource;
 
-	public JasperReportsManager(HospitalBrowsingManager hospitalBrowsingManager, DataSource dataSource) {
+	private JasperReportCache reportCache;
+
+	private DbQueryExecutor dbQueryExecutor;
+
+	public JasperReportsManager(HospitalBrowsingManager hospitalBrowsingManager, DataSource dataSource, JasperReportCache jasperReportCache,
+					DbQueryExecutor dbQueryExecutor) {
 		this.hospitalManager = hospitalBrowsingManager;
 		this.dataSource = dataSource;
+		this.reportCache = jasperReportCache;
+		this.dbQueryExecutor = dbQueryExecutor;
 	}
 
 	public JasperReportResultDto getExamsListPdf() throws OHServiceException {
@@ -468,26 +476,16 @@ public class JasperReportsManager {
 			String dateTodayQuery = TimeTools.formatDateTime((LocalDateTime) parameters.get("TODAY_DATE"), YYYY_MM_DD);
 			String dateStartQuery = TimeTools.formatDateTime((LocalDateTime) parameters.get("START_DATE"), YYYY_MM_DD);
 			String dateEndQuery = TimeTools.formatDateTime((LocalDateTime) parameters.get("END_DATE"), YYYY_MM_DD);
-			File jasperFile = new File(compileJasperFilename(RPT_BASE, jasperFileName));
-
-			JasperReport jasperReport = (JasperReport) JRLoader.loadObject(jasperFile);
+			JasperReport jasperReport = reportCache.getReport(compileJasperFilename(RPT_BASE, jasperFileName));
 			JRQuery query = jasperReport.getMainDataset().getQuery();
 
 			String queryString = query.getText();
-			queryString = queryString.replace("$P{TODAY_DATE}", '\'' + dateTodayQuery + '\'');
-			queryString = queryString.replace("$P{START_DATE}", '\'' + dateStartQuery + '\'');
-			queryString = queryString.replace("$P{END_DATE}", '\'' + dateEndQuery + '\'');
-
-			DbQueryLogger dbQuery = new DbQueryLogger();
-			ResultSet resultSet = dbQuery.getData(queryString, true);
+			Map<String, Object> queryParameters = new HashMap<>();
+			queryParameters.put("TODAY_DATE", dateTodayQuery);
+			queryParameters.put("START_DATE", dateStartQuery);
+			queryParameters.put("END_DATE", dateEndQuery);
 
-			File exportFile = new File(exportFilename);
-			ExcelExporter xlsExport = new ExcelExporter();
-			if (exportFile.getName().endsWith(".xls")) {
-				xlsExport.exportResultsetToExcelOLD(resultSet, exportFile);
-			} else {
-				xlsExport.exportResultsetToExcel(resultSet, exportFile);
-			}
+			exportQueryResult(jasperFileName, queryString, queryParameters, new File(exportFilename));
 		} catch (Exception e) {
 			LOGGER.error("", e);
 			throw new OHReportException(e, new OHExceptionMessage(MessageBundle.getMessage(STAT_REPORTERROR_MSG)));
@@ -514,33 +512,19 @@ public class JasperReportsManager {
 				date = TimeTools.getNow();
 			}
 			String dateQuery = TimeTools.formatDateTime(date, YYYY_MM_DD);
-			File jasperFile = new File(compileJasperFilename(RPT_BASE, jasperFileName));
-
-			JasperReport jasperReport = (JasperReport) JRLoader.loadObject(jasperFile);
+			JasperReport jasperReport = reportCache.getReport(compileJasperFilename(RPT_BASE, jasperFileName));
 			JRQuery query = jasperReport.getMainDataset().getQuery();
 
 			String queryString = query.getText();
-			queryString = queryString.replace("$P{todate}", '\'' + dateQuery + '\'');
-			if (groupBy != null) {
-				queryString = queryString.replace("$P{groupBy}", '\'' + groupBy + '\'');
-			}
+			Map<String, Object> queryParameters = new HashMap<>();
+			queryParameters.put("todate", dateQuery);
+			queryParameters.put("groupBy", groupBy);
+			queryParameters.put("filter", filter);
 			if (sortBy != null) {
 				queryString = queryString.replace("$P!{sortBy}", '\'' + sortBy + '\'');
 			}
-			if (filter != null) {
-				queryString = queryString.replace("$P{filter}", '\'' + filter + '\'');
-			}
-
-			DbQueryLogger dbQuery = new DbQueryLogger();
-			ResultSet resultSet = dbQuery.getData(queryString, true);
 
-			File exportFile = new File(exportFilename);
-			ExcelExporter xlsExport = new ExcelExporter();
-			if (exportFile.getName().endsWith(".xls")) {
-				xlsExport.exportResultsetToExcelOLD(resultSet, exportFile);
-			} else {
-				xlsExport.exportResultsetToExcel(resultSet, exportFile);
-			}
+			exportQueryResult(jasperFileName, queryString, queryParameters, new File(exportFilename));
 		} catch (Exception e) {
 			LOGGER.error("", e);
 			throw new OHReportException(e, new OHExceptionMessage(MessageBundle.getMessage(STAT_REPORTERROR_MSG)));
@@ -635,31 +619,21 @@ public class JasperReportsManager {
 			String dateFromQuery = TimeTools.formatDateTime(dateFrom, YYYY_MM_DD);
 			String dateToQuery = TimeTools.formatDateTime(dateTo, YYYY_MM_DD);
 
-			File jasperFile = new File(compileJasperFilename(RPT_BASE, jasperFileName));
-
-			JasperReport jasperReport = (JasperReport) JRLoader.loadObject(jasperFile);
+			JasperReport jasperReport = reportCache.getReport(compileJasperFilename(RPT_BASE, jasperFileName));
 			JRQuery query = jasperReport.getMainDataset().getQuery();
 
 			String queryString = query.getText();
-			queryString = queryString.replace("$P{fromdate}", '\'' + dateFromQuery + '\'');
-			queryString = queryString.replace("$P{todate}", '\'' + dateToQuery + '\'');
+			Map<String, Object> queryParameters = new HashMap<>();
+			queryParameters.put("fromdate", dateFromQuery);
+			queryParameters.put("todate", dateToQuery);
 			if (medical != null) {
-				queryString = queryString.replace("$P{productID}", "'" + medical.getCode() + '\'');
+				queryParameters.put("productID", String.valueOf(medical.getCode()));
 			}
 			if (ward != null) {
-				queryString = queryString.replace("$P{WardCode}", '\'' + ward.getCode() + '\'');
+				queryParameters.put("WardCode", ward.getCode());
 			}
 
-			DbQueryLogger dbQuery = new DbQueryLogger();
-			ResultSet resultSet = dbQuery.getData(queryString, true);
-
-			File exportFile = new File(exportFileName);
-			ExcelExporter xlsExport = new ExcelExporter();
-			if (exportFile.getName().endsWith(".xls")) {
-				xlsExport.exportResultsetToExcelOLD(resultSet, exportFile);
-			} else {
-				xlsExport.exportResultsetToExcel(resultSet, exportFile);
-			}
+			exportQueryResult(jasperFileName, queryString, queryParameters, new File(exportFileName));
 
 		} catch (Exception e) {
 			LOGGER.error("", e);
@@ -800,25 +774,15 @@ public class JasperReportsManager {
 
 		try {
 			String filename = compileJasperFilename(jasperFileFolder, jasperFileName);
-			File jasperFile = new File(filename);
-
-			JasperReport jasperReport = (JasperReport) JRLoader.loadObject(jasperFile);
+			JasperReport jasperReport = reportCache.getReport(filename);
 			JRQuery query = jasperReport.getMainDataset().getQuery();
 			String queryString = query.getText();
 
-			queryString = queryString.replace("$P{fromdate}", "'" + java.sql.Date.valueOf(fromDate) + '\'');
-			queryString = queryString.replace("$P{todate}", "'" + java.sql.Date.valueOf(toDate) + '\'');
-
-			DbQueryLogger dbQuery = new DbQueryLogger();
-			ResultSet resultSet = dbQuery.getData(queryString, true);
+			Map<String, Object> queryParameters = new HashMap<>();
+			queryParameters.put("fromdate", java.sql.Date.valueOf(fromDate));
+			queryParameters.put("todate", java.sql.Date.valueOf(toDate));
 
-			File exportFile = new File(exportFilename);
-			ExcelExporter xlsExport = new ExcelExporter();
-			if (exportFile.getName().endsWith(".xls")) {
-				xlsExport.exportResultsetToExcelOLD(resultSet, exportFile);
-			} else {
-				xlsExport.exportResultsetToExcel(resultSet, exportFile);
-			}
+			exportQueryResult(jasperFileName, queryString, queryParameters, new File(exportFilename));
 		} catch (Exception exception) {
 			throw new OHReportException(exception, new OHExceptionMessage(MessageBundle.getMessage(STAT_REPORTERROR_MSG)));
 		}
@@ -828,27 +792,18 @@ public class JasperReportsManager {
 					throws OHServiceException {
 
 		try {
-			File jasperFile = new File(compileJasperFilename(jasperFileFolder, jasperFileName));
-			JasperReport jasperReport = (JasperReport) JRLoader.loadObject(jasperFile);
+			JasperReport jasperReport = reportCache.getReport(compileJasperFilename(jasperFileFolder, jasperFileName));
 			JRQuery query = jasperReport.getMainDataset().getQuery();
 			String queryString = query.getText();
 
 			String dateFromQuery = TimeTools.formatDateTime(TimeTools.getDate(fromDate, DD_MM_YYYY), YYYY_MM_DD);
 			String dateToQuery = TimeTools.formatDateTime(TimeTools.getDate(toDate, DD_MM_YYYY), YYYY_MM_DD);
 
-			queryString = queryString.replace("$P{fromdate}", '\'' + dateFromQuery + '\'');
-			queryString = queryString.replace("$P{todate}", '\'' + dateToQuery + '\'');
-
-			DbQueryLogger dbQuery = new DbQueryLogger();
-			ResultSet resultSet = dbQuery.getData(queryString, true);
+			Map<String, Object> queryParameters = new HashMap<>();
+			queryParameters.put("fromdate", dateFromQuery);
+			queryParameters.put("todate", dateToQuery);
 
-			File exportFile = new File(exportFilename);
-			ExcelExporter xlsExport = new ExcelExporter();
-			if (exportFile.getName().endsWith(".xls")) {
-				xlsExport.exportResultsetToExcelOLD(resultSet, exportFile);
-			} else {
-				xlsExport.exportResultsetToExcel(resultSet, exportFile);
-			}
+			exportQueryResult(jasperFileName, queryString, queryParameters, new File(exportFilename));
 		} catch (Exception exception) {
 			throw new OHReportException(exception, new OHExceptionMessage(MessageBundle.getMessage(STAT_REPORTERROR_MSG)));
 		}
@@ -873,23 +828,14 @@ public class JasperReportsManager {
 					throws OHServiceException {
 
 		try {
-			File jasperFile = new File(compileJasperFilename(jasperFileFolder, jasperFileName));
-			JasperReport jasperReport = (JasperReport) JRLoader.loadObject(jasperFile);
+			JasperReport jasperReport = reportCache.getReport(compileJasperFilename(jasperFileFolder, jasperFileName));
 			JRQuery query = jasperReport.getMainDataset().getQuery();
 			String queryString = query.getText();
-			queryString = queryString.replace("$P{year}", "'" + year + '\'');
-			queryString = queryString.replace("$P{month}", "'" + month + '\'');
+			Map<String, Object> queryParameters = new HashMap<>();
+			queryParameters.put("year", year);
+			queryParameters.put("month", month);
 
-			DbQueryLogger dbQuery = new DbQueryLogger();
-			ResultSet resultSet = dbQuery.getData(queryString, true);
-
-			File exportFile = new File(exportFilename);
-			ExcelExporter xlsExport = new ExcelExporter();
-			if (exportFile.getName().endsWith(".xls")) {
-				xlsExport.exportResultsetToExcelOLD(resultSet, exportFile);
-			} else {
-				xlsExport.exportResultsetToExcel(resultSet, exportFile);
-			}
+			exportQueryResult(jasperFileName, queryString, queryParameters, new File(exportFilename));
 		} catch (Exception e) {
 			LOGGER.error("", e);
 			throw new OHReportException(e, new OHExceptionMessage(MessageBundle.getMessage(STAT_REPORTERROR_MSG)));
@@ -963,7 +909,14 @@ public class JasperReportsManager {
 		 * Jasper Report seems failing to decode resource bundles in UTF-8 encoding. For this reason we pass also the resource for the specific report read with
 		 * UTF8Control()
 		 */
-		addReportBundleParameter(JRParameter.REPORT_RESOURCE_BUNDLE, jasperFileName, parameters);
+		JasperReportCache.CachedReport cachedReport = null;
+		try {
+			cachedReport = reportCache.get(compileJasperFilename(jasperFileFolder, jasperFileName));
+		} catch (JRException e) {
+			LOGGER.error(">> error loading subreport bundle, default will be used");
+			LOGGER.error(e.getMessage());
+		}
+		addReportBundleParameter(JRParameter.REPORT_RESOURCE_BUNDLE, jasperFileName, cachedReport, parameters);
 
 		/*
 		 * Jasper Reports may contain subreports and we should pass also those. The parent report must contain parameters like:
@@ -975,43 +928,10 @@ public class JasperReportsManager {
 		 * If nothing is passed, subreports still work, but REPORT_LOCALE will be used (if passed to the subreport) and corresponding bundle (UTF-8 decoding not
 		 * available)
 		 */
-		try {
+		if (cachedReport != null) {
 			LOGGER.debug("Search subreports for {}...", jasperFileName);
-			addSubReportsBundleParameters(jasperFileFolder, jasperFileName, parameters);
-		} catch (JRException e) {
-			LOGGER.error(">> error loading subreport bundle, default will be used");
-			LOGGER.error(e.getMessage());
-		}
-	}
-
-	private void addSubReportsBundleParameters(String jasperFileFolder, String jasperFileName, Map<String, Object> parameters) throws JRException {
-		File jasperFile = new File(compileJasperFilename(jasperFileFolder, jasperFileName));
-		final JasperReport jasperReport = (JasperReport) JRLoader.loadObject(jasperFile);
-		JRBand[] bands = jasperReport.getAllBands(); // Get all bands
-		for (JRBand band : bands) {
-			List<JRChild> elements = band.getChildren(); // Get all children
-			for (JRChild child : elements) {
-				int index = 1;
-				if (child instanceof JRBaseSubreport subreport) { // This is a subreport
-					String expression = ""; // Lets find out the expression used
-					JRExpressionChunk[] chunks = subreport.getExpression().getChunks();
-					for (JRExpressionChunk c : chunks) {
-						expression += c.getText();
-					}
-
-					/*
-					 * add indexed subreport bundle
-					 */
-					Pattern pattern = Pattern.compile("\"(.*)\"");
-					Matcher matcher = pattern.matcher(expression);
-					if (matcher.find()) {
-						String subreportName = matcher.group(1).split("\\.")[0];
-						LOGGER.debug("found a subreport: {}", subreportName);
-						addReportBundleParameter("SUBREPORT_RESOURCE_BUNDLE_" + index, subreportName, parameters);
-					} else {
-						LOGGER.error(">> unexpected subreport expression {}", expression);
-					}
-				}
+			for (Map.Entry<String, String> subreportBundle : cachedReport.getSubreportBundleNames().entrySet()) {
+				addReportBundleParameter(subreportBundle.getKey(), subreportBundle.getValue(), cachedReport, parameters);
 			}
 		}
 	}
@@ -1025,9 +945,12 @@ public class JasperReportsManager {
 		return patientPhotoFile;
 	}
 
-	private void addReportBundleParameter(String jasperParameter, String jasperFileName, Map<String, Object> parameters) {
+	private void addReportBundleParameter(String jasperParameter, String jasperFileName, JasperReportCache.CachedReport cachedReport,
+					Map<String, Object> parameters) {
 		try {
-			ResourceBundle resourceBundle = ResourceBundle.getBundle(jasperFileName, Locale.getDefault(), new UTF8Control());
+			ResourceBundle resourceBundle = cachedReport != null
+							? cachedReport.getBundle(jasperFileName, Locale.getDefault())
+							: ResourceBundle.getBundle(jasperFileName, Locale.getDefault(), new UTF8Control());
 			parameters.put(jasperParameter, resourceBundle);
 
 		} catch (MissingResourceException e) {
@@ -1038,14 +961,80 @@ public class JasperReportsManager {
 		}
 	}
 
+	/**
+	 * Fills the specified report with the hospital parameters, the report bundles and the passed parameters.
+	 *
+	 * @param jasperFileFolder the folder of the {@code .jasper} file.
+	 * @param jasperFileName the name of the {@code .jasper} file, without extension.
+	 * @param parameters the report parameters.
+	 * @return the filled report.
+	 * @throws OHServiceException if the report cannot be filled.
+	 */
+	public JasperPrint fillReport(String jasperFileFolder, String jasperFileName, Map<String, Object> parameters) throws OHServiceException {
+		try {
+			HashMap<String, Object> reportParameters = getHospitalParameters();
+			reportParameters.putAll(parameters);
+			addBundleParameter(jasperFileFolder, jasperFileName, reportParameters);
+			JasperReport jasperReport = reportCache.getReport(compileJasperFilename(jasperFileFolder, jasperFileName));
+			try (Connection connection = dataSource.getConnection()) {
+				return getFillManager().fill(jasperReport, reportParameters, connection);
+			}
+		} catch (JRException | SQLException e) {
+			LOGGER.error("", e);
+			throw new OHReportException(e, new OHExceptionMessage(MessageBundle.getMessage(STAT_REPORTERROR_MSG)));
+		}
+	}
+
+	/**
+	 * @return a fill manager applying the query timeout of the current thread ({@link DbQueryExecutor#getQueryTimeout()}) to the report
+	 * queries.
+	 */
+	private static JasperFillManager getFillManager() {
+		int queryTimeout = DbQueryExecutor.getQueryTimeout();
+		if (queryTimeout == 0) {
+			return JasperFillManager.getInstance(DefaultJasperReportsContext.getInstance());
+		}
+		SimpleJasperReportsContext context = new SimpleJasperReportsContext();
+		context.setProperty(JRJdbcQueryExecuterFactory.PROPERTY_JDBC_QUERY_TIMEOUT, String.valueOf(queryTimeout));
+		return JasperFillManager.getInstance(context);
+	}
+
 	private JasperReportResultDto generateJasperReport(String jasperFilename, String filename, Map<String, Object> parameters)
 					throws JRException, SQLException {
-		File jasperFile = new File(jasperFilename);
-		final JasperReport jasperReport = (JasperReport) JRLoader.loadObject(jasperFile);
-		Connection connection = dataSource.getConnection();
-		JasperPrint jasperPrint = JasperFillManager.fillReport(jasperReport, parameters, connection);
-		connection.close();
-		return new JasperReportResultDto(jasperPrint, jasperFilename, filename);
+		final JasperReport jasperReport = reportCache.getReport(jasperFilename);
+		try (Connection connection = dataSource.getConnection()) {
+			JasperPrint jasperPrint = JasperFillManager.fillReport(jasperReport, parameters, connection);
+			return new JasperReportResultDto(jasperPrint, jasperFilename, filename);
+		}
+	}
+
+	/**
+	 * Exports the rows of the query to the specified file, as CSV, Excel 97-2003 or Excel according to its extension. The {@code $P{name}}
+	 * parameters of the query are bound to the values of the same name, and the rows are fetched in chunks while they are written.
+	 */
+	private void exportQueryResult(String jasperFileName, String queryString, Map<String, Object> queryParameters, File exportFile)
+					throws OHException {
+		List<Object> parameters = new ArrayList<>();
+		Matcher matcher = QUERY_PARAMETER.matcher(queryString);
+		StringBuilder query = new StringBuilder();
+		while (matcher.find()) {
+			parameters.add(queryParameters.get(matcher.group(1)));
+			matcher.appendReplacement(query, "?");
+		}
+		matcher.appendTail(query);
+
+		dbQueryExecutor.query(jasperFileName, query.toString(), parameters, resultSet -> {
+			ExcelExporter xlsExport = new ExcelExporter();
+			String exportFileName = exportFile.getName();
+			if (exportFileName.endsWith(".xls")) {
+				xlsExport.exportResultsetToExcelOLD(resultSet, exportFile);
+			} else if (exportFileName.endsWith(".csv")) {
+				xlsExport.exportResultsetToCSV(resultSet, exportFile);
+			} else {
+				xlsExport.exportResultsetToExcel(resultSet, exportFile);
+			}
+			return null;
+		});
 	}
 
 	private String compileJasperFilename(String folderName, String jasperFileName) {
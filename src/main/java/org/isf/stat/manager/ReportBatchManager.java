@@ -0,0 +1,304 @@
+/*
+ * Open Hospital (www.open-hospital.org)
+ * Copyright © 2006-2024 Informatici Senza Frontiere (info@informaticisenzafrontiere.org)
+ *
+ * Open Hospital is a free and open source software for healthcare data management.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * https://www.gnu.org/licenses/gpl-3.0-standalone.html
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.isf.stat.manager;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import jakarta.annotation.PreDestroy;
+
+import org.isf.generaldata.MessageBundle;
+import org.isf.stat.dto.ReportBatchItem;
+import org.isf.stat.dto.ReportBatchItemResult;
+import org.isf.stat.dto.ReportBatchOutput;
+import org.isf.stat.dto.ReportBatchResultDto;
+import org.isf.utils.db.DbQueryExecutor;
+import org.isf.utils.exception.OHReportException;
+import org.isf.utils.exception.OHServiceException;
+import org.isf.utils.exception.model.OHExceptionMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JasperExportManager;
+import net.sf.jasperreports.engine.JasperPrint;
+import net.sf.jasperreports.engine.export.JRPdfExporter;
+import net.sf.jasperreports.export.SimpleExporterInput;
+import net.sf.jasperreports.export.SimpleOutputStreamExporterOutput;
+
+/**
+ * Renders many reports at once (the receipts of a day, the bills of a patient, ...) into a single PDF or a zip archive of PDFs.
+ * <p>
+ * The reports are filled in parallel on a fixed pool, each one through {@link JasperReportsManager#fillReport(String, String, java.util.Map)}
+ * with its cached compiled report and a pooled connection, and written in the order of the batch. A fill starts only when one of the
+ * pool size fills in flight is written, so that a zip archive holds only those reports in memory (a merged PDF needs them all). A
+ * report that cannot be filled, or takes longer than the fill timeout, is reported in its {@link ReportBatchItemResult} and left out of
+ * the output, without stopping the batch.
+ */
+@Component
+public class ReportBatchManager {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(ReportBatchManager.class);
+
+	private static final int DEFAULT_MAX_PARALLEL_FILLS = 4;
+
+	private static final String STAT_REPORTERROR_MSG = "angal.stat.reporterror.msg";
+
+	private static final Pattern UNSAFE_ENTRY_NAME_CHARACTERS = Pattern.compile("[^\\w.-]");
+
+	private final JasperReportsManager jasperReportsManager;
+
+	private final int maxParallelFills;
+
+	private final Duration fillTimeout;
+
+	private final ExecutorService executor;
+
+	@Autowired
+	public ReportBatchManager(JasperReportsManager jasperReportsManager) {
+		this(jasperReportsManager, DEFAULT_MAX_PARALLEL_FILLS);
+	}
+
+	public ReportBatchManager(JasperReportsManager jasperReportsManager, int maxParallelFills) {
+		this(jasperReportsManager, maxParallelFills, ReportJobManager.DEFAULT_FILL_TIMEOUT);
+	}
+
+	public ReportBatchManager(JasperReportsManager jasperReportsManager, int maxParallelFills, Duration fillTimeout) {
+		this.jasperReportsManager = jasperReportsManager;
+		this.maxParallelFills = maxParallelFills;
+		this.fillTimeout = fillTimeout;
+		AtomicInteger threadNumber = new AtomicInteger();
+		this.executor = Executors.newFixedThreadPool(maxParallelFills, runnable -> {
+			Thread thread = new Thread(runnable, "report-batch-" + threadNumber.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Renders the reports of the batch into the output file.
+	 *
+	 * @param items the reports to render.
+	 * @param output whether the reports are merged in one PDF or archived one by one.
+	 * @param outputFilename the path of the PDF or zip file.
+	 * @return the outcome of each report, the output file and the time taken.
+	 * @throws OHServiceException if the output file cannot be written or the batch is interrupted.
+	 */
+	public ReportBatchResultDto render(List<ReportBatchItem> items, ReportBatchOutput output, String outputFilename) throws OHServiceException {
+		long start = System.nanoTime();
+		BatchFills fills = new BatchFills(items);
+		List<ReportBatchItemResult> itemResults = new ArrayList<>(items.size());
+		File outputFile = new File(outputFilename);
+		boolean written;
+		try {
+			if (outputFile.getParentFile() != null) {
+				outputFile.getParentFile().mkdirs();
+			}
+			written = output == ReportBatchOutput.zip
+							? writeZip(items, fills, itemResults, outputFile)
+							: writePdf(items, fills, itemResults, outputFile);
+		} catch (IOException | JRException e) {
+			LOGGER.error("", e);
+			throw new OHReportException(e, new OHExceptionMessage(MessageBundle.getMessage(STAT_REPORTERROR_MSG)));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new OHReportException(e, new OHExceptionMessage(MessageBundle.getMessage(STAT_REPORTERROR_MSG)));
+		} finally {
+			fills.cancel();
+		}
+		ReportBatchResultDto result = new ReportBatchResultDto(written ? outputFile.getPath() : null, itemResults,
+						Duration.ofNanos(System.nanoTime() - start));
+		LOGGER.info("Rendered {} of {} reports in {} ms ({} reports/s)", result.getRenderedCount(), items.size(), result.getElapsedTime().toMillis(),
+						String.format("%.1f", result.getThroughput()));
+		return result;
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+
+	private boolean writePdf(List<ReportBatchItem> items, BatchFills fills, List<ReportBatchItemResult> itemResults, File outputFile)
+					throws InterruptedException, JRException {
+		List<JasperPrint> jasperPrints = new ArrayList<>();
+		for (int i = 0; i < items.size(); i++) {
+			JasperPrint jasperPrint = waitForFill(i, items.get(i), fills.next(), itemResults);
+			if (jasperPrint != null) {
+				jasperPrints.add(jasperPrint);
+			}
+		}
+		if (jasperPrints.isEmpty()) {
+			return false;
+		}
+		JRPdfExporter exporter = new JRPdfExporter();
+		exporter.setExporterInput(SimpleExporterInput.getInstance(jasperPrints));
+		exporter.setExporterOutput(new SimpleOutputStreamExporterOutput(outputFile));
+		exporter.exportReport();
+		return true;
+	}
+
+	private boolean writeZip(List<ReportBatchItem> items, BatchFills fills, List<ReportBatchItemResult> itemResults, File outputFile)
+					throws InterruptedException, JRException, IOException {
+		boolean written = false;
+		try (ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(outputFile)))) {
+			for (int i = 0; i < items.size(); i++) {
+				JasperPrint jasperPrint = waitForFill(i, items.get(i), fills.next(), itemResults);
+				if (jasperPrint != null) {
+					zip.putNextEntry(new ZipEntry(String.format("%03d_%s.pdf", i + 1, getEntryName(items.get(i)))));
+					// the PDF writer closes its stream when done: keep the archive open
+					JasperExportManager.exportReportToPdfStream(jasperPrint, new NonClosingOutputStream(zip));
+					zip.closeEntry();
+					written = true;
+				}
+			}
+		}
+		return written;
+	}
+
+	/**
+	 * @return the name of the item with only letters, digits, dots, dashes and underscores, so that it cannot make the zip entry a path.
+	 */
+	private static String getEntryName(ReportBatchItem item) {
+		return item.getName() == null ? "" : UNSAFE_ENTRY_NAME_CHARACTERS.matcher(item.getName()).replaceAll("_");
+	}
+
+	private JasperPrint fill(ReportBatchItem item, Instant deadline) throws OHServiceException {
+		// the interrupt does not stop a query blocked on the database, its statement times out instead
+		DbQueryExecutor.setDeadline(deadline);
+		try {
+			return jasperReportsManager.fillReport(item.getJasperFileFolder(), item.getJasperFileName(), item.getParameters());
+		} finally {
+			DbQueryExecutor.setDeadline(null);
+			// clear an interrupt raised after the fill, so that it does not affect the next fill of the worker
+			Thread.interrupted();
+		}
+	}
+
+	private JasperPrint waitForFill(int index, ReportBatchItem item, BatchFill fill, List<ReportBatchItemResult> itemResults)
+					throws InterruptedException {
+		try {
+			long timeLeft = Math.max(Duration.between(Instant.now(), fill.deadline).toMillis(), 0);
+			JasperPrint jasperPrint = fill.future.get(timeLeft, TimeUnit.MILLISECONDS);
+			itemResults.add(new ReportBatchItemResult(index, item.getName(), null));
+			return jasperPrint;
+		} catch (TimeoutException e) {
+			fill.future.cancel(true);
+			String errorMessage = "Report fill timed out after " + fillTimeout;
+			LOGGER.error("Report {} ({}) of the batch failed: {}", index, item.getName(), errorMessage);
+			itemResults.add(new ReportBatchItemResult(index, item.getName(), errorMessage));
+			return null;
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause() instanceof OHServiceException && e.getCause().getCause() != null ? e.getCause().getCause() : e.getCause();
+			LOGGER.error("Report {} ({}) of the batch failed: {}", index, item.getName(), cause.getMessage());
+			itemResults.add(new ReportBatchItemResult(index, item.getName(), String.valueOf(cause.getMessage())));
+			return null;
+		}
+	}
+
+	private static final class BatchFill {
+
+		private final Future<JasperPrint> future;
+
+		private final Instant deadline;
+
+		private BatchFill(Future<JasperPrint> future, Instant deadline) {
+			this.future = future;
+			this.deadline = deadline;
+		}
+	}
+
+	/**
+	 * The fills of a batch, started in its order: at most {@link #maxParallelFills} of them, the one of the report being written included.
+	 */
+	private final class BatchFills {
+
+		private final List<ReportBatchItem> items;
+
+		private final Deque<BatchFill> started = new ArrayDeque<>();
+
+		private int nextItem;
+
+		private BatchFills(List<ReportBatchItem> items) {
+			this.items = items;
+		}
+
+		/**
+		 * @return the fill of the next report of the batch, once the fills of the following ones are started in place of the previous one.
+		 */
+		private BatchFill next() {
+			while (started.size() < maxParallelFills && nextItem < items.size()) {
+				startNext();
+			}
+			return started.poll();
+		}
+
+		private void cancel() {
+			started.forEach(fill -> fill.future.cancel(true));
+			started.clear();
+		}
+
+		private void startNext() {
+			ReportBatchItem item = items.get(nextItem++);
+			Instant deadline = Instant.now().plus(fillTimeout);
+			started.add(new BatchFill(executor.submit(() -> fill(item, deadline)), deadline));
+		}
+	}
+
+	private static final class NonClosingOutputStream extends FilterOutputStream {
+
+		private NonClosingOutputStream(OutputStream out) {
+			super(out);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			out.write(b, off, len);
+		}
+
+		@Override
+		public void close() throws IOException {
+			flush();
+		}
+	}
+}
@@ -0,0 +1,338 @@
+/*
+ * Open Hospital (www.open-hospital.org)
+ * Copyright © 2006-2024 Informatici Senza Frontiere (info@informaticisenzafrontiere.org)
+ *
+ * Open Hospital is a free and open source software for healthcare data management.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * https://www.gnu.org/licenses/gpl-3.0-standalone.html
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.isf.stat.manager;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import jakarta.annotation.PreDestroy;
+
+import org.isf.generaldata.MessageBundle;
+import org.isf.stat.dto.ReportJob;
+import org.isf.stat.dto.ReportJobFormat;
+import org.isf.stat.dto.ReportJobStatus;
+import org.isf.utils.db.DbQueryExecutor;
+import org.isf.utils.exception.OHServiceException;
+import org.isf.utils.exception.model.OHExceptionMessage;
+import org.isf.utils.time.TimeTools;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JasperExportManager;
+import net.sf.jasperreports.engine.JasperPrint;
+import net.sf.jasperreports.engine.export.ooxml.JRXlsxExporter;
+import net.sf.jasperreports.export.SimpleExporterInput;
+import net.sf.jasperreports.export.SimpleOutputStreamExporterOutput;
+
+/**
+ * Renders reports in background, so that long reports (month-end stock, AMC, ...) do not block the thread requesting them.
+ * <p>
+ * A submitted report gets a job id and is filled by a fixed pool of workers, which also bounds the database connections used by the
+ * reports. Each report type (the {@code .jasper} file name) runs at most a limited number of jobs at once, the other jobs of the same type
+ * wait in their queue without holding a worker. A fill taking longer than the fill timeout is interrupted and its job fails.
+ * <p>
+ * The rendered PDF or XLSX files are kept in the result folder and can be found by job id; finished jobs and their files are dropped
+ * once older than the result time to live.
+ */
+@Component
+public class ReportJobManager {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(ReportJobManager.class);
+
+	private static final String RPT_BASE = "rpt_base";
+
+	private static final String DEFAULT_RESULT_FOLDER = RPT_BASE + File.separator + "JOBS";
+
+	private static final int DEFAULT_MAX_RUNNING_JOBS = 4;
+
+	private static final int DEFAULT_MAX_RUNNING_JOBS_PER_REPORT = 2;
+
+	private static final int DEFAULT_MAX_QUEUED_JOBS = 100;
+
+	static final Duration DEFAULT_FILL_TIMEOUT = Duration.ofMinutes(30);
+
+	private static final Duration DEFAULT_RESULT_TTL = Duration.ofHours(24);
+
+	private static final Duration EVICTION_INTERVAL = Duration.ofMinutes(10);
+
+	private static final String STAT_REPORTERROR_MSG = "angal.stat.reporterror.msg";
+
+	private final JasperReportsManager jasperReportsManager;
+
+	private final Path resultFolder;
+
+	private final int maxRunningJobsPerReport;
+
+	private final int maxQueuedJobs;
+
+	private final Duration fillTimeout;
+
+	private final Duration resultTtl;
+
+	private final ThreadPoolExecutor executor;
+
+	private final ScheduledExecutorService scheduler;
+
+	private final Map<String, ReportJob> jobs = new ConcurrentHashMap<>();
+
+	private final Map<String, Map<String, Object>> jobParameters = new ConcurrentHashMap<>();
+
+	private final Map<String, Integer> reportLimits = new ConcurrentHashMap<>();
+
+	/* guarded by this */
+	private final Map<String, Deque<ReportJob>> waitingJobs = new HashMap<>();
+
+	/* guarded by this */
+	private final Map<String, Integer> runningJobs = new HashMap<>();
+
+	/* guarded by this */
+	private int queuedJobs;
+
+	@Autowired
+	public ReportJobManager(JasperReportsManager jasperReportsManager) {
+		this(jasperReportsManager, Path.of(DEFAULT_RESULT_FOLDER), DEFAULT_MAX_RUNNING_JOBS, DEFAULT_MAX_RUNNING_JOBS_PER_REPORT, DEFAULT_MAX_QUEUED_JOBS,
+						DEFAULT_FILL_TIMEOUT, DEFAULT_RESULT_TTL);
+	}
+
+	public ReportJobManager(JasperReportsManager jasperReportsManager, Path resultFolder, int maxRunningJobs, int maxRunningJobsPerReport,
+					int maxQueuedJobs, Duration fillTimeout, Duration resultTtl) {
+		this.jasperReportsManager = jasperReportsManager;
+		this.resultFolder = resultFolder;
+		this.maxRunningJobsPerReport = maxRunningJobsPerReport;
+		this.maxQueuedJobs = maxQueuedJobs;
+		this.fillTimeout = fillTimeout;
+		this.resultTtl = resultTtl;
+		this.executor = new ThreadPoolExecutor(maxRunningJobs, maxRunningJobs, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(maxQueuedJobs),
+						daemonThreadFactory("report-job-"));
+		this.scheduler = Executors.newSingleThreadScheduledExecutor(daemonThreadFactory("report-job-scheduler-"));
+		this.scheduler.scheduleWithFixedDelay(this::evictExpiredJobs, EVICTION_INTERVAL.toMillis(), EVICTION_INTERVAL.toMillis(), TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Sets how many jobs of the specified report may run at once, instead of the default limit.
+	 *
+	 * @param jasperFileName the name of the {@code .jasper} file, without extension.
+	 * @param maxRunningJobs the maximum number of running jobs.
+	 */
+	public void setMaxRunningJobs(String jasperFileName, int maxRunningJobs) {
+		reportLimits.put(jasperFileName, maxRunningJobs);
+	}
+
+	/**
+	 * Submits a report of the {@code rpt_base} folder.
+	 *
+	 * @see #submit(String, String, Map, ReportJobFormat)
+	 */
+	public String submit(String jasperFileName, Map<String, Object> parameters, ReportJobFormat format) throws OHServiceException {
+		return submit(RPT_BASE, jasperFileName, parameters, format);
+	}
+
+	/**
+	 * Submits a report to be rendered in background.
+	 *
+	 * @param jasperFileFolder the folder of the {@code .jasper} file.
+	 * @param jasperFileName the name of the {@code .jasper} file, without extension.
+	 * @param parameters the report parameters, added to the hospital ones.
+	 * @param format the format of the rendered report.
+	 * @return the id of the job.
+	 * @throws OHServiceException if too many jobs are already waiting.
+	 */
+	public String submit(String jasperFileFolder, String jasperFileName, Map<String, Object> parameters, ReportJobFormat format)
+					throws OHServiceException {
+		ReportJob job = new ReportJob(UUID.randomUUID().toString(), jasperFileFolder, jasperFileName, format, TimeTools.getNow());
+		synchronized (this) {
+			if (queuedJobs >= maxQueuedJobs) {
+				LOGGER.error("Report job queue full, {} not submitted", jasperFileName);
+				throw new OHServiceException(new OHExceptionMessage(MessageBundle.getMessage(STAT_REPORTERROR_MSG)));
+			}
+			queuedJobs++;
+			jobs.put(job.getId(), job);
+			jobParameters.put(job.getId(), new HashMap<>(parameters));
+			waitingJobs.computeIfAbsent(jasperFileName, name -> new ArrayDeque<>()).add(job);
+			dispatch(jasperFileName);
+		}
+		LOGGER.debug("Report job {} submitted for {}", job.getId(), jasperFileName);
+		return job.getId();
+	}
+
+	/**
+	 * @param id the job id.
+	 * @return the job, or {@code null} if unknown or already evicted.
+	 */
+	public ReportJob getJob(String id) {
+		return jobs.get(id);
+	}
+
+	/**
+	 * @param status the status of the jobs.
+	 * @return the jobs in the specified status, by submit date.
+	 */
+	public List<ReportJob> getJobs(ReportJobStatus status) {
+		return jobs.values().stream()
+						.filter(job -> job.getStatus() == status)
+						.sorted(Comparator.comparing(ReportJob::getSubmitDate))
+						.toList();
+	}
+
+	/**
+	 * Drops the jobs finished for longer than the result time to live, deleting their files.
+	 */
+	public void evictExpiredJobs() {
+		LocalDateTime expiryDate = TimeTools.getNow().minus(resultTtl);
+		for (ReportJob job : jobs.values()) {
+			LocalDateTime endDate = job.getEndDate();
+			if (endDate != null && !endDate.isAfter(expiryDate)) {
+				jobs.remove(job.getId());
+				if (job.getResultFile() != null) {
+					try {
+						Files.deleteIfExists(Path.of(job.getResultFile()));
+					} catch (IOException e) {
+						LOGGER.error("Cannot delete report job file {}", job.getResultFile(), e);
+					}
+				}
+				LOGGER.debug("Report job {} evicted", job.getId());
+			}
+		}
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		scheduler.shutdownNow();
+		executor.shutdownNow();
+	}
+
+	/* must hold this */
+	private void dispatch(String jasperFileName) {
+		Deque<ReportJob> waiting = waitingJobs.get(jasperFileName);
+		int running = runningJobs.getOrDefault(jasperFileName, 0);
+		int maxRunning = reportLimits.getOrDefault(jasperFileName, maxRunningJobsPerReport);
+		while (waiting != null && !waiting.isEmpty() && running < maxRunning) {
+			ReportJob job = waiting.poll();
+			running++;
+			executor.execute(() -> run(job));
+		}
+		if (running > 0) {
+			runningJobs.put(jasperFileName, running);
+		} else {
+			runningJobs.remove(jasperFileName);
+		}
+		if (waiting != null && waiting.isEmpty()) {
+			waitingJobs.remove(jasperFileName);
+		}
+	}
+
+	private synchronized void release(ReportJob job) {
+		queuedJobs--;
+		runningJobs.merge(job.getJasperFileName(), -1, Integer::sum);
+		dispatch(job.getJasperFileName());
+	}
+
+	private void run(ReportJob job) {
+		Thread worker = Thread.currentThread();
+		AtomicBoolean timedOut = new AtomicBoolean();
+		job.setStartDate(TimeTools.getNow());
+		job.setStatus(ReportJobStatus.running);
+		ScheduledFuture<?> timeout = scheduler.schedule(() -> {
+			synchronized (job) {
+				if (job.getStatus() == ReportJobStatus.running) {
+					timedOut.set(true);
+					worker.interrupt();
+				}
+			}
+		}, fillTimeout.toMillis(), TimeUnit.MILLISECONDS);
+		// the interrupt does not stop a query blocked on the database, its statement times out instead
+		DbQueryExecutor.setDeadline(Instant.now().plus(fillTimeout));
+		try {
+			JasperPrint jasperPrint = jasperReportsManager.fillReport(job.getJasperFileFolder(), job.getJasperFileName(), jobParameters.get(job.getId()));
+			Path resultFile = resultFolder.resolve(job.getJasperFileName() + '_' + job.getId() + '.' + job.getFormat().name());
+			export(jasperPrint, job.getFormat(), resultFile);
+			finish(job, ReportJobStatus.done, resultFile.toString(), null);
+		} catch (Exception e) {
+			String errorMessage = timedOut.get() ? "Report fill timed out after " + fillTimeout : e.getMessage();
+			LOGGER.error("Report job {} failed: {}", job.getId(), errorMessage, e);
+			finish(job, ReportJobStatus.failed, null, errorMessage);
+		} finally {
+			timeout.cancel(false);
+			DbQueryExecutor.setDeadline(null);
+			// clear an interrupt raised after the fill, so that it does not affect the next job of the worker
+			Thread.interrupted();
+			jobParameters.remove(job.getId());
+			release(job);
+		}
+	}
+
+	private void finish(ReportJob job, ReportJobStatus status, String resultFile, String errorMessage) {
+		synchronized (job) {
+			job.setResultFile(resultFile);
+			job.setErrorMessage(errorMessage);
+			job.setEndDate(TimeTools.getNow());
+			job.setStatus(status);
+		}
+		LOGGER.debug("Report job {} {}", job.getId(), status);
+	}
+
+	private static void export(JasperPrint jasperPrint, ReportJobFormat format, Path resultFile) throws IOException, JRException {
+		Files.createDirectories(resultFile.getParent());
+		if (format == ReportJobFormat.xlsx) {
+			JRXlsxExporter exporter = new JRXlsxExporter();
+			exporter.setExporterInput(new SimpleExporterInput(jasperPrint));
+			exporter.setExporterOutput(new SimpleOutputStreamExporterOutput(resultFile.toFile()));
+			exporter.exportReport();
+		} else {
+			JasperExportManager.exportReportToPdfFile(jasperPrint, resultFile.toString());
+		}
+	}
+
+	private static ThreadFactory daemonThreadFactory(String namePrefix) {
+		AtomicInteger threadNumber = new AtomicInteger();
+		return runnable -> {
+			Thread thread = new Thread(runnable, namePrefix + threadNumber.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+}
@@ -23,7 +23,12 @@ package org.isf.therapy.manager;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.isf.generaldata.MessageBundle;
 import org.isf.medicals.manager.MedicalBrowsingManager;
@@ -251,8 +256,22 @@ public class TherapyManager {
 	@Transactional(rollbackFor = OHServiceException.class)
 	@TranslateOHServiceException
 	public List<Medical> getMedicalsOutOfStock(List<Therapy> therapies) throws OHServiceException {
-		List<Medical> medOutStock = new ArrayList<>();
-		List<Medical> medArray = medManager.getMedicals();
+		Set<Integer> medicalCodes = new HashSet<>();
+		for (Therapy th : therapies) {
+			medicalCodes.add(th.getMedical().getCode());
+		}
+		if (medicalCodes.isEmpty()) {
+			return new ArrayList<>();
+		}
+		// one query for the main store and one for the wards, whatever the number of therapies
+		Map<Integer, Medical> medicals = new HashMap<>();
+		for (Medical medical : medManager.getMedicalsByCodes(medicalCodes)) {
+			medicals.put(medical.getCode(), medical);
+		}
+		Map<Integer, Integer> wardQuantities = wardManager.getCurrentQuantitiesInWards(medicals.values());
+
+		Map<Integer, Medical> medOutStock = new LinkedHashMap<>();
+		LocalDateTime todayDate = TimeTools.getDateToday0();
 
 		double neededQty;
 		double actualQty;
@@ -262,7 +281,6 @@ public class TherapyManager {
 			// CALCULATING NEEDINGS
 			Double qty = th.getQty();
 			int freq = th.getFreqInDay();
-			LocalDateTime todayDate = TimeTools.getDateToday0();
 
 			int dayCount = 0;
 			for (LocalDateTime date : th.getDates()) {
@@ -276,17 +294,16 @@ public class TherapyManager {
 				neededQty = qty * freq * dayCount;
 
 				// CALCULATING STOCK QUANTITIES
-				Medical med = medArray.get(medArray.indexOf(th.getMedical()));
+				Medical med = medicals.getOrDefault(th.getMedical().getCode(), th.getMedical());
 				actualQty = med.getInitialqty() + med.getInqty() - med.getOutqty(); // MAIN STORE
-				int currentQuantity = wardManager.getCurrentQuantityInWard(null, med);
-				actualQty += currentQuantity;
+				actualQty += wardQuantities.getOrDefault(med.getCode(), 0);
 
-				if (neededQty > actualQty && !medOutStock.contains(med)) {
-					medOutStock.add(med);
+				if (neededQty > actualQty) {
+					medOutStock.putIfAbsent(med.getCode(), med);
 				}
 			}
 		}
-		return medOutStock;
+		return new ArrayList<>(medOutStock.values());
 	}
 
 	/**
@@ -0,0 +1,186 @@
+/*
+ * Open Hospital (www.open-hospital.org)
+ * Copyright © 2006-2024 Informatici Senza Frontiere (info@informaticisenzafrontiere.org)
+ *
+ * Open Hospital is a free and open source software for healthcare data management.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * https://www.gnu.org/licenses/gpl-3.0-standalone.html
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.isf.utils.db;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.sql.DataSource;
+
+import org.isf.generaldata.GeneralData;
+import org.isf.generaldata.MessageBundle;
+import org.isf.utils.exception.OHException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.stereotype.Component;
+
+/**
+ * Runs raw SQL queries on connections borrowed from the {@link DataSource} pool (joining the current transaction, if any).
+ * <p>
+ * Each query is a {@link PreparedStatement} with bound parameters, reading a forward-only {@link ResultSet} in chunks of
+ * {@link GeneralData#QUERYFETCHSIZE} rows. The result set is only available to the {@link ResultSetHandler} for the duration of the call:
+ * the statement is closed and the connection given back to the pool when the handler returns. The execution times are collected per
+ * query name and are available from {@link #getQueryTimings()}.
+ * <p>
+ * A thread may set a deadline with {@link #setDeadline(Instant)}: its queries time out when the deadline is reached, so that a query
+ * blocked on the database does not outlive the job running it.
+ */
+@Component
+public class DbQueryExecutor {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(DbQueryExecutor.class);
+
+	private static final ThreadLocal<Instant> DEADLINE = new ThreadLocal<>();
+
+	private final DataSource dataSource;
+
+	private final Map<String, QueryTiming> queryTimings = new ConcurrentHashMap<>();
+
+	public DbQueryExecutor(DataSource dataSource) {
+		this.dataSource = dataSource;
+	}
+
+	/**
+	 * Reads the rows of a query.
+	 *
+	 * @see #query(String, String, List, int, ResultSetHandler)
+	 */
+	public <T> T query(String name, String query, List<?> parameters, ResultSetHandler<T> handler) throws OHException {
+		return query(name, query, parameters, GeneralData.QUERYFETCHSIZE, handler);
+	}
+
+	/**
+	 * Reads the rows of a query.
+	 *
+	 * @param name the name of the query, used to collect its execution times.
+	 * @param query the SQL query, with a {@code ?} placeholder for each parameter.
+	 * @param parameters the values bound to the placeholders, in order.
+	 * @param fetchSize the number of rows to fetch at each round trip.
+	 * @param handler the handler reading the result set.
+	 * @return the value returned by the handler.
+	 * @throws OHException if the query or the handler fail.
+	 */
+	public <T> T query(String name, String query, List<?> parameters, int fetchSize, ResultSetHandler<T> handler) throws OHException {
+		if (LOGGER.isDebugEnabled()) {
+			LOGGER.debug("Query {}: {}", name, query);
+		}
+		long start = System.nanoTime();
+		Connection connection = DataSourceUtils.getConnection(dataSource);
+		try (PreparedStatement statement = connection.prepareStatement(query, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+			statement.setFetchSize(fetchSize);
+			statement.setQueryTimeout(getQueryTimeout());
+			for (int i = 0; i < parameters.size(); i++) {
+				statement.setObject(i + 1, parameters.get(i));
+			}
+			try (ResultSet resultSet = statement.executeQuery()) {
+				return handler.handle(resultSet);
+			}
+		} catch (SQLException e) {
+			throw new OHException(MessageBundle.getMessage("angal.sql.problemsoccurredwiththesqlinstruction.msg"), e);
+		} catch (IOException e) {
+			throw new OHException(e.getMessage(), e);
+		} finally {
+			DataSourceUtils.releaseConnection(connection, dataSource);
+			long elapsed = System.nanoTime() - start;
+			queryTimings.computeIfAbsent(name, key -> new QueryTiming()).add(elapsed);
+			LOGGER.debug("Query {} took {} ms", name, elapsed / 1_000_000);
+		}
+	}
+
+	/**
+	 * Sets the time by which the queries run by the current thread must end.
+	 *
+	 * @param deadline the deadline, or {@code null} to remove it.
+	 */
+	public static void setDeadline(Instant deadline) {
+		if (deadline == null) {
+			DEADLINE.remove();
+		} else {
+			DEADLINE.set(deadline);
+		}
+	}
+
+	/**
+	 * @return the query timeout of the current thread, in seconds: the time left before its deadline (at least one second), or {@code 0}
+	 * (no timeout) if the thread has no deadline.
+	 */
+	public static int getQueryTimeout() {
+		Instant deadline = DEADLINE.get();
+		if (deadline == null) {
+			return 0;
+		}
+		long millis = Duration.between(Instant.now(), deadline).toMillis();
+		return (int) Math.max(1, Math.min(Integer.MAX_VALUE, (millis + 999) / 1000));
+	}
+
+	/**
+	 * @return the execution times, by query name.
+	 */
+	public Map<String, QueryTiming> getQueryTimings() {
+		return Map.copyOf(queryTimings);
+	}
+
+	@FunctionalInterface
+	public interface ResultSetHandler<T> {
+
+		T handle(ResultSet resultSet) throws SQLException, IOException, OHException;
+	}
+
+	/**
+	 * Execution times of a query: how many times it ran, the total and the longest time, including the reading of the rows.
+	 */
+	public static final class QueryTiming {
+
+		private long count;
+
+		private long totalNanos;
+
+		private long maxNanos;
+
+		private synchronized void add(long nanos) {
+			count++;
+			totalNanos += nanos;
+			maxNanos = Math.max(maxNanos, nanos);
+		}
+
+		public synchronized long getCount() {
+			return count;
+		}
+
+		public synchronized Duration getTotalTime() {
+			return Duration.ofNanos(totalNanos);
+		}
+
+		public synchronized Duration getMaxTime() {
+			return Duration.ofNanos(maxNanos);
+		}
+	}
+}
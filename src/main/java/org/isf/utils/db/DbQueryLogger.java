@@ -35,7 +35,10 @@ import org.slf4j.LoggerFactory;
  * Class that executes a query using the connection defined in DbSingleJpaConn; thus a single connection is reused for all queries.
  * The various methods that open a connection with the autocommit flag set to false have the responsibility
  * of doing the commit/rollback operation
+ *
+ * @deprecated the connection is shared by all the threads and the statements are never closed: use {@link DbQueryExecutor}.
  */
+@Deprecated
 public class DbQueryLogger {
 	
 	private static final Logger LOGGER = LoggerFactory.getLogger(DbQueryLogger.class);
@@ -33,7 +33,11 @@ import org.slf4j.LoggerFactory;
 
 /**
  * Singleton, provide db connection used on persistence unit
+ *
+ * @deprecated the connection is shared by all the threads: use {@link DbQueryExecutor} or a connection of the pooled
+ * {@link javax.sql.DataSource}.
  */
+@Deprecated
 public class DbSingleJpaConn {
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(DbSingleJpaConn.class);
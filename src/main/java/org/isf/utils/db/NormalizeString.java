@@ -38,6 +38,16 @@ public class NormalizeString {
 		return normalizedString.replaceAll("[^\\p{ASCII}]", "");
 	}
 	
+	/**
+	 * Use java.text.Normalizer to remove the accents, keeping all the letters (also the non ASCII ones, e.g. cyrillic or greek)
+	 * @param string - the string to normalize
+	 * @return the string without accents
+	 */
+	public static String removeAccents(String string) {
+		String normalizedString = Normalizer.normalize(string, Normalizer.Form.NFD);
+		return normalizedString.replaceAll("\\p{M}", "");
+	}
+	
 	/**
 	 * String.compareToIgnorecase() method over two normalized strings
 	 * @param first - the string to normalize
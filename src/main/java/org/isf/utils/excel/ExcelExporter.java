@@ -63,12 +63,15 @@ import org.apache.poi.ss.usermodel.RichTextString;
 import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.isf.generaldata.MessageBundle;
 import org.isf.utils.exception.OHException;
 
 public class ExcelExporter {
 
+	private static final int STREAMING_WINDOW_SIZE = 100;
+
 	private CharsetEncoder encoder;
 	private Locale currentLocale;
 	private Workbook workbook;
@@ -229,42 +232,32 @@ public class ExcelExporter {
 
 				int colCount = rsmd.getColumnCount();
 				for (int i = 1; i <= colCount; i++) {
-					if (i == colCount) {
-						output.write(rsmd.getColumnName(i));
-					} else {
-						output.write(rsmd.getColumnName(i) + separator);
+					if (i > 1) {
+						output.write(separator);
 					}
+					output.write(rsmd.getColumnName(i));
 				}
-				output.write("\n");
+				output.write('\n');
 
 				while (resultSet.next()) {
-
-					String strVal;
 					for (int i = 1; i <= colCount; i++) {
+						if (i > 1) {
+							output.write(separator);
+						}
 						Object objVal = resultSet.getObject(i);
 						if (objVal != null) {
 							if (objVal instanceof Double val) {
-
-								strVal = numFormat.format(val);
+								output.write(numFormat.format(val));
 							} else if (objVal instanceof Timestamp val) {
-
-								strVal = sdf.format(val);
+								output.write(sdf.format(val));
 							} else {
-
-								strVal = objVal.toString();
+								output.write(objVal.toString());
 							}
 						} else {
-							strVal = " ";
+							output.write(' ');
 						}
-						if (i == colCount - 1) {
-							output.write(strVal);
-						} else {
-							output.write(strVal + separator);
-						}
-
 					}
-					output.write("\n");
-
+					output.write('\n');
 				}
 			} catch (SQLException e) {
 				throw new OHException(MessageBundle.getMessage("angal.sql.problemsoccurredwiththesqlinstruction.msg"), e);
@@ -282,26 +275,26 @@ public class ExcelExporter {
 	 */
 	public void exportDataToCSV(Collection data, File exportFile) throws IOException, OHException {
 
-		try (FileWriter outFile = new FileWriter(exportFile)) {
+		try (BufferedWriter outFile = new BufferedWriter(new FileWriter(exportFile))) {
 			boolean header = false;
 			for (Object map : data) {
 				Map thisMap = ((Map) map);
 				if (!header) {
 					Set columns = thisMap.keySet();
 					for (Object column : columns) {
-						outFile.write(column.toString() + ';');
+						outFile.write(column.toString());
+						outFile.write(';');
 					}
-					outFile.write("\n");
+					outFile.write('\n');
 					header = true;
 				}
 
-				String strVal;
 				Collection values = thisMap.values();
 				for (Object value : values) {
-					strVal = convertValue(value);
-					outFile.write(strVal + ';');
+					outFile.write(convertValue(value));
+					outFile.write(';');
 				}
-				outFile.write("\n");
+				outFile.write('\n');
 			}
 		}
 	}
@@ -399,9 +392,9 @@ public class ExcelExporter {
 	 * @throws OHException
 	 */
 	public void exportResultsetToExcel(ResultSet resultSet, File exportFile) throws IOException, OHException {
-		try (FileOutputStream fileStream = new FileOutputStream(exportFile)) {
+		try (FileOutputStream fileStream = new FileOutputStream(exportFile); SXSSFWorkbook streamingWorkbook = createStreamingWorkbook()) {
 
-			workbook = new XSSFWorkbook();
+			workbook = streamingWorkbook;
 			createHelper = workbook.getCreationHelper();
 
 			Sheet worksheet = workbook.createSheet();
@@ -449,45 +442,58 @@ public class ExcelExporter {
 	 * @throws OHException
 	 */
 	public void exportDataToExcel(Collection data, File exportFile) throws IOException, OHException {
-		FileOutputStream fileStream = new FileOutputStream(exportFile);
+		try (SXSSFWorkbook streamingWorkbook = createStreamingWorkbook()) {
+			workbook = streamingWorkbook;
+			createHelper = workbook.getCreationHelper();
+			Sheet worksheet = workbook.createSheet();
+			initStyles();
 
-		workbook = new XSSFWorkbook();
-		createHelper = workbook.getCreationHelper();
-		Sheet worksheet = workbook.createSheet();
-		initStyles();
+			Row headers = worksheet.createRow((short) 0);
+			boolean header = false;
+			int index = 1;
+			for (Object map : data) {
+				Map thisMap = ((Map) map);
+				if (!header) {
+					Set columns = thisMap.keySet();
+					int h = 0;
+					for (Object column : columns) {
+						Cell cell = headers.createCell((short) h);
+						RichTextString value = createHelper.createRichTextString(column.toString());
+						cell.setCellStyle(headerStyle);
+						cell.setCellValue(value);
+						h++;
+					}
+					header = true;
+					continue;
+				}
 
-		Row headers = worksheet.createRow((short) 0);
-		boolean header = false;
-		int index = 1;
-		for (Object map : data) {
-			Map thisMap = ((Map) map);
-			if (!header) {
-				Set columns = thisMap.keySet();
-				int h = 0;
-				for (Object column : columns) {
-					Cell cell = headers.createCell((short) h);
-					RichTextString value = createHelper.createRichTextString(column.toString());
-					cell.setCellStyle(headerStyle);
-					cell.setCellValue(value);
-					h++;
+				Row row = worksheet.createRow(index);
+				Collection values = thisMap.values();
+				int j = 0;
+				for (Object value : values) {
+					Cell cell = row.createCell((short) j);
+					setValueForExcel(cell, value);
+					j++;
 				}
-				header = true;
-				continue;
+				index++;
 			}
-
-			Row row = worksheet.createRow(index);
-			Collection values = thisMap.values();
-			int j = 0;
-			for (Object value : values) {
-				Cell cell = row.createCell((short) j);
-				setValueForExcel(cell, value);
-				j++;
+			try (FileOutputStream fileStream = new FileOutputStream(exportFile)) {
+				workbook.write(fileStream);
+				fileStream.flush();
 			}
-			index++;
 		}
-		workbook.write(fileStream);
-		fileStream.flush();
-		fileStream.close();
+	}
+
+	/**
+	 * Creates an Excel workbook keeping in memory only the last {@link #STREAMING_WINDOW_SIZE} rows of each sheet: the older rows are
+	 * flushed to compressed temporary files, which are deleted when the workbook is closed.
+	 *
+	 * @return the workbook
+	 */
+	private SXSSFWorkbook createStreamingWorkbook() {
+		SXSSFWorkbook streamingWorkbook = new SXSSFWorkbook(STREAMING_WINDOW_SIZE);
+		streamingWorkbook.setCompressTempFiles(true);
+		return streamingWorkbook;
 	}
 
 	private void setValueForExcel(Cell cell, Object value) {
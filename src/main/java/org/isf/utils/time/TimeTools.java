@@ -21,8 +21,6 @@
  */
 package org.isf.utils.time;
 
-import java.sql.ResultSet;
-import java.sql.SQLException;
 import java.text.MessageFormat;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -31,9 +29,11 @@ import java.time.Period;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 import java.time.temporal.ChronoUnit;
+import java.util.List;
 
 import org.isf.generaldata.MessageBundle;
-import org.isf.utils.db.DbQueryLogger;
+import org.isf.menu.manager.Context;
+import org.isf.utils.db.DbQueryExecutor;
 import org.isf.utils.exception.OHException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -316,15 +316,17 @@ public class TimeTools {
 	 */
 	public static LocalDateTime getServerDateTime() {
 		String query = " SELECT NOW( ) as time ";
-		DbQueryLogger dbQuery = new DbQueryLogger();
+		DbQueryExecutor dbQueryExecutor = Context.getApplicationContext().getBean(DbQueryExecutor.class);
 		try {
-			ResultSet resultSet = dbQuery.getData(query, true);
-			while (resultSet.next()) {
-				String date = resultSet.getString("time");
-				DateTimeFormatter formatter = DateTimeFormatter.ofPattern(YYYY_MM_DD_HH_MM_SS);
-				return LocalDateTime.parse(date, formatter);
-			}
-		} catch (SQLException | OHException | DateTimeParseException exception) {
+			return dbQueryExecutor.query("serverDateTime", query, List.of(), resultSet -> {
+				while (resultSet.next()) {
+					String date = resultSet.getString("time");
+					DateTimeFormatter formatter = DateTimeFormatter.ofPattern(YYYY_MM_DD_HH_MM_SS);
+					return LocalDateTime.parse(date, formatter);
+				}
+				return null;
+			});
+		} catch (OHException | DateTimeParseException exception) {
 			LOGGER.error(exception.getMessage(), exception);
 		}
 		return null;
@@ -34,6 +34,7 @@ import org.isf.utils.exception.model.OHExceptionMessage;
 import org.isf.utils.exception.model.OHSeverityLevel;
 import org.isf.utils.validator.EmailValidator;
 import org.isf.ward.model.Ward;
+import org.isf.ward.model.WardOccupation;
 import org.isf.ward.service.WardIoOperations;
 import org.springframework.stereotype.Component;
 
@@ -294,6 +295,16 @@ public class WardBrowserManager {
 		return ioOperations.getCurrentOccupation(ward);
 	}
 
+	/**
+	 * Retrieves the used and total beds of all the {@link Ward}s at once, e.g. to render the bed board.
+	 * 
+	 * @return the {@link WardOccupation} of each ward, ordered by description.
+	 * @throws OHServiceException
+	 */
+	public List<WardOccupation> getWardOccupations() throws OHServiceException {
+		return ioOperations.getWardOccupations();
+	}
+
 	/**
 	 * Returns the {@link Ward} based on ward code,
 	 *
@@ -22,13 +22,15 @@
 package org.isf.ward.service;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
-import org.isf.admission.model.Admission;
 import org.isf.admission.service.AdmissionIoOperationRepository;
 import org.isf.utils.db.TranslateOHServiceException;
 import org.isf.utils.exception.OHServiceException;
 import org.isf.ward.model.Ward;
+import org.isf.ward.model.WardOccupation;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -60,8 +62,25 @@ public class WardIoOperations {
 	 * @throws OHServiceException
 	 */
 	public int getCurrentOccupation(Ward ward) throws OHServiceException {
-		List<Admission> admissions = new ArrayList<>(admissionRepository.findAllWhereWard(ward.getCode()));
-		return admissions.size();
+		return (int) admissionRepository.countWhereWard(ward.getCode());
+	}
+
+	/**
+	 * Retrieves the occupation of all the {@link Ward}s, counting the patients currently admitted in one grouped query.
+	 * 
+	 * @return the {@link WardOccupation} of each ward, ordered by description.
+	 * @throws OHServiceException
+	 */
+	public List<WardOccupation> getWardOccupations() throws OHServiceException {
+		Map<String, Long> usedBeds = new HashMap<>();
+		for (Object[] wardCount : admissionRepository.countAllWhereInGroupByWard()) {
+			usedBeds.put((String) wardCount[0], (Long) wardCount[1]);
+		}
+		List<WardOccupation> occupations = new ArrayList<>();
+		for (Ward ward : repository.findAllByOrderByDescriptionAsc()) {
+			occupations.add(new WardOccupation(ward, usedBeds.getOrDefault(ward.getCode(), 0L).intValue()));
+		}
+		return occupations;
 	}
 
 	/**
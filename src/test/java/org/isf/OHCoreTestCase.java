@@ -30,6 +30,8 @@ import java.util.stream.Stream;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
 
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.boot.test.context.SpringBootTest;
@@ -74,4 +76,18 @@ public class OHCoreTestCase {
 		}
 		entityManager.createNativeQuery("SET REFERENTIAL_INTEGRITY TRUE").executeUpdate();
 	}
+
+	/**
+	 * Flushes and clears the persistence context and resets the Hibernate statistics, so that the statements issued by the code under test can be counted.
+	 *
+	 * @return the enabled {@link Statistics}
+	 */
+	public Statistics resetStatistics() {
+		entityManager.flush();
+		entityManager.clear();
+		Statistics statistics = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+		statistics.setStatisticsEnabled(true);
+		statistics.clear();
+		return statistics;
+	}
 }
@@ -28,10 +28,13 @@ import static org.assertj.core.data.Offset.offset;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
+import org.hibernate.stat.Statistics;
 import org.isf.OHCoreTestCase;
 import org.isf.accounting.manager.BillBrowserManager;
 import org.isf.accounting.model.Bill;
+import org.isf.accounting.model.BillDailyTotal;
 import org.isf.accounting.model.BillItems;
 import org.isf.accounting.model.BillPayments;
 import org.isf.accounting.service.AccountingBillIoOperationRepository;
@@ -311,6 +314,34 @@ class Tests extends OHCoreTestCase {
 		assertThat(foundBillItems.getBill().getId()).isEqualTo(bill.getId());
 	}
 
+	@Test
+	void testIoNewBillItemsStoresOnlyChangedItems() throws Exception {
+		int id = setupTestBillItems(false);
+		Bill bill = accountingBillItemsIoOperationRepository.findById(id).orElse(null).getBill();
+		accountingBillItemsIoOperationRepository.saveAndFlush(testBillItems.setup(bill, false));
+		accountingBillItemsIoOperationRepository.saveAndFlush(testBillItems.setup(bill, false));
+		List<BillItems> billItems = accountingIoOperation.getItems(bill.getId());
+		assertThat(billItems).hasSize(3);
+		Statistics statistics = resetStatistics();
+
+		// keep the first item, change the second one, remove the third one and add a new one
+		BillItems changedBillItem = billItems.get(1);
+		changedBillItem.setItemQuantity(changedBillItem.getItemQuantity() + 1);
+		BillItems removedBillItem = billItems.remove(2);
+		billItems.add(testBillItems.setup(null, false));
+		accountingIoOperation.newBillItems(bill, billItems);
+		entityManager.flush();
+
+		// the stored totals of the items, the stored items and their bill are read, then one delete, one insert and one update,
+		// then the changes are added to the daily totals of the bill day with one upsert
+		assertThat(statistics.getPrepareStatementCount()).isEqualTo(7);
+		List<BillItems> foundBillItems = accountingIoOperation.getItems(bill.getId());
+		assertThat(foundBillItems).extracting(BillItems::getId)
+				.containsExactly(billItems.get(0).getId(), changedBillItem.getId(), billItems.get(2).getId())
+				.doesNotContain(removedBillItem.getId());
+		assertThat(foundBillItems.get(1).getItemQuantity()).isEqualTo(changedBillItem.getItemQuantity());
+	}
+
 	@Test
 	void testIoNewBillPayments() throws Exception {
 		List<BillPayments> billPayments = new ArrayList<>();
@@ -415,6 +446,36 @@ class Tests extends OHCoreTestCase {
 		assertThat(bills.get(0).getAmount()).isCloseTo(foundBillPayment.getBill().getAmount(), offset(0.1));
 	}
 
+	@Test
+	void testIoGetBillsPaymentsOfSameBill() throws Exception {
+		int id = setupTestBillPayments(false);
+		BillPayments foundBillPayment = accountingBillPaymentIoOperationRepository.findById(id).orElse(null);
+		assertThat(foundBillPayment).isNotNull();
+		BillPayments otherBillPayment = accountingBillPaymentIoOperationRepository.saveAndFlush(testBillPayments.setup(foundBillPayment.getBill(), false));
+
+		List<Bill> bills = accountingIoOperation.getBills(List.of(foundBillPayment, otherBillPayment, foundBillPayment));
+
+		assertThat(bills).containsExactly(foundBillPayment.getBill());
+	}
+
+	@Test
+	void testIoGetBillsWithPaymentsBetweenDates() throws Exception {
+		int id = setupTestBillPayments(false);
+		BillPayments foundBillPayment = accountingBillPaymentIoOperationRepository.findById(id).orElse(null);
+		assertThat(foundBillPayment).isNotNull();
+		Bill foundBill = foundBillPayment.getBill();
+		LocalDateTime paymentDate = foundBillPayment.getDate();
+
+		Map<Bill, List<BillPayments>> billsWithPayments = accountingIoOperation.getBillsWithPaymentsBetweenDates(paymentDate, paymentDate);
+		Map<Bill, List<BillPayments>> noBills = accountingIoOperation.getBillsWithPaymentsBetweenDates(paymentDate.plusYears(100),
+				paymentDate.plusYears(101));
+
+		// the bill is found through its payment, whatever its own date
+		assertThat(billsWithPayments).containsOnlyKeys(foundBill);
+		assertThat(billsWithPayments.get(foundBill)).containsExactly(foundBillPayment);
+		assertThat(noBills).isEmpty();
+	}
+
 	@Test
 	void testIoGetPaymentsBill() throws Exception {
 		List<Bill> bills = new ArrayList<>();
@@ -589,6 +650,65 @@ class Tests extends OHCoreTestCase {
 		assertThat(bills.get(0).getAmount()).isCloseTo(foundBill.getAmount(), offset(0.1));
 	}
 
+	@Test
+	void testMgrDailyTotals() throws Exception {
+		Patient patient = testPatient.setup(false);
+		PriceList priceList = testPriceList.setup(false);
+		priceListIoOperationRepository.saveAndFlush(priceList);
+		patientIoOperationRepository.saveAndFlush(patient);
+		Bill bill = testBill.setup(priceList, patient, null, false);
+		BillItems billItem = testBillItems.setup(null, false);
+		BillPayments billPayment = testBillPayments.setup(null, false);
+		billPayment.setDate(bill.getDate().plusDays(1));
+		billBrowserManager.newBill(bill, new ArrayList<>(List.of(billItem)), new ArrayList<>(List.of(billPayment)));
+		LocalDateTime billDate = bill.getDate();
+		LocalDateTime paymentDate = billPayment.getDate();
+
+		// the totals are maintained by the bill writes
+		List<BillDailyTotal> dailyTotals = billBrowserManager.getDailyTotals(billDate, billDate);
+		assertThat(dailyTotals).hasSize(1);
+		assertThat(dailyTotals.get(0).getItemGroup()).isEqualTo(BillDailyTotal.CUSTOM_ITEM_GROUP);
+		assertThat(dailyTotals.get(0).getPriceListId()).isEqualTo(priceList.getId());
+		assertThat(dailyTotals.get(0).getItemsQuantity()).isEqualTo(billItem.getItemQuantity());
+		assertThat(billBrowserManager.getChargesTotal(billDate, billDate, null))
+				.isCloseTo(billItem.getItemAmount() * billItem.getItemQuantity(), offset(0.001));
+		assertThat(billBrowserManager.getPaymentsTotal(paymentDate, paymentDate, billPayment.getUser())).isCloseTo(billPayment.getAmount(), offset(0.001));
+		assertThat(billBrowserManager.getPaymentsTotal(paymentDate, paymentDate, "otherUser")).isZero();
+
+		billBrowserManager.updateBill(bill, new ArrayList<>(List.of(billItem)), new ArrayList<>());
+		assertThat(billBrowserManager.getPaymentsTotal(paymentDate, paymentDate, null)).isZero();
+
+		// the changes are added to the stored totals
+		billItem.setItemQuantity(billItem.getItemQuantity() + 2);
+		billBrowserManager.updateBill(bill, new ArrayList<>(List.of(billItem)), new ArrayList<>());
+		// the totals are updated in the database, not in the loaded entities
+		entityManager.clear();
+		dailyTotals = billBrowserManager.getDailyTotals(billDate, billDate);
+		assertThat(dailyTotals).hasSize(1);
+		assertThat(dailyTotals.get(0).getItemsQuantity()).isEqualTo(billItem.getItemQuantity());
+		assertThat(billBrowserManager.getChargesTotal(billDate, billDate, null))
+				.isCloseTo(billItem.getItemAmount() * billItem.getItemQuantity(), offset(0.001));
+
+		// moving the bill to another day moves its totals
+		LocalDateTime newBillDate = billDate.minusDays(3);
+		bill.setDate(newBillDate);
+		billBrowserManager.updateBill(bill, new ArrayList<>(List.of(billItem)), new ArrayList<>());
+		assertThat(billBrowserManager.getChargesTotal(billDate, billDate, null)).isZero();
+		assertThat(billBrowserManager.getChargesTotal(newBillDate, newBillDate, null))
+				.isCloseTo(billItem.getItemAmount() * billItem.getItemQuantity(), offset(0.001));
+
+		// the rebuild gives the same totals
+		billBrowserManager.rebuildDailyTotals();
+		assertThat(billBrowserManager.getPaymentsTotal(paymentDate, paymentDate, null)).isZero();
+		assertThat(billBrowserManager.getChargesTotal(billDate, billDate, null)).isZero();
+		assertThat(billBrowserManager.getChargesTotal(newBillDate, newBillDate, null))
+				.isCloseTo(billItem.getItemAmount() * billItem.getItemQuantity(), offset(0.001));
+
+		// the deleted bills are removed from the totals
+		billBrowserManager.deleteBill(bill);
+		assertThat(billBrowserManager.getChargesTotal(newBillDate, newBillDate, null)).isZero();
+	}
+
 	@Test
 	void mgrNewBillNoItemsNoPayments() throws Exception {
 		Patient patient = testPatient.setup(false);
@@ -30,6 +30,7 @@ import java.util.Collection;
 import java.util.List;
 
 import org.assertj.core.api.Condition;
+import org.hibernate.stat.Statistics;
 import org.isf.OHCoreTestCase;
 import org.isf.admission.manager.AdmissionBrowserManager;
 import org.isf.admission.model.Admission;
@@ -67,6 +68,7 @@ import org.isf.patient.TestPatient;
 import org.isf.patient.manager.PatientBrowserManager;
 import org.isf.patient.model.Patient;
 import org.isf.patient.service.PatientIoOperationRepository;
+import org.isf.patient.service.PatientSearchIndex;
 import org.isf.pregtreattype.TestPregnantTreatmentType;
 import org.isf.pregtreattype.model.PregnantTreatmentType;
 import org.isf.pregtreattype.service.PregnantTreatmentTypeIoOperationRepository;
@@ -80,6 +82,7 @@ import org.isf.ward.model.Ward;
 import org.isf.ward.service.WardIoOperationRepository;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.MethodSource;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -131,6 +134,8 @@ class Tests extends OHCoreTestCase {
 	DeliveryTypeIoOperationRepository deliveryTypeIoOperationRepository;
 	@Autowired
 	DeliveryResultIoOperationRepository deliveryResultIoOperationRepository;
+	@Autowired
+	PatientSearchIndex patientSearchIndex;
 
 	@BeforeAll
 	static void setUpClass() {
@@ -456,6 +461,61 @@ class Tests extends OHCoreTestCase {
 		assertThat(patients).isEmpty();
 	}
 
+	@Test
+	void testIoGetAdmittedPatientsByTermsWithinDateRangeDays() throws Exception {
+		// given:
+		int id = setupTestAdmission(false);
+		Admission foundAdmission = admissionIoOperation.getAdmission(id);
+		Patient foundPatient = foundAdmission.getPatient();
+		// the ranges include the whole days of their bounds
+		LocalDateTime[] admissionRange = {
+			foundAdmission.getAdmDate().toLocalDate().atStartOfDay(),
+			foundAdmission.getAdmDate().toLocalDate().atStartOfDay()
+		};
+		LocalDateTime[] dischargeRange = {
+			foundAdmission.getDisDate().toLocalDate().atStartOfDay(),
+			foundAdmission.getDisDate().toLocalDate().atStartOfDay()
+		};
+
+		// when:
+		List<AdmittedPatient> patients = admissionIoOperation.getAdmittedPatients(
+			foundPatient.getSecondName().toLowerCase() + ' ' + foundPatient.getFirstName().substring(2), admissionRange, dischargeRange);
+		List<AdmittedPatient> notFound = admissionIoOperation.getAdmittedPatients("dupsko", admissionRange, dischargeRange);
+		LocalDateTime[] laterRange = { admissionRange[0].plusDays(1), null };
+		List<AdmittedPatient> notAdmitted = admissionIoOperation.getAdmittedPatients(foundPatient.getFirstName(), laterRange, null);
+
+		// then:
+		assertThat(patients).hasSize(1);
+		assertThat(patients.get(0).getPatient().getCode()).isEqualTo(foundPatient.getCode());
+		assertThat(notFound).isEmpty();
+		assertThat(notAdmitted).isEmpty();
+	}
+
+	@Test
+	void testIoGetAdmittedPatientsByTermsWithinDateRangeBeforeIndexIsBuilt() throws Exception {
+		// given:
+		int id = setupTestAdmission(false);
+		Admission foundAdmission = admissionIoOperation.getAdmission(id);
+		Patient foundPatient = foundAdmission.getPatient();
+		LocalDateTime[] admissionRange = {
+			foundAdmission.getAdmDate().toLocalDate().atStartOfDay(),
+			foundAdmission.getAdmDate().toLocalDate().atStartOfDay()
+		};
+		patientSearchIndex.clear();
+
+		// when:
+		List<AdmittedPatient> patients = admissionIoOperation.getAdmittedPatients(foundPatient.getFirstName(), admissionRange, null);
+		List<AdmittedPatient> notFound = admissionIoOperation.getAdmittedPatients("dupsko", admissionRange, null);
+		List<AdmittedPatient> allPatients = admissionIoOperation.getAdmittedPatients(foundPatient.getFirstName());
+
+		// then:
+		assertThat(patientSearchIndex.isReady()).isFalse();
+		assertThat(patients).hasSize(1);
+		assertThat(patients.get(0).getPatient().getCode()).isEqualTo(foundPatient.getCode());
+		assertThat(notFound).isEmpty();
+		assertThat(allPatients).hasSize(1);
+	}
+
 	@ParameterizedTest(name = "Test with MATERNITYRESTARTINJUNE={0}")
 	@MethodSource("maternityRestartInJune")
 	void testIoGetCurrentAdmission(boolean maternityRestartInJune) throws Exception {
@@ -487,6 +547,32 @@ class Tests extends OHCoreTestCase {
 		assertThat(admissions.get(admissions.size() - 1).getId()).isEqualTo(foundAdmission.getId());
 	}
 
+	@Test
+	void testIoGetAdmissionsStatementCount() throws Exception {
+		// given:
+		int id = setupTestAdmission(false);
+		Admission foundAdmission = admissionIoOperation.getAdmission(id);
+		Patient patient = foundAdmission.getPatient();
+		LocalDateTime dateFrom = foundAdmission.getAdmDate().minusDays(1);
+		LocalDateTime dateTo = foundAdmission.getAdmDate().plusDays(1);
+		Statistics statistics = resetStatistics();
+
+		// when:
+		Admission admission = admissionIoOperation.getAdmission(id);
+		long detailStatements = statistics.getPrepareStatementCount();
+		List<Admission> admissions = admissionIoOperation.getAdmissions(patient);
+		List<Admission> admissionsByDate = admissionIoOperation.getAdmissionsByAdmissionDate(dateFrom, dateTo);
+		long listStatements = statistics.getPrepareStatementCount() - detailStatements;
+		testAdmission.check(admissions.get(0));
+		testAdmission.check(admissionsByDate.get(0));
+
+		// then: each query loads the admissions with all their associations
+		assertThat(admission.getDiseaseOut3().getType()).isNotNull();
+		assertThat(detailStatements).isEqualTo(1);
+		assertThat(listStatements).isEqualTo(2);
+		assertThat(statistics.getPrepareStatementCount()).isEqualTo(3);
+	}
+
 	@ParameterizedTest(name = "Test with MATERNITYRESTARTINJUNE={0}")
 	@MethodSource("maternityRestartInJune")
 	void testIoNewAdmission(boolean maternityRestartInJune) throws Exception {
@@ -500,6 +586,31 @@ class Tests extends OHCoreTestCase {
 		testAdmission.check(admission);
 	}
 
+	@ParameterizedTest(name = "Test with MATERNITYRESTARTINJUNE={0}")
+	@MethodSource("maternityRestartInJune")
+	void testIoNewAdmissionAllocatesYProg(boolean maternityRestartInJune) throws Exception {
+		GeneralData.MATERNITYRESTARTINJUNE = maternityRestartInJune;
+		Admission first = buildNewAdmission();
+		first.setAdmDate(TimeTools.getNow());
+		int next = admissionIoOperation.getNextYProg(first.getWard().getCode());
+		first.setYProg(next);
+		admissionIoOperation.newAdmission(first);
+
+		// a parallel registration proposing the same number gets the next one
+		Patient patient = testPatient.setup(true);
+		patientIoOperationRepository.saveAndFlush(patient);
+		Admission second = testAdmission.setup(first.getWard(), patient, first.getAdmType(), first.getDiseaseIn(), first.getDiseaseOut1(),
+			first.getDiseaseOut2(), first.getDiseaseOut3(), null, first.getDisType(), first.getPregTreatmentType(),
+			first.getDeliveryType(), first.getDeliveryResult(), true);
+		second.setAdmDate(TimeTools.getNow());
+		second.setYProg(next);
+		admissionIoOperation.newAdmission(second);
+
+		assertThat(admissionIoOperation.getAdmission(first.getId()).getYProg()).isEqualTo(next);
+		assertThat(admissionIoOperation.getAdmission(second.getId()).getYProg()).isEqualTo(next + 1);
+		assertThat(admissionIoOperation.getNextYProg(first.getWard().getCode())).isEqualTo(next + 2);
+	}
+
 	@ParameterizedTest(name = "Test with MATERNITYRESTARTINJUNE={0}")
 	@MethodSource("maternityRestartInJune")
 	void testIoNewAdmissionReturnKey(boolean maternityRestartInJune) throws Exception {
@@ -1640,6 +1751,7 @@ class Tests extends OHCoreTestCase {
 		deliveryTypeIoOperationRepository.saveAndFlush(deliveryType);
 		deliveryResultIoOperationRepository.saveAndFlush(deliveryResult);
 		Admission savedAdmission = admissionIoOperation.newAdmission(admission);
+		patientSearchIndex.refresh();
 		return savedAdmission.getId();
 	}
 
@@ -77,8 +77,10 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
+import org.junit.jupiter.params.provider.ValueSource;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
+import org.springframework.test.context.transaction.TestTransaction;
 
 class Tests extends OHCoreTestCase {
 
@@ -746,6 +748,155 @@ class Tests extends OHCoreTestCase {
 		assertThat(inventory.getStatus()).isEqualTo(status);
 	}
 
+	@ParameterizedTest(name = "Test resuming after {0} confirmed rows")
+	@ValueSource(ints = { 0, 1 })
+	void testConfirmMedicalInventoryInBatches(int confirmedRows) throws Exception {
+		setGeneralData(false, false, false);
+		MedicalInventory inventory = setupInventoryToConfirmInBatches(30);
+		int inventoryId = inventory.getId();
+		// a confirmation interrupted after some rows is resumed from the first row not confirmed
+		inventory.setConfirmedRows(confirmedRows);
+		inventory = medicalInventoryIoOperation.updateMedicalInventory(inventory);
+		assertThat(medicalInventoryManager.getConfirmationProgress(inventory)).isEqualTo(confirmedRows * 100 / 3);
+		String reference = inventory.getInventoryReference();
+		// each batch runs in its own transaction, so the test data must be committed
+		TestTransaction.flagForCommit();
+		TestTransaction.end();
+
+		try {
+			// the stored number of confirmed rows is used, not the one of a stale inventory
+			MedicalInventory staleInventory = medicalInventoryIoOperation.getInventoryById(inventoryId);
+			staleInventory.setConfirmedRows(0);
+			// the batches are committed even when the confirmation runs within a transaction that is rolled back
+			TestTransaction.start();
+			List<Movement> insertMovements = medicalInventoryManager.confirmMedicalInventoryRowInBatches(staleInventory, 1);
+			TestTransaction.end();
+			// the first row charges 10 pieces, the second one discharges 20 pieces, the third one is unchanged
+			assertThat(insertMovements).hasSize(2 - confirmedRows);
+			Movement discharge = insertMovements.get(insertMovements.size() - 1);
+			assertThat(discharge.getLot().getCode()).isEqualTo("LOT-002");
+			assertThat(discharge.getQuantity()).isEqualTo(20);
+			assertThat(discharge.getRefNo()).isEqualTo(reference + "-discharge");
+			assertThat(medicalStockIoOperation.getMovementsByReference(reference + "-discharge")).hasSize(1);
+			inventory = medicalInventoryIoOperation.getInventoryById(inventoryId);
+			assertThat(inventory.getConfirmedRows()).isEqualTo(3);
+			assertThat(inventory.getStatus()).isEqualTo(InventoryStatus.done.toString());
+			assertThat(medicalInventoryManager.getConfirmationProgress(inventory)).isEqualTo(100);
+		} finally {
+			if (!TestTransaction.isActive()) {
+				TestTransaction.start();
+			}
+			cleanH2InMemoryDb();
+			TestTransaction.flagForCommit();
+		}
+	}
+
+	@Test
+	void testConfirmMedicalInventoryInBatchesResumesAfterFailedBatch() throws Exception {
+		setGeneralData(false, false, false);
+		// the second row discharges less than a piece, so the movement of the second batch is not valid
+		MedicalInventory inventory = setupInventoryToConfirmInBatches(49.5);
+		int inventoryId = inventory.getId();
+		String reference = inventory.getInventoryReference();
+		int lock = inventory.getLock();
+		// each batch runs in its own transaction, so the test data must be committed
+		TestTransaction.flagForCommit();
+		TestTransaction.end();
+
+		try {
+			Throwable throwable = catchThrowable(() -> medicalInventoryManager.confirmMedicalInventoryRowInBatches(inventory, 1));
+			assertThat(throwable).isInstanceOf(OHDataValidationException.class);
+			// the specified inventory is not modified
+			assertThat(inventory.getConfirmedRows()).isZero();
+			assertThat(inventory.getLock()).isEqualTo(lock);
+			// the first batch is committed, the second one is rolled back
+			MedicalInventory interrupted = medicalInventoryIoOperation.getInventoryById(inventoryId);
+			assertThat(interrupted.getConfirmedRows()).isEqualTo(1);
+			assertThat(interrupted.getStatus()).isNotEqualTo(InventoryStatus.done.toString());
+			assertThat(medicalStockIoOperation.getMovementsByReference(reference + "-charge")).hasSize(1);
+			assertThat(medicalStockIoOperation.refNoExists(reference + "-discharge")).isFalse();
+			assertThat(medicalStockIoOperation.getLot("LOT-001").getMainStoreQuantity()).isEqualTo(110);
+
+			// correct the second row and resume from it, even with the stale inventory
+			MedicalInventoryRow secondRow = medicalInventoryRowManager.getMedicalInventoryRowByInventoryIdOrderById(inventoryId).get(1);
+			secondRow.setRealqty(30);
+			medicalInventoryRowIoOperationRepository.saveAndFlush(secondRow);
+			// a batch size that is not positive falls back to the default one
+			List<Movement> insertMovements = medicalInventoryManager.confirmMedicalInventoryRowInBatches(inventory, 0);
+			assertThat(insertMovements).hasSize(1);
+			assertThat(insertMovements.get(0).getQuantity()).isEqualTo(20);
+			MedicalInventory confirmed = medicalInventoryIoOperation.getInventoryById(inventoryId);
+			assertThat(confirmed.getConfirmedRows()).isEqualTo(3);
+			assertThat(confirmed.getStatus()).isEqualTo(InventoryStatus.done.toString());
+			assertThat(medicalStockIoOperation.getMovementsByReference(reference + "-charge")).hasSize(1);
+			assertThat(medicalStockIoOperation.getMovementsByReference(reference + "-discharge")).hasSize(1);
+			assertThat(medicalStockIoOperation.getLot("LOT-002").getMainStoreQuantity()).isEqualTo(80);
+		} finally {
+			TestTransaction.start();
+			cleanH2InMemoryDb();
+			TestTransaction.flagForCommit();
+		}
+	}
+
+	/**
+	 * Stores an inventory of three rows, on three lots of the same medical, to be confirmed in batches: the first row charges 10 pieces, the second one
+	 * discharges {@code 50 - secondRowRealQty} pieces, the third one is unchanged.
+	 */
+	private MedicalInventory setupInventoryToConfirmInBatches(double secondRowRealQty) throws Exception {
+		Ward ward = testWard.setup(false);
+		wardIoOperationRepository.saveAndFlush(ward);
+		MovementType chargeType = new MovementType("inventory+", "Inventory+", "+", "non-operational");
+		MovementType dischargeType = new MovementType("inventory-", "Inventory-", "-", "non-operational");
+		Supplier supplier = new Supplier(1, "INVENTORY", null, null, null, null, null, null);
+		Ward destination = new Ward("INV", "ward inventory", null, null, null, 8, 1, 1, false, false);
+		dischargeType = medicalDsrStockMovementTypeIoOperationRepository.save(dischargeType);
+		chargeType = medicalDsrStockMovementTypeIoOperationRepository.save(chargeType);
+		supplier = supplierIoOperationRepository.save(supplier);
+		destination = wardIoOperationRepository.save(destination);
+		MedicalInventory inventory = testMedicalInventory.setup(ward, false);
+		inventory.setChargeType(chargeType.getCode());
+		inventory.setDestination(destination.getCode());
+		inventory.setSupplier(supplier.getSupId());
+		inventory.setDischargeType(dischargeType.getCode());
+		inventory = medicalInventoryIoOperation.newMedicalInventory(inventory);
+		MedicalType medicalType = testMedicalType.setup(false);
+		Medical medical = testMedical.setup(medicalType, false);
+		Lot lotOne = testLot.setup(medical, false);
+		lotOne.setCode("LOT-001");
+		Movement firstMovement = testMovement.setup(medical, chargeType, ward, lotOne, supplier, false);
+		firstMovement.setQuantity(100);
+		MedicalStock firstmedicalStock = testMedicalStock.setup(firstMovement);
+		Lot lotTwo = testLot.setup(medical, false);
+		lotTwo.setCode("LOT-002");
+		Movement secondMovement = testMovement.setup(medical, chargeType, ward, lotTwo, supplier, false);
+		secondMovement.setQuantity(100);
+		MedicalStock secondmedicalStock = testMedicalStock.setup(secondMovement);
+		Lot lotThree = testLot.setup(medical, false);
+		lotThree.setCode("LOT-003");
+		medicalTypeIoOperationRepository.saveAndFlush(medicalType);
+		medical = medicalsIoOperationRepository.save(medical);
+		lotOne = lotIoOperationRepository.save(lotOne);
+		lotTwo = lotIoOperationRepository.save(lotTwo);
+		lotThree = lotIoOperationRepository.save(lotThree);
+		medicalStockIoOperation.newMovement(firstMovement);
+		medicalStockIoOperation.newMovement(secondMovement);
+		medicalStockIoOperationRepository.saveAndFlush(firstmedicalStock);
+		medicalStockIoOperationRepository.saveAndFlush(secondmedicalStock);
+		MedicalInventoryRow medicalInventoryRowOne = testMedicalInventoryRow.setup(inventory, medical, lotOne, false);
+		medicalInventoryRowOne.setRealqty(60);
+		MedicalInventoryRow medicalInventoryRowTwo = testMedicalInventoryRow.setup(inventory, medical, lotTwo, false);
+		medicalInventoryRowTwo.setId(2);
+		medicalInventoryRowTwo.setRealqty(secondRowRealQty);
+		MedicalInventoryRow medicalInventoryRowThree = testMedicalInventoryRow.setup(inventory, medical, lotThree, false);
+		medicalInventoryRowThree.setId(3);
+		medicalInventoryRowIoOperationRepository.saveAndFlush(medicalInventoryRowOne);
+		medicalInventoryRowIoOperationRepository.saveAndFlush(medicalInventoryRowTwo);
+		medicalInventoryRowIoOperationRepository.saveAndFlush(medicalInventoryRowThree);
+		List<MedicalInventoryRow> medicalInventoryRows = medicalInventoryRowManager.getMedicalInventoryRowByInventoryId(inventory.getId());
+		assertThat(medicalInventoryRows).hasSize(3);
+		return inventory;
+	}
+
 	@Test
 	void testReferenceOfInventoryExist() throws Exception {
 		int id = setupTestMedicalInventory();
@@ -831,6 +982,53 @@ class Tests extends OHCoreTestCase {
 		medicalInventoryManager.validateMedicalInventoryRow(inventory, medicalInventoryRows);
 	}
 
+	@Test
+	void testActualizeMedicalInventoryRow() throws Exception {
+		Ward ward = testWard.setup(false);
+		wardIoOperationRepository.saveAndFlush(ward);
+		MovementType chargeType = new MovementType("inventory+", "Inventory+", "+", "non-operational");
+		MovementType dischargeType = new MovementType("inventory-", "Inventory-", "-", "non-operational");
+		Supplier supplier = new Supplier(1, "INVENTORY", null, null, null, null, null, null);
+		dischargeType = medicalDsrStockMovementTypeIoOperationRepository.save(dischargeType);
+		chargeType = medicalDsrStockMovementTypeIoOperationRepository.save(chargeType);
+		supplier = supplierIoOperationRepository.save(supplier);
+		MedicalInventory inventory = testMedicalInventory.setup(ward, false);
+		inventory.setInventoryDate(TimeTools.getNow().minusDays(1));
+		inventory.setChargeType(chargeType.getCode());
+		inventory.setSupplier(supplier.getSupId());
+		inventory.setDischargeType(dischargeType.getCode());
+		inventory = medicalInventoryIoOperation.newMedicalInventory(inventory);
+		MedicalType medicalType = testMedicalType.setup(false);
+		Medical medical = testMedical.setup(medicalType, false);
+		medicalTypeIoOperationRepository.saveAndFlush(medicalType);
+		medical = medicalsIoOperationRepository.save(medical);
+		Lot lotOne = lotIoOperationRepository.save(testLot.setup(medical, false));
+		Lot lotTwo = testLot.setup(medical, false);
+		lotTwo.setCode("LOT-002");
+		lotTwo = lotIoOperationRepository.save(lotTwo);
+		MedicalInventoryRow medicalInventoryRow = testMedicalInventoryRow.setup(inventory, medical, lotOne, false);
+		medicalInventoryRowIoOperationRepository.saveAndFlush(medicalInventoryRow);
+
+		Movement firstMovement = testMovement.setup(medical, chargeType, ward, lotOne, supplier, false);
+		firstMovement.setDate(TimeTools.getNow());
+		firstMovement.setQuantity(100);
+		medicalStockIoOperation.newMovement(firstMovement);
+		Movement secondMovement = testMovement.setup(medical, chargeType, ward, lotTwo, supplier, false);
+		secondMovement.setDate(TimeTools.getNow());
+		secondMovement.setQuantity(40);
+		medicalStockIoOperation.newMovement(secondMovement);
+
+		inventory = medicalInventoryManager.actualizeMedicalInventoryRow(inventory);
+
+		List<MedicalInventoryRow> medicalInventoryRows = medicalInventoryRowManager.getMedicalInventoryRowByInventoryId(inventory.getId());
+		assertThat(medicalInventoryRows).hasSize(2);
+		assertThat(medicalInventoryRows.get(0).getLot()).isEqualTo(lotOne);
+		assertThat(medicalInventoryRows.get(0).getTheoreticQty()).isEqualTo(100);
+		assertThat(medicalInventoryRows.get(1).getLot()).isEqualTo(lotTwo);
+		assertThat(medicalInventoryRows.get(1).getTheoreticQty()).isEqualTo(40);
+		assertThat(medicalInventoryRows.get(1).getRealQty()).isEqualTo(40);
+	}
+
 	@Test
 	void testValidateMedicalWardInventoryRow() {
 		Throwable throwable = catchThrowable(() -> {
@@ -23,6 +23,7 @@ package org.isf.medicalstock;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.entry;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import java.lang.reflect.InvocationTargetException;
@@ -33,20 +34,32 @@ import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Stream;
 
 import org.assertj.core.api.Condition;
+import org.hibernate.stat.Statistics;
 import org.isf.OHCoreTestCase;
 import org.isf.generaldata.GeneralData;
 import org.isf.medicals.TestMedical;
 import org.isf.medicals.model.Medical;
 import org.isf.medicals.service.MedicalsIoOperationRepository;
+import org.isf.medicals.service.MedicalsIoOperations;
 import org.isf.medicalstock.manager.MovBrowserManager;
 import org.isf.medicalstock.manager.MovStockInsertingManager;
+import org.isf.medicalstock.model.DischargePlan;
 import org.isf.medicalstock.model.Lot;
+import org.isf.medicalstock.model.LotBalance;
 import org.isf.medicalstock.model.MedicalStock;
 import org.isf.medicalstock.model.Movement;
+import org.isf.medicalstock.service.LotBalanceIoOperationRepository;
+import org.isf.medicalstock.service.LotCodeGenerator;
 import org.isf.medicalstock.service.LotIoOperationRepository;
 import org.isf.medicalstock.service.MedicalStockIoOperationRepository;
 import org.isf.medicalstock.service.MedicalStockIoOperations;
@@ -68,6 +81,7 @@ import org.isf.supplier.service.SupplierIoOperationRepository;
 import org.isf.utils.exception.OHDataValidationException;
 import org.isf.utils.exception.OHException;
 import org.isf.utils.exception.OHServiceException;
+import org.isf.utils.pagination.PagedResponse;
 import org.isf.utils.time.TimeTools;
 import org.isf.ward.TestWard;
 import org.isf.ward.model.Ward;
@@ -81,6 +95,7 @@ import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.context.transaction.TestTransaction;
 import org.springframework.transaction.annotation.Transactional;
 
 @Transactional
@@ -106,12 +121,18 @@ class Tests extends OHCoreTestCase {
 	@Autowired
 	LotIoOperationRepository lotIoOperationRepository;
 	@Autowired
+	LotBalanceIoOperationRepository lotBalanceIoOperationRepository;
+	@Autowired
+	LotCodeGenerator lotCodeGenerator;
+	@Autowired
 	MedicalStockWardIoOperationRepository medicalStockWardIoOperationRepository;
 	@Autowired
 	MovementWardIoOperationRepository movementWardIoOperationRepository;
 	@Autowired
 	MedicalsIoOperationRepository medicalsIoOperationRepository;
 	@Autowired
+	MedicalsIoOperations medicalsIoOperations;
+	@Autowired
 	MedicalTypeIoOperationRepository medicalTypeIoOperationRepository;
 	@Autowired
 	WardIoOperationRepository wardIoOperationRepository;
@@ -253,6 +274,29 @@ class Tests extends OHCoreTestCase {
 		assertThat(lots).isEmpty();
 	}
 
+	@ParameterizedTest(name = "Test with AUTOMATICLOT_IN={0}, AUTOMATICLOT_OUT={1}, AUTOMATICLOTWARD_TOWARD={2}")
+	@MethodSource("automaticlot")
+	void testIoGetLotsByMedicals(boolean in, boolean out, boolean toward) throws Exception {
+		setGeneralData(in, out, toward);
+		int code = setupTestMovement(false);
+		Movement foundMovement = movementIoOperationRepository.findById(code).orElse(null);
+		assertThat(foundMovement).isNotNull();
+		Medical medical = foundMovement.getMedical();
+
+		Map<Integer, List<Lot>> lotsByMedical = medicalStockIoOperation.getLotsByMedicals(List.of(medical), true);
+		assertThat(lotsByMedical).containsOnlyKeys(medical.getCode());
+		List<Lot> lots = lotsByMedical.get(medical.getCode());
+		assertThat(lots).hasSize(1);
+		assertThat(lots.get(0).getCode()).isEqualTo(foundMovement.getLot().getCode());
+		assertThat(lots.get(0).getMainStoreQuantity()).isEqualTo(foundMovement.getQuantity());
+
+		foundMovement.setQuantity(0);
+		movementIoOperationRepository.saveAndFlush(foundMovement);
+
+		assertThat(medicalStockIoOperation.getLotsByMedicals(List.of(medical), true).get(medical.getCode())).isEmpty();
+		assertThat(movStockInsertingManager.getLotsByMedicals(List.of(medical), false).get(medical.getCode())).hasSize(1);
+	}
+
 	@ParameterizedTest(name = "Test with AUTOMATICLOT_IN={0}, AUTOMATICLOT_OUT={1}, AUTOMATICLOTWARD_TOWARD={2}")
 	@MethodSource("automaticlot")
 	void testIoNewAutomaticDischargingMovement(boolean in, boolean out, boolean toward) throws Exception {
@@ -331,6 +375,73 @@ class Tests extends OHCoreTestCase {
 		assertThat(lots).hasSize(1); // first lot should be 0 quantity and stripped by the list
 	}
 
+	@ParameterizedTest(name = "Test with AUTOMATICLOT_IN={0}, AUTOMATICLOT_OUT={1}, AUTOMATICLOTWARD_TOWARD={2}")
+	@MethodSource("automaticlot")
+	void testIoPlanAutomaticDischargingMovement(boolean in, boolean out, boolean toward) throws Exception {
+		setGeneralData(in, out, toward);
+		int code = setupTestMovement(false);
+		Movement foundMovement = movementIoOperationRepository.findById(code).orElse(null);
+		assertThat(foundMovement).isNotNull();
+
+		Medical medical = foundMovement.getMedical();
+		Lot lot2 = testLot.setup(medical, false);
+		lot2.setCode("second");
+		lot2.setDueDate(foundMovement.getLot().getDueDate().plusYears(1));
+		medicalStockIoOperation.newMovement(new Movement(medical, foundMovement.getType(), null, lot2, TimeTools.getNow(), 7,
+			foundMovement.getSupplier(), "newReference"));
+
+		MovementType dischargeMovementType = testMovementType.setup(false);
+		dischargeMovementType.setCode("discharge");
+		dischargeMovementType.setType("-");
+		medicalDsrStockMovementTypeIoOperationRepository.saveAndFlush(dischargeMovementType);
+		Movement dischargeMovement = new Movement(medical, dischargeMovementType, foundMovement.getWard(), new Lot("", null, null), TimeTools.getNow(),
+			foundMovement.getQuantity() + 5, null, "newReference2");
+		long movementCount = movementIoOperationRepository.count();
+
+		boolean automaticLotMode = GeneralData.AUTOMATICLOT_OUT;
+		GeneralData.AUTOMATICLOT_OUT = true;
+		DischargePlan plan = movStockInsertingManager.getDischargePlan(dischargeMovement);
+		GeneralData.AUTOMATICLOT_OUT = automaticLotMode;
+		assertThat(plan.getMovement()).isSameAs(dischargeMovement);
+		assertThat(plan.getUnallocatedQuantity()).isZero();
+		assertThat(plan.getMovements()).extracting(mov -> mov.getLot().getCode()).containsExactly(foundMovement.getLot().getCode(), "second");
+		assertThat(plan.getMovements()).extracting(Movement::getQuantity).containsExactly(foundMovement.getQuantity(), 5);
+		assertThat(movementIoOperationRepository.count()).isEqualTo(movementCount);
+
+		List<Movement> stored = medicalStockIoOperation.storeDischargePlan(plan);
+		medicalStockIoOperation.updateStockQuantities(stored);
+		assertThat(stored).hasSize(2);
+		assertThat(movementIoOperationRepository.count()).isEqualTo(movementCount + 2);
+		List<Lot> lots = medicalStockIoOperation.getLotsByMedical(medical, true);
+		assertThat(lots).hasSize(1);
+		assertThat(lots.get(0).getMainStoreQuantity()).isEqualTo(2);
+	}
+
+	@Test
+	void testIoStoreDischargePlanNotCoveringTheQuantity() throws Exception {
+		int code = setupTestMovement(false);
+		Movement foundMovement = movementIoOperationRepository.findById(code).orElse(null);
+		assertThat(foundMovement).isNotNull();
+		MovementType dischargeMovementType = testMovementType.setup(false);
+		dischargeMovementType.setCode("discharge");
+		dischargeMovementType.setType("-");
+		medicalDsrStockMovementTypeIoOperationRepository.saveAndFlush(dischargeMovementType);
+		Medical medical = foundMovement.getMedical();
+		Lot lot = foundMovement.getLot();
+		int quantity = foundMovement.getQuantity();
+		Movement dischargeMovement = new Movement(medical, dischargeMovementType, foundMovement.getWard(), new Lot("", null, null), TimeTools.getNow(),
+			quantity + 5, null, "newReference");
+		Movement lotMovement = new Movement(medical, dischargeMovementType, foundMovement.getWard(), lot, TimeTools.getNow(), quantity, null,
+			"newReference");
+		DischargePlan plan = new DischargePlan(dischargeMovement, List.of(lotMovement), 5);
+		long movementCount = movementIoOperationRepository.count();
+
+		assertThatThrownBy(() -> medicalStockIoOperation.storeDischargePlan(plan))
+			.isInstanceOf(OHDataValidationException.class);
+		assertThat(movementIoOperationRepository.count()).isEqualTo(movementCount);
+		assertThat(medicalStockIoOperation.getLot(lot.getCode()).getMainStoreQuantity()).isEqualTo(quantity);
+	}
+
 	@ParameterizedTest(name = "Test with AUTOMATICLOT_IN={0}, AUTOMATICLOT_OUT={1}, AUTOMATICLOTWARD_TOWARD={2}")
 	@MethodSource("automaticlot")
 	void testIoNewMovementOutGoingLots(boolean in, boolean out, boolean toward) throws Exception {
@@ -436,6 +547,123 @@ class Tests extends OHCoreTestCase {
 		assertThat(foundMovement.getType().getType()).isEqualTo("-");
 	}
 
+	@ParameterizedTest(name = "Test with AUTOMATICLOT_IN={0}, AUTOMATICLOT_OUT={1}, AUTOMATICLOTWARD_TOWARD={2}")
+	@MethodSource("automaticlot")
+	void testIoLotBalanceUpdatedByMovements(boolean in, boolean out, boolean toward) throws Exception {
+		setGeneralData(in, out, toward);
+		int code = setupTestMovement(false);
+		Movement movement = movementIoOperationRepository.findById(code).orElse(null);
+		assertThat(movement).isNotNull();
+		String lotCode = movement.getLot().getCode();
+		MovementType dischargeType = new MovementType("ZZDIS", "TestDischarge", "-", "operational");
+		medicalDsrStockMovementTypeIoOperationRepository.saveAndFlush(dischargeType);
+
+		// first discharge creates the balance from the history
+		medicalStockIoOperation.newMovement(new Movement(movement.getMedical(), dischargeType, movement.getWard(), movement.getLot(),
+			TimeTools.getNow(), 4, null, "discharge1"));
+		Optional<LotBalance> lotBalance = lotBalanceIoOperationRepository.findById(lotCode);
+		assertThat(lotBalance).isPresent();
+
+		// following discharge updates the balance
+		Movement lastMovement = medicalStockIoOperation.newMovement(new Movement(movement.getMedical(), dischargeType, movement.getWard(),
+			movement.getLot(), TimeTools.getNow(), 3, null, "discharge2"));
+		Lot lot = medicalStockIoOperation.getLot(lotCode);
+		assertThat(lot.getMainStoreQuantity()).isEqualTo(movement.getQuantity() - 7);
+		assertThat(lot.getWardsTotalQuantity()).isEqualTo(7.0);
+		assertThat(medicalStockIoOperation.verifyLotBalances()).isEmpty();
+
+		medicalStockIoOperation.deleteMovement(lastMovement);
+		lot = medicalStockIoOperation.getLot(lotCode);
+		assertThat(lot.getMainStoreQuantity()).isEqualTo(movement.getQuantity() - 4);
+	}
+
+	@Test
+	void testIoConcurrentDischargingMovements() throws Exception {
+		int code = setupTestMovement(false);
+		Movement movement = movementIoOperationRepository.findById(code).orElse(null);
+		assertThat(movement).isNotNull();
+		Medical medical = movement.getMedical();
+		double outQuantity = medical.getOutqty();
+		Lot lot = movement.getLot();
+		MovementType dischargeType = new MovementType("ZZDIS", "TestDischarge", "-", "operational");
+		medicalDsrStockMovementTypeIoOperationRepository.saveAndFlush(dischargeType);
+		// the parallel discharges also race to create the balance of the lot
+		lotBalanceIoOperationRepository.deleteBalance(lot.getCode());
+		// parallel discharges run in their own transactions, so the test data must be committed
+		TestTransaction.flagForCommit();
+		TestTransaction.end();
+
+		int dischargers = 8;
+		ExecutorService executor = Executors.newFixedThreadPool(dischargers);
+		try {
+			CountDownLatch start = new CountDownLatch(1);
+			List<Future<Movement>> discharges = new ArrayList<>(dischargers);
+			for (int i = 0; i < dischargers; i++) {
+				String refNo = "discharge" + i;
+				discharges.add(executor.submit(() -> {
+					start.await();
+					return medicalStockIoOperation.newMovement(new Movement(medical, dischargeType, null, lot, TimeTools.getNow(), 1, null, refNo));
+				}));
+			}
+			start.countDown();
+			for (Future<Movement> discharge : discharges) {
+				assertThat(discharge.get(30, TimeUnit.SECONDS)).isNotNull();
+			}
+
+			Medical updatedMedical = medicalsIoOperationRepository.findById(medical.getCode()).orElse(null);
+			assertThat(updatedMedical).isNotNull();
+			assertThat(updatedMedical.getOutqty()).isEqualTo(outQuantity + dischargers);
+			assertThat(medicalStockIoOperation.getLot(lot.getCode()).getMainStoreQuantity()).isEqualTo(movement.getQuantity() - dischargers);
+			// one balance for the day of the discharges, with all of them
+			List<MedicalStock> balances = medicalStockIoOperationRepository.findByMedicalCodeOrderByBalanceDateDesc(medical.getCode());
+			assertThat(balances).filteredOn(balance -> balance.getBalanceDate().equals(LocalDate.now())).hasSize(1);
+			assertThat(balances.get(0).getBalance()).isEqualTo(movement.getQuantity() - dischargers);
+		} finally {
+			executor.shutdownNow();
+			TestTransaction.start();
+			cleanH2InMemoryDb();
+			TestTransaction.flagForCommit();
+		}
+	}
+
+	@ParameterizedTest(name = "Test with AUTOMATICLOT_IN={0}, AUTOMATICLOT_OUT={1}, AUTOMATICLOTWARD_TOWARD={2}")
+	@MethodSource("automaticlot")
+	void testMgrGetStockAt(boolean in, boolean out, boolean toward) throws Exception {
+		setGeneralData(in, out, toward);
+		int code = setupTestMovement(false);
+		Movement movement = movementIoOperationRepository.findById(code).orElse(null);
+		assertThat(movement).isNotNull();
+		Medical medical = movement.getMedical();
+		LocalDate movementDate = movement.getDate().toLocalDate();
+		LocalDate nextMovementDate = movementDate.plusMonths(1);
+		medicalStockIoOperation.newMovement(new Movement(medical, movement.getType(), null, movement.getLot(), nextMovementDate.atStartOfDay(), 5,
+			movement.getSupplier(), "charge"));
+
+		assertThat(movBrowserManager.getStockAt(medical, movementDate.minusDays(1))).isZero();
+		assertThat(movBrowserManager.getStockAt(medical, movementDate)).isEqualTo(movement.getQuantity());
+		assertThat(movBrowserManager.getStockAt(medical, nextMovementDate.minusDays(1))).isEqualTo(movement.getQuantity());
+		assertThat(movBrowserManager.getStockAt(medical, nextMovementDate)).isEqualTo(movement.getQuantity() + 5);
+		assertThat(movBrowserManager.getStockAt(movementDate.minusDays(1))).isEmpty();
+		assertThat(movBrowserManager.getStockAt(movementDate.plusDays(1))).containsExactly(entry(medical.getCode(), movement.getQuantity()));
+		assertThat(movBrowserManager.getStockAt(nextMovementDate)).containsExactly(entry(medical.getCode(), movement.getQuantity() + 5));
+	}
+
+	@ParameterizedTest(name = "Test with AUTOMATICLOT_IN={0}, AUTOMATICLOT_OUT={1}, AUTOMATICLOTWARD_TOWARD={2}")
+	@MethodSource("automaticlot")
+	void testMgrRebuildLotBalances(boolean in, boolean out, boolean toward) throws Exception {
+		setGeneralData(in, out, toward);
+		int code = setupTestMovement(false);
+		Movement movement = movementIoOperationRepository.findById(code).orElse(null);
+		assertThat(movement).isNotNull();
+		String lotCode = movement.getLot().getCode();
+		lotBalanceIoOperationRepository.saveAndFlush(new LotBalance(lotCode, 1, 1.0));
+		assertThat(movStockInsertingManager.verifyLotBalances()).containsExactly(lotCode);
+
+		assertThat(movStockInsertingManager.rebuildLotBalances()).isEqualTo(1);
+		assertThat(movStockInsertingManager.verifyLotBalances()).isEmpty();
+		assertThat(movStockInsertingManager.getLot(lotCode).getMainStoreQuantity()).isEqualTo(movement.getQuantity());
+	}
+
 	@ParameterizedTest(name = "Test with AUTOMATICLOT_IN={0}, AUTOMATICLOT_OUT={1}, AUTOMATICLOTWARD_TOWARD={2}")
 	@MethodSource("automaticlot")
 	void testIoPrepareChargingMovement(boolean in, boolean out, boolean toward) throws Exception {
@@ -638,6 +866,29 @@ class Tests extends OHCoreTestCase {
 		assertThat(movements.get(0).getCode()).isEqualTo(foundMovement.getCode());
 	}
 
+	@ParameterizedTest(name = "Test with AUTOMATICLOT_IN={0}, AUTOMATICLOT_OUT={1}, AUTOMATICLOTWARD_TOWARD={2}")
+	@MethodSource("automaticlot")
+	void testIoGetMovementsStatementCount(boolean in, boolean out, boolean toward) throws Exception {
+		setGeneralData(in, out, toward);
+		int code = setupTestMovement(false);
+		Movement foundMovement = movementIoOperationRepository.findById(code).orElse(null);
+		assertThat(foundMovement).isNotNull();
+		Statistics statistics = resetStatistics();
+
+		List<Movement> movements = medicalStockIoOperation.getMovements();
+		List<Movement> movementsByReference = medicalStockIoOperation.getMovementsByReference(foundMovement.getRefNo());
+		Movement lastMovement = medicalStockIoOperation.getLastMovement();
+		for (Movement movement : List.of(movements.get(0), movementsByReference.get(0), lastMovement)) {
+			assertThat(movement.getMedical().getType().getCode()).isEqualTo(foundMovement.getMedical().getType().getCode());
+			assertThat(movement.getLot().getCode()).isEqualTo(foundMovement.getLot().getCode());
+			assertThat(movement.getSupplier().getSupId()).isEqualTo(foundMovement.getSupplier().getSupId());
+			assertThat(movement.getWard().getCode()).isEqualTo(foundMovement.getWard().getCode());
+		}
+
+		// each query loads the movements with all their associations
+		assertThat(statistics.getPrepareStatementCount()).isEqualTo(3);
+	}
+
 	@ParameterizedTest(name = "Test with AUTOMATICLOT_IN={0}, AUTOMATICLOT_OUT={1}, AUTOMATICLOTWARD_TOWARD={2}")
 	@MethodSource("automaticlot")
 	void testMgrGetMovements(boolean in, boolean out, boolean toward) throws Exception {
@@ -689,6 +940,27 @@ class Tests extends OHCoreTestCase {
 		assertThat(movements.get(0).getCode()).isEqualTo(foundMovement.getCode());
 	}
 
+	@ParameterizedTest(name = "Test with AUTOMATICLOT_IN={0}, AUTOMATICLOT_OUT={1}, AUTOMATICLOTWARD_TOWARD={2}")
+	@MethodSource("automaticlot")
+	void testMgrGetMovementsPageable(boolean in, boolean out, boolean toward) throws Exception {
+		setGeneralData(in, out, toward);
+		LocalDateTime fromDate = LocalDateTime.of(2000, 1, 1, 0, 0, 0);
+		LocalDateTime toDate = LocalDateTime.of(2000, 3, 3, 0, 0, 0);
+		int code = setupTestMovement(false);
+		Movement foundMovement = movementIoOperationRepository.findById(code).orElse(null);
+		assertThat(foundMovement).isNotNull();
+		PagedResponse<Movement> movements = movBrowserManager.getMovementsPageable(foundMovement.getMedical().getCode(),
+			foundMovement.getMedical().getType().getCode(), foundMovement.getWard().getCode(), foundMovement.getType().getCode(), fromDate, toDate,
+			fromDate, toDate, fromDate, toDate, 0, 10);
+		assertThat(movements.getData()).hasSize(1);
+		assertThat(movements.getData().get(0).getCode()).isEqualTo(foundMovement.getCode());
+		assertThat(movements.getPageInfo().getTotalNbOfElements()).isEqualTo(1);
+
+		movements = movBrowserManager.getMovementsPageable(null, null, null, null, null, null, null, null, null, null, 1, 10);
+		assertThat(movements.getData()).isEmpty();
+		assertThat(movements.getPageInfo().getTotalNbOfElements()).isEqualTo(1);
+	}
+
 	@ParameterizedTest(name = "Test with AUTOMATICLOT_IN={0}, AUTOMATICLOT_OUT={1}, AUTOMATICLOTWARD_TOWARD={2}")
 	@MethodSource("automaticlot")
 	void testMgrGetMovementsCheckMovParameters() {
@@ -860,6 +1132,38 @@ class Tests extends OHCoreTestCase {
 		assertThat(inserted).hasSize(1);
 	}
 
+	@ParameterizedTest(name = "Test with AUTOMATICLOT_IN={0}, AUTOMATICLOT_OUT={1}, AUTOMATICLOTWARD_TOWARD={2}")
+	@MethodSource("automaticlot")
+	void testMgrNewMultipleChargingMovementsGroupedByMedicalAndDay(boolean in, boolean out, boolean toward) throws Exception {
+		setGeneralData(in, out, toward);
+		int code = setupTestMovement(false);
+		Movement movement = movementIoOperationRepository.findById(code).orElse(null);
+		assertThat(movement).isNotNull();
+		Medical medical = movement.getMedical();
+		double inQuantity = medical.getInqty();
+		List<MedicalStock> balances = medicalStockIoOperationRepository.findByMedicalCodeOrderByBalanceDateDesc(medical.getCode());
+		int balance = balances.get(0).getBalance();
+
+		LocalDateTime today = TimeTools.getNow();
+		LocalDateTime yesterday = today.minusDays(1);
+		List<Movement> movements = new ArrayList<>(3);
+		movements.add(new Movement(medical, movement.getType(), null, movement.getLot(), yesterday, 2, movement.getSupplier(), "bulkRef"));
+		movements.add(new Movement(medical, movement.getType(), null, movement.getLot(), yesterday, 3, movement.getSupplier(), "bulkRef"));
+		movements.add(new Movement(medical, movement.getType(), null, movement.getLot(), today, 5, movement.getSupplier(), "bulkRef"));
+		List<Movement> inserted = movStockInsertingManager.newMultipleChargingMovements(movements, "bulkRef");
+		assertThat(inserted).hasSize(3);
+
+		Medical updatedMedical = medicalsIoOperationRepository.findById(medical.getCode()).orElse(null);
+		assertThat(updatedMedical).isNotNull();
+		assertThat(updatedMedical.getInqty()).isEqualTo(inQuantity + 10);
+		List<MedicalStock> updatedBalances = medicalStockIoOperationRepository.findByMedicalCodeOrderByBalanceDateDesc(medical.getCode());
+		assertThat(updatedBalances).hasSize(balances.size() + 2);
+		assertThat(updatedBalances.get(0).getBalanceDate()).isEqualTo(today.toLocalDate());
+		assertThat(updatedBalances.get(0).getBalance()).isEqualTo(balance + 10);
+		assertThat(updatedBalances.get(1).getBalanceDate()).isEqualTo(yesterday.toLocalDate());
+		assertThat(updatedBalances.get(1).getBalance()).isEqualTo(balance + 5);
+	}
+
 	@ParameterizedTest(name = "Test with AUTOMATICLOT_IN={0}, AUTOMATICLOT_OUT={1}, AUTOMATICLOTWARD_TOWARD={2}")
 	@MethodSource("automaticlot")
 	void testMgrPrepareChargingMovementBadRefNumber() {
@@ -936,6 +1240,31 @@ class Tests extends OHCoreTestCase {
 		checkLotIntoDb(storedLot.getCode());
 	}
 
+	@Test
+	void testMgrStoreLotGeneratedCode() throws Exception {
+		String prefix = GeneralData.AUTOMATICLOT_IN_PREFIX;
+		String format = GeneralData.AUTOMATICLOT_IN_FORMAT;
+		try {
+			GeneralData.AUTOMATICLOT_IN_PREFIX = "LT";
+			GeneralData.AUTOMATICLOT_IN_FORMAT = "%08d";
+			int code = setupTestMovement(false);
+			Movement movement = movementIoOperationRepository.findById(code).orElse(null);
+			assertThat(movement).isNotNull();
+			Medical medical = movement.getMedical();
+
+			Lot firstLot = movStockInsertingManager.storeLot("", testLot.setup(medical, false), medical);
+			Lot secondLot = movStockInsertingManager.storeLot(null, testLot.setup(medical, false), medical);
+			assertThat(firstLot.getCode()).matches("LT\\d{8}");
+			assertThat(secondLot.getCode()).matches("LT\\d{8}");
+			assertThat(secondLot.getCode()).isNotEqualTo(firstLot.getCode());
+			assertThat(lotIoOperationRepository.existsById(firstLot.getCode())).isTrue();
+			assertThat(lotIoOperationRepository.existsById(secondLot.getCode())).isTrue();
+		} finally {
+			GeneralData.AUTOMATICLOT_IN_PREFIX = prefix;
+			GeneralData.AUTOMATICLOT_IN_FORMAT = format;
+		}
+	}
+
 	@ParameterizedTest(name = "Test with AUTOMATICLOT_IN={0}, AUTOMATICLOT_OUT={1}, AUTOMATICLOTWARD_TOWARD={2}")
 	@MethodSource("automaticlot")
 	void testMgrValidateMovementMoveDateAfterToday() {
@@ -1443,7 +1772,7 @@ class Tests extends OHCoreTestCase {
 		int remainQuantity = quantity - quantity / 2; // to overcome tests with not even quantities
 
 		MedicalStockIoOperations medicalStockIoOperation = new MedicalStockIoOperations(movementIoOperationRepository, lotIoOperationRepository,
-			medicalsIoOperationRepository, medicalStockIoOperationRepository, medicalStockWardIoOperationRepository);
+			medicalsIoOperations, medicalStockIoOperationRepository, medicalStockWardIoOperationRepository, lotBalanceIoOperationRepository, lotCodeGenerator);
 
 		Method method = medicalStockIoOperation.getClass().getDeclaredMethod("updateMedicalStockTable", Medical.class, LocalDate.class, int.class);
 		method.setAccessible(true);
@@ -1463,7 +1792,7 @@ class Tests extends OHCoreTestCase {
 		int quantity = movement.getQuantity();
 
 		MedicalStockIoOperations medicalStockIoOperation = new MedicalStockIoOperations(movementIoOperationRepository, lotIoOperationRepository,
-			medicalsIoOperationRepository, medicalStockIoOperationRepository, medicalStockWardIoOperationRepository);
+			medicalsIoOperations, medicalStockIoOperationRepository, medicalStockWardIoOperationRepository, lotBalanceIoOperationRepository, lotCodeGenerator);
 
 		Method method = medicalStockIoOperation.getClass().getDeclaredMethod("updateMedicalStockTable", Medical.class, LocalDate.class, int.class);
 		method.setAccessible(true);
@@ -1493,7 +1822,7 @@ class Tests extends OHCoreTestCase {
 		int quantity = 10;
 
 		MedicalStockIoOperations medicalStockIoOperation = new MedicalStockIoOperations(movementIoOperationRepository, lotIoOperationRepository,
-			medicalsIoOperationRepository, medicalStockIoOperationRepository, medicalStockWardIoOperationRepository);
+			medicalsIoOperations, medicalStockIoOperationRepository, medicalStockWardIoOperationRepository, lotBalanceIoOperationRepository, lotCodeGenerator);
 
 		Method method = medicalStockIoOperation.getClass().getDeclaredMethod("updateMedicalStockTable", Medical.class, LocalDate.class, int.class);
 		method.setAccessible(true);
@@ -1513,7 +1842,7 @@ class Tests extends OHCoreTestCase {
 			int quantity = -10;
 
 			MedicalStockIoOperations medicalStockIoOperation = new MedicalStockIoOperations(movementIoOperationRepository, lotIoOperationRepository,
-				medicalsIoOperationRepository, medicalStockIoOperationRepository, medicalStockWardIoOperationRepository);
+				medicalsIoOperations, medicalStockIoOperationRepository, medicalStockWardIoOperationRepository, lotBalanceIoOperationRepository, lotCodeGenerator);
 
 			Method method = medicalStockIoOperation.getClass().getDeclaredMethod("updateMedicalStockTable", Medical.class, LocalDate.class, int.class);
 			method.setAccessible(true);
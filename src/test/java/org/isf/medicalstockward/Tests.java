@@ -28,6 +28,7 @@ import static org.assertj.core.data.Offset.offset;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import org.isf.OHCoreTestCase;
@@ -470,6 +471,37 @@ class Tests extends OHCoreTestCase {
 		assertThat(medicalWards.get(0).getWard().getCode()).isEqualTo("X");
 	}
 
+	@Test
+	void testIoGetMedicalsWardTotalQuantityByLots() throws Exception {
+		MedicalWardId id = setupTestMedicalWard(false);
+		Medical medical = id.getMedical();
+		Ward ward = id.getWard();
+		Lot lot2 = testLot.setup(medical, false);
+		lot2.setCode("second");
+		lotIoOperationRepository.saveAndFlush(lot2);
+		medicalStockWardIoOperationRepository.saveAndFlush(new MedicalWard(ward, medical, 5, 2, lot2));
+
+		Ward emptyWard = testWard.setup(false);
+		emptyWard.setCode("E");
+		wardIoOperationRepository.saveAndFlush(emptyWard);
+		Lot lot3 = testLot.setup(medical, false);
+		lot3.setCode("third");
+		lotIoOperationRepository.saveAndFlush(lot3);
+		medicalStockWardIoOperationRepository.saveAndFlush(new MedicalWard(emptyWard, medical, 4, 4, lot3));
+
+		double expectedQty = medicalStockWardIoOperationRepository.findQuantityInWardWhereMedicalAndWard(medical.getCode(), ward.getCode());
+		List<MedicalWard> medicalWards = medicalStockWardIoOperations.getMedicalsWardTotalQuantity(ward.getCode());
+		assertThat(medicalWards).hasSize(1);
+		assertThat(medicalWards.get(0).getMedical().getCode()).isEqualTo(medical.getCode());
+		assertThat(medicalWards.get(0).getWard().getCode()).isEqualTo(ward.getCode());
+		assertThat(medicalWards.get(0).getQty()).isEqualTo(expectedQty);
+		assertThat(medicalStockWardIoOperations.getMedicalsWardTotalQuantity(emptyWard.getCode())).isEmpty();
+
+		Map<String, List<MedicalWard>> medicalWardsByWard = movWardBrowserManager.getMedicalsWardTotalQuantity();
+		assertThat(medicalWardsByWard).containsOnlyKeys(ward.getCode());
+		assertThat(medicalWardsByWard.get(ward.getCode())).extracting(MedicalWard::getQty).containsExactly(expectedQty);
+	}
+
 	@Test
 	void testIoListenerShouldUpdatePatientToMergedWhenPatientMergedEventArrive() throws Exception {
 		// given:
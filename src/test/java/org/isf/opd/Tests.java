@@ -30,6 +30,7 @@ import java.util.List;
 import java.util.stream.Stream;
 
 import org.assertj.core.api.Condition;
+import org.hibernate.stat.Statistics;
 import org.isf.OHCoreTestCase;
 import org.isf.disease.TestDisease;
 import org.isf.disease.model.Disease;
@@ -149,6 +150,36 @@ class Tests extends OHCoreTestCase {
 		assertThat(opds.get(opds.size() - 1).getCode()).isEqualTo(foundOpd.getCode());
 	}
 
+	@ParameterizedTest(name = "Test with OPDEXTENDED={0}")
+	@MethodSource("opdExtended")
+	void testIoGetOpdListStatementCount(boolean opdExtended) throws Exception {
+		GeneralData.OPDEXTENDED = opdExtended;
+		int code = setupTestOpd(false);
+		Opd foundOpd = opdIoOperationRepository.findById(code).orElse(null);
+		assertThat(foundOpd).isNotNull();
+		Statistics statistics = resetStatistics();
+
+		List<Opd> opds = opdIoOperation.getOpdList(
+				foundOpd.getWard(),
+				foundOpd.getDisease().getType().getCode(),
+				foundOpd.getDisease().getCode(),
+				foundOpd.getDate().toLocalDate(),
+				foundOpd.getDate().toLocalDate(),
+				foundOpd.getAge() - 1,
+				foundOpd.getAge() + 1,
+				foundOpd.getSex(),
+				foundOpd.getNewPatient(),
+				foundOpd.getUserID());
+		List<Opd> patientOpds = opdIoOperation.getOpdList(foundOpd.getPatient().getCode());
+		testOpd.check(opds.get(0));
+		assertThat(opds.get(0).getDisease().getType().getCode()).isEqualTo(foundOpd.getDisease().getType().getCode());
+		assertThat(patientOpds.get(0).getWard().getCode()).isEqualTo(foundOpd.getWard().getCode());
+		assertThat(patientOpds.get(0).getPatient().getCode()).isEqualTo(foundOpd.getPatient().getCode());
+
+		// each query loads the OPDs with all their associations
+		assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+	}
+
 	@ParameterizedTest(name = "Test with OPDEXTENDED={0}")
 	@MethodSource("opdExtended")
 	void testIoGetOpdListPatientId(boolean opdExtended) throws Exception {
@@ -324,6 +355,40 @@ class Tests extends OHCoreTestCase {
 		checkOpdIntoDb(newOpd.getCode());
 	}
 
+	@ParameterizedTest(name = "Test with OPDEXTENDED={0}")
+	@MethodSource("opdExtended")
+	void testIoNewOpdAllocatesProgYear(boolean opdExtended) throws Exception {
+		GeneralData.OPDEXTENDED = opdExtended;
+		Patient patient = testPatient.setup(false);
+		DiseaseType diseaseType = testDiseaseType.setup(false);
+		Disease disease = testDisease.setup(diseaseType, false);
+		disease.setCode("699");
+		Ward ward = testWard.setup(false);
+		Visit firstVisit = testVisit.setup(patient, true, ward);
+		Visit secondVisit = testVisit.setup(patient, true, ward);
+		patientIoOperationRepository.saveAndFlush(patient);
+		diseaseTypeIoOperationRepository.saveAndFlush(diseaseType);
+		diseaseIoOperationRepository.saveAndFlush(disease);
+		wardIoOperationRepository.saveAndFlush(ward);
+		visitsIoOperationRepository.saveAndFlush(firstVisit);
+		visitsIoOperationRepository.saveAndFlush(secondVisit);
+
+		Opd first = testOpd.setup(patient, disease, ward, firstVisit, false);
+		int year = first.getDate().getYear();
+		int next = opdIoOperation.getProgYear(year) + 1;
+		first.setProgYear(next);
+		opdIoOperation.newOpd(first);
+
+		// a parallel registration proposing the same number gets the next one
+		Opd second = testOpd.setup(patient, disease, ward, secondVisit, false);
+		second.setProgYear(next);
+		opdIoOperation.newOpd(second);
+
+		assertThat(opdIoOperationRepository.findById(first.getCode()).get().getProgYear()).isEqualTo(next);
+		assertThat(opdIoOperationRepository.findById(second.getCode()).get().getProgYear()).isEqualTo(next + 1);
+		assertThat(opdIoOperation.getProgYear(year)).isEqualTo(next + 1);
+	}
+
 	@ParameterizedTest(name = "Test with OPDEXTENDED={0}")
 	@MethodSource("opdExtended")
 	void testIoUpdateOpd(boolean opdExtended) throws Exception {
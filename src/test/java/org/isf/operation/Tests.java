@@ -84,6 +84,7 @@ import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.transaction.TestTransaction;
 
 class Tests extends OHCoreTestCase {
 
@@ -684,6 +685,78 @@ class Tests extends OHCoreTestCase {
 		assertThat(operationRowIoOperations.getOperationRowByOpd(opd)).isNotEmpty();
 	}
 
+	@Test
+	void testRowIoGetOperationRowAssociationsOutsideTransaction() throws Exception {
+		OperationType operationType = testOperationType.setup(false);
+		Operation operation = testOperation.setup(operationType, true);
+		OperationRow operationRow = testOperationRow.setup(operation, true);
+
+		Ward ward = testWard.setup(false, false);
+		Patient patient = testPatient.setup(false);
+		AdmissionType admissionType = testAdmissionType.setup(false);
+		DiseaseType diseaseType = testDiseaseType.setup(false);
+		Disease diseaseIn = testDisease.setup(diseaseType, false);
+		Disease diseaseOut1 = testDisease.setup(diseaseType, false);
+		diseaseOut1.setCode("888");
+		Disease diseaseOut2 = testDisease.setup(diseaseType, false);
+		diseaseOut2.setCode("777");
+		Disease diseaseOut3 = testDisease.setup(diseaseType, false);
+		diseaseOut3.setCode("666");
+		DischargeType dischargeType = testDischargeType.setup(false);
+		PregnantTreatmentType pregTreatmentType = testPregnantTreatmentType.setup(false);
+		DeliveryType deliveryType = testDeliveryType.setup(false);
+		DeliveryResultType deliveryResult = testDeliveryResultType.setup(false);
+		Visit nextVisit = testVisit.setup(patient, true, ward);
+
+		Admission admission = testAdmission.setup(ward, patient, admissionType, diseaseIn, diseaseOut1,
+			diseaseOut2, diseaseOut3, operation, dischargeType, pregTreatmentType,
+			deliveryType, deliveryResult, false);
+		Opd opd = testOpd.setup(patient, diseaseIn, ward, nextVisit, false);
+		operationRow.setAdmission(admission);
+		operationRow.setOpd(opd);
+
+		wardIoOperationRepository.saveAndFlush(ward);
+		patientIoOperationRepository.saveAndFlush(patient);
+		admissionTypeIoOperationRepository.saveAndFlush(admissionType);
+		diseaseTypeIoOperationRepository.saveAndFlush(diseaseType);
+		diseaseIoOperationRepository.saveAndFlush(diseaseIn);
+		diseaseIoOperationRepository.saveAndFlush(diseaseOut1);
+		diseaseIoOperationRepository.saveAndFlush(diseaseOut2);
+		diseaseIoOperationRepository.saveAndFlush(diseaseOut3);
+		operationTypeIoOperationRepository.saveAndFlush(operationType);
+		operationIoOperationRepository.saveAndFlush(operation);
+		dischargeTypeIoOperationRepository.saveAndFlush(dischargeType);
+		pregnantTreatmentTypeIoOperationRepository.saveAndFlush(pregTreatmentType);
+		deliveryTypeIoOperationRepository.saveAndFlush(deliveryType);
+		deliveryResultIoOperationRepository.saveAndFlush(deliveryResult);
+		visitsIoOperationRepository.saveAndFlush(nextVisit);
+		admissionIoOperationRepository.saveAndFlush(admission);
+		opdIoOperationRepository.saveAndFlush(opd);
+		operationRowIoOperationRepository.saveAndFlush(operationRow);
+		// the GUI and the API read the rows outside of a transaction, so the test data must be committed
+		TestTransaction.flagForCommit();
+		TestTransaction.end();
+
+		try {
+			List<OperationRow> operationRows = operationRowIoOperations.getOperationRowByAdmission(admission);
+			assertThat(operationRows).hasSize(1);
+			// the admission and the OPD of the row are detached, their associations must be loaded already
+			Admission foundAdmission = operationRows.get(0).getAdmission();
+			assertThat(foundAdmission.getWard().getDescription()).isEqualTo(ward.getDescription());
+			assertThat(foundAdmission.getAdmType().getDescription()).isEqualTo(admissionType.getDescription());
+			assertThat(foundAdmission.getDiseaseOut3().getType().getDescription()).isEqualTo(diseaseType.getDescription());
+			assertThat(foundAdmission.getDeliveryResult().getDescription()).isEqualTo(deliveryResult.getDescription());
+			Opd foundOpd = operationRows.get(0).getOpd();
+			assertThat(foundOpd.getWard().getDescription()).isEqualTo(ward.getDescription());
+			assertThat(foundOpd.getDisease().getType().getDescription()).isEqualTo(diseaseType.getDescription());
+			assertThat(foundOpd.getNextVisit().getWard().getDescription()).isEqualTo(ward.getDescription());
+		} finally {
+			TestTransaction.start();
+			cleanH2InMemoryDb();
+			TestTransaction.flagForCommit();
+		}
+	}
+
 	@Test
 	void testRowIoDeleteOperationRowNotFound() throws Exception {
 		OperationType operationType = testOperationType.setup(false);
@@ -35,6 +35,7 @@ import java.util.List;
 import java.util.Map;
 
 import org.assertj.core.api.Condition;
+import org.hibernate.stat.Statistics;
 import org.isf.OHCoreTestCase;
 import org.isf.generaldata.GeneralData;
 import org.isf.opd.TestOpd;
@@ -44,6 +45,7 @@ import org.isf.patient.model.Patient;
 import org.isf.patient.model.PatientProfilePhoto;
 import org.isf.patient.service.PatientIoOperationRepository;
 import org.isf.patient.service.PatientIoOperations;
+import org.isf.patient.service.PatientSearchIndex;
 import org.isf.utils.exception.OHException;
 import org.isf.utils.exception.OHServiceException;
 import org.isf.utils.pagination.PagedResponse;
@@ -66,6 +68,8 @@ class Tests extends OHCoreTestCase {
 	PatientIoOperationRepository patientIoOperationRepository;
 	@Autowired
 	PatientBrowserManager patientBrowserManager;
+	@Autowired
+	PatientSearchIndex patientSearchIndex;
 
 	@BeforeAll
 	static void setUpClass() {
@@ -190,6 +194,73 @@ class Tests extends OHCoreTestCase {
 		assertThat(patients).isEmpty();
 	}
 
+	@Test
+	void testIoGetPatientsByOneOfFieldsLikeRankedWithIndex() throws Exception {
+		Patient city = testPatient.setup(false);
+		city.setFirstName("Anna");
+		city.setCity("Cèrro Gòrdo");
+		patientIoOperationRepository.saveAndFlush(city);
+		Patient name = testPatient.setup(false);
+		name.setFirstName("Cerro");
+		name.setCity("Gordon");
+		patientIoOperationRepository.saveAndFlush(name);
+		Patient other = testPatient.setup(false);
+		other.setFirstName("Anna");
+		other.setCity("Kampala");
+		other.setSecondName("Иванова");
+		patientIoOperationRepository.saveAndFlush(other);
+		patientSearchIndex.refresh();
+
+		// accents are ignored, all the words must match and exact tokens rank first
+		List<Patient> patients = patientIoOperation.getPatientsByOneOfFieldsLike("GORDO cerro");
+		assertThat(patients).extracting(Patient::getCode).containsExactly(city.getCode(), name.getCode());
+		assertThat(patientIoOperation.getPatientsByOneOfFieldsLike("gordo cerro", 1)).extracting(Patient::getCode).containsExactly(city.getCode());
+		assertThat(patientIoOperation.getPatientsByOneOfFieldsLike("rdo anna")).extracting(Patient::getCode).containsExactly(city.getCode());
+
+		// the non ASCII letters are kept and an empty search finds nothing
+		assertThat(patientIoOperation.getPatientsByOneOfFieldsLike("ИВАН")).extracting(Patient::getCode).containsExactly(other.getCode());
+		assertThat(patientIoOperation.getPatientsByOneOfFieldsLike(" ")).isEmpty();
+
+		// the index follows the modified and the deleted patients
+		name.setFirstName("Cesare");
+		patientIoOperation.updatePatient(name);
+		patientIoOperation.deletePatient(city);
+		assertThat(patientIoOperation.getPatientsByOneOfFieldsLike("cerro")).isEmpty();
+		assertThat(patientIoOperation.getPatientsByOneOfFieldsLike("cesare gordon")).extracting(Patient::getCode).containsExactly(name.getCode());
+	}
+
+	@Test
+	void testIoGetPatientsByOneOfFieldsLikeReadsCandidatesInChunks() throws Exception {
+		for (int i = 0; i < 501; i++) {
+			Patient patient = testPatient.setup(false);
+			patient.setFirstName("Zebedeus");
+			patientIoOperationRepository.save(patient);
+		}
+		patientSearchIndex.refresh();
+
+		Statistics statistics = resetStatistics();
+		assertThat(patientIoOperation.getPatientsByOneOfFieldsLike("zebedeus")).hasSize(501);
+		assertThat(statistics.getQueryExecutionCount()).isEqualTo(2);
+
+		// the chunks are read until enough patients are found
+		statistics = resetStatistics();
+		assertThat(patientIoOperation.getPatientsByOneOfFieldsLike("zebedeus", 10)).hasSize(10);
+		assertThat(statistics.getQueryExecutionCount()).isEqualTo(1);
+	}
+
+	@Test
+	void testIoGetPatientsByOneOfFieldsLikeBeforeIndexIsBuilt() throws Exception {
+		Integer code = setupTestPatient(false);
+		Patient foundPatient = patientIoOperation.getPatient(code);
+		patientSearchIndex.clear();
+
+		// the background refresh is disabled by the test settings, so the patients are searched in the database
+		assertThat(patientSearchIndex.isRunning()).isTrue();
+		assertThat(patientSearchIndex.isReady()).isFalse();
+		assertThat(patientIoOperation.getPatientsByOneOfFieldsLike(foundPatient.getFirstName())).extracting(Patient::getCode).containsExactly(code);
+		assertThat(patientSearchIndex.isReady()).isFalse();
+	}
+
 	@Test
 	void testIoGetPatientFromName() throws Exception {
 		Integer code = setupTestPatient(false);
@@ -766,6 +837,7 @@ class Tests extends OHCoreTestCase {
 	private Integer setupTestPatient(boolean usingSet) throws OHException {
 		Patient patient = testPatient.setup(usingSet);
 		patientIoOperationRepository.saveAndFlush(patient);
+		patientSearchIndex.refresh();
 		return patient.getCode();
 	}
 
@@ -178,6 +178,30 @@ class Tests extends OHCoreTestCase {
 		checkPatientVaccineIntoDb(patientVaccine.getCode());
 	}
 
+	@Test
+	void testIoNewPatientVaccineAllocatesProgr() throws Exception {
+		Patient patient = testPatient.setup(false);
+		VaccineType vaccineType = testVaccineType.setup(false);
+		Vaccine vaccine = testVaccine.setup(vaccineType, false);
+		patientIoOperationRepository.saveAndFlush(patient);
+		vaccineTypeIoOperationRepository.saveAndFlush(vaccineType);
+		vaccineIoOperationRepository.saveAndFlush(vaccine);
+		PatientVaccine first = testPatientVaccine.setup(patient, vaccine, true);
+		int year = first.getVaccineDate().getYear();
+		int next = patvacIoOperation.getProgYear(year) + 1;
+		first.setProgr(next);
+		patvacIoOperation.newPatientVaccine(first);
+
+		// a parallel registration proposing the same number gets the next one
+		PatientVaccine second = testPatientVaccine.setup(patient, vaccine, true);
+		second.setProgr(next);
+		patvacIoOperation.newPatientVaccine(second);
+
+		assertThat(patVacIoOperationRepository.findById(first.getCode()).get().getProgr()).isEqualTo(next);
+		assertThat(patVacIoOperationRepository.findById(second.getCode()).get().getProgr()).isEqualTo(next + 1);
+		assertThat(patvacIoOperation.getProgYear(year)).isEqualTo(next + 1);
+	}
+
 	@Test
 	void testIoDeletePatientVaccine() throws Exception {
 		int code = setupTestPatientVaccine(false);
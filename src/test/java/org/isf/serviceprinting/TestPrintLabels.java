@@ -24,17 +24,20 @@ package org.isf.serviceprinting;
 import static org.assertj.core.api.Fail.fail;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.when;
 
 import java.io.File;
 import java.sql.Connection;
 import java.util.HashMap;
 
+import javax.sql.DataSource;
+
 import org.isf.OHCoreTestCase;
+import org.isf.menu.manager.Context;
 import org.isf.patient.TestPatient;
 import org.isf.patient.model.Patient;
 import org.isf.patient.service.PatientIoOperationRepository;
 import org.isf.serviceprinting.manager.PrintLabels;
-import org.isf.utils.db.DbSingleJpaConn;
 import org.isf.utils.exception.OHException;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeAll;
@@ -44,6 +47,7 @@ import org.mockito.Mock;
 import org.mockito.MockedStatic;
 import org.mockito.MockitoAnnotations;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationContext;
 
 import net.sf.jasperreports.engine.JasperFillManager;
 import net.sf.jasperreports.engine.JasperPrint;
@@ -59,6 +63,10 @@ class TestPrintLabels extends OHCoreTestCase {
 	private JasperPrint jasperPrint;
 	@Mock
 	private Connection connection;
+	@Mock
+	private DataSource dataSource;
+	@Mock
+	private ApplicationContext applicationContext;
 
 	@Autowired
 	private PatientIoOperationRepository patientIoOperationRepository;
@@ -85,11 +93,12 @@ class TestPrintLabels extends OHCoreTestCase {
 
 	@Test
 	void testPrintLabels() throws Exception {
-		try (MockedStatic<DbSingleJpaConn> mockedDbSingleJpaConn = mockStatic(DbSingleJpaConn.class);
-			 MockedStatic<JRLoader> mockedJRLoader = mockStatic(JRLoader.class);
+		try (MockedStatic<JRLoader> mockedJRLoader = mockStatic(JRLoader.class);
 			 MockedStatic<JasperFillManager> mockedJasperFillManager = mockStatic(JasperFillManager.class);
 			 MockedStatic<JasperPrintManager> mockedJasperPrintManager = mockStatic(JasperPrintManager.class)) {
-			mockedDbSingleJpaConn.when(() -> DbSingleJpaConn.getConnection()).thenReturn(connection);
+			Context.setApplicationContext(applicationContext);
+			when(applicationContext.getBean(DataSource.class)).thenReturn(dataSource);
+			when(dataSource.getConnection()).thenReturn(connection);
 			mockedJRLoader.when(() -> JRLoader.loadObject(any(File.class))).thenReturn(jasperReport);
 			mockedJasperFillManager.when(() -> JasperFillManager.fillReport(any(JasperReport.class), any(HashMap.class), any(Connection.class)))
 							.thenReturn(jasperPrint);
@@ -22,13 +22,28 @@
 package org.isf.stat;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.sql.Connection;
+import java.time.Duration;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 import javax.sql.DataSource;
 
@@ -36,20 +51,36 @@ import org.isf.OHCoreTestCase;
 import org.isf.hospital.manager.HospitalBrowsingManager;
 import org.isf.hospital.model.Hospital;
 import org.isf.stat.dto.JasperReportResultDto;
+import org.isf.stat.dto.ReportBatchItem;
+import org.isf.stat.dto.ReportBatchItemResult;
+import org.isf.stat.dto.ReportBatchOutput;
+import org.isf.stat.dto.ReportBatchResultDto;
+import org.isf.stat.dto.ReportJob;
+import org.isf.stat.dto.ReportJobFormat;
+import org.isf.stat.dto.ReportJobStatus;
+import org.isf.stat.manager.JasperReportCache;
 import org.isf.stat.manager.JasperReportsManager;
+import org.isf.stat.manager.ReportBatchManager;
+import org.isf.stat.manager.ReportJobManager;
+import org.isf.utils.db.DbQueryExecutor;
+import org.isf.utils.exception.OHReportException;
+import org.isf.utils.exception.model.OHExceptionMessage;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.Mock;
 import org.mockito.MockedStatic;
 import org.mockito.MockitoAnnotations;
 import org.mockito.stubbing.Answer;
 
+import net.sf.jasperreports.engine.JRException;
 import net.sf.jasperreports.engine.JasperExportManager;
 import net.sf.jasperreports.engine.JasperFillManager;
 import net.sf.jasperreports.engine.JasperPrint;
 import net.sf.jasperreports.engine.JasperReport;
+import net.sf.jasperreports.engine.fill.JRFillInterruptedException;
 import net.sf.jasperreports.engine.util.JRLoader;
 
 class Tests extends OHCoreTestCase {
@@ -68,6 +99,10 @@ class Tests extends OHCoreTestCase {
 	JasperPrint jasperPrint;
 	@Mock
 	Connection connection;
+	@Mock
+	JasperReportsManager jasperReportsManager;
+	@Mock
+	DbQueryExecutor dbQueryExecutor;
 
 	private AutoCloseable closeable;
 
@@ -101,7 +136,7 @@ class Tests extends OHCoreTestCase {
 		try (MockedStatic<JRLoader> mockedJRLoader = mockStatic(JRLoader.class);
 						MockedStatic<JasperFillManager> mockedJasperFillManager = mockStatic(JasperFillManager.class);
 						MockedStatic<JasperExportManager> mockedJasperExportManager = mockStatic(JasperExportManager.class)) {
-			JasperReportsManager jasperReportsManager = new JasperReportsManager(hospitalBrowsingManager, dataSource);
+			JasperReportsManager jasperReportsManager = new JasperReportsManager(hospitalBrowsingManager, dataSource, new JasperReportCache(), dbQueryExecutor);
 
 			when(hospitalBrowsingManager.getHospital()).thenReturn(hospital);
 			when(hospital.getDescription()).thenReturn("Description");
@@ -125,7 +160,7 @@ class Tests extends OHCoreTestCase {
 		try (MockedStatic<JRLoader> mockedJRLoader = mockStatic(JRLoader.class);
 						MockedStatic<JasperFillManager> mockedJasperFillManager = mockStatic(JasperFillManager.class);
 						MockedStatic<JasperExportManager> mockedJasperExportManager = mockStatic(JasperExportManager.class)) {
-			JasperReportsManager jasperReportsManager = new JasperReportsManager(hospitalBrowsingManager, dataSource);
+			JasperReportsManager jasperReportsManager = new JasperReportsManager(hospitalBrowsingManager, dataSource, new JasperReportCache(), dbQueryExecutor);
 
 			when(hospitalBrowsingManager.getHospital()).thenReturn(hospital);
 			when(hospital.getDescription()).thenReturn("Description");
@@ -149,7 +184,7 @@ class Tests extends OHCoreTestCase {
 		try (MockedStatic<JRLoader> mockedJRLoader = mockStatic(JRLoader.class);
 						MockedStatic<JasperFillManager> mockedJasperFillManager = mockStatic(JasperFillManager.class);
 						MockedStatic<JasperExportManager> mockedJasperExportManager = mockStatic(JasperExportManager.class)) {
-			JasperReportsManager jasperReportsManager = new JasperReportsManager(hospitalBrowsingManager, dataSource);
+			JasperReportsManager jasperReportsManager = new JasperReportsManager(hospitalBrowsingManager, dataSource, new JasperReportCache(), dbQueryExecutor);
 
 			when(hospitalBrowsingManager.getHospital()).thenReturn(hospital);
 			when(hospital.getDescription()).thenReturn("Description");
@@ -167,4 +202,208 @@ class Tests extends OHCoreTestCase {
 			assertThat(jasperReportResultDto.getJasperFile()).containsAnyOf("rpt_base/operationslist.jasper", "rpt_base\\operationslist.jasper");
 		}
 	}
+
+	@Test
+	void testGetExamsListPdfClosesConnectionWhenFillFails() throws Exception {
+		try (MockedStatic<JRLoader> mockedJRLoader = mockStatic(JRLoader.class);
+						MockedStatic<JasperFillManager> mockedJasperFillManager = mockStatic(JasperFillManager.class)) {
+			JasperReportsManager jasperReportsManager = new JasperReportsManager(hospitalBrowsingManager, dataSource, new JasperReportCache(), dbQueryExecutor);
+
+			when(hospitalBrowsingManager.getHospital()).thenReturn(hospital);
+			when(hospital.getDescription()).thenReturn("Description");
+
+			mockedJRLoader.when(() -> JRLoader.loadObject(any(File.class))).thenReturn(jasperReport);
+			when(dataSource.getConnection()).thenReturn(connection);
+			mockedJasperFillManager.when(() -> JasperFillManager.fillReport(any(JasperReport.class), any(HashMap.class), any(Connection.class)))
+							.thenThrow(new JRException("fill failed"));
+
+			assertThatThrownBy(jasperReportsManager::getExamsListPdf).isInstanceOf(OHReportException.class);
+			verify(connection).close();
+		}
+	}
+
+	@Test
+	void testJasperReportCache(@TempDir Path tempDir) throws Exception {
+		Path jasperFile = tempDir.resolve("TestReport.jasper");
+		Path otherJasperFile = tempDir.resolve("OtherReport.jasper");
+		Files.copy(Path.of("rpt_base", "TestReport.jasper"), jasperFile);
+		Files.copy(Path.of("rpt_base", "TestReport.jasper"), otherJasperFile);
+		JasperReportCache jasperReportCache = new JasperReportCache(1);
+
+		JasperReport report = jasperReportCache.getReport(jasperFile.toString());
+		assertThat(report).isNotNull();
+		assertThat(jasperReportCache.getReport(jasperFile.toString())).isSameAs(report);
+		assertThat(jasperReportCache.getMissCount()).isEqualTo(1);
+		assertThat(jasperReportCache.getHitCount()).isEqualTo(1);
+
+		// a modified file is loaded again
+		File file = jasperFile.toFile();
+		assertThat(file.setLastModified(file.lastModified() + 2000)).isTrue();
+		JasperReport reloadedReport = jasperReportCache.getReport(jasperFile.toString());
+		assertThat(reloadedReport).isNotSameAs(report);
+		assertThat(jasperReportCache.getMissCount()).isEqualTo(2);
+
+		// the least recently used report is dropped over the size limit
+		jasperReportCache.getReport(otherJasperFile.toString());
+		assertThat(jasperReportCache.size()).isEqualTo(1);
+		assertThat(jasperReportCache.getReport(jasperFile.toString())).isNotSameAs(reloadedReport);
+		assertThat(jasperReportCache.getMissCount()).isEqualTo(4);
+		assertThat(jasperReportCache.getHitCount()).isEqualTo(1);
+	}
+
+	@Test
+	void testReportJobManager(@TempDir Path tempDir) throws Exception {
+		CountDownLatch fillLatch = new CountDownLatch(1);
+		when(jasperReportsManager.fillReport(anyString(), anyString(), anyMap())).thenAnswer(invocation -> {
+			fillLatch.await(10, TimeUnit.SECONDS);
+			JasperPrint print = new JasperPrint();
+			print.setName("TestReport");
+			return print;
+		});
+		ReportJobManager reportJobManager = new ReportJobManager(jasperReportsManager, tempDir, 4, 1, 10, Duration.ofMinutes(1), Duration.ZERO);
+		try {
+			String firstJobId = reportJobManager.submit("TestReport", Map.of("fromdate", "2024-01-01"), ReportJobFormat.xlsx);
+			String secondJobId = reportJobManager.submit("TestReport", Map.of("fromdate", "2024-02-01"), ReportJobFormat.xlsx);
+
+			// one job of the same report runs at a time
+			ReportJob firstJob = waitForJob(reportJobManager, firstJobId, ReportJobStatus.running);
+			assertThat(reportJobManager.getJob(secondJobId).getStatus()).isEqualTo(ReportJobStatus.queued);
+			assertThat(reportJobManager.getJobs(ReportJobStatus.queued)).extracting(ReportJob::getId).containsExactly(secondJobId);
+
+			fillLatch.countDown();
+			waitForJob(reportJobManager, firstJobId, ReportJobStatus.done);
+			ReportJob secondJob = waitForJob(reportJobManager, secondJobId, ReportJobStatus.done);
+			assertThat(firstJob.getResultFile()).endsWith(".xlsx");
+			assertThat(new File(firstJob.getResultFile())).exists();
+			assertThat(reportJobManager.getJobs(ReportJobStatus.done)).hasSize(2);
+
+			// finished jobs and their files are evicted after the time to live
+			reportJobManager.evictExpiredJobs();
+			assertThat(reportJobManager.getJob(firstJobId)).isNull();
+			assertThat(new File(secondJob.getResultFile())).doesNotExist();
+		} finally {
+			reportJobManager.shutdown();
+		}
+	}
+
+	@Test
+	void testReportJobManagerFillTimeout(@TempDir Path tempDir) throws Exception {
+		when(jasperReportsManager.fillReport(anyString(), anyString(), anyMap())).thenAnswer(invocation -> {
+			try {
+				Thread.sleep(10000);
+			} catch (InterruptedException e) {
+				throw new JRFillInterruptedException();
+			}
+			return new JasperPrint();
+		});
+		ReportJobManager reportJobManager = new ReportJobManager(jasperReportsManager, tempDir, 4, 1, 10, Duration.ofMillis(100), Duration.ofHours(1));
+		try {
+			String jobId = reportJobManager.submit("TestReport", Map.of(), ReportJobFormat.pdf);
+			ReportJob job = waitForJob(reportJobManager, jobId, ReportJobStatus.failed);
+			assertThat(job.getErrorMessage()).contains("timed out");
+			assertThat(job.getResultFile()).isNull();
+		} finally {
+			reportJobManager.shutdown();
+		}
+	}
+
+	@Test
+	void testReportBatchManager(@TempDir Path tempDir) throws Exception {
+		when(jasperReportsManager.fillReport(anyString(), eq("BillReport"), anyMap())).thenAnswer(invocation -> {
+			JasperPrint print = new JasperPrint();
+			print.setName("BillReport");
+			return print;
+		});
+		when(jasperReportsManager.fillReport(anyString(), eq("MissingReport"), anyMap()))
+						.thenThrow(new OHReportException(new IllegalStateException("missing report"), new OHExceptionMessage("error")));
+		List<ReportBatchItem> items = List.of(
+						new ReportBatchItem("BillReport", Map.of("billID", "1"), "bill_1"),
+						new ReportBatchItem("MissingReport", Map.of(), "missing"),
+						new ReportBatchItem("BillReport", Map.of("billID", "2"), "bill_2"));
+		ReportBatchManager reportBatchManager = new ReportBatchManager(jasperReportsManager, 2);
+		try {
+			ReportBatchResultDto zipResult = reportBatchManager.render(items, ReportBatchOutput.zip, tempDir.resolve("bills.zip").toString());
+			assertThat(zipResult.getRenderedCount()).isEqualTo(2);
+			assertThat(zipResult.getFailedCount()).isEqualTo(1);
+			assertThat(zipResult.getThroughput()).isPositive();
+			assertThat(zipResult.getItemResults()).extracting(ReportBatchItemResult::getName).containsExactly("bill_1", "missing", "bill_2");
+			assertThat(zipResult.getItemResults().get(1).getErrorMessage()).isEqualTo("missing report");
+			try (ZipFile zipFile = new ZipFile(zipResult.getOutputFile())) {
+				assertThat(zipFile.stream().map(ZipEntry::getName)).containsExactly("001_bill_1.pdf", "003_bill_2.pdf");
+			}
+
+			ReportBatchResultDto pdfResult = reportBatchManager.render(items, ReportBatchOutput.pdf, tempDir.resolve("bills.pdf").toString());
+			assertThat(pdfResult.getRenderedCount()).isEqualTo(2);
+			assertThat(new File(pdfResult.getOutputFile())).isNotEmpty();
+		} finally {
+			reportBatchManager.shutdown();
+		}
+	}
+
+	@Test
+	void testReportBatchManagerLimitsFillsInFlight(@TempDir Path tempDir) throws Exception {
+		AtomicInteger startedFills = new AtomicInteger();
+		AtomicInteger startedDuringSlowFill = new AtomicInteger();
+		when(jasperReportsManager.fillReport(anyString(), anyString(), anyMap())).thenAnswer(invocation -> {
+			startedFills.incrementAndGet();
+			if ("SlowReport".equals(invocation.getArgument(1))) {
+				Thread.sleep(300);
+				startedDuringSlowFill.set(startedFills.get());
+			}
+			return new JasperPrint();
+		});
+		List<ReportBatchItem> items = List.of(
+						new ReportBatchItem("SlowReport", Map.of(), "slow"),
+						new ReportBatchItem("BillReport", Map.of(), "bill_1"),
+						new ReportBatchItem("BillReport", Map.of(), "bill_2"),
+						new ReportBatchItem("BillReport", Map.of(), "bill_3"),
+						new ReportBatchItem("BillReport", Map.of(), "bill_4"));
+		ReportBatchManager reportBatchManager = new ReportBatchManager(jasperReportsManager, 2);
+		try {
+			ReportBatchResultDto result = reportBatchManager.render(items, ReportBatchOutput.zip, tempDir.resolve("bills.zip").toString());
+			assertThat(result.getRenderedCount()).isEqualTo(5);
+			// the following fills wait for the slow report to be written
+			assertThat(startedDuringSlowFill.get()).isEqualTo(2);
+		} finally {
+			reportBatchManager.shutdown();
+		}
+	}
+
+	@Test
+	void testReportBatchManagerFillTimeout(@TempDir Path tempDir) throws Exception {
+		when(jasperReportsManager.fillReport(anyString(), eq("SlowReport"), anyMap())).thenAnswer(invocation -> {
+			try {
+				Thread.sleep(10000);
+			} catch (InterruptedException e) {
+				throw new JRFillInterruptedException();
+			}
+			return new JasperPrint();
+		});
+		when(jasperReportsManager.fillReport(anyString(), eq("BillReport"), anyMap())).thenAnswer(invocation -> new JasperPrint());
+		List<ReportBatchItem> items = List.of(
+						new ReportBatchItem("BillReport", Map.of(), "../bills/bill 1"),
+						new ReportBatchItem("SlowReport", Map.of(), "slow"),
+						new ReportBatchItem("BillReport", Map.of(), "bill_2"));
+		ReportBatchManager reportBatchManager = new ReportBatchManager(jasperReportsManager, 2, Duration.ofMillis(100));
+		try {
+			ReportBatchResultDto result = reportBatchManager.render(items, ReportBatchOutput.zip, tempDir.resolve("bills.zip").toString());
+			assertThat(result.getRenderedCount()).isEqualTo(2);
+			assertThat(result.getItemResults().get(1).getErrorMessage()).contains("timed out");
+			// the names of the items cannot make the entries paths
+			try (ZipFile zipFile = new ZipFile(result.getOutputFile())) {
+				assertThat(zipFile.stream().map(ZipEntry::getName)).containsExactly("001_.._bills_bill_1.pdf", "003_bill_2.pdf");
+			}
+		} finally {
+			reportBatchManager.shutdown();
+		}
+	}
+
+	private ReportJob waitForJob(ReportJobManager reportJobManager, String jobId, ReportJobStatus status) throws InterruptedException {
+		ReportJob job = reportJobManager.getJob(jobId);
+		for (int i = 0; i < 200 && job.getStatus() != status; i++) {
+			Thread.sleep(50);
+		}
+		assertThat(job.getStatus()).isEqualTo(status);
+		return job;
+	}
 }
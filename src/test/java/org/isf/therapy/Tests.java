@@ -338,6 +338,35 @@ class Tests extends OHCoreTestCase {
 		assertThat(medicals).isEmpty();
 	}
 
+	@Test
+	void testMgrGetMedicalsOutOfStockManyTherapies() throws Exception {
+		MedicalType medicalType = testMedicalType.setup(false);
+		Medical available = testMedical.setup(medicalType, false);
+		available.setInqty(10);
+		available.setOutqty(0);
+		Medical missing = testMedical.setup(medicalType, false);
+		missing.setProdCode("TP2");
+		missing.setDescription("OtherDescription");
+		missing.setInqty(0);
+		missing.setOutqty(0);
+		Patient patient = testPatient.setup(false);
+		medicalTypeIoOperationRepository.saveAndFlush(medicalType);
+		medicalsIoOperationRepository.saveAndFlush(available);
+		medicalsIoOperationRepository.saveAndFlush(missing);
+		patientIoOperationRepository.saveAndFlush(patient);
+
+		LocalDateTime[] dates = { TimeTools.getNow(), TimeTools.getNow() };
+		List<Therapy> therapies = new ArrayList<>(4);
+		therapies.add(new Therapy(1, patient.getCode(), dates, available, 1.0, "", 1, "TestNote", true, true));
+		therapies.add(new Therapy(2, patient.getCode(), dates, missing, 1.0, "", 1, "TestNote", true, true));
+		therapies.add(new Therapy(3, patient.getCode(), dates, available, 2.0, "", 1, "TestNote", true, true));
+		therapies.add(new Therapy(4, patient.getCode(), dates, missing, 2.0, "", 1, "TestNote", true, true));
+
+		List<Medical> medicals = therapyManager.getMedicalsOutOfStock(therapies);
+		assertThat(medicals).extracting(Medical::getCode).containsExactly(missing.getCode());
+		assertThat(therapyManager.getMedicalsOutOfStock(new ArrayList<>())).isEmpty();
+	}
+
 	@Test
 	void testMgrGetMedicalsOutOfStockDayCountEqualToZero() throws Exception {
 		MedicalType medicalType = testMedicalType.setup(false);
@@ -0,0 +1,82 @@
+/*
+ * Open Hospital (www.open-hospital.org)
+ * Copyright © 2006-2024 Informatici Senza Frontiere (info@informaticisenzafrontiere.org)
+ *
+ * Open Hospital is a free and open source software for healthcare data management.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * https://www.gnu.org/licenses/gpl-3.0-standalone.html
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.isf.utils.db;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.isf.OHCoreTestCase;
+import org.isf.utils.exception.OHException;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.transaction.TestTransaction;
+
+class TestDbQueryExecutor extends OHCoreTestCase {
+
+	@Autowired
+	DbQueryExecutor dbQueryExecutor;
+
+	@Test
+	void testQuery() throws Exception {
+		List<Integer> values = dbQueryExecutor.query("testQuery", "SELECT X FROM SYSTEM_RANGE(?, ?)", List.of(1, 5), 2, resultSet -> {
+			List<Integer> rows = new ArrayList<>();
+			while (resultSet.next()) {
+				rows.add(resultSet.getInt(1));
+			}
+			return rows;
+		});
+		assertThat(values).containsExactly(1, 2, 3, 4, 5);
+		assertThat(dbQueryExecutor.getQueryTimings().get("testQuery").getCount()).isEqualTo(1);
+	}
+
+	@Test
+	void testQueryError() throws Exception {
+		assertThatThrownBy(() -> dbQueryExecutor.query("testQueryError", "SELECT * FROM NO_SUCH_TABLE", List.of(), resultSet -> null))
+						.isInstanceOf(OHException.class);
+		assertThat(dbQueryExecutor.getQueryTimings().get("testQueryError").getCount()).isEqualTo(1);
+	}
+
+	@Test
+	void testQueryDeadline() throws Exception {
+		// the pool evicts the connection of a timed out query, so the query must not use the connection of the test transaction
+		TestTransaction.end();
+		assertThat(DbQueryExecutor.getQueryTimeout()).isZero();
+		DbQueryExecutor.setDeadline(Instant.now().plusSeconds(1));
+		try {
+			assertThat(DbQueryExecutor.getQueryTimeout()).isEqualTo(1);
+			// a query running for much longer than the deadline
+			long start = System.nanoTime();
+			assertThatThrownBy(() -> dbQueryExecutor.query("testQueryDeadline", "SELECT SUM(A.X * B.X) FROM SYSTEM_RANGE(1, 1000000) A, SYSTEM_RANGE(1, 1000000) B",
+							List.of(), resultSet -> resultSet.next()))
+							.isInstanceOf(OHException.class);
+			assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(30));
+		} finally {
+			DbQueryExecutor.setDeadline(null);
+		}
+		assertThat(DbQueryExecutor.getQueryTimeout()).isZero();
+	}
+}
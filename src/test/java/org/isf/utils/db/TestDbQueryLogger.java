@@ -37,6 +37,7 @@ import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.springframework.context.ApplicationContext;
 
+@SuppressWarnings("deprecation")
 class TestDbQueryLogger {
 
 	@Mock
@@ -35,6 +35,7 @@ import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.springframework.context.ApplicationContext;
 
+@SuppressWarnings("deprecation")
 class TestDbSingleJpaConn {
 
 	@Mock
@@ -33,10 +33,14 @@ import java.sql.Timestamp;
 import java.util.Collection;
 import java.util.GregorianCalendar;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 
 import javax.swing.JTable;
 
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -131,6 +135,25 @@ class TestExcelExporter {
 		assertThat(Files.exists(outputFile.toPath())).isTrue();
 	}
 
+	@Test
+	void testExportResultSetToExcelMoreRowsThanWindow() throws Exception {
+		Object[][] data = new Object[1000][];
+		for (int i = 0; i < data.length; i++) {
+			data[i] = new Object[] { "Name" + i, i, i * 1.5 };
+		}
+		ResultSet mockResultSet = MockResultSet.create(new String[] { "name", "age", "weight" }, data);
+		File outputFile = new File(tempDir, "exportResultSetToExcelMoreRowsThanWindow");
+		excelExporter.exportResultsetToExcel(mockResultSet, outputFile);
+
+		try (XSSFWorkbook workbook = new XSSFWorkbook(outputFile)) {
+			Sheet sheet = workbook.getSheetAt(0);
+			assertThat(sheet.getLastRowNum()).isEqualTo(1000);
+			assertThat(sheet.getRow(0).getCell(0).getStringCellValue()).isEqualTo("name");
+			assertThat(sheet.getRow(1).getCell(0).getStringCellValue()).isEqualTo("Name0");
+			assertThat(sheet.getRow(1000).getCell(1).getNumericCellValue()).isEqualTo(999);
+		}
+	}
+
 	@Test
 	void testExportResultSetToExcelOLD() throws Exception {
 		ResultSet mockResultSet = MockResultSet.create(
@@ -163,6 +186,20 @@ class TestExcelExporter {
 		assertThat(Files.exists(outputFile.toPath())).isTrue();
 	}
 
+	@Test
+	void testExportResultSetToCSVColumns() throws Exception {
+		ResultSet mockResultSet = MockResultSet.create(
+						new String[] { "name", "age", "empty" }, //columns
+						new Object[][] { // data
+										{ "Alice", 20, null },
+										{ "Bob", 35, null }
+						});
+		File outputFile = new File(tempDir, "exportResultSetToCSVColumns");
+		excelExporter.exportResultsetToCSV(mockResultSet, outputFile);
+		List<String> lines = Files.readAllLines(outputFile.toPath());
+		assertThat(lines).containsExactly("\uFEFFname;age;empty", "Alice;20; ", "Bob;35; ");
+	}
+
 	@Test
 	void testExportDataToCSV() throws Exception {
 		File outputFile = new File(tempDir, "exportDataToCSV");
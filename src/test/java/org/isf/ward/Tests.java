@@ -44,6 +44,7 @@ import org.isf.utils.exception.OHServiceException;
 import org.isf.utils.time.TimeTools;
 import org.isf.ward.manager.WardBrowserManager;
 import org.isf.ward.model.Ward;
+import org.isf.ward.model.WardOccupation;
 import org.isf.ward.service.WardIoOperationRepository;
 import org.isf.ward.service.WardIoOperations;
 import org.junit.jupiter.api.BeforeAll;
@@ -335,6 +336,35 @@ class Tests extends OHCoreTestCase {
 		assertThat(wardBrowserManager.getCurrentOccupation(ward)).isEqualTo(2);
 	}
 
+	@Test
+	void testMgrGetWardOccupations() throws Exception {
+		String code = setupTestWard(false);
+		Ward ward = wardIoOperationRepository.findById(code).orElse(null);
+		assertThat(ward).isNotNull();
+		Patient patient = new Patient();
+		patient.setBirthDate(LocalDate.now().minusYears(45));
+		patientIoOperationRepository.save(patient);
+		AdmissionType admissionType = new AdmissionType("ZZ", "TestDescription");
+		Admission admitted = new Admission(1, 1, "N", ward, 1, patient, LocalDateTime.now(), admissionType, null, null,
+				null, null, null, null, null, null, null, null, null, null,
+				null, null, null, null, null, null, null, 'N');
+		Admission deleted = new Admission(2, 1, "N", ward, 1, patient, LocalDateTime.now(), admissionType, null, null,
+				null, null, null, null, null, null, null, null, null, null,
+				null, null, null, null, null, null, null, 'N');
+		deleted.setDeleted('Y');
+		admissionTypeIoOperationRepository.saveAndFlush(admissionType);
+		admissionIoOperationRepository.saveAndFlush(admitted);
+		admissionIoOperationRepository.saveAndFlush(deleted);
+
+		List<WardOccupation> occupations = wardBrowserManager.getWardOccupations();
+
+		assertThat(occupations).hasSize(wardIoOperationRepository.findAll().size());
+		WardOccupation occupation = occupations.stream().filter(wardOccupation -> wardOccupation.ward().getCode().equals(code)).findFirst()
+				.orElseThrow();
+		assertThat(occupation.usedBeds()).isEqualTo(1);
+		assertThat(occupation.totalBeds()).isEqualTo(ward.getBeds());
+	}
+
 	@Test
 	void testMgrGetWardsNoMaternity() throws Exception {
 		String code = setupTestWard(false);